@@ -11,6 +11,7 @@ import manning.sqlgenerator.dto.SqlGeneratorQueryRequest;
 import manning.sqlgenerator.dto.SqlGeneratorQueryResponse;
 import manning.sqlgenerator.dto.Table;
 import manning.sqlgenerator.service.llm.LanguageModelClient;
+import manning.sqlgenerator.timing.ServerTiming;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -72,8 +73,13 @@ public class SqlGeneratorServiceImpl implements SqlGeneratorService {
             "AI provider '%s' is not configured".formatted(providerName));
       }
 
+      long promptStart = System.nanoTime();
       String prompt = buildPrompt(request);
+      ServerTiming.record(ServerTiming.Phase.PROMPT, promptStart);
+
+      long providerStart = System.nanoTime();
       String rawResponse = client.generateText(prompt);
+      ServerTiming.record(ServerTiming.Phase.PROVIDER, providerStart);
 
       String generatedSql = cleanSqlResponse(rawResponse);
 
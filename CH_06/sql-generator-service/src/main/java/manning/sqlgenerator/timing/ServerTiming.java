@@ -0,0 +1,111 @@
+package manning.sqlgenerator.timing;
+
+/**
+ * Phase timings of the request the current thread is serving, sent back as a {@code Server-Timing}
+ * header by {@link ServerTimingFilter}.
+ *
+ * <p>Every thread owns one preallocated slot that is reset at the start of each request, so recording a
+ * phase is a thread-local lookup and an addition. Outside of a timed request (or when the filter is
+ * disabled) {@link #record} does nothing.
+ */
+public final class ServerTiming {
+
+  public static final String HEADER = "Server-Timing";
+
+  /** Phases in the order they appear in the header. */
+  public enum Phase {
+    PARSE("parse"),
+    PROMPT("prompt"),
+    PROVIDER("provider"),
+    SERIALIZE("serialize");
+
+    private final String metricName;
+
+    Phase(String metricName) {
+      this.metricName = metricName;
+    }
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+  private static final ThreadLocal<ServerTiming> CURRENT = ThreadLocal.withInitial(ServerTiming::new);
+
+  private final long[] phaseNanos = new long[PHASES.length];
+  private final boolean[] recorded = new boolean[PHASES.length];
+  private final StringBuilder header = new StringBuilder(128);
+  private boolean active;
+  private long startNanos;
+  private long markNanos;
+
+  private ServerTiming() {}
+
+  /**
+   * Adds the time since {@code startNanos} ({@link System#nanoTime()}) to the phase of the current request.
+   */
+  public static void record(Phase phase, long startNanos) {
+    ServerTiming timing = CURRENT.get();
+    if (timing.active) {
+      timing.phaseNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+      timing.recorded[phase.ordinal()] = true;
+    }
+  }
+
+  static ServerTiming current() {
+    return CURRENT.get();
+  }
+
+  void start() {
+    active = true;
+    startNanos = System.nanoTime();
+    markNanos = 0;
+    for (int i = 0; i < PHASES.length; i++) {
+      phaseNanos[i] = 0;
+      recorded[i] = false;
+    }
+  }
+
+  /** Remembers when a phase recorded by another callback (e.g. body read or write) started. */
+  void mark() {
+    markNanos = System.nanoTime();
+  }
+
+  void recordSinceMark(Phase phase) {
+    if (markNanos != 0) {
+      record(phase, markNanos);
+      markNanos = 0;
+    }
+  }
+
+  /**
+   * Ends the request and returns the header value, e.g. {@code parse;dur=0.412, prompt;dur=0.031,
+   * provider;dur=812.204, serialize;dur=0.120, total;dur=813.550}.
+   */
+  String finish() {
+    long totalNanos = System.nanoTime() - startNanos;
+    header.setLength(0);
+    for (Phase phase : PHASES) {
+      if (recorded[phase.ordinal()]) {
+        appendMetric(header, phase.metricName, phaseNanos[phase.ordinal()]);
+      }
+    }
+    appendMetric(header, "total", totalNanos);
+    active = false;
+    return header.toString();
+  }
+
+  /** Appends {@code name;dur=MILLIS} with microsecond precision, formatted without allocating. */
+  static void appendMetric(StringBuilder header, String name, long nanos) {
+    if (header.length() > 0) {
+      header.append(", ");
+    }
+    long micros = Math.max(0, nanos) / 1_000;
+    header.append(name).append(";dur=").append(micros / 1_000).append('.');
+    long fraction = micros % 1_000;
+    if (fraction < 100) {
+      header.append('0');
+    }
+    if (fraction < 10) {
+      header.append('0');
+    }
+    header.append(fraction);
+  }
+}
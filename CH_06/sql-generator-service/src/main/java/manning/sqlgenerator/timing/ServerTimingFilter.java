@@ -0,0 +1,52 @@
+package manning.sqlgenerator.timing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Adds a {@code Server-Timing} header with the phases of {@link ServerTiming} to SQL generation
+ * responses, so load tests and browser dev tools can tell provider wait from our own work without
+ * reading logs.
+ *
+ * <p>The body is buffered until the request is done, because the header has to be sent before the
+ * first byte and serialization is only timed once it finished. Only {@link #TIMED_PATH} is filtered;
+ * health, info and actuator responses have no phases to report and are not buffered. {@code Timing-Allow-Origin} lets the
+ * cross-origin callers allowed by the controller read the timings too.
+ *
+ * <p>Enabled with {@code server-timing.enabled=true}, e.g. {@code -Dserver-timing.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "server-timing.enabled", havingValue = "true")
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+  static final String TIMED_PATH = "/api/sql-generator/generate-sql";
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !request.getRequestURI().startsWith(request.getContextPath() + TIMED_PATH);
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    ServerTiming timing = ServerTiming.current();
+    timing.start();
+    ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+    try {
+      filterChain.doFilter(request, buffered);
+    } finally {
+      timing.recordSinceMark(ServerTiming.Phase.SERIALIZE);
+      response.setHeader(ServerTiming.HEADER, timing.finish());
+      response.setHeader("Timing-Allow-Origin", "*");
+      buffered.copyBodyToResponse();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package manning.sqlgenerator.timing;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import manning.sqlgenerator.dto.SqlGeneratorQueryRequest;
+import manning.sqlgenerator.dto.SqlGeneratorQueryResponse;
+import manning.sqlgenerator.dto.Table;
+import manning.sqlgenerator.service.SqlGeneratorService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Runs the filter and the body advice in the full MVC stack. The actuator is served from the
+ * application port here, so its health endpoint passes the same filter chain.
+ */
+@SpringBootTest(properties = {"server-timing.enabled=true", "management.server.port="})
+@AutoConfigureMockMvc
+class ServerTimingFilterTest {
+
+  private static final String PHASE = "\\d+\\.\\d{3}";
+
+  @Autowired private MockMvc mockMvc;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @MockBean private SqlGeneratorService sqlGeneratorService;
+
+  @Test
+  void testGenerateSql_ReportsPhasesInServerTimingHeader() throws Exception {
+    when(sqlGeneratorService.generateSql(any(SqlGeneratorQueryRequest.class)))
+        .thenReturn(SqlGeneratorQueryResponse.success("SELECT COUNT(*) FROM sales"));
+    SqlGeneratorQueryRequest request =
+        new SqlGeneratorQueryRequest("How many sales are there?", List.of(new Table("sales")));
+
+    mockMvc
+        .perform(
+            post(ServerTimingFilter.TIMED_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+        .andExpect(status().isOk())
+        .andExpect(
+            header()
+                .string(
+                    ServerTiming.HEADER,
+                    matchesPattern(
+                        "parse;dur=" + PHASE + ", serialize;dur=" + PHASE + ", total;dur=" + PHASE)))
+        .andExpect(header().string("Timing-Allow-Origin", "*"));
+  }
+
+  @Test
+  void testActuatorHealth_HasNoServerTimingHeader() throws Exception {
+    mockMvc
+        .perform(get("/actuator/health"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(ServerTiming.HEADER))
+        .andExpect(header().doesNotExist("Timing-Allow-Origin"));
+  }
+
+  @Test
+  void testServiceHealth_HasNoServerTimingHeader() throws Exception {
+    mockMvc
+        .perform(get("/api/sql-generator/health"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist(ServerTiming.HEADER));
+  }
+}
@@ -0,0 +1,46 @@
+package manning.sqlgenerator.timing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ServerTimingTest {
+
+  @Test
+  void testAppendMetric_FormatsMilliseconds() {
+    StringBuilder header = new StringBuilder();
+
+    ServerTiming.appendMetric(header, "parse", 41_999);
+    ServerTiming.appendMetric(header, "provider", 812_204_000);
+
+    assertEquals("parse;dur=0.041, provider;dur=812.204", header.toString());
+  }
+
+  @Test
+  void testFinish_ListsRecordedPhasesInOrder() {
+    ServerTiming timing = ServerTiming.current();
+    timing.start();
+
+    ServerTiming.record(ServerTiming.Phase.PROVIDER, System.nanoTime());
+    ServerTiming.record(ServerTiming.Phase.PROMPT, System.nanoTime());
+    String header = timing.finish();
+
+    assertTrue(
+        header.matches("prompt;dur=\\d+\\.\\d{3}, provider;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"),
+        header);
+  }
+
+  @Test
+  void testRecord_IgnoredOutsideOfTimedRequest() {
+    ServerTiming timing = ServerTiming.current();
+    timing.start();
+    timing.finish();
+
+    ServerTiming.record(ServerTiming.Phase.PROVIDER, System.nanoTime() - 5_000_000);
+    timing.start();
+    String header = timing.finish();
+
+    assertTrue(header.startsWith("total;dur="), header);
+  }
+}
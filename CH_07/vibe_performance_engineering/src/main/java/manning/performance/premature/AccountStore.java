@@ -0,0 +1,275 @@
+package manning.performance.premature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-only columnar store of accounts outside the Java heap, for account counts where a List of Account
+ * beans (object headers, a boxed Integer and a String per account) dominates the heap.
+ * Ids are kept sorted in an int column and names as UTF-8 in one byte arena, in a direct buffer built by
+ * of() or in a file mapped by open(), so the garbage collector sees a single object whatever the size.
+ *
+ * Lookups hash the id into a slot column (open addressing, linear probing, at most half full), compare
+ * the id of the row the slot points to and position an AccountView flyweight on it; neither allocates,
+ * only name() and toAccount() create objects. A sorted id column alone would be smaller, but its binary
+ * search costs around ten times a hashed lookup at a million accounts. Null names are stored as empty names.
+ *
+ * Layout, little endian, all offsets in bytes:
+ * - header (HEADER_LENGTH): 0 int magic (MAGIC); 4 int version; 8 int account count; 12 int arena length;
+ *   16 int slot count (a power of two)
+ * - ids, from HEADER_LENGTH: int[count], ascending
+ * - slots: int[slot count], row + 1 of the id hashed there, 0 when empty
+ * - name offsets: int[count + 1], name of row r is arena[offset[r], offset[r + 1])
+ * - arena: UTF-8 names in row order
+ * The whole store must fit into 2 GB, roughly 60 million accounts with short names.
+ */
+public final class AccountStore {
+
+    static final int MAGIC = 0x5443_4341; // "ACCT"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 32;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int slotMask;
+    private final int slotShift;
+    private final int idsOffset;
+    private final int slotsOffset;
+    private final int nameOffsetsOffset;
+    private final int arenaOffset;
+
+    private AccountStore(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        int slots = buffer.getInt(16);
+        this.slotMask = slots - 1;
+        this.slotShift = 32 - Integer.numberOfTrailingZeros(slots);
+        this.idsOffset = HEADER_LENGTH;
+        this.slotsOffset = idsOffset + count * 4;
+        this.nameOffsetsOffset = slotsOffset + slots * 4;
+        this.arenaOffset = nameOffsetsOffset + (count + 1) * 4;
+    }
+
+    /**
+     * Copy the accounts into a new off-heap store; ids must be non-null and unique
+     */
+    public static AccountStore of(List<Account> accounts) {
+        int count = accounts.size();
+        long[] order = new long[count]; // id in the high half, list index in the low half
+        for (int i = 0; i < count; i++) {
+            Integer id = accounts.get(i).getId();
+            if (id == null) {
+                throw new IllegalArgumentException("Account without id at index " + i);
+            }
+            order[i] = ((long) id << 32) | i;
+        }
+        Arrays.parallelSort(order);
+
+        long arenaLength = 0;
+        for (int row = 0; row < count; row++) {
+            if (row > 0 && (int) (order[row] >> 32) == (int) (order[row - 1] >> 32)) {
+                throw new IllegalArgumentException("Duplicate account id " + (int) (order[row] >> 32));
+            }
+            arenaLength += nameBytes(accounts.get((int) order[row])).length;
+        }
+        int slots = slotsFor(count);
+        long length = length(count, slots, arenaLength);
+        if (slots < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Accounts need " + length + " bytes, more than 2 GB");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, count);
+        buffer.putInt(12, (int) arenaLength);
+        buffer.putInt(16, slots);
+        AccountStore store = new AccountStore(buffer);
+        int nameOffset = 0;
+        for (int row = 0; row < count; row++) {
+            int id = (int) (order[row] >> 32);
+            byte[] name = nameBytes(accounts.get((int) order[row]));
+            buffer.putInt(store.idsOffset + row * 4, id);
+            int slot = store.slot(id);
+            while (buffer.getInt(store.slotsOffset + slot * 4) != 0) {
+                slot = (slot + 1) & store.slotMask;
+            }
+            buffer.putInt(store.slotsOffset + slot * 4, row + 1);
+            buffer.putInt(store.nameOffsetsOffset + row * 4, nameOffset);
+            buffer.put(store.arenaOffset + nameOffset, name);
+            nameOffset += name.length;
+        }
+        buffer.putInt(store.nameOffsetsOffset + count * 4, nameOffset);
+        return store;
+    }
+
+    /**
+     * Map a store written by save(); pages are loaded by the OS on first access, not copied to the heap
+     */
+    public static AccountStore open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not an account store file");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an account store file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " has version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        int count = buffer.getInt(8);
+        int slots = buffer.getInt(16);
+        long expected = length(count, slots, buffer.getInt(12));
+        if (count < 0 || buffer.getInt(12) < 0 || slots != slotsFor(count) || expected != buffer.capacity()) {
+            throw new IOException(file + " is truncated or corrupt, expected " + expected + " bytes");
+        }
+        return new AccountStore(buffer);
+    }
+
+    /**
+     * Write the store to a file; written next to it first and moved into place, so open() never sees half a file
+     */
+    public void save(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer source = buffer.duplicate().clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Bytes the store takes off-heap, or in the mapped file
+     */
+    public long bytes() {
+        return buffer.capacity();
+    }
+
+    public boolean contains(int id) {
+        return row(id) >= 0;
+    }
+
+    /**
+     * Position the view on the account with this id; returns false, leaving the view unchanged, when there is none
+     */
+    public boolean account(int id, AccountView view) {
+        int row = row(id);
+        if (row < 0) {
+            return false;
+        }
+        view.store = this;
+        view.row = row;
+        return true;
+    }
+
+    /**
+     * Allocating convenience lookup, same answer as AccountFinder.accountHashMap
+     */
+    public Optional<Account> account(int id) {
+        AccountView view = new AccountView();
+        return account(id, view) ? Optional.of(view.toAccount()) : Optional.empty();
+    }
+
+    /**
+     * Row of the id, or -1
+     */
+    int row(int id) {
+        int slot = slot(id);
+        int row;
+        while ((row = buffer.getInt(slotsOffset + slot * 4) - 1) >= 0) {
+            if (buffer.getInt(idsOffset + row * 4) == id) {
+                return row;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    private int slot(int id) {
+        return (id * 0x9E3779B9) >>> slotShift; // Fibonacci hashing, sequential ids spread over the slots
+    }
+
+    /**
+     * Smallest power of two at least twice the count, or -1 when that does not fit into an int
+     */
+    private static int slotsFor(int count) {
+        long needed = Math.max(2, 2L * count);
+        return needed > 1 << 30 ? -1 : Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private static long length(int count, int slots, long arenaLength) {
+        return HEADER_LENGTH + 8L * count + 4L * slots + 4 + arenaLength;
+    }
+
+    private static byte[] nameBytes(Account account) {
+        return account.getName() == null ? EMPTY : account.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reusable flyweight over one row of a store, create one per thread and pass it to account(id, view)
+     */
+    public static final class AccountView {
+        private AccountStore store;
+        private int row = -1;
+
+        public int id() {
+            return store.buffer.getInt(store.idsOffset + row * 4);
+        }
+
+        public int nameLength() {
+            return nameEnd() - nameStart();
+        }
+
+        /**
+         * Copy the UTF-8 name into target, which must hold nameLength() bytes; returns the length
+         */
+        public int copyName(byte[] target) {
+            int start = nameStart();
+            int length = nameEnd() - start;
+            store.buffer.get(store.arenaOffset + start, target, 0, length);
+            return length;
+        }
+
+        public String name() {
+            byte[] name = new byte[nameLength()];
+            copyName(name);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        public Account toAccount() {
+            return new Account(name(), id());
+        }
+
+        private int nameStart() {
+            return store.buffer.getInt(store.nameOffsetsOffset + row * 4);
+        }
+
+        private int nameEnd() {
+            return store.buffer.getInt(store.nameOffsetsOffset + (row + 1) * 4);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package manning.performance.premature;
+
+import java.util.List;
+
+/**
+ * Open-addressing map from a primitive int id to its Account, the boxing-free alternative to the
+ * Integer-keyed HashMap in AccountFinder. Keys and values live in two parallel arrays probed linearly, so an entry
+ * costs a key int and a value reference instead of a HashMap Node plus an Integer, and a lookup
+ * touches no other objects than the Account it returns.
+ * A slot is empty when its value is null, any int is a valid key. Not thread safe for writes;
+ * once built it can be read from many threads like AccountFinder's HashMap.
+ */
+public class IntAccountMap {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    private Account[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public IntAccountMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Index of the given accounts by id; for duplicated ids the last account wins, like HashMap.put
+     */
+    public static IntAccountMap of(List<Account> accounts) {
+        IntAccountMap map = new IntAccountMap(accounts.size());
+        for (Account account : accounts) {
+            map.put(account.getId(), account);
+        }
+        return map;
+    }
+
+    /**
+     * @return the previous account with this id, or null
+     */
+    public Account put(int id, Account account) {
+        if (account == null) {
+            throw new IllegalArgumentException("Account must not be null");
+        }
+        int slot = slot(id);
+        while (values[slot] != null) {
+            if (keys[slot] == id) {
+                Account previous = values[slot];
+                values[slot] = account;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        values[slot] = account;
+        if (++size > (mask + 1) / 2) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * @return the account with this id, or null
+     */
+    public Account get(int id) {
+        int slot = slot(id);
+        Account value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == id) {
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of slots in the arrays, at most half of them are used
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    private int slot(int id) {
+        return (id * 0x9E3779B9) >>> shift; // Fibonacci hashing, sequential ids spread over the table
+    }
+
+    private void grow() {
+        if (capacity() == MAX_CAPACITY) {
+            throw new IllegalStateException("IntAccountMap is full: " + size);
+        }
+        int[] oldKeys = keys;
+        Account[] oldValues = values;
+        allocate(capacity() * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Account[capacity];
+        mask = capacity - 1;
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = Math.max(2, (long) expectedSize * 2 + 1);
+        if (needed > MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+}
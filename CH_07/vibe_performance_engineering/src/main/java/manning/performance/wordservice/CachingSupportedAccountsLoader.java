@@ -0,0 +1,195 @@
+package manning.performance.wordservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import manning.performance.premature.Account;
+import manning.performance.premature.Accounts;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * SupportedAccountsLoader that parses the accounts file once into an immutable snapshot with an id index,
+ * instead of re-reading the YAML on every call like DefaultSupportedAccountsLoader.
+ * At most once per checkInterval a call looks at the file's modification time and size; only when they
+ * changed is the file read and hashed, and only when the content hash changed too is it parsed and the
+ * snapshot swapped (a volatile write), so readers never see a half-built list or index.
+ * One caller reloads while the others keep using the current snapshot. A file that cannot be parsed
+ * (e.g. half-written) keeps the previous snapshot and is tried again on the next check.
+ * The returned accounts are shared, callers must not modify them.
+ *
+ * Opt-in: nothing in the service loads accounts yet; a caller that needs them on a request path should
+ * construct this loader rather than DefaultSupportedAccountsLoader, see SupportedAccountsLoaderBenchmark.
+ */
+public class CachingSupportedAccountsLoader implements SupportedAccountsLoader {
+
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+    private final Path configFilePath;
+    private final long checkIntervalNanos;
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    private volatile long nextCheckNanos;
+
+    public CachingSupportedAccountsLoader(Path filePath) {
+        this(filePath, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * @param checkInterval how long a snapshot is used without looking at the file, zero checks on every call
+     */
+    public CachingSupportedAccountsLoader(Path filePath, Duration checkInterval) {
+        this.configFilePath = filePath;
+        this.checkIntervalNanos = checkInterval.toNanos();
+        FileStamp stamp = stamp();
+        byte[] content = read();
+        this.snapshot = parse(content, stamp, hash(content));
+        this.nextCheckNanos = System.nanoTime() + checkIntervalNanos;
+    }
+
+    @Override
+    public List<Account> accounts() {
+        return current().accounts;
+    }
+
+    @Override
+    public Optional<Account> account(Integer id) {
+        return Optional.ofNullable(current().byId.get(id));
+    }
+
+    /**
+     * Number of times the file was parsed, including the initial load
+     */
+    public long loads() {
+        return snapshot.loads;
+    }
+
+    private Snapshot current() {
+        if (System.nanoTime() - nextCheckNanos >= 0 && reloadLock.tryLock()) {
+            try {
+                reloadIfChanged();
+            } finally {
+                reloadLock.unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    private void reloadIfChanged() {
+        nextCheckNanos = System.nanoTime() + checkIntervalNanos;
+        Snapshot current = snapshot;
+        FileStamp stamp;
+        try {
+            stamp = stamp();
+        } catch (UncheckedIOException e) {
+            return; // e.g. replaced by a rename right now, keep the snapshot
+        }
+        if (stamp.equals(current.stamp)) {
+            return;
+        }
+        try {
+            byte[] content = read();
+            long hash = hash(content);
+            snapshot = hash == current.hash
+                ? current.restamped(stamp) // touched, not changed
+                : parse(content, stamp, hash, current.loads + 1);
+        } catch (UncheckedIOException e) {
+            // keep serving the previous snapshot, the stamp is not updated so the next check retries
+        }
+    }
+
+    private Snapshot parse(byte[] content, FileStamp stamp, long hash) {
+        return parse(content, stamp, hash, 1);
+    }
+
+    private Snapshot parse(byte[] content, FileStamp stamp, long hash, long loads) {
+        try {
+            List<Account> accounts = mapper.readValue(content, Accounts.class).getAccounts();
+            List<Account> list = accounts == null ? List.of() : Collections.unmodifiableList(accounts);
+            Map<Integer, Account> byId = new HashMap<>((int) (list.size() / 0.75f) + 1);
+            for (Account account : list) {
+                byId.putIfAbsent(account.getId(), account); // the first one wins, like a scan would
+            }
+            return new Snapshot(list, byId, stamp, hash, loads);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when parsing file from: " + configFilePath, e);
+        }
+    }
+
+    private byte[] read() {
+        try {
+            return Files.readAllBytes(configFilePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when loading file from: " + configFilePath, e);
+        }
+    }
+
+    private FileStamp stamp() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(configFilePath, BasicFileAttributes.class);
+            return new FileStamp(attributes.lastModifiedTime(), attributes.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when checking file: " + configFilePath, e);
+        }
+    }
+
+    private static long hash(byte[] content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue() ^ ((long) content.length << 32);
+    }
+
+    private static final class FileStamp {
+        final FileTime lastModified;
+        final long size;
+
+        FileStamp(FileTime lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FileStamp
+                && lastModified.equals(((FileStamp) other).lastModified) && size == ((FileStamp) other).size;
+        }
+
+        @Override
+        public int hashCode() {
+            return lastModified.hashCode() * 31 + Long.hashCode(size);
+        }
+    }
+
+    private static final class Snapshot {
+        final List<Account> accounts;
+        final Map<Integer, Account> byId;
+        final FileStamp stamp;
+        final long hash;
+        final long loads;
+
+        Snapshot(List<Account> accounts, Map<Integer, Account> byId, FileStamp stamp, long hash, long loads) {
+            this.accounts = accounts;
+            this.byId = byId;
+            this.stamp = stamp;
+            this.hash = hash;
+            this.loads = loads;
+        }
+
+        Snapshot restamped(FileStamp stamp) {
+            return new Snapshot(accounts, byId, stamp, hash, loads);
+        }
+    }
+}
@@ -32,6 +32,7 @@ public class DefaultSupportedAccountsLoader implements SupportedAccountsLoader {
         }
     }
 
+    @Override
     public Optional<Account> account(Integer id) {
         return accounts().stream().filter(v -> v.getId().equals(id)).findFirst();
     }
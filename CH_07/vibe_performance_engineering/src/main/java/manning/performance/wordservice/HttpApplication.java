@@ -1,11 +1,24 @@
 package manning.performance.wordservice;
 
+import manning.performance.wordservice.traced.AccessLog;
+import manning.performance.wordservice.traced.AccessLogListener;
+import manning.performance.wordservice.traced.MetricsCollector;
+import manning.performance.wordservice.traced.PauseMonitor;
+import manning.performance.wordservice.traced.ProbeCost;
+import manning.performance.wordservice.traced.ProfilerTask;
+import manning.performance.wordservice.traced.ServerTimingFilter;
+import manning.performance.wordservice.traced.SlowRequestsTask;
 import manning.performance.wordservice.traced.TracedWordsController;
+import manning.performance.wordservice.traced.TracingApplicationListener;
+import manning.performance.wordservice.optimized.DictionaryReloadTask;
+import manning.performance.wordservice.optimized.LiveValidationServlet;
 import manning.performance.wordservice.optimized.OptimizedWordsController;
 import io.dropwizard.Application;
 import io.dropwizard.Configuration;
 import io.dropwizard.setup.Environment;
 
+import java.util.Map;
+
 public class HttpApplication extends Application<Configuration> {
 
     @Override
@@ -14,13 +27,43 @@ public class HttpApplication extends Application<Configuration> {
         WordsController wordsController = new WordsController();
         environment.jersey().register(wordsController);
         
-        // Traced endpoints for performance analysis
-        TracedWordsController tracedWordsController = new TracedWordsController();
-        environment.jersey().register(tracedWordsController);
-        
         // Optimized endpoints with HashSet caching (90-99% performance improvement)
         OptimizedWordsController optimizedWordsController = new OptimizedWordsController();
         environment.jersey().register(optimizedWordsController);
+        environment.lifecycle().manage(optimizedWordsController);
+        
+        // Traced endpoints for performance analysis, also serving every engine under /traced-words/engines
+        TracedWordsController tracedWordsController =
+                new TracedWordsController(Map.of("cached", optimizedWordsController.getWordsService()));
+        environment.jersey().register(tracedWordsController);
+        environment.jersey().register(new TracingApplicationListener());
+        if (ServerTimingFilter.isEnabled()) {
+            environment.jersey().register(new ServerTimingFilter());
+        }
+        // binary access log drained off the request threads, read with AccessLogReader
+        AccessLog accessLog = AccessLog.fromSystemProperties();
+        if (accessLog != null) {
+            environment.lifecycle().manage(accessLog);
+            accessLog.bindTo(environment.metrics());
+            environment.jersey().register(new AccessLogListener(accessLog));
+        }
+        MetricsCollector.getInstance().bindTo(environment.metrics());
+        // measured before traffic arrives, the analyzer nets the probes out of method times
+        ProbeCost.calibrate();
+        PauseMonitor.getInstance().start();
+        // reloads go on the pause timeline, so slow requests during one can be told apart
+        optimizedWordsController.getWordsService().getDictionary().addReloadListener(
+                (filePath, startNanos, durationNanos, changed) -> PauseMonitor.getInstance().record(
+                        PauseMonitor.Kind.RELOAD, "dictionary reload of " + filePath, startNanos, durationNanos));
+        environment.admin().addTask(new ProfilerTask());
+        environment.admin().addTask(new SlowRequestsTask());
+        environment.admin().addTask(
+                new DictionaryReloadTask(optimizedWordsController.getWordsService().getDictionary()));
+
+        // Live validation for editors over WebSocket, sharing the optimized dictionary
+        environment.servlets()
+                .addServlet("live-validation", new LiveValidationServlet(optimizedWordsController.getWordsService()))
+                .addMapping("/optimized-words/live");
     }
 
     // it will be accessible under
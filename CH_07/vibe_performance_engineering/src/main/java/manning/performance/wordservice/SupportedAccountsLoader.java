@@ -3,7 +3,13 @@ package manning.performance.wordservice;
 import manning.performance.premature.Account;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface SupportedAccountsLoader {
     List<Account> accounts();
+
+    /**
+     * First account with this id, in file order
+     */
+    Optional<Account> account(Integer id);
 }
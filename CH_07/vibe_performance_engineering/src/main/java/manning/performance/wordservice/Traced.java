@@ -0,0 +1,33 @@
+package manning.performance.wordservice;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Times (and optionally counts) a method into MetricsCollector, with the same sampling and nesting
+ * as the hand-written TraceContext scopes (manning.performance.wordservice.traced):
+ * - on a JAX-RS resource method it is picked up by TracingApplicationListener
+ * - on an interface or implementation method it is picked up by TracingDecorator
+ * On a type it applies to all of its methods.
+ * Only metadata, it lives next to WordsService so engines and interfaces can be marked without
+ * depending on the traced package; the tracing itself is done there.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Traced {
+
+    /**
+     * Timer name, by default SimpleClassName.methodName (engineName.methodName for TracingDecorator).
+     * Ignored on a type, where every method gets the default name.
+     */
+    String value() default "";
+
+    /**
+     * Request counter to increment on every call, none by default
+     */
+    String endpoint() default "";
+}
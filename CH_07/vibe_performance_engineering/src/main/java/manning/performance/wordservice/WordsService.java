@@ -1,7 +1,12 @@
 package manning.performance.wordservice;
 
+/**
+ * Methods are @Traced, so any engine wrapped with TracingDecorator is timed the same way
+ */
 public interface WordsService {
+    @Traced
     String getWordOfTheDay();
 
+    @Traced
     boolean wordExists(String word);
 }
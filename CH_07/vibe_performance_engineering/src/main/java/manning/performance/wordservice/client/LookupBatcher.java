@@ -0,0 +1,132 @@
+package manning.performance.wordservice.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects lookups from many caller threads and sends them to the server in batches.
+ * A single dispatcher thread takes the first waiting word, then keeps collecting for at most
+ * maxBatchDelay or until maxBatchSize words are queued. Concurrent lookups of the same word
+ * share one pending result, so a hot word is sent at most once per batch.
+ * close() fails every lookup that has not been answered yet, including lookups racing with it.
+ */
+class LookupBatcher implements AutoCloseable {
+
+    /**
+     * Sends one batch; returns the results in the same order as the words
+     */
+    interface BatchSender {
+        boolean[] send(List<String> words) throws Exception;
+    }
+
+    private final BatchSender sender;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Map<String, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    LookupBatcher(BatchSender sender, int maxBatchSize, long maxBatchDelayNanos) {
+        this.sender = sender;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = maxBatchDelayNanos;
+        this.dispatcher = new Thread(this::dispatchLoop, "word-client-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    CompletableFuture<Boolean> lookup(String word) {
+        if (!running) {
+            throw new IllegalStateException("Client is closed");
+        }
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = pending.putIfAbsent(word, created);
+        if (existing != null) {
+            return existing;
+        }
+        queue.add(word);
+        if (!running) {
+            // closed after the check above, the dispatcher may already be gone
+            failPending(new IllegalStateException("Client is closed"));
+        }
+        return created;
+    }
+
+    private void dispatchLoop() {
+        List<String> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxBatchDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        break;
+                    }
+                    String next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        failPending(new IllegalStateException("Client is closed"));
+    }
+
+    private void send(List<String> batch) {
+        Map<String, CompletableFuture<Boolean>> futures = new LinkedHashMap<>();
+        for (String word : batch) {
+            futures.put(word, pending.remove(word));
+        }
+        try {
+            boolean[] results = sender.send(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                futures.get(batch.get(i)).complete(results[i]);
+            }
+        } catch (Exception e) {
+            futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void failPending(Exception cause) {
+        pending.forEach((word, future) -> {
+            if (pending.remove(word, future)) {
+                future.completeExceptionally(cause);
+            }
+        });
+        queue.clear();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IllegalStateException("Client is closed"));
+    }
+}
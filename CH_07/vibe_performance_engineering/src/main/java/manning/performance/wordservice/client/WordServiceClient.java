@@ -0,0 +1,268 @@
+package manning.performance.wordservice.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import manning.performance.wordservice.WordsService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Java client for the /optimized-words endpoints that keeps most lookups off the network:
+ * - a bounded near-cache of recent results answers repeated words locally, entries expire after nearCacheTtl
+ * - a Bloom filter downloaded from the server answers definite misses locally
+ * - everything else is batched with concurrent lookups into one /words-exist call
+ * The filter is only free of false negatives for the dictionary version it was built from, so it is
+ * downloaded again (If-None-Match) every filterRefreshInterval, and right away when a /words-exist
+ * response reports another dictionary version than the filter's.
+ * warmUp fills the near-cache with the words the server sees queried most, e.g. right after a restart.
+ * The JDK HttpClient keeps connections alive and pools them between calls.
+ */
+public class WordServiceClient implements WordsService, AutoCloseable {
+
+    public static final int DEFAULT_NEAR_CACHE_SIZE = 50_000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.ofMillis(2);
+    public static final Duration DEFAULT_NEAR_CACHE_TTL = Duration.ofMinutes(1);
+    public static final Duration DEFAULT_FILTER_REFRESH_INTERVAL = Duration.ofSeconds(30);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final String DICTIONARY_VERSION_HEADER = "X-Dictionary-Version";
+
+    private final URI baseUri;
+    private final HttpClient httpClient;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Cache<String, Boolean> nearCache;
+    private final LookupBatcher batcher;
+    private final Duration lookupTimeout;
+    private final ScheduledExecutorService filterRefresher;
+    private final AtomicBoolean filterRefreshQueued = new AtomicBoolean();
+    private final AtomicLong filterRefreshFailures = new AtomicLong();
+
+    private volatile MembershipFilter membershipFilter;
+
+    /**
+     * @param baseUri server root, e.g. http://localhost:8080
+     */
+    public WordServiceClient(URI baseUri) {
+        this(baseUri, DEFAULT_NEAR_CACHE_SIZE, DEFAULT_NEAR_CACHE_TTL, DEFAULT_MAX_BATCH_SIZE,
+                DEFAULT_MAX_BATCH_DELAY, DEFAULT_FILTER_REFRESH_INTERVAL);
+    }
+
+    public WordServiceClient(URI baseUri, int nearCacheSize, Duration nearCacheTtl, int maxBatchSize,
+                             Duration maxBatchDelay, Duration filterRefreshInterval) {
+        this.baseUri = baseUri;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+        this.nearCache = CacheBuilder.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterWrite(nearCacheTtl)
+                .build();
+        this.lookupTimeout = REQUEST_TIMEOUT.plus(maxBatchDelay);
+        // before any thread is started, so a server that cannot be reached leaves nothing running
+        refreshMembershipFilter();
+        this.batcher = new LookupBatcher(this::sendBatch, maxBatchSize, maxBatchDelay.toNanos());
+        this.filterRefresher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("word-client-filter-refresh").build());
+        long intervalMillis = filterRefreshInterval.toMillis();
+        filterRefresher.scheduleWithFixedDelay(this::tryRefreshMembershipFilter,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getWordOfTheDay() {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/optimized-words/word-of-the-day"))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        return send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Override
+    public boolean wordExists(String word) {
+        Boolean cached = nearCache.getIfPresent(word);
+        if (cached != null) {
+            return cached;
+        }
+        MembershipFilter filter = membershipFilter;
+        if (filter != null && !filter.words.mightContain(word)) {
+            return false; // Bloom filters have no false negatives
+        }
+        try {
+            // copy, so a timeout fails this caller only and not the lookup shared with other threads
+            boolean exists = batcher.lookup(word).copy()
+                    .orTimeout(lookupTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .join();
+            nearCache.put(word, exists);
+            return exists;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IllegalStateException("No answer within " + lookupTimeout + " for word: " + word, e.getCause());
+            }
+            throw new IllegalStateException("Problem in wordExists for word: " + word, e.getCause());
+        }
+    }
+
+    /**
+     * Download the membership filter again if the dictionary version changed on the server.
+     * Also drops the near-cache, as cached answers may be stale for the new version.
+     */
+    public void refreshMembershipFilter() {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve("/optimized-words/dictionary/filter"))
+                .timeout(REQUEST_TIMEOUT)
+                .GET();
+        MembershipFilter current = membershipFilter;
+        if (current != null && current.entityTag != null) {
+            request.header("If-None-Match", current.entityTag);
+        }
+        HttpResponse<byte[]> response = exchange(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 304) {
+            return;
+        }
+        if (response.statusCode() != 200) {
+            throw unexpectedStatus(response);
+        }
+        try {
+            // filter, ETag and version are published together, a reader never sees a mix of two downloads
+            membershipFilter = new MembershipFilter(
+                    BloomFilter.readFrom(new ByteArrayInputStream(response.body()),
+                            Funnels.stringFunnel(StandardCharsets.UTF_8)),
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue(DICTIONARY_VERSION_HEADER).orElse(null));
+            nearCache.invalidateAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when reading membership filter", e);
+        }
+    }
+
+    /**
+     * Number of background filter refreshes that failed; the previous filter is kept until one succeeds
+     */
+    public long filterRefreshFailures() {
+        return filterRefreshFailures.get();
+    }
+
+    private void tryRefreshMembershipFilter() {
+        try {
+            refreshMembershipFilter();
+        } catch (RuntimeException e) {
+            filterRefreshFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Put the limit most queried words of the server (/top-words) with their answers into the near-cache,
+     * so a fresh client does not send its first requests for them. Returns the number of words added.
+     */
+    public int warmUp(int limit) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/optimized-words/top-words?limit=" + limit))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        try {
+            byte[] body = send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+            JsonNode words = mapper.readTree(body).get("words");
+            for (JsonNode word : words) {
+                nearCache.put(word.get("word").asText(), word.get("exists").asBoolean());
+            }
+            return words.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when reading top words", e);
+        }
+    }
+
+    /**
+     * Number of results currently held by the near-cache
+     */
+    public long nearCacheSize() {
+        return nearCache.size();
+    }
+
+    private boolean[] sendBatch(List<String> words) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/optimized-words/words-exist"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(words)))
+                .build();
+        HttpResponse<byte[]> response = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        String version = response.headers().firstValue(DICTIONARY_VERSION_HEADER).orElse(null);
+        MembershipFilter filter = membershipFilter;
+        String filterVersion = filter == null ? null : filter.version;
+        if (version != null && !version.equals(filterVersion) && filterRefreshQueued.compareAndSet(false, true)) {
+            filterRefresher.execute(() -> {
+                filterRefreshQueued.set(false);
+                tryRefreshMembershipFilter();
+            });
+        }
+        return mapper.readValue(response.body(), boolean[].class);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        HttpResponse<T> response = exchange(request, bodyHandler);
+        if (response.statusCode() != 200) {
+            throw unexpectedStatus(response);
+        }
+        return response;
+    }
+
+    /**
+     * Send without checking the status
+     */
+    private <T> HttpResponse<T> exchange(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        try {
+            return httpClient.send(request, bodyHandler);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when calling " + request.uri(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted when calling " + request.uri(), e);
+        }
+    }
+
+    private static IllegalStateException unexpectedStatus(HttpResponse<?> response) {
+        return new IllegalStateException("Unexpected status " + response.statusCode() + " from " + response.uri());
+    }
+
+    @Override
+    public void close() {
+        filterRefresher.shutdownNow();
+        batcher.close();
+    }
+
+    /**
+     * A downloaded filter with the ETag and dictionary version it was served with
+     */
+    private static final class MembershipFilter {
+        private final BloomFilter<CharSequence> words;
+        private final String entityTag;
+        private final String version;
+
+        private MembershipFilter(BloomFilter<CharSequence> words, String entityTag, String version) {
+            this.words = words;
+            this.entityTag = entityTag;
+            this.version = version;
+        }
+    }
+}
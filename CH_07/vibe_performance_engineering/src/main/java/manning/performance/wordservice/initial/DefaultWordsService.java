@@ -1,9 +1,14 @@
 package manning.performance.wordservice.initial;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Utf8;
 import manning.performance.wordservice.WordsService;
+import manning.performance.wordservice.jfr.FileOpenEvent;
+import manning.performance.wordservice.jfr.WordExistsEvent;
+import manning.performance.wordservice.jfr.WordOfTheDayEvent;
 
 import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.Scanner;
@@ -13,6 +18,7 @@ public class DefaultWordsService implements WordsService {
 
     private static final int MULTIPLY_FACTOR = 100;
     private static final IntSupplier DEFAULT_INDEX_PROVIDER = DefaultWordsService::getIndexForToday;
+    private static final String SERVICE_NAME = "default";
 
     private Path filePath;
 
@@ -30,12 +36,18 @@ public class DefaultWordsService implements WordsService {
 
     @Override
     public String getWordOfTheDay() {
+        WordOfTheDayEvent event = new WordOfTheDayEvent();
+        event.begin();
         int index = indexProvider.getAsInt();
+        long linesScanned = 0;
+        long bytesRead = 0;
 
-        try (Scanner scanner = new Scanner(filePath.toFile())) {
+        try (Scanner scanner = openDictionary()) {
             int i = 0;
             while (scanner.hasNextLine()) {
                 String line = scanner.nextLine();
+                linesScanned++;
+                bytesRead += Utf8.encodedLength(line) + 1;
                 if (index == i) {
                     return line;
                 }
@@ -43,6 +55,14 @@ public class DefaultWordsService implements WordsService {
             }
         } catch (FileNotFoundException e) {
             throw new RuntimeException("Problem in getWordOfTheDay for index: " + filePath, e);
+        } finally {
+            if (event.shouldCommit()) {
+                event.service = SERVICE_NAME;
+                event.index = index;
+                event.linesScanned = linesScanned;
+                event.bytesRead = bytesRead;
+                event.commit();
+            }
         }
 
         return "No word today.";
@@ -50,19 +70,48 @@ public class DefaultWordsService implements WordsService {
 
     @Override
     public boolean wordExists(String word) {
-        try (Scanner scanner = new Scanner(filePath.toFile())) {
+        WordExistsEvent event = new WordExistsEvent();
+        event.begin();
+        long linesScanned = 0;
+        long bytesRead = 0;
+        boolean found = false;
+
+        try (Scanner scanner = openDictionary()) {
             while (scanner.hasNextLine()) {
                 String line = scanner.nextLine();
+                linesScanned++;
+                bytesRead += Utf8.encodedLength(line) + 1;
                 if (word.equals(line)) {
+                    found = true;
                     return true;
                 }
             }
         } catch (FileNotFoundException e) {
             throw new RuntimeException("Problem in wordExists for word: " + word, e);
+        } finally {
+            if (event.shouldCommit()) {
+                event.service = SERVICE_NAME;
+                event.word = word;
+                event.found = found;
+                event.linesScanned = linesScanned;
+                event.bytesRead = bytesRead;
+                event.commit();
+            }
         }
         return false;
     }
 
+    private Scanner openDictionary() throws FileNotFoundException {
+        FileOpenEvent event = new FileOpenEvent();
+        event.begin();
+        Scanner scanner = new Scanner(filePath.toFile(), StandardCharsets.UTF_8.name());
+        if (event.shouldCommit()) {
+            event.path = filePath.toString();
+            event.commit();
+        }
+        return scanner;
+    }
+
     private static int getIndexForToday() {
         LocalDate now = LocalDate.now();
         return now.getYear() + now.getDayOfYear() * MULTIPLY_FACTOR;
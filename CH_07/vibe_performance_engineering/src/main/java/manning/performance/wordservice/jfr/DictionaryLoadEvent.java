@@ -0,0 +1,28 @@
+package manning.performance.wordservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Full load of the dictionary into memory, at startup and on every reload
+ */
+@Name(DictionaryLoadEvent.NAME)
+@Label("Dictionary Load")
+@Category("Word Service")
+@Description("Dictionary file read into an in-memory snapshot")
+public class DictionaryLoadEvent extends Event {
+
+    public static final String NAME = "manning.wordservice.DictionaryLoad";
+
+    @Label("Path")
+    public String path;
+
+    @Label("Version")
+    public long version;
+
+    @Label("Words")
+    public int words;
+}
@@ -0,0 +1,25 @@
+package manning.performance.wordservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Opening the dictionary file for a scan. JFR's own jdk.FileRead events only cover reads
+ * above a threshold, this one marks every open.
+ */
+@Name(FileOpenEvent.NAME)
+@Label("Dictionary File Open")
+@Category("Word Service")
+@Description("Dictionary file opened for a line-by-line scan")
+@StackTrace(false)
+public class FileOpenEvent extends Event {
+
+    public static final String NAME = "manning.wordservice.FileOpen";
+
+    @Label("Path")
+    public String path;
+}
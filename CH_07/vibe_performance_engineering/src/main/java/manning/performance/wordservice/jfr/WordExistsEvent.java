@@ -0,0 +1,39 @@
+package manning.performance.wordservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One wordExists call. Recorded without a stack trace, as it is the hot path;
+ * execution samples show where the time goes.
+ */
+@Name(WordExistsEvent.NAME)
+@Label("Word Exists")
+@Category("Word Service")
+@Description("Dictionary lookup of a single word")
+@StackTrace(false)
+public class WordExistsEvent extends Event {
+
+    public static final String NAME = "manning.wordservice.WordExists";
+
+    @Label("Service")
+    public String service;
+
+    @Label("Word")
+    public String word;
+
+    @Label("Found")
+    public boolean found;
+
+    @Label("Lines Scanned")
+    public long linesScanned;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+}
@@ -0,0 +1,35 @@
+package manning.performance.wordservice.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One getWordOfTheDay call
+ */
+@Name(WordOfTheDayEvent.NAME)
+@Label("Word Of The Day")
+@Category("Word Service")
+@Description("Lookup of the word of the day by its index in the dictionary")
+@StackTrace(false)
+public class WordOfTheDayEvent extends Event {
+
+    public static final String NAME = "manning.wordservice.WordOfTheDay";
+
+    @Label("Service")
+    public String service;
+
+    @Label("Index")
+    public int index;
+
+    @Label("Lines Scanned")
+    public long linesScanned;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+}
@@ -1,14 +1,12 @@
 package manning.performance.wordservice.optimized;
 
 import manning.performance.wordservice.WordsService;
+import manning.performance.wordservice.jfr.WordExistsEvent;
+import manning.performance.wordservice.jfr.WordOfTheDayEvent;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.function.IntSupplier;
 
 /**
@@ -17,18 +15,16 @@ import java.util.function.IntSupplier;
  * - Caches the entire dictionary in memory using HashSet for O(1) lookups
  * - Eliminates file I/O operations for wordExists calls
  * - Provides 90-99% performance improvement for word validation
+ * The dictionary is versioned, so it can be reloaded and synced to clients without a restart.
  */
 public class CachedWordsService implements WordsService {
 
     private static final int MULTIPLY_FACTOR = 100;
     private static final IntSupplier DEFAULT_INDEX_PROVIDER = CachedWordsService::getIndexForToday;
+    private static final String SERVICE_NAME = "cached";
 
-    private final Path filePath;
     private final IntSupplier indexProvider;
-    private final Set<String> wordCache;
-    private final List<String> wordList; // For word-of-the-day by index
-    private final long cacheLoadTime;
-    private final int totalWords;
+    private final VersionedDictionary dictionary;
 
     /**
      * Constructor that loads and caches the entire dictionary
@@ -38,65 +34,56 @@ public class CachedWordsService implements WordsService {
     }
 
     public CachedWordsService(Path filePath, IntSupplier indexProvider) {
-        this.filePath = filePath;
         this.indexProvider = indexProvider;
         
         // Load and cache the dictionary
-        long startTime = System.nanoTime();
-        this.wordCache = loadWordCache();
-        this.wordList = loadWordList();
-        this.cacheLoadTime = System.nanoTime() - startTime;
-        this.totalWords = wordList.size();
+        this.dictionary = new VersionedDictionary(filePath);
+        DictionarySnapshot snapshot = dictionary.current();
         
         System.out.println(String.format("📚 Dictionary loaded: %,d words in %.2f ms", 
-            totalWords, cacheLoadTime / 1_000_000.0));
+            snapshot.size(), snapshot.getLoadTimeNanos() / 1_000_000.0));
     }
 
     @Override
     public String getWordOfTheDay() {
+        WordOfTheDayEvent event = new WordOfTheDayEvent();
+        event.begin();
         int index = indexProvider.getAsInt();
         
         // Use cached word list for O(1) access by index
-        if (index >= 0 && index < wordList.size()) {
-            return wordList.get(index);
-        }
+        List<String> wordList = dictionary.current().getWords();
+        String word = index >= 0 && index < wordList.size()
+            ? wordList.get(index)
+            : "No word today."; // Handle edge case where index is out of bounds
         
-        // Handle edge case where index is out of bounds
-        return "No word today.";
+        if (event.shouldCommit()) {
+            event.service = SERVICE_NAME;
+            event.index = index;
+            event.commit();
+        }
+        return word;
     }
 
     @Override
     public boolean wordExists(String word) {
+        WordExistsEvent event = new WordExistsEvent();
+        event.begin();
         // O(1) lookup using HashSet - this is the key optimization!
-        return wordCache.contains(word);
-    }
-
-    /**
-     * Load all words into a HashSet for O(1) lookup performance
-     */
-    private Set<String> loadWordCache() {
-        try {
-            Set<String> cache = new HashSet<>();
-            
-            // Use Files.readAllLines for better performance than Scanner
-            List<String> lines = Files.readAllLines(filePath);
-            cache.addAll(lines);
-            
-            return cache;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load word cache from: " + filePath, e);
+        boolean found = dictionary.current().contains(word);
+        if (event.shouldCommit()) {
+            event.service = SERVICE_NAME;
+            event.word = word;
+            event.found = found;
+            event.commit();
         }
+        return found;
     }
 
     /**
-     * Load all words into a List for indexed access (word-of-the-day)
+     * Versioned dictionary backing this service, used for reloads, exports and delta sync
      */
-    private List<String> loadWordList() {
-        try {
-            return Files.readAllLines(filePath);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load word list from: " + filePath, e);
-        }
+    public VersionedDictionary getDictionary() {
+        return dictionary;
     }
 
     private static int getIndexForToday() {
@@ -108,16 +95,17 @@ public class CachedWordsService implements WordsService {
      * Get cache statistics for monitoring
      */
     public CacheStats getCacheStats() {
+        DictionarySnapshot snapshot = dictionary.current();
         return new CacheStats(
-            totalWords,
-            wordCache.size(),
-            cacheLoadTime / 1_000_000.0, // Convert to milliseconds
-            Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()
+            snapshot.size(),
+            snapshot.getWordSet().size(),
+            snapshot.getLoadTimeNanos() / 1_000_000.0, // Convert to milliseconds
+            snapshot.getEstimatedBytes()
         );
     }
 
     /**
-     * Cache statistics data class
+     * Cache statistics data class; memoryUsed is the estimated heap retained by the cached dictionary
      */
     public static class CacheStats {
         public final int totalWords;
@@ -0,0 +1,42 @@
+package manning.performance.wordservice.optimized;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Words added to and removed from the dictionary between two versions.
+ * Applying it to a local copy at fromVersion yields the dictionary at toVersion.
+ * A full delta (see full()) carries every word of toVersion; the local copy is replaced by it.
+ */
+public class DictionaryDelta {
+    public final long fromVersion;
+    public final long toVersion;
+    public final boolean full;
+    public final Set<String> added;
+    public final Set<String> removed;
+
+    public DictionaryDelta(long fromVersion, long toVersion, Set<String> added, Set<String> removed) {
+        this(fromVersion, toVersion, false, added, removed);
+    }
+
+    private DictionaryDelta(long fromVersion, long toVersion, boolean full, Set<String> added, Set<String> removed) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.full = full;
+        this.added = Collections.unmodifiableSet(added);
+        this.removed = Collections.unmodifiableSet(removed);
+    }
+
+    /**
+     * The whole snapshot, for a client whose version is unknown or older than the kept history
+     */
+    public static DictionaryDelta full(DictionarySnapshot snapshot) {
+        return new DictionaryDelta(0, snapshot.getVersion(), true, snapshot.getWordSet(), Set.of());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Dictionary delta v%d -> v%d%s: +%,d words, -%,d words",
+            fromVersion, toVersion, full ? " (full)" : "", added.size(), removed.size());
+    }
+}
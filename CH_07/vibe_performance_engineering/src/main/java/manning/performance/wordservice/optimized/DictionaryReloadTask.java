@@ -0,0 +1,36 @@
+package manning.performance.wordservice.optimized;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Admin task that re-reads words.txt and publishes a new dictionary version if it changed:
+ *   curl -X POST http://localhost:8081/tasks/dictionary-reload
+ * Answers with the current version and whether it changed. A reload reads the whole file, so it is
+ * only reachable on the admin port.
+ */
+public class DictionaryReloadTask extends Task {
+
+    private final VersionedDictionary dictionary;
+
+    public DictionaryReloadTask(VersionedDictionary dictionary) {
+        super("dictionary-reload");
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public Optional<String> getResponseContentType() {
+        return Optional.of("text/plain; charset=utf-8");
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        boolean changed = dictionary.reload();
+        output.printf("version %d %s%n", dictionary.current().getVersion(), changed ? "published" : "unchanged");
+        output.flush();
+    }
+}
@@ -0,0 +1,163 @@
+package manning.performance.wordservice.optimized;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import manning.performance.wordservice.jfr.DictionaryLoadEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+/**
+ * Immutable view of the dictionary file at one version.
+ * Keeps the words in file order (for word-of-the-day) and in a HashSet (for O(1) lookups).
+ */
+public final class DictionarySnapshot {
+
+    /**
+     * False positive rate of the membership filter handed out to clients
+     */
+    public static final double FILTER_FALSE_POSITIVE_RATE = 0.01;
+
+    private final long version;
+    private final List<String> words;
+    private final Set<String> lookup;
+    private final long contentHash;
+    private final long loadTimeNanos;
+    private final long estimatedBytes;
+
+    private volatile byte[] membershipFilter;
+
+    private DictionarySnapshot(long version, List<String> words, Set<String> lookup,
+                               long contentHash, long loadTimeNanos) {
+        this.version = version;
+        this.words = Collections.unmodifiableList(words);
+        this.lookup = lookup;
+        this.contentHash = contentHash;
+        this.loadTimeNanos = loadTimeNanos;
+        this.estimatedBytes = estimateBytes(words, lookup.size());
+    }
+
+    /**
+     * Read the dictionary file (one word per line) as the given version.
+     */
+    public static DictionarySnapshot load(Path filePath, long version) {
+        DictionaryLoadEvent event = new DictionaryLoadEvent();
+        event.begin();
+        long startTime = System.nanoTime();
+        try {
+            List<String> words = Files.readAllLines(filePath);
+            Set<String> lookup = new HashSet<>(words);
+            long contentHash = hash(words);
+            DictionarySnapshot snapshot =
+                new DictionarySnapshot(version, words, lookup, contentHash, System.nanoTime() - startTime);
+            if (event.shouldCommit()) {
+                event.path = filePath.toString();
+                event.version = version;
+                event.words = words.size();
+                event.commit();
+            }
+            return snapshot;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load dictionary from: " + filePath, e);
+        }
+    }
+
+    public boolean contains(String word) {
+        return lookup.contains(word);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getWords() {
+        return words;
+    }
+
+    public Set<String> getWordSet() {
+        return Collections.unmodifiableSet(lookup);
+    }
+
+    public int size() {
+        return words.size();
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    /**
+     * Estimated heap retained by this snapshot: the words, the list and the lookup set
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Strong entity tag for HTTP conditional requests; changes whenever the content does.
+     */
+    public String getEntityTag() {
+        return version + "-" + Long.toHexString(contentHash);
+    }
+
+    /**
+     * Serialized Guava {@link BloomFilter} of all words, built on first use.
+     * A client holding it can answer "definitely not a word" without a round trip.
+     */
+    public byte[] getMembershipFilter() {
+        byte[] filter = membershipFilter;
+        if (filter == null) {
+            BloomFilter<CharSequence> bloomFilter = BloomFilter.create(
+                Funnels.stringFunnel(StandardCharsets.UTF_8), words.size(), FILTER_FALSE_POSITIVE_RATE);
+            words.forEach(bloomFilter::put);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                bloomFilter.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Problem when serializing membership filter", e);
+            }
+            filter = out.toByteArray();
+            membershipFilter = filter; // racing builders produce identical bytes
+        }
+        return filter;
+    }
+
+    /**
+     * Shallow sizes on a 64-bit JVM with compressed oops and compact (Latin-1) strings: a String is 24 bytes
+     * plus its byte[] (16 byte header, padded to 8), the list holds one 4 byte reference per word, and
+     * every distinct word costs a 32 byte HashMap.Node plus its slot in a power-of-two table that HashSet
+     * sizes to words / 0.75. The list and the set share the String instances.
+     */
+    private static long estimateBytes(List<String> words, int distinctWords) {
+        long bytes = 24 + 16 + 4L * words.size();  // ArrayList and its array
+        for (String word : words) {
+            bytes += 24 + ((16 + word.length() + 7) & ~7);
+        }
+        int tableSize = Integer.highestOneBit(Math.max((int) (words.size() / .75f) + 1, 16) - 1) << 1;
+        bytes += 16 + 48 + 16 + 4L * tableSize; // HashSet, HashMap and the table
+        bytes += 32L * distinctWords;
+        return bytes;
+    }
+
+    private static long hash(List<String> words) {
+        CRC32C crc = new CRC32C();
+        for (String word : words) {
+            crc.update(word.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+}
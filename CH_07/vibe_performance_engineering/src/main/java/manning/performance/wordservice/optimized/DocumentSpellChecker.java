@@ -0,0 +1,195 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Streams a whole document through the dictionary and reports the words it does not know.
+ * The input is consumed in fixed-size chunks that are cut on word boundaries, so memory stays
+ * bounded by chunkSize * maxChunksInFlight no matter how large the document is.
+ * A single-chunk document is checked on the calling thread; larger ones pipeline tokenization
+ * and lookup of the next chunks on the executor while earlier results are being written.
+ * Unknown words are always reported in document order.
+ */
+public class DocumentSpellChecker {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final WordsService wordsService;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    public DocumentSpellChecker(WordsService wordsService, ExecutorService executor) {
+        this(wordsService, executor, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public DocumentSpellChecker(WordsService wordsService, ExecutorService executor,
+                                int chunkSize, int maxChunksInFlight) {
+        if (chunkSize < 1 || maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("chunkSize and maxChunksInFlight must be positive");
+        }
+        this.wordsService = wordsService;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Read the document until EOF and pass every unknown word to the listener.
+     * The listener is only ever called from the calling thread.
+     */
+    public void check(Reader document, UnknownWordListener listener) throws IOException {
+        Deque<Future<List<UnknownWord>>> inFlight = new ArrayDeque<>();
+        char[] carry = new char[0];
+        long chunkOffset = 0;
+
+        while (true) {
+            char[] buffer = new char[chunkSize + carry.length];
+            System.arraycopy(carry, 0, buffer, 0, carry.length);
+            int length = fill(document, buffer, carry.length);
+            boolean endOfInput = length < buffer.length;
+
+            // Cut after the last non-letter so no word is split between two chunks
+            int cut = endOfInput ? length : lastBoundary(buffer, length);
+            if (cut == 0 && !endOfInput) {
+                if (length <= chunkSize) {
+                    carry = Arrays.copyOf(buffer, length); // word longer than a chunk - read on
+                    continue;
+                }
+                cut = length; // a "word" over twice the chunk size - nothing better to do
+            }
+            carry = new char[length - cut];
+            System.arraycopy(buffer, cut, carry, 0, carry.length);
+
+            Chunk chunk = new Chunk(buffer, cut, chunkOffset);
+            chunkOffset += cut;
+
+            if (endOfInput && inFlight.isEmpty()) {
+                // Small document (or the tail of one): no point in a thread hop
+                emit(chunk.findUnknownWords(), listener);
+                return;
+            }
+            if (inFlight.size() == maxChunksInFlight) {
+                emit(await(inFlight.removeFirst()), listener);
+            }
+            inFlight.addLast(executor.submit(chunk::findUnknownWords));
+
+            if (endOfInput) {
+                while (!inFlight.isEmpty()) {
+                    emit(await(inFlight.removeFirst()), listener);
+                }
+                return;
+            }
+        }
+    }
+
+    private static int fill(Reader reader, char[] buffer, int offset) throws IOException {
+        int position = offset;
+        while (position < buffer.length) {
+            int read = reader.read(buffer, position, buffer.length - position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        return position;
+    }
+
+    private static int lastBoundary(char[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (!Character.isLetter(buffer[i])) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void emit(List<UnknownWord> words, UnknownWordListener listener) throws IOException {
+        for (UnknownWord word : words) {
+            listener.onUnknownWord(word.offset, word.word);
+        }
+        listener.onChunkChecked();
+    }
+
+    private static List<UnknownWord> await(Future<List<UnknownWord>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while spell-checking document", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Problem when spell-checking document chunk", e.getCause());
+        }
+    }
+
+    private boolean isKnown(String word) {
+        return wordsService.wordExists(word) || wordsService.wordExists(word.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Callback for words that are not in the dictionary.
+     * The offset is the position of the first character of the word in the document.
+     * onChunkChecked() follows the unknown words of every chunk, a good place to flush them to the client.
+     */
+    @FunctionalInterface
+    public interface UnknownWordListener {
+        void onUnknownWord(long offset, String word) throws IOException;
+
+        default void onChunkChecked() throws IOException {
+        }
+    }
+
+    private static final class UnknownWord {
+        private final long offset;
+        private final String word;
+
+        private UnknownWord(long offset, String word) {
+            this.offset = offset;
+            this.word = word;
+        }
+    }
+
+    private final class Chunk {
+        private final char[] text;
+        private final int length;
+        private final long offset;
+
+        private Chunk(char[] text, int length, long offset) {
+            this.text = text;
+            this.length = length;
+            this.offset = offset;
+        }
+
+        private List<UnknownWord> findUnknownWords() {
+            List<UnknownWord> unknown = new ArrayList<>();
+            int i = 0;
+            while (i < length) {
+                if (!Character.isLetter(text[i])) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < length && Character.isLetter(text[i])) {
+                    i++;
+                }
+                String word = new String(text, start, i - start);
+                if (!isKnown(word)) {
+                    unknown.add(new UnknownWord(offset + start, word));
+                }
+            }
+            return unknown;
+        }
+    }
+}
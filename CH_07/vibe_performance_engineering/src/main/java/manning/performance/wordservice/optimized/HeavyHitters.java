@@ -0,0 +1,290 @@
+package manning.performance.wordservice.optimized;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Most queried words over a sliding window, without keeping every query: a Count-Min sketch estimates
+ * how often each word was asked for, and a bounded set of candidates remembers which words to rank.
+ *
+ * The window is split into slices with a sketch each; queries count into the current slice and a
+ * slice is cleared when the clock comes back to it, so old traffic drops out slice by slice.
+ * Recording is a few atomic increments; a word that is not yet a candidate also pays for one estimate
+ * (depth x slices reads) and enters when it beats the weakest candidate of the last pruning.
+ * Estimates never undercount; with the default width they overcount by at most 0.13% of the
+ * queries in the window, with 98% probability. Counts racing with a slice clear may be lost.
+ *
+ * On a hot path only one query in sampleRate is recorded, with a weight of sampleRate, so the
+ * others cost a single random draw. Counts are then unbiased estimates rather than upper bounds,
+ * off by about the square root of count x sampleRate; words queried less than sampleRate times
+ * in the window may not show up at all.
+ */
+public class HeavyHitters {
+
+    public static final long DEFAULT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(5);
+    public static final int DEFAULT_SLICES = 10;
+    public static final int DEFAULT_WIDTH = 2048;
+    public static final int DEFAULT_CANDIDATES = 1024;
+    public static final int DEFAULT_SAMPLE_RATE = Integer.getInteger("heavy.hitters.sample.rate", 16);
+
+    private static final int DEPTH = 4;
+
+    private final LongSupplier nanoClock;
+    private final long origin;
+    private final long sliceNanos;
+    private final int slices;
+    private final int width;
+    private final int maxCandidates;
+    private final int sampleRate;
+    private final AtomicIntegerArray[] counts;
+    private final AtomicLongArray sliceEpochs;
+    private final AtomicLongArray queries;
+    private final AtomicLongArray misses;
+    private final Map<String, Candidate> candidates = new ConcurrentHashMap<>();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    private volatile long admission;
+
+    public HeavyHitters() {
+        this(DEFAULT_WINDOW_NANOS, DEFAULT_SLICES, DEFAULT_WIDTH, DEFAULT_CANDIDATES, DEFAULT_SAMPLE_RATE,
+            System::nanoTime);
+    }
+
+    /**
+     * Records every query
+     */
+    public HeavyHitters(long windowNanos, int slices, int width, int maxCandidates, LongSupplier nanoClock) {
+        this(windowNanos, slices, width, maxCandidates, 1, nanoClock);
+    }
+
+    /**
+     * @param width sketch columns, a power of two
+     * @param maxCandidates words ranked; top queries are answered up to this limit
+     * @param sampleRate record one query in sampleRate, 1 records every query
+     */
+    public HeavyHitters(long windowNanos, int slices, int width, int maxCandidates, int sampleRate,
+                        LongSupplier nanoClock) {
+        if (Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Sketch width must be a power of two: " + width);
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1: " + sampleRate);
+        }
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+        this.sliceNanos = windowNanos / slices;
+        this.slices = slices;
+        this.width = width;
+        this.maxCandidates = maxCandidates;
+        this.sampleRate = sampleRate;
+        this.counts = new AtomicIntegerArray[slices];
+        for (int i = 0; i < slices; i++) {
+            counts[i] = new AtomicIntegerArray(DEPTH * width);
+        }
+        this.sliceEpochs = new AtomicLongArray(slices);
+        this.queries = new AtomicLongArray(slices);
+        this.misses = new AtomicLongArray(slices);
+    }
+
+    /**
+     * Count one query of a word and whether the dictionary had it; sampled, see sampleRate
+     */
+    public void record(String word, boolean found) {
+        if (word == null || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return;
+        }
+        long epoch = epoch();
+        int slice = slice(epoch);
+        long hash = hash(word);
+        AtomicIntegerArray sliceCounts = counts[slice];
+        for (int row = 0; row < DEPTH; row++) {
+            sliceCounts.addAndGet(index(hash, row), sampleRate);
+        }
+        queries.addAndGet(slice, sampleRate);
+        if (!found) {
+            misses.addAndGet(slice, sampleRate);
+        }
+
+        Candidate candidate = candidates.get(word);
+        if (candidate != null) {
+            candidate.found = found;
+        } else if (candidates.size() < maxCandidates || estimate(hash, epoch) > admission) {
+            candidates.putIfAbsent(word, new Candidate(word, found));
+            if (candidates.size() > maxCandidates + maxCandidates / 4) {
+                prune(epoch);
+            }
+        }
+    }
+
+    /**
+     * Estimated queries of a word in the window
+     */
+    public long estimate(String word) {
+        return estimate(hash(word), epoch());
+    }
+
+    /**
+     * The limit most queried words in the window, most queried first, with the window totals
+     */
+    public TopWords top(int limit) {
+        long epoch = epoch();
+        List<WordCount> ranked = new ArrayList<>();
+        for (Candidate candidate : candidates.values()) {
+            long count = estimate(hash(candidate.word), epoch);
+            if (count > 0) {
+                ranked.add(new WordCount(candidate.word, count, candidate.found));
+            }
+        }
+        ranked.sort(Comparator.comparingLong((WordCount word) -> word.count).reversed());
+        List<WordCount> top = new ArrayList<>(ranked.subList(0, Math.min(limit, ranked.size())));
+        long windowQueries = 0;
+        long windowMisses = 0;
+        for (int slice = 0; slice < slices; slice++) {
+            if (isLive(slice, epoch)) {
+                windowQueries += queries.get(slice);
+                windowMisses += misses.get(slice);
+            }
+        }
+        return new TopWords(TimeUnit.NANOSECONDS.toSeconds(sliceNanos * slices), windowQueries, windowMisses, top);
+    }
+
+    public int maxCandidates() {
+        return maxCandidates;
+    }
+
+    private long estimate(long hash, long epoch) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            long sum = 0;
+            for (int slice = 0; slice < slices; slice++) {
+                if (isLive(slice, epoch)) {
+                    sum += counts[slice].get(index);
+                }
+            }
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    /**
+     * Keep the maxCandidates best candidates; only one thread prunes, the others carry on recording
+     */
+    private void prune(long epoch) {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<WordCount> ranked = new ArrayList<>();
+            candidates.values().forEach(candidate ->
+                ranked.add(new WordCount(candidate.word, estimate(hash(candidate.word), epoch), candidate.found)));
+            ranked.sort(Comparator.comparingLong((WordCount word) -> word.count).reversed());
+            for (WordCount dropped : ranked.subList(maxCandidates, ranked.size())) {
+                candidates.remove(dropped.word);
+            }
+            admission = ranked.get(maxCandidates - 1).count;
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private long epoch() {
+        return (nanoClock.getAsLong() - origin) / sliceNanos;
+    }
+
+    /**
+     * Slice of the epoch, cleared first when it still holds an older epoch
+     */
+    private int slice(long epoch) {
+        int slice = (int) (epoch % slices);
+        long held = sliceEpochs.get(slice);
+        if (held != epoch && sliceEpochs.compareAndSet(slice, held, epoch)) {
+            AtomicIntegerArray sliceCounts = counts[slice];
+            for (int i = 0; i < sliceCounts.length(); i++) {
+                sliceCounts.set(i, 0);
+            }
+            queries.set(slice, 0);
+            misses.set(slice, 0);
+            admission = 0; // counts just dropped, let new words in until the next pruning
+        }
+        return slice;
+    }
+
+    private boolean isLive(int slice, long epoch) {
+        return sliceEpochs.get(slice) > epoch - slices && sliceEpochs.get(slice) <= epoch;
+    }
+
+    private int index(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + ((h1 + row * h2) & (width - 1));
+    }
+
+    private static long hash(String word) {
+        long h = word.hashCode() * 0x9E3779B97F4A7C15L; // String caches its hash code
+        h ^= h >>> 32;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 29);
+    }
+
+    private static final class Candidate {
+        final String word;
+        volatile boolean found;
+
+        Candidate(String word, boolean found) {
+            this.word = word;
+            this.found = found;
+        }
+    }
+
+    /**
+     * Estimated queries of one word in the window and whether its last query found it
+     */
+    public static class WordCount {
+        public final String word;
+        public final long count;
+        public final boolean exists;
+
+        public WordCount(String word, long count, boolean exists) {
+            this.word = word;
+            this.count = count;
+            this.exists = exists;
+        }
+
+        @Override
+        public String toString() {
+            return word + "=" + count + (exists ? "" : " (miss)");
+        }
+    }
+
+    /**
+     * Top words of the window; share is the fraction of all queries in the window they account for
+     */
+    public static class TopWords {
+        public final long windowSeconds;
+        public final long queries;
+        public final long misses;
+        public final double share;
+        public final List<WordCount> words;
+
+        public TopWords(long windowSeconds, long queries, long misses, List<WordCount> words) {
+            this.windowSeconds = windowSeconds;
+            this.queries = queries;
+            this.misses = misses;
+            this.words = words;
+            long covered = 0;
+            for (WordCount word : words) {
+                covered += word.count;
+            }
+            this.share = queries == 0 ? 0 : Math.min(1.0, (double) covered / queries);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket endpoint for editors that validate words while the user types.
+ * One connection per editor session replaces a full HTTP request per word.
+ * Connect with ?suggest=true to also receive suggestions for unknown words.
+ *
+ * Limits (see README, "WebSocket Live Validation"):
+ * - at most live.validation.max.connections open sessions (default 1,000); further upgrades get 503
+ * - sessions idle for 5 minutes are closed
+ * - text messages are limited to 4 KB
+ */
+public class LiveValidationServlet extends WebSocketServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int MAX_CONNECTIONS = Integer.getInteger("live.validation.max.connections", 1_000);
+
+    private static final long IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+    private static final int MAX_TEXT_MESSAGE_SIZE = 4 * 1024;
+    private static final int MAX_SUGGESTIONS = 5;
+
+    private final WordsService wordsService;
+    private final WordSuggester suggester;
+    private final int maxConnections;
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    public LiveValidationServlet(WordsService wordsService) {
+        this(wordsService, MAX_CONNECTIONS);
+    }
+
+    LiveValidationServlet(WordsService wordsService, int maxConnections) {
+        this.wordsService = wordsService;
+        this.suggester = new WordSuggester(wordsService, MAX_SUGGESTIONS);
+        this.maxConnections = maxConnections;
+    }
+
+    @Override
+    public void configure(WebSocketServletFactory factory) {
+        factory.getPolicy().setIdleTimeout(IDLE_TIMEOUT_MS);
+        factory.getPolicy().setMaxTextMessageSize(MAX_TEXT_MESSAGE_SIZE);
+        factory.setCreator((request, response) -> {
+            if (openConnections.incrementAndGet() > maxConnections) {
+                openConnections.decrementAndGet();
+                try {
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                            "Too many live validation connections");
+                } catch (IOException e) {
+                    // the client is gone already, nothing to report
+                }
+                return null;
+            }
+            boolean suggest = "true".equals(request.getHttpServletRequest().getParameter("suggest"));
+            return new LiveValidationSocket(wordsService, suggest ? suggester : null,
+                    openConnections::decrementAndGet);
+        });
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+}
@@ -0,0 +1,136 @@
+package manning.performance.wordservice.optimized;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import manning.performance.wordservice.WordsService;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One editor session. Every text message may carry one or more whitespace-separated words;
+ * each word gets its own result message, e.g. {"word":"teh","exists":false,"suggestions":["the"]}.
+ * Results are sent asynchronously. When more than MAX_PENDING_WRITES results are waiting for a
+ * slow client, reading from the connection is suspended until the backlog drains, so one slow
+ * editor cannot make the server buffer unbounded output.
+ * onClose runs exactly once, whether the session ends with an error, a close or both.
+ */
+public class LiveValidationSocket extends WebSocketAdapter implements WriteCallback {
+
+    static final int MAX_PENDING_WRITES = 256;
+    static final int RESUME_PENDING_WRITES = 64;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final WordsService wordsService;
+    private final WordSuggester suggester;
+    private final Runnable onClose;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicReference<SuspendToken> suspendedRead = new AtomicReference<>();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * @param suggester null when the client did not ask for suggestions
+     */
+    public LiveValidationSocket(WordsService wordsService, WordSuggester suggester, Runnable onClose) {
+        this.wordsService = wordsService;
+        this.suggester = suggester;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        int i = 0;
+        int length = message.length();
+        while (i < length && isConnected()) {
+            if (Character.isWhitespace(message.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(message.charAt(i))) {
+                i++;
+            }
+            validate(message.substring(start, i));
+        }
+
+        if (pendingWrites.get() >= MAX_PENDING_WRITES && suspendedRead.get() == null && isConnected()) {
+            suspendedRead.set(getSession().suspend());
+            // the backlog may have drained while we were suspending
+            if (pendingWrites.get() <= RESUME_PENDING_WRITES) {
+                resumeReading();
+            }
+        }
+    }
+
+    private void validate(String word) {
+        boolean exists = wordsService.wordExists(word);
+        List<String> suggestions = exists || suggester == null ? null : suggester.suggest(word);
+        try {
+            String result = MAPPER.writeValueAsString(new ValidationResult(word, exists, suggestions));
+            pendingWrites.incrementAndGet();
+            getRemote().sendString(result, this);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Problem when serializing result for word: " + word, e);
+        }
+    }
+
+    @Override
+    public void writeSuccess() {
+        if (pendingWrites.decrementAndGet() <= RESUME_PENDING_WRITES) {
+            resumeReading();
+        }
+    }
+
+    @Override
+    public void writeFailed(Throwable cause) {
+        writeSuccess();
+    }
+
+    private void resumeReading() {
+        SuspendToken token = suspendedRead.getAndSet(null);
+        if (token != null) {
+            token.resume();
+        }
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        super.onWebSocketError(cause);
+        release();
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        super.onWebSocketClose(statusCode, reason);
+        release();
+    }
+
+    private void release() {
+        if (released.compareAndSet(false, true)) {
+            onClose.run();
+        }
+    }
+
+    /**
+     * Result message sent back for every validated word
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class ValidationResult {
+        public final String word;
+        public final boolean exists;
+        public final List<String> suggestions;
+
+        public ValidationResult(String word, boolean exists, List<String> suggestions) {
+            this.word = word;
+            this.exists = exists;
+            this.suggestions = suggestions;
+        }
+    }
+}
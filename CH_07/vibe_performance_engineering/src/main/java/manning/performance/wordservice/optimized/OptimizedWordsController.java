@@ -1,33 +1,90 @@
 package manning.performance.wordservice.optimized;
 
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Optimized version of WordsController with HashSet-based caching.
  * This controller provides the same functionality as the original but with
  * 90-99% performance improvement for word validation operations.
+ * Managed so the spell-check threads are stopped with the server.
  */
 @Path("/optimized-words")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
-public class OptimizedWordsController {
+public class OptimizedWordsController implements Managed {
     
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String DICTIONARY_VERSION_HEADER = "X-Dictionary-Version";
+    private static final int MAX_BULK_WORDS = 10_000;
+
     private final CachedWordsService wordsService;
+    private final ExecutorService spellCheckExecutor;
+    private final DocumentSpellChecker spellChecker;
+    private final HeavyHitters queriedWords = new HeavyHitters();
 
     public OptimizedWordsController() {
         java.nio.file.Path defaultPath = getPath("words.txt");
         wordsService = new CachedWordsService(defaultPath);
+        spellCheckExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ThreadFactoryBuilder().setNameFormat("spell-check-%d").setDaemon(true).build());
+        spellChecker = new DocumentSpellChecker(wordsService, spellCheckExecutor);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    /**
+     * Let running spell checks finish their chunks, then interrupt whatever is left
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        spellCheckExecutor.shutdown();
+        if (!spellCheckExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+            spellCheckExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Dictionary engine behind these endpoints, shared with the live validation WebSocket
+     */
+    public CachedWordsService getWordsService() {
+        return wordsService;
     }
 
     /**
@@ -58,6 +115,7 @@ public class OptimizedWordsController {
         try {
             // O(1) lookup using HashSet - major performance improvement!
             boolean exists = wordsService.wordExists(word);
+            queriedWords.record(word, exists);
             return Response.status(Status.OK.getStatusCode(), String.valueOf(exists)).build();
         } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
@@ -66,6 +124,177 @@ public class OptimizedWordsController {
         }
     }
     
+    /**
+     * Bulk word validation: takes a JSON array of words and returns a JSON array of
+     * booleans in the same order. Lets clients batch lookups into one round trip.
+     * The dictionary version header lets clients notice that their membership filter is outdated.
+     */
+    @POST
+    @Path("/words-exist")
+    public Response validateWords(List<String> words) {
+        if (words == null || words.size() > MAX_BULK_WORDS) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Expected a JSON array of at most " + MAX_BULK_WORDS + " words")
+                    .build();
+        }
+        try {
+            boolean[] exists = new boolean[words.size()];
+            for (int i = 0; i < exists.length; i++) {
+                exists[i] = wordsService.wordExists(words.get(i));
+                queriedWords.record(words.get(i), exists[i]);
+            }
+            return Response.ok(exists)
+                    .header(DICTIONARY_VERSION_HEADER, wordsService.getDictionary().current().getVersion())
+                    .build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error validating words: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Most queried words of the last 5 minutes (word-exists and words-exist), estimated with a
+     * Count-Min sketch, with whether they exist and the share of all queries they cover.
+     * Sizes caches and lets clients warm their near-cache after a restart.
+     */
+    @GET
+    @Path("/top-words")
+    public Response getTopWords(@QueryParam("limit") @DefaultValue("100") int limit) {
+        if (limit < 1 || limit > queriedWords.maxCandidates()) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("limit must be between 1 and " + queriedWords.maxCandidates())
+                    .build();
+        }
+        return Response.ok(queriedWords.top(limit)).build();
+    }
+
+    /**
+     * Whole-document spell check.
+     * Accepts a (possibly chunked) plain text body and streams back one JSON line per unknown word,
+     * e.g. {"offset":42,"word":"teh"}, flushed after every checked chunk. Memory use does not depend on the
+     * document size, so multi-MB documents no longer need one /word-exists call per word.
+     */
+    @POST
+    @Path("/spell-check")
+    @Consumes(MediaType.TEXT_PLAIN)
+    @Produces(NDJSON)
+    public Response spellCheck(InputStream document) {
+        StreamingOutput output = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try (Reader reader = new InputStreamReader(document, StandardCharsets.UTF_8)) {
+                spellChecker.check(reader, new DocumentSpellChecker.UnknownWordListener() {
+                    @Override
+                    public void onUnknownWord(long offset, String word) throws IOException {
+                        // words are letters only, so they never need JSON escaping
+                        writer.write("{\"offset\":");
+                        writer.write(Long.toString(offset));
+                        writer.write(",\"word\":\"");
+                        writer.write(word);
+                        writer.write("\"}\n");
+                    }
+
+                    @Override
+                    public void onChunkChecked() throws IOException {
+                        writer.flush();
+                    }
+                });
+            }
+            writer.flush();
+        };
+        return Response.ok(output, NDJSON).build();
+    }
+
+    /**
+     * Full dictionary export, one word per line, for clients that keep a local copy.
+     * Supports If-None-Match so an up-to-date client gets a 304 without any body.
+     * The snapshot is written to a file once per version and sent with FileChannel.transferTo.
+     */
+    @GET
+    @Path("/dictionary/export")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response exportDictionary(@Context Request request) {
+        try {
+            VersionedDictionary dictionary = wordsService.getDictionary();
+            DictionarySnapshot snapshot = dictionary.current();
+            EntityTag entityTag = new EntityTag(snapshot.getEntityTag());
+
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+            if (notModified != null) {
+                return notModified.header(DICTIONARY_VERSION_HEADER, snapshot.getVersion()).build();
+            }
+
+            FileChannel export = dictionary.openExport(snapshot);
+            long size = export.size();
+            StreamingOutput output = out -> {
+                try (FileChannel channel = export) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long position = 0;
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, target);
+                    }
+                }
+            };
+            return Response.ok(output, MediaType.TEXT_PLAIN_TYPE.withCharset(StandardCharsets.UTF_8.name()))
+                    .tag(entityTag)
+                    .header(DICTIONARY_VERSION_HEADER, snapshot.getVersion())
+                    .header("Content-Length", size)
+                    .build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error exporting dictionary: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Bloom filter of the current dictionary (Guava BloomFilter.writeTo format, 1% false positives).
+     * Clients use it to answer definite misses locally. Supports If-None-Match like the export.
+     */
+    @GET
+    @Path("/dictionary/filter")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response getMembershipFilter(@Context Request request) {
+        try {
+            DictionarySnapshot snapshot = wordsService.getDictionary().current();
+            EntityTag entityTag = new EntityTag(snapshot.getEntityTag());
+
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+            if (notModified != null) {
+                return notModified.header(DICTIONARY_VERSION_HEADER, snapshot.getVersion()).build();
+            }
+            return Response.ok(snapshot.getMembershipFilter(), MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                    .tag(entityTag)
+                    .header(DICTIONARY_VERSION_HEADER, snapshot.getVersion())
+                    .build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error building membership filter: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Words added and removed since the given version.
+     * When that version is unknown (older than the kept history, from before a restart, or never
+     * published) the answer is a full delta with every word of the current version.
+     */
+    @GET
+    @Path("/dictionary/delta")
+    public Response getDictionaryDelta(@QueryParam("since") long sinceVersion) {
+        try {
+            VersionedDictionary dictionary = wordsService.getDictionary();
+            DictionarySnapshot snapshot = dictionary.current();
+            DictionaryDelta delta = dictionary.deltaSince(sinceVersion)
+                    .orElseGet(() -> DictionaryDelta.full(snapshot));
+            return Response.ok(delta).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error computing dictionary delta: " + e.getMessage())
+                    .build();
+        }
+    }
+
     /**
      * Cache statistics endpoint for monitoring optimization effectiveness
      */
@@ -0,0 +1,179 @@
+package manning.performance.wordservice.optimized;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Dictionary that can be reloaded from its file while being read.
+ * Every content change bumps the version and records the added/removed words, so clients
+ * holding a local copy can catch up with a small delta instead of a full export.
+ * The version is the modification time of the file in milliseconds (at least one more than the
+ * previous version), so an unchanged file keeps its version across restarts. The delta history is
+ * only kept in memory: after a restart, clients at an older version need a full export.
+ * Readers only ever see a complete {@link DictionarySnapshot}; reloads swap it atomically.
+ * Every reload is reported to the registered ReloadListeners, e.g. to put it on a pause timeline.
+ */
+public class VersionedDictionary {
+
+    public static final int DEFAULT_DELTA_HISTORY = 16;
+
+    /**
+     * Told about every reload when it has finished, on the reloading thread
+     */
+    public interface ReloadListener {
+        /**
+         * @param startNanos on the System.nanoTime clock
+         * @param changed    whether a new version was published
+         */
+        void reloaded(Path filePath, long startNanos, long durationNanos, boolean changed);
+    }
+
+    private final Path filePath;
+    private final int maxDeltaHistory;
+    private final Deque<DictionaryDelta> deltaHistory = new ArrayDeque<>(); // oldest first
+    private final List<ReloadListener> reloadListeners = new CopyOnWriteArrayList<>();
+
+    private volatile DictionarySnapshot current;
+
+    private Path exportFile;
+    private long exportVersion;
+
+    public VersionedDictionary(Path filePath) {
+        this(filePath, DEFAULT_DELTA_HISTORY);
+    }
+
+    public VersionedDictionary(Path filePath, int maxDeltaHistory) {
+        this.filePath = filePath;
+        this.maxDeltaHistory = maxDeltaHistory;
+        this.current = DictionarySnapshot.load(filePath, nextVersion(0));
+    }
+
+    public DictionarySnapshot current() {
+        return current;
+    }
+
+    public void addReloadListener(ReloadListener listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Re-read the dictionary file.
+     *
+     * @return true if the content changed and a new version was published
+     */
+    public synchronized boolean reload() {
+        long startNanos = System.nanoTime();
+        boolean changed = false;
+        try {
+            changed = reloadSnapshot();
+            return changed;
+        } finally {
+            long durationNanos = System.nanoTime() - startNanos;
+            for (ReloadListener listener : reloadListeners) {
+                listener.reloaded(filePath, startNanos, durationNanos, changed);
+            }
+        }
+    }
+
+    private boolean reloadSnapshot() {
+        DictionarySnapshot previous = current;
+        DictionarySnapshot loaded = DictionarySnapshot.load(filePath, nextVersion(previous.getVersion()));
+        if (loaded.getContentHash() == previous.getContentHash()
+                && loaded.getWordSet().equals(previous.getWordSet())) {
+            return false;
+        }
+
+        Set<String> added = new HashSet<>(loaded.getWordSet());
+        added.removeAll(previous.getWordSet());
+        Set<String> removed = new HashSet<>(previous.getWordSet());
+        removed.removeAll(loaded.getWordSet());
+
+        deltaHistory.addLast(new DictionaryDelta(previous.getVersion(), loaded.getVersion(), added, removed));
+        if (deltaHistory.size() > maxDeltaHistory) {
+            deltaHistory.removeFirst();
+        }
+        current = loaded;
+        return true;
+    }
+
+    private long nextVersion(long previousVersion) {
+        try {
+            return Math.max(Files.getLastModifiedTime(filePath).toMillis(), previousVersion + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when reading modification time of " + filePath, e);
+        }
+    }
+
+    /**
+     * Changes needed to bring a copy at sinceVersion up to the current version.
+     *
+     * @return empty if sinceVersion is not the current version or one in the kept history, e.g. it is
+     * older than the history or from before a restart (the client needs a full export)
+     */
+    public synchronized Optional<DictionaryDelta> deltaSince(long sinceVersion) {
+        long currentVersion = current.getVersion();
+        if (sinceVersion != currentVersion
+                && deltaHistory.stream().noneMatch(delta -> delta.fromVersion == sinceVersion)) {
+            return Optional.empty();
+        }
+
+        Set<String> added = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        Iterator<DictionaryDelta> deltas = deltaHistory.iterator();
+        while (deltas.hasNext()) {
+            DictionaryDelta delta = deltas.next();
+            if (delta.fromVersion < sinceVersion) {
+                continue;
+            }
+            // a word removed and re-added (or the other way round) cancels out
+            for (String word : delta.added) {
+                if (!removed.remove(word)) {
+                    added.add(word);
+                }
+            }
+            for (String word : delta.removed) {
+                if (!added.remove(word)) {
+                    removed.add(word);
+                }
+            }
+        }
+        return Optional.of(new DictionaryDelta(sinceVersion, currentVersion, added, removed));
+    }
+
+    /**
+     * Open the export of a snapshot: one word per line in dictionary order.
+     * The file is written once per version so repeated exports are served straight from the
+     * page cache. The file of an older version is deleted when a newer one is written;
+     * channels that were already opened on it keep working.
+     */
+    public synchronized FileChannel openExport(DictionarySnapshot snapshot) {
+        try {
+            if (exportFile == null || exportVersion != snapshot.getVersion()) {
+                Path file = Files.createTempFile("dictionary-v" + snapshot.getVersion() + "-", ".txt");
+                file.toFile().deleteOnExit();
+                Files.write(file, snapshot.getWords(), StandardCharsets.UTF_8);
+                if (exportFile != null) {
+                    Files.deleteIfExists(exportFile);
+                }
+                exportFile = file;
+                exportVersion = snapshot.getVersion();
+            }
+            return FileChannel.open(exportFile, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Problem when exporting dictionary version " + snapshot.getVersion(), e);
+        }
+    }
+}
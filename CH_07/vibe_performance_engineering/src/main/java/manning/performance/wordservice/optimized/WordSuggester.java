@@ -0,0 +1,69 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Suggests dictionary words one edit away (delete, transpose, replace or insert of a-z).
+ * For a word of length n that is about 54n+25 O(1) lookups, so it stays in the microsecond
+ * range with the HashSet-backed service; do not use it with the file-scanning one.
+ */
+public class WordSuggester {
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final WordsService wordsService;
+    private final int maxSuggestions;
+
+    public WordSuggester(WordsService wordsService, int maxSuggestions) {
+        this.wordsService = wordsService;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    public List<String> suggest(String word) {
+        Set<String> found = new LinkedHashSet<>();
+        char[] chars = word.toCharArray();
+        int n = chars.length;
+
+        for (int i = 0; i < n && found.size() < maxSuggestions; i++) {
+            offer(found, word.substring(0, i) + word.substring(i + 1));
+        }
+        for (int i = 0; i + 1 < n && found.size() < maxSuggestions; i++) {
+            swap(chars, i);
+            offer(found, new String(chars));
+            swap(chars, i);
+        }
+        for (int i = 0; i < n && found.size() < maxSuggestions; i++) {
+            char original = chars[i];
+            for (char c : ALPHABET) {
+                if (c != original) {
+                    chars[i] = c;
+                    offer(found, new String(chars));
+                }
+            }
+            chars[i] = original;
+        }
+        for (int i = 0; i <= n && found.size() < maxSuggestions; i++) {
+            for (char c : ALPHABET) {
+                offer(found, word.substring(0, i) + c + word.substring(i));
+            }
+        }
+        return new ArrayList<>(found).subList(0, Math.min(found.size(), maxSuggestions));
+    }
+
+    private void offer(Set<String> found, String candidate) {
+        if (!candidate.isEmpty() && wordsService.wordExists(candidate)) {
+            found.add(candidate);
+        }
+    }
+
+    private static void swap(char[] chars, int i) {
+        char tmp = chars[i];
+        chars[i] = chars[i + 1];
+        chars[i + 1] = tmp;
+    }
+}
@@ -0,0 +1,341 @@
+package manning.performance.wordservice.traced;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.lifecycle.Managed;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_HEADER_LENGTH;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_INTS;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_MAGIC;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_PREFIX;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_SUFFIX;
+import static manning.performance.wordservice.traced.AccessLogFormat.FLAG_TRUNCATED;
+import static manning.performance.wordservice.traced.AccessLogFormat.MAX_PATH_BYTES;
+import static manning.performance.wordservice.traced.AccessLogFormat.METHODS;
+import static manning.performance.wordservice.traced.AccessLogFormat.RECORD_HEADER_LENGTH;
+import static manning.performance.wordservice.traced.AccessLogFormat.RECORD_INTS;
+import static manning.performance.wordservice.traced.AccessLogFormat.RECORD_LONGS;
+import static manning.performance.wordservice.traced.AccessLogFormat.RECORD_SHORTS;
+import static manning.performance.wordservice.traced.AccessLogFormat.RECORD_SLOT;
+import static manning.performance.wordservice.traced.AccessLogFormat.VERSION;
+import static manning.performance.wordservice.traced.AccessLogFormat.padded;
+
+/**
+ * Binary access log that never blocks the request threads on I/O or formatting.
+ *
+ * Every producer thread gets its own single-producer single-consumer ring of preallocated RECORD_SLOT byte
+ * slots. log() encodes the request into the next free slot with plain stores and publishes it with a
+ * release write of the tail; when the ring is full the record is dropped and counted, the thread never
+ * waits. One drainer thread copies published records into memory-mapped files of fileBytes each and moves
+ * on to a new file when one is full, keeping the last maxFiles, including files left by earlier runs.
+ * Records of different threads are not in time order across rings, each carries its own start time;
+ * formatting happens only in AccessLogReader. Rings of threads that have died are dropped once drained.
+ * When a file cannot be created the drainer keeps going: records that do not fit are lost and counted as
+ * failed, and the next record tries again.
+ *
+ * The file layout is described in AccessLogFormat.
+ */
+public class AccessLog implements Managed {
+
+    static final int DEFAULT_RING_SLOTS = 512;
+    static final long DEFAULT_FILE_BYTES = 64L * 1024 * 1024;
+    static final int DEFAULT_MAX_FILES = 10;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path directory;
+    private final int ringSlots;
+    private final long fileBytes;
+    private final int maxFiles;
+    private final List<Ring> rings = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Ring> ring = ThreadLocal.withInitial(this::newRing);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong droppedByDeadThreads = new AtomicLong();
+    private final Deque<Path> files = new ArrayDeque<>();
+    private MappedByteBuffer file;
+    private int fileSequence;
+    private volatile boolean running;
+    private Thread drainer;
+
+    public AccessLog(Path directory) {
+        this(directory, DEFAULT_RING_SLOTS, DEFAULT_FILE_BYTES, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * @param ringSlots records a thread can have waiting for the drainer, a power of two
+     */
+    public AccessLog(Path directory, int ringSlots, long fileBytes, int maxFiles) {
+        if (Integer.bitCount(ringSlots) != 1) {
+            throw new IllegalArgumentException("Ring slots must be a power of two: " + ringSlots);
+        }
+        if (fileBytes < FILE_HEADER_LENGTH + RECORD_SLOT || fileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("File size must be between " + (FILE_HEADER_LENGTH + RECORD_SLOT)
+                + " bytes and 2 GB: " + fileBytes);
+        }
+        this.directory = directory;
+        this.ringSlots = ringSlots;
+        this.fileBytes = fileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Directory from -Daccess.log.dir, or null when the access log is off
+     */
+    public static AccessLog fromSystemProperties() {
+        String directory = System.getProperty("access.log.dir");
+        return directory == null ? null : new AccessLog(Path.of(directory));
+    }
+
+    /**
+     * Expose written, dropped and failed records as gauges accessLog.{written,dropped,failed}
+     */
+    public void bindTo(MetricRegistry registry) {
+        registry.gauge("accessLog.written", () -> this::written);
+        registry.gauge("accessLog.dropped", () -> this::dropped);
+        registry.gauge("accessLog.failed", () -> this::failed);
+    }
+
+    @Override
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        Files.createDirectories(directory);
+        try (Stream<Path> existing = Files.list(directory)) {
+            // names start with the creation time, so name order is age order
+            files.addAll(existing
+                .filter(path -> path.getFileName().toString().startsWith(FILE_PREFIX)
+                    && path.getFileName().toString().endsWith(FILE_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList()));
+        }
+        if (!nextFile()) {
+            throw new IOException("Cannot open access log file in " + directory);
+        }
+        running = true;
+        drainer = new Thread(this::drainUntilStopped, "access-log-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Drain what is left, flush the current file to disk and stop the drainer
+     */
+    @Override
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainer);
+        drainer.join();
+        drain();
+        file.force();
+    }
+
+    /**
+     * Records read from the rings that could not be written, because no new file could be created
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * Record one request; returns false when the record was dropped because this thread's ring is full
+     */
+    public boolean log(String method, int status, long startEpochMillis, long durationNanos,
+                       String rawPath, String rawQuery) {
+        return ring.get().offer(methodCode(method), status, startEpochMillis, durationNanos, rawPath, rawQuery);
+    }
+
+    public long written() {
+        return written.get();
+    }
+
+    public long dropped() {
+        long dropped = droppedByDeadThreads.get();
+        for (Ring ring : rings) {
+            dropped += ring.dropped.get();
+        }
+        return dropped;
+    }
+
+    /**
+     * Number of rings, one per thread that logged and is still alive or not drained yet
+     */
+    int rings() {
+        return rings.size();
+    }
+
+    private Ring newRing() {
+        Ring ring = new Ring(ringSlots, Thread.currentThread());
+        rings.add(ring);
+        return ring;
+    }
+
+    private void drainUntilStopped() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Copy every published record into the current file; only the drainer (or stop after it ended) calls it
+     */
+    private int drain() {
+        int drained = 0;
+        int appended = 0;
+        for (Ring ring : rings) {
+            // a dead owner published everything before it died, so its ring is empty after this pass
+            boolean ownerDead = !ring.owner.isAlive();
+            long head = ring.head.get();
+            long tail = ring.tail.get();
+            for (long position = head; position < tail; position++) {
+                appended += append(ring.slots, (int) (position & ring.mask) * RECORD_SLOT) ? 1 : 0;
+                drained++;
+            }
+            if (tail != head) {
+                ring.head.lazySet(tail);
+            }
+            if (ownerDead) {
+                droppedByDeadThreads.addAndGet(ring.dropped.get());
+                rings.remove(ring);
+            }
+        }
+        written.addAndGet(appended);
+        failed.addAndGet(drained - appended);
+        return drained;
+    }
+
+    private boolean append(byte[] slots, int offset) {
+        int length = (int) RECORD_INTS.get(slots, offset);
+        int padded = padded(length);
+        if (file.remaining() < padded && !nextFile()) {
+            return false;
+        }
+        int position = file.position();
+        file.put(position + 4, slots, offset + 4, length - 4);
+        FILE_INTS.setRelease(file, position, length); // readers of the live file stop at a 0 length
+        file.position(position + padded);
+        return true;
+    }
+
+    /**
+     * Map a new file and delete the oldest beyond maxFiles; returns false, keeping the current file, when the
+     * new one cannot be created
+     */
+    private boolean nextFile() {
+        try {
+            Path next = directory.resolve(String.format("%s%d-%04d%s", FILE_PREFIX, System.currentTimeMillis(),
+                fileSequence++ % 10_000, FILE_SUFFIX));
+            try (RandomAccessFile raf = new RandomAccessFile(next.toFile(), "rw")) {
+                raf.setLength(fileBytes); // sparse, pages are only allocated once records reach them
+                file = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+            }
+            file.order(ByteOrder.LITTLE_ENDIAN);
+            file.putInt(4, VERSION);
+            file.putLong(8, System.currentTimeMillis());
+            FILE_INTS.setRelease(file, 0, FILE_MAGIC);
+            file.position(FILE_HEADER_LENGTH);
+            files.addLast(next);
+        } catch (IOException e) {
+            return false;
+        }
+        while (files.size() > maxFiles) {
+            try {
+                Files.deleteIfExists(files.peekFirst());
+                files.removeFirst();
+            } catch (IOException e) {
+                break; // tried again with the next file
+            }
+        }
+        return true;
+    }
+
+    private static int methodCode(String method) {
+        int code = METHODS.indexOf(method);
+        return Math.max(code, 0);
+    }
+
+    /**
+     * Ring of one producer thread. The producer owns tail and cachedHead, the drainer owns head; each side
+     * reads the other's counter with acquire semantics only when it runs out of room or records.
+     */
+    static final class Ring {
+        final byte[] slots;
+        final long mask;
+        final Thread owner;
+        final AtomicLong head = new AtomicLong();
+        final AtomicLong tail = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        private long cachedHead;
+
+        Ring(int slotCount, Thread owner) {
+            this.slots = new byte[slotCount * RECORD_SLOT];
+            this.mask = slotCount - 1;
+            this.owner = owner;
+        }
+
+        boolean offer(int method, int status, long startEpochMillis, long durationNanos,
+                      String rawPath, String rawQuery) {
+            long position = tail.get();
+            if (position - cachedHead > mask) {
+                cachedHead = head.get();
+                if (position - cachedHead > mask) {
+                    dropped.lazySet(dropped.get() + 1); // single writer
+                    return false;
+                }
+            }
+            int offset = (int) (position & mask) * RECORD_SLOT;
+            int pathEnd = offset + RECORD_HEADER_LENGTH;
+            int limit = offset + RECORD_SLOT;
+            pathEnd = putAscii(slots, pathEnd, limit, rawPath);
+            if (rawQuery != null && pathEnd < limit) {
+                slots[pathEnd++] = '?';
+                pathEnd = putAscii(slots, pathEnd, limit, rawQuery);
+            }
+            int pathLength = (rawPath == null ? 0 : rawPath.length())
+                + (rawQuery == null ? 0 : rawQuery.length() + 1);
+            RECORD_INTS.set(slots, offset, pathEnd - offset);
+            RECORD_SHORTS.set(slots, offset + 4, (short) status);
+            slots[offset + 6] = (byte) method;
+            slots[offset + 7] = (byte) (pathLength > MAX_PATH_BYTES ? FLAG_TRUNCATED : 0);
+            RECORD_LONGS.set(slots, offset + 8, startEpochMillis);
+            RECORD_LONGS.set(slots, offset + 16, durationNanos);
+            RECORD_LONGS.set(slots, offset + 24, Thread.currentThread().getId());
+            tail.lazySet(position + 1);
+            return true;
+        }
+
+        private static int putAscii(byte[] target, int position, int limit, String value) {
+            if (value == null) {
+                return position;
+            }
+            int length = Math.min(value.length(), limit - position);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                target[position++] = c < 0x80 ? (byte) c : (byte) '?';
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package manning.performance.wordservice.traced;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Layout of the access log files, shared by AccessLog and AccessLogReader (which runs without the
+ * application's dependencies). Little endian: a FILE_HEADER_LENGTH header (int FILE_MAGIC, int version,
+ * long created epoch millis), then records padded to 8 bytes, up to the first record length 0:
+ *   0 int length (header and path, without padding), written last with release semantics
+ *   4 short status; 6 byte method (index in METHODS, 0 for others); 7 byte flags (FLAG_TRUNCATED)
+ *   8 long start epoch millis; 16 long duration nanos; 24 long thread id; 32 path and query (ASCII)
+ * Paths are raw (percent-encoded) URIs, so they are ASCII; other characters are written as '?'.
+ */
+final class AccessLogFormat {
+
+    static final int FILE_MAGIC = 0x474F_4C41; // "ALOG"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_LENGTH = 16;
+    static final int RECORD_HEADER_LENGTH = 32;
+    static final int RECORD_SLOT = 256;
+    static final int MAX_PATH_BYTES = RECORD_SLOT - RECORD_HEADER_LENGTH;
+    static final int FLAG_TRUNCATED = 1;
+    static final List<String> METHODS = List.of("OTHER", "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH");
+    static final String FILE_PREFIX = "access-";
+    static final String FILE_SUFFIX = ".log";
+
+    static final VarHandle RECORD_INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle RECORD_SHORTS =
+        MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle RECORD_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle FILE_INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private AccessLogFormat() {
+    }
+
+    /**
+     * Record length rounded up to 8 bytes, where the next record starts
+     */
+    static int padded(int length) {
+        return (length + 7) & ~7;
+    }
+}
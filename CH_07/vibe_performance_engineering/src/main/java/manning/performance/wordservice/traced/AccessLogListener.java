@@ -0,0 +1,54 @@
+package manning.performance.wordservice.traced;
+
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.net.URI;
+
+/**
+ * Writes every Jersey request into the AccessLog when it is FINISHED, i.e. after the response was written,
+ * with its method, raw path and query, status, start time and duration. Requests that fail without a
+ * response are logged with status 500. The start is kept in a preallocated slot per worker thread, every
+ * resource here is synchronous, so logging a request allocates nothing.
+ * Enabled with -Daccess.log.dir=DIR, register with environment.jersey().register(new AccessLogListener(log)).
+ */
+public class AccessLogListener implements ApplicationEventListener {
+
+    private static final ThreadLocal<long[]> START = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final AccessLog accessLog;
+    private final RequestEventListener requestListener = this::onRequestEvent;
+
+    public AccessLogListener(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        // only requests are logged
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        long[] start = START.get();
+        start[0] = System.currentTimeMillis();
+        start[1] = System.nanoTime();
+        return requestListener;
+    }
+
+    private void onRequestEvent(RequestEvent event) {
+        if (event.getType() != RequestEvent.Type.FINISHED) {
+            return;
+        }
+        long[] start = START.get();
+        ContainerRequest request = event.getContainerRequest();
+        ContainerResponse response = event.getContainerResponse();
+        URI uri = request.getRequestUri();
+        accessLog.log(request.getMethod(), response != null ? response.getStatus() : 500, start[0],
+            System.nanoTime() - start[1], uri.getRawPath(), uri.getRawQuery());
+    }
+}
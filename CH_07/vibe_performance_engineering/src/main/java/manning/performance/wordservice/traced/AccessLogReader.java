@@ -0,0 +1,138 @@
+package manning.performance.wordservice.traced;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_HEADER_LENGTH;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_INTS;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_MAGIC;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_PREFIX;
+import static manning.performance.wordservice.traced.AccessLogFormat.FILE_SUFFIX;
+import static manning.performance.wordservice.traced.AccessLogFormat.FLAG_TRUNCATED;
+import static manning.performance.wordservice.traced.AccessLogFormat.METHODS;
+import static manning.performance.wordservice.traced.AccessLogFormat.RECORD_HEADER_LENGTH;
+import static manning.performance.wordservice.traced.AccessLogFormat.VERSION;
+import static manning.performance.wordservice.traced.AccessLogFormat.padded;
+
+/**
+ * Prints the binary access log written by AccessLog as text, one request per line:
+ *   2026-10-18T10:15:00.123Z GET /optimized-words/word-exists?word=cat 200 0.213 ms thread 45
+ *
+ *   java -cp target/classes manning.performance.wordservice.traced.AccessLogReader /var/log/words
+ *
+ * Given a directory it reads every access log file in it, oldest first. Files still being written can be
+ * read too, reading stops at the last complete record.
+ */
+public final class AccessLogReader {
+
+    private AccessLogReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: AccessLogReader <access log file or directory>");
+            System.exit(1);
+        }
+        for (Entry entry : readAll(Path.of(args[0]))) {
+            System.out.println(entry);
+        }
+    }
+
+    /**
+     * Entries of one file, or of every access log file of a directory in file name (creation) order
+     */
+    static List<Entry> readAll(Path fileOrDirectory) throws IOException {
+        if (!Files.isDirectory(fileOrDirectory)) {
+            return read(fileOrDirectory);
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(fileOrDirectory)) {
+            files = listing.filter(AccessLogReader::isAccessLog).sorted().collect(Collectors.toList());
+        }
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            entries.addAll(read(file));
+        }
+        return entries;
+    }
+
+    static List<Entry> read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < FILE_HEADER_LENGTH
+                || (int) FILE_INTS.getAcquire(buffer, 0) != FILE_MAGIC) {
+            throw new IOException(file + " is not an access log file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(file + " has version " + buffer.getInt(4) + ", expected " + VERSION);
+        }
+        List<Entry> entries = new ArrayList<>();
+        int position = FILE_HEADER_LENGTH;
+        while (position + RECORD_HEADER_LENGTH <= buffer.capacity()) {
+            int length = (int) FILE_INTS.getAcquire(buffer, position);
+            if (length == 0) {
+                break;
+            }
+            byte[] path = new byte[length - RECORD_HEADER_LENGTH];
+            buffer.get(position + RECORD_HEADER_LENGTH, path);
+            int method = buffer.get(position + 6);
+            entries.add(new Entry(
+                method >= 0 && method < METHODS.size() ? METHODS.get(method) : "OTHER",
+                new String(path, StandardCharsets.US_ASCII),
+                (buffer.get(position + 7) & FLAG_TRUNCATED) != 0,
+                buffer.getShort(position + 4) & 0xFFFF,
+                buffer.getLong(position + 8), buffer.getLong(position + 16), buffer.getLong(position + 24)));
+            position += padded(length);
+        }
+        return entries;
+    }
+
+    private static boolean isAccessLog(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+
+    /**
+     * One logged request; truncated when its path and query did not fit into a record
+     */
+    static final class Entry {
+        final String method;
+        final String path;
+        final boolean truncated;
+        final int status;
+        final long startEpochMillis;
+        final long durationNanos;
+        final long threadId;
+
+        Entry(String method, String path, boolean truncated, int status, long startEpochMillis,
+              long durationNanos, long threadId) {
+            this.method = method;
+            this.path = path;
+            this.truncated = truncated;
+            this.status = status;
+            this.startEpochMillis = startEpochMillis;
+            this.durationNanos = durationNanos;
+            this.threadId = threadId;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s%s %d %.3f ms thread %d", Instant.ofEpochMilli(startEpochMillis), method,
+                path, truncated ? "..." : "", status, durationNanos / 1_000_000.0, threadId);
+        }
+    }
+}
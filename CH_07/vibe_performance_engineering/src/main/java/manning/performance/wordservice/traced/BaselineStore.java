@@ -0,0 +1,59 @@
+package manning.performance.wordservice.traced;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Run snapshots on disk, one JSON file per run: DIRECTORY/ENGINE/TIMESTAMP-VERSION-COMMIT.json.
+ * The timestamp is zero padded, so file names sort by time and the last one is the latest baseline.
+ */
+public class BaselineStore {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path directory;
+
+    public BaselineStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path save(RunSnapshot snapshot) throws IOException {
+        Path engineDirectory = Files.createDirectories(directory.resolve(fileName(snapshot.engine)));
+        Path file = engineDirectory.resolve(String.format("%015d-%s-%s.json",
+            snapshot.timestampMillis, fileName(snapshot.version), fileName(snapshot.commit)));
+        write(snapshot, file);
+        return file;
+    }
+
+    /**
+     * The most recently saved run of an engine
+     */
+    public Optional<RunSnapshot> latest(String engine) throws IOException {
+        Path engineDirectory = directory.resolve(fileName(engine));
+        if (!Files.isDirectory(engineDirectory)) {
+            return Optional.empty();
+        }
+        Optional<Path> latest;
+        try (Stream<Path> files = Files.list(engineDirectory)) {
+            latest = files.filter(file -> file.getFileName().toString().endsWith(".json")).max(Path::compareTo);
+        }
+        return latest.isPresent() ? Optional.of(read(latest.get())) : Optional.empty();
+    }
+
+    public static RunSnapshot read(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), RunSnapshot.class);
+    }
+
+    public static void write(RunSnapshot snapshot, Path file) throws IOException {
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), snapshot);
+    }
+
+    private static String fileName(String tag) {
+        return tag == null || tag.isBlank() ? "unknown" : tag.replaceAll("[^A-Za-z0-9_.]", "_");
+    }
+}
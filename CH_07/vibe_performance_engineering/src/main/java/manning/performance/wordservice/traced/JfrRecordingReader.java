@@ -0,0 +1,195 @@
+package manning.performance.wordservice.traced;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import manning.performance.wordservice.jfr.DictionaryLoadEvent;
+import manning.performance.wordservice.jfr.FileOpenEvent;
+import manning.performance.wordservice.jfr.WordExistsEvent;
+import manning.performance.wordservice.jfr.WordOfTheDayEvent;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Turns a JFR recording into the MetricsReport the traced service would have produced,
+ * plus a RecordingProfile from the execution and allocation samples:
+ * - word service events give method times, call counts, file opens and lines scanned
+ * - jdk.ExecutionSample gives CPU samples per top frame and per closest application frame
+ * - jdk.ObjectAllocationSample gives allocated bytes (sampled, weighted) per frame and class
+ * Allocation samples cover the whole JVM; only those whose stack passes through a request method
+ * (wordExists, getWordOfTheDay) count as the requests' memory use, the profile keeps the process total.
+ * Methods are reported per service, e.g. wordExists[default] and wordExists[cached].
+ */
+final class JfrRecordingReader {
+
+    private static final String APPLICATION_PACKAGE = "manning.performance.";
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+    private static final Set<String> REQUEST_METHODS = Set.of("wordExists", "getWordOfTheDay");
+
+    private final Map<String, Histogram> methodLatencies = new TreeMap<>();
+    private final Map<String, Long> methodTotalNanos = new HashMap<>();
+    private final Map<String, Long> endpointCallCounts = new HashMap<>();
+    private long totalRequests;
+    private long fileReads;
+    private long fileOpenNanos;
+    private long bytesRead;
+    private long linesScanned;
+    private long stringComparisons;
+    private long dictionaryLoads;
+    private long dictionaryLoadNanos;
+
+    private long executionSamples;
+    private final Map<String, Long> topFrameSamples = new HashMap<>();
+    private final Map<String, Long> applicationFrameSamples = new HashMap<>();
+    private long allocatedBytes;
+    private long requestAllocatedBytes;
+    private final Map<String, Long> allocatedBytesByFrame = new HashMap<>();
+    private final Map<String, Long> allocatedBytesByClass = new HashMap<>();
+
+    static PerformanceAnalyzer read(Path recording) throws IOException {
+        JfrRecordingReader reader = new JfrRecordingReader();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                reader.accept(file.readEvent());
+            }
+        }
+        return new PerformanceAnalyzer(reader.report(), reader.profile());
+    }
+
+    private void accept(RecordedEvent event) {
+        switch (event.getEventType().getName()) {
+            case WordExistsEvent.NAME:
+                request(event, "wordExists", "word-exists");
+                // the scanning service compares every line it reads
+                stringComparisons += event.getLong("linesScanned");
+                break;
+            case WordOfTheDayEvent.NAME:
+                request(event, "getWordOfTheDay", "word-of-the-day");
+                break;
+            case FileOpenEvent.NAME:
+                fileReads++;
+                fileOpenNanos += event.getDuration().toNanos();
+                break;
+            case DictionaryLoadEvent.NAME:
+                dictionaryLoads++;
+                dictionaryLoadNanos += event.getDuration().toNanos();
+                break;
+            case EXECUTION_SAMPLE:
+                executionSample(event.getStackTrace());
+                break;
+            case ALLOCATION_SAMPLE:
+                allocationSample(event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void request(RecordedEvent event, String method, String endpoint) {
+        String name = method + "[" + event.getString("service") + "]";
+        long nanos = event.getDuration().toNanos();
+        methodLatencies.computeIfAbsent(name, k -> new Histogram(2)).recordValue(nanos);
+        methodTotalNanos.merge(name, nanos, Long::sum);
+        endpointCallCounts.merge(endpoint, 1L, Long::sum);
+        totalRequests++;
+        linesScanned += event.getLong("linesScanned");
+        bytesRead += event.getLong("bytesRead");
+    }
+
+    private void executionSample(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return;
+        }
+        executionSamples++;
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        topFrameSamples.merge(frameName(frames.get(0)), 1L, Long::sum);
+        applicationFrameSamples.merge(applicationFrameName(frames), 1L, Long::sum);
+    }
+
+    private void allocationSample(RecordedEvent event) {
+        long weight = event.getLong("weight");
+        allocatedBytes += weight;
+        allocatedBytesByClass.merge(event.getClass("objectClass").getName(), weight, Long::sum);
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+            allocatedBytesByFrame.merge(applicationFrameName(stackTrace.getFrames()), weight, Long::sum);
+            if (isRequest(stackTrace.getFrames())) {
+                requestAllocatedBytes += weight;
+            }
+        }
+    }
+
+    /**
+     * Whether the stack runs inside a word service request, as opposed to startup, background
+     * threads or the container
+     */
+    private static boolean isRequest(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            if (REQUEST_METHODS.contains(frame.getMethod().getName())
+                    && frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The innermost frame in application code, so JDK internals are attributed to their caller
+     */
+    private static String applicationFrameName(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            if (frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+                return frameName(frame);
+            }
+        }
+        return frameName(frames.get(0));
+    }
+
+    private static String frameName(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+    }
+
+    private MetricsCollector.MetricsReport report() {
+        Map<String, Double> averageMethodTimesMs = new HashMap<>();
+        Map<String, Long> methodCallCounts = new HashMap<>();
+        Map<String, MetricsCollector.LatencyPercentiles> latencyPercentiles = new TreeMap<>();
+        methodLatencies.forEach((method, histogram) -> {
+            long count = histogram.getTotalCount();
+            methodCallCounts.put(method, count);
+            averageMethodTimesMs.put(method, methodTotalNanos.get(method) / (double) count / 1_000_000.0);
+            latencyPercentiles.put(method, MetricsCollector.LatencyPercentiles.from(histogram));
+        });
+        // every call is recorded, so the report is "sampled" at 100%
+        return MetricsCollector.MetricsReport.builder()
+            .methods(averageMethodTimesMs, methodCallCounts)
+            .fileReads(fileReads, bytesRead, fileOpenNanos / 1_000_000.0)
+            .stringOperations(stringComparisons, linesScanned)
+            .requests(totalRequests, endpointCallCounts)
+            .memoryUsed(requestAllocatedBytes)
+            .latencyPercentiles(latencyPercentiles, Map.of())
+            .sampling("jfr", totalRequests, 0)
+            .build();
+    }
+
+    private RecordingProfile profile() {
+        return new RecordingProfile(
+            executionSamples,
+            topFrameSamples,
+            applicationFrameSamples,
+            allocatedBytes,
+            allocatedBytesByFrame,
+            allocatedBytesByClass,
+            dictionaryLoads,
+            dictionaryLoadNanos / 1_000_000.0
+        );
+    }
+}
@@ -0,0 +1,272 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and method latency histograms mirrored into a memory-mapped file, so another process
+ * (MappedMetricsReader, or any tool that knows the layout) reads live metrics without HTTP and without
+ * touching the Jetty threads. Enabled with -Dmetrics.mapped.file=/dev/shm/traced-metrics.
+ *
+ * Layout, little endian, all offsets in bytes, every long 8-byte aligned:
+ * - header (HEADER_LENGTH):
+ *   0 int magic (MAGIC), written last; 4 int version; 8 long pid; 16 long start epoch millis;
+ *   24 int counter capacity; 28 int histogram capacity; 32 int buckets per histogram;
+ *   36 int sub-bucket bits; 40 int counters in use; 44 int histograms in use;
+ *   48 long heartbeat epoch millis (updated every second while the writer is alive); 56 long dropped labels
+ * - counters, from HEADER_LENGTH, COUNTER_LENGTH each: 0 long value; 8 int label length; 12 label (UTF-8)
+ * - histograms, after the counters, HISTOGRAM_LENGTH each: 0 int label length; 4 label (UTF-8);
+ *   LABEL_LENGTH long count; +8 long sum; +16 long max; +24 long[BUCKETS] bucket counts
+ * Bucket i < 8 counts the value i; above that bucket 8 * (e - 2) + s counts values whose highest bit is e
+ * and next 3 bits are s, so every bucket spans 1/8 of its power of two (12.5% resolution).
+ *
+ * Request threads never touch the file: the metrics roller copies the in-heap totals into it, counters
+ * every second (RollingCounter.roll) and histograms whenever the latency intervals roll
+ * (MethodLatencyHistogram.mirrorTo), with plain stores and the counter or histogram count last with
+ * release semantics. Values are monotonic since start: reset does not touch them, readers compute rates
+ * from two reads. A record is published by the "in use" count after its label is written, so readers
+ * never see a half-registered slot; slots beyond the capacity are not mirrored (counted in dropped labels).
+ * A file that cannot be mapped disables mirroring, it never keeps the application from starting.
+ */
+final class MappedMetrics {
+
+    static final int MAGIC = 0x5445_4D54; // "TMET"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 128;
+    static final int COUNTER_LENGTH = 128;
+    static final int LABEL_LENGTH = 64;
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS); // up to highest bit 62
+    static final int HISTOGRAM_LENGTH = LABEL_LENGTH + 24 + BUCKETS * 8;
+    static final int DEFAULT_COUNTER_CAPACITY = 64;
+    static final int DEFAULT_HISTOGRAM_CAPACITY = 64;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int PID_OFFSET = 8;
+    static final int START_OFFSET = 16;
+    static final int COUNTER_CAPACITY_OFFSET = 24;
+    static final int HISTOGRAM_CAPACITY_OFFSET = 28;
+    static final int BUCKETS_OFFSET = 32;
+    static final int SUB_BUCKET_BITS_OFFSET = 36;
+    static final int COUNTERS_IN_USE_OFFSET = 40;
+    static final int HISTOGRAMS_IN_USE_OFFSET = 44;
+    static final int HEARTBEAT_OFFSET = 48;
+    static final int DROPPED_OFFSET = 56;
+
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final AtomicLong FAILED = new AtomicLong();
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int counterCapacity;
+    private final int histogramCapacity;
+    private int countersInUse;
+    private int histogramsInUse;
+
+    private MappedMetrics(Path file, MappedByteBuffer buffer, int counterCapacity, int histogramCapacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.counterCapacity = counterCapacity;
+        this.histogramCapacity = histogramCapacity;
+    }
+
+    /**
+     * The file named by -Dmetrics.mapped.file, or null when it is not set or cannot be mapped; a failure
+     * is printed and counted (failed()) and the metrics stay in the heap only
+     */
+    static MappedMetrics fromSystemProperties() {
+        String file = System.getProperty("metrics.mapped.file");
+        if (file == null) {
+            return null;
+        }
+        try {
+            return create(Path.of(file), DEFAULT_COUNTER_CAPACITY, DEFAULT_HISTOGRAM_CAPACITY);
+        } catch (IOException | RuntimeException e) {
+            FAILED.incrementAndGet();
+            System.err.println("Cannot map metrics file " + file + ", not mirroring metrics: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Metrics files that could not be mapped since start
+     */
+    static long failed() {
+        return FAILED.get();
+    }
+
+    /**
+     * Create (or truncate) the file and map it; the mapping stays valid after the channel is closed
+     */
+    static MappedMetrics create(Path file, int counterCapacity, int histogramCapacity) throws IOException {
+        long length = histogramsOffset(counterCapacity) + (long) histogramCapacity * HISTOGRAM_LENGTH;
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(0); // zeroes a previous run, readers of it see the magic disappear
+            raf.setLength(length);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        MappedMetrics metrics = new MappedMetrics(file, buffer, counterCapacity, histogramCapacity);
+        metrics.writeHeader();
+        return metrics;
+    }
+
+    static int histogramsOffset(int counterCapacity) {
+        return HEADER_LENGTH + counterCapacity * COUNTER_LENGTH;
+    }
+
+    /**
+     * Bucket of a value, see the class comment; negative values count as 0
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (highestBit - SUB_BUCKET_BITS + 1) + subBucket;
+    }
+
+    /**
+     * Highest value counted in a bucket
+     */
+    static long bucketHighestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private void writeHeader() {
+        INTS.set(buffer, VERSION_OFFSET, VERSION);
+        LONGS.set(buffer, PID_OFFSET, ProcessHandle.current().pid());
+        LONGS.set(buffer, START_OFFSET, System.currentTimeMillis());
+        INTS.set(buffer, COUNTER_CAPACITY_OFFSET, counterCapacity);
+        INTS.set(buffer, HISTOGRAM_CAPACITY_OFFSET, histogramCapacity);
+        INTS.set(buffer, BUCKETS_OFFSET, BUCKETS);
+        INTS.set(buffer, SUB_BUCKET_BITS_OFFSET, SUB_BUCKET_BITS);
+        heartbeat();
+        INTS.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Tell readers the writer is alive, called every second by the metrics roller
+     */
+    void heartbeat() {
+        LONGS.setOpaque(buffer, HEARTBEAT_OFFSET, System.currentTimeMillis());
+    }
+
+    /**
+     * Slot for a counter, or null when all slots are taken
+     */
+    synchronized Counter counter(String label) {
+        if (countersInUse == counterCapacity) {
+            return dropped();
+        }
+        int offset = HEADER_LENGTH + countersInUse * COUNTER_LENGTH;
+        writeLabel(offset + 8, label, COUNTER_LENGTH - 12);
+        INTS.setRelease(buffer, COUNTERS_IN_USE_OFFSET, ++countersInUse);
+        return new Counter(buffer, offset);
+    }
+
+    /**
+     * Slot for a latency histogram, or null when all slots are taken
+     */
+    synchronized Histogram histogram(String label) {
+        if (histogramsInUse == histogramCapacity) {
+            return dropped();
+        }
+        int offset = histogramsOffset(counterCapacity) + histogramsInUse * HISTOGRAM_LENGTH;
+        writeLabel(offset, label, LABEL_LENGTH - 4);
+        INTS.setRelease(buffer, HISTOGRAMS_IN_USE_OFFSET, ++histogramsInUse);
+        return new Histogram(buffer, offset + LABEL_LENGTH);
+    }
+
+    private <T> T dropped() {
+        LONGS.getAndAdd(buffer, DROPPED_OFFSET, 1L);
+        return null;
+    }
+
+    private void writeLabel(int offset, String label, int maxBytes) {
+        byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, maxBytes);
+        buffer.put(offset + 4, bytes, 0, length);
+        INTS.set(buffer, offset, length);
+    }
+
+    /**
+     * One counter slot, written by a single thread (the metrics roller)
+     */
+    static final class Counter {
+        private final ByteBuffer buffer;
+        private final int offset;
+
+        private Counter(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * Publish the total since start
+         */
+        void set(long total) {
+            LONGS.setRelease(buffer, offset, total);
+        }
+    }
+
+    /**
+     * One histogram slot, written by a single thread (the metrics roller)
+     */
+    static final class Histogram {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final long[] buckets = new long[BUCKETS];
+
+        private Histogram(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * Publish a histogram of all values since start and their exact sum. Values are taken at the
+         * highest equivalent value of their HdrHistogram bucket. Buckets only grow and the count is
+         * written last, so readers never see a count ahead of the buckets.
+         */
+        void set(AbstractHistogram values, long sum) {
+            Arrays.fill(buckets, 0);
+            for (HistogramIterationValue value : values.recordedValues()) {
+                buckets[bucket(value.getValueIteratedTo())] += value.getCountAtValueIteratedTo();
+            }
+            for (int i = 0; i < BUCKETS; i++) {
+                LONGS.setOpaque(buffer, offset + 24 + i * 8, buckets[i]);
+            }
+            LONGS.setOpaque(buffer, offset + 8, sum);
+            LONGS.setOpaque(buffer, offset + 16, values.getTotalCount() == 0 ? 0 : values.getMaxValue());
+            LONGS.setRelease(buffer, offset, values.getTotalCount());
+        }
+    }
+}
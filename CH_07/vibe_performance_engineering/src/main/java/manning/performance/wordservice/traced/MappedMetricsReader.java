@@ -0,0 +1,204 @@
+package manning.performance.wordservice.traced;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static manning.performance.wordservice.traced.MappedMetrics.INTS;
+import static manning.performance.wordservice.traced.MappedMetrics.LONGS;
+
+/**
+ * Reads the metrics file written by MappedMetrics from another process and prints counter rates and
+ * latency percentiles every interval, without HTTP:
+ *
+ *   java -cp target/classes manning.performance.wordservice.traced.MappedMetricsReader /dev/shm/traced-metrics 5
+ *
+ * Every value is read atomically, but a snapshot is not one instant: calls recorded while it is taken
+ * may be in some values and not yet in others. Percentiles are bucket upper bounds (12.5% resolution).
+ */
+public final class MappedMetricsReader {
+
+    private static final long STALE_HEARTBEAT_MILLIS = 5_000;
+
+    private MappedMetricsReader() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: MappedMetricsReader <metrics file> [interval seconds, default 5] [count]");
+            System.exit(1);
+        }
+        Path file = Path.of(args[0]);
+        long intervalMillis = (args.length > 1 ? Long.parseLong(args[1]) : 5) * 1000;
+        long reads = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+        Snapshot previous = read(file);
+        previous.print(System.out, null);
+        for (long i = 1; i < reads; i++) {
+            Thread.sleep(intervalMillis);
+            Snapshot current = read(file);
+            current.print(System.out, current.startMillis == previous.startMillis ? previous : null);
+            previous = current;
+        }
+    }
+
+    /**
+     * Map the file read-only and copy out every published counter and histogram
+     */
+    static Snapshot read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < MappedMetrics.HEADER_LENGTH
+                || (int) INTS.getAcquire(buffer, MappedMetrics.MAGIC_OFFSET) != MappedMetrics.MAGIC) {
+            throw new IOException(file + " is not a metrics file, or its writer has not started yet");
+        }
+        int version = (int) INTS.get(buffer, MappedMetrics.VERSION_OFFSET);
+        int buckets = (int) INTS.get(buffer, MappedMetrics.BUCKETS_OFFSET);
+        if (version != MappedMetrics.VERSION || buckets != MappedMetrics.BUCKETS) {
+            throw new IOException(file + " has layout version " + version + " with " + buckets
+                + " buckets, expected " + MappedMetrics.VERSION + " with " + MappedMetrics.BUCKETS);
+        }
+        int counterCapacity = (int) INTS.get(buffer, MappedMetrics.COUNTER_CAPACITY_OFFSET);
+        int countersInUse = (int) INTS.getAcquire(buffer, MappedMetrics.COUNTERS_IN_USE_OFFSET);
+        int histogramsInUse = (int) INTS.getAcquire(buffer, MappedMetrics.HISTOGRAMS_IN_USE_OFFSET);
+
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for (int i = 0; i < countersInUse; i++) {
+            int offset = MappedMetrics.HEADER_LENGTH + i * MappedMetrics.COUNTER_LENGTH;
+            counters.put(label(buffer, offset + 8), (long) LONGS.getOpaque(buffer, offset));
+        }
+        Map<String, HistogramSnapshot> histograms = new LinkedHashMap<>();
+        for (int i = 0; i < histogramsInUse; i++) {
+            int offset = MappedMetrics.histogramsOffset(counterCapacity) + i * MappedMetrics.HISTOGRAM_LENGTH;
+            int values = offset + MappedMetrics.LABEL_LENGTH;
+            long count = (long) LONGS.getAcquire(buffer, values);
+            long[] bucketCounts = new long[buckets];
+            for (int b = 0; b < buckets; b++) {
+                bucketCounts[b] = (long) LONGS.getOpaque(buffer, values + 24 + b * 8);
+            }
+            histograms.put(label(buffer, offset), new HistogramSnapshot(count,
+                (long) LONGS.getOpaque(buffer, values + 8), (long) LONGS.getOpaque(buffer, values + 16), bucketCounts));
+        }
+        return new Snapshot(System.currentTimeMillis(), (long) LONGS.get(buffer, MappedMetrics.PID_OFFSET),
+            (long) LONGS.get(buffer, MappedMetrics.START_OFFSET),
+            (long) LONGS.getOpaque(buffer, MappedMetrics.HEARTBEAT_OFFSET),
+            (long) LONGS.getOpaque(buffer, MappedMetrics.DROPPED_OFFSET), counters, histograms);
+    }
+
+    private static String label(MappedByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[(int) INTS.get(buffer, offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counters and histograms of one read, values since the writer started
+     */
+    static final class Snapshot {
+        final long readMillis;
+        final long pid;
+        final long startMillis;
+        final long heartbeatMillis;
+        final long droppedLabels;
+        final Map<String, Long> counters;
+        final Map<String, HistogramSnapshot> histograms;
+
+        Snapshot(long readMillis, long pid, long startMillis, long heartbeatMillis, long droppedLabels,
+                 Map<String, Long> counters, Map<String, HistogramSnapshot> histograms) {
+            this.readMillis = readMillis;
+            this.pid = pid;
+            this.startMillis = startMillis;
+            this.heartbeatMillis = heartbeatMillis;
+            this.droppedLabels = droppedLabels;
+            this.counters = counters;
+            this.histograms = histograms;
+        }
+
+        boolean isStale() {
+            return readMillis - heartbeatMillis > STALE_HEARTBEAT_MILLIS;
+        }
+
+        /**
+         * Print counters with their rate and histograms with the percentiles of the calls since previous,
+         * or since start when previous is null
+         */
+        void print(PrintStream out, Snapshot previous) {
+            long sinceMillis = previous != null ? previous.readMillis : startMillis;
+            double seconds = Math.max(1, readMillis - sinceMillis) / 1000.0;
+            out.printf("pid %d, %s, last %.1f s%s%n", pid, previous != null ? "interval" : "since start", seconds,
+                isStale() ? ", STALE (no heartbeat for " + (readMillis - heartbeatMillis) / 1000 + " s)" : "");
+            counters.forEach((name, value) -> {
+                long delta = value - (previous != null ? previous.counters.getOrDefault(name, 0L) : 0);
+                out.printf("  %-44s %14d %12.1f/s%n", name, value, delta / seconds);
+            });
+            histograms.forEach((name, histogram) -> {
+                HistogramSnapshot interval = previous != null && previous.histograms.containsKey(name)
+                    ? histogram.minus(previous.histograms.get(name)) : histogram;
+                out.printf("  %-44s %8d calls %10.1f/s  mean %9.3f  p50 %9.3f  p99 %9.3f  p99.9 %9.3f ms%n",
+                    name, interval.count, interval.count / seconds, interval.meanNanos() / 1e6,
+                    interval.percentileNanos(50) / 1e6, interval.percentileNanos(99) / 1e6,
+                    interval.percentileNanos(99.9) / 1e6);
+            });
+            if (droppedLabels > 0) {
+                out.printf("  %d metrics did not fit into the file and are not shown%n", droppedLabels);
+            }
+        }
+    }
+
+    /**
+     * Copy of one latency histogram; max is since start, also for an interval
+     */
+    static final class HistogramSnapshot {
+        final long count;
+        final long sumNanos;
+        final long maxNanos;
+        final long[] buckets;
+
+        HistogramSnapshot(long count, long sumNanos, long maxNanos, long[] buckets) {
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        HistogramSnapshot minus(HistogramSnapshot earlier) {
+            long[] delta = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                delta[i] = buckets[i] - earlier.buckets[i];
+            }
+            return new HistogramSnapshot(count - earlier.count, sumNanos - earlier.sumNanos, maxNanos, delta);
+        }
+
+        double meanNanos() {
+            return count == 0 ? 0 : (double) sumNanos / count;
+        }
+
+        /**
+         * Highest value of the bucket holding the given percentile, capped at max; 0 when empty
+         */
+        long percentileNanos(double percentile) {
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && buckets[i] > 0) {
+                    return Math.min(MappedMetrics.bucketHighestValue(i), maxNanos);
+                }
+            }
+            return 0;
+        }
+    }
+}
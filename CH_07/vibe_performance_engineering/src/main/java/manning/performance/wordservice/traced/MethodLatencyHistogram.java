@@ -0,0 +1,236 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.IntCountsHistogram;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution and total time of a single traced method.
+ * Values are recorded per thread by PerThreadRecorder; on a roll it adds the closed interval of every
+ * thread (addToInterval) and then closes this one (roll), which moves it into the since-start and
+ * since-mark totals and into a bounded queue of interval histograms used for rolling windows. Count, sum
+ * and distribution of every interval come from the same flips and are always consistent.
+ * Values have 2 significant digits (1% relative error) and are clamped at highestTrackableValue in the
+ * distribution; the sum is exact. Latency is in nanoseconds, clamped at one minute.
+ * Retained intervals are compact int-count copies sized to their max value, around 10 KB each here.
+ * The same structure holds the CPU nanoseconds (MAX_TRACKABLE_NANOS) and allocated bytes
+ * (MAX_TRACKABLE_BYTES) per call of a method; those are created with maxIntervals 0 and keep only the
+ * since-start and since-mark totals. The *Ms accessors only make sense for nanosecond values.
+ */
+class MethodLatencyHistogram {
+
+    static final int SIGNIFICANT_DIGITS = 2;
+    static final long MAX_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final long MAX_TRACKABLE_BYTES = 1L << 40; // 1 TB allocated by one call
+
+    private final String methodName;
+    private final long retentionMillis;
+    private final int maxIntervals;
+    private final long highestTrackableValue;
+    private final Histogram closed;
+    private long closedSum;
+    private long intervalStartMillis;
+    private final Histogram sinceStart = new Histogram(SIGNIFICANT_DIGITS);
+    private long sinceStartSum;
+    private final Histogram sinceMark = new Histogram(SIGNIFICANT_DIGITS);
+    private long sinceMarkSum;
+    private final Deque<RetainedInterval> intervals = new ArrayDeque<>();
+
+    /**
+     * Latency in nanoseconds, clamped at MAX_TRACKABLE_NANOS
+     */
+    MethodLatencyHistogram(String methodName, long retentionMillis, int maxIntervals) {
+        this(methodName, MAX_TRACKABLE_NANOS, retentionMillis, maxIntervals);
+    }
+
+    MethodLatencyHistogram(String methodName, long highestTrackableValue, long retentionMillis, int maxIntervals) {
+        this.methodName = methodName;
+        this.retentionMillis = retentionMillis;
+        this.maxIntervals = maxIntervals;
+        this.highestTrackableValue = highestTrackableValue;
+        this.closed = new Histogram(highestTrackableValue, SIGNIFICANT_DIGITS);
+        long now = System.currentTimeMillis();
+        this.intervalStartMillis = now;
+        this.sinceStart.setStartTimeStamp(now);
+        this.sinceMark.setStartTimeStamp(now);
+    }
+
+    String methodName() {
+        return methodName;
+    }
+
+    long highestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Add the closed interval of one thread, values already clamped at highestTrackableValue
+     */
+    synchronized void addToInterval(AbstractHistogram threadInterval, long sum) {
+        closed.add(threadInterval);
+        closedSum += sum;
+    }
+
+    /**
+     * Close the current interval, add it to the totals and retain it for window queries.
+     * Empty intervals are not retained. When log is not null the interval is also written to it.
+     */
+    synchronized void roll(long nowMillis, HistogramLogWriter log, String run) {
+        while (!intervals.isEmpty() && (intervals.size() >= maxIntervals
+                || intervals.peekFirst().histogram.getEndTimeStamp() <= nowMillis - retentionMillis)) {
+            intervals.removeFirst();
+        }
+        long startMillis = intervalStartMillis;
+        intervalStartMillis = nowMillis;
+        long sum = closedSum;
+        closedSum = 0;
+        if (closed.getTotalCount() == 0) {
+            return;
+        }
+        IntCountsHistogram histogram = new IntCountsHistogram(SIGNIFICANT_DIGITS);
+        histogram.add(closed);
+        closed.reset();
+        histogram.setStartTimeStamp(startMillis);
+        histogram.setEndTimeStamp(nowMillis);
+        histogram.setTag(methodName);
+
+        sinceStart.add(histogram);
+        sinceStart.setEndTimeStamp(nowMillis);
+        sinceStartSum += sum;
+        sinceMark.add(histogram);
+        sinceMark.setEndTimeStamp(nowMillis);
+        sinceMarkSum += sum;
+        if (maxIntervals > 0) {
+            intervals.addLast(new RetainedInterval(histogram, sum));
+        }
+        if (log != null) {
+            writeInterval(log, histogram, run);
+        }
+    }
+
+    /**
+     * Start a new since-mark period; call right after a roll so nothing recorded before the mark is lost
+     * or counted after it. Retained intervals are kept, windows are not affected.
+     */
+    synchronized void mark(long nowMillis) {
+        sinceMark.reset();
+        sinceMark.setStartTimeStamp(nowMillis);
+        sinceMarkSum = 0;
+    }
+
+    synchronized long getSinceStartCount() {
+        return sinceStart.getTotalCount();
+    }
+
+    synchronized double getSinceMarkMeanMs() {
+        return getSinceMarkMean() / 1_000_000.0;
+    }
+
+    /**
+     * Mean value since the mark in the recorded unit, from the exact sum
+     */
+    synchronized double getSinceMarkMean() {
+        long count = sinceMark.getTotalCount();
+        return count == 0 ? 0 : sinceMarkSum / (double) count;
+    }
+
+    synchronized long getSinceMarkCount() {
+        return sinceMark.getTotalCount();
+    }
+
+    synchronized long getSinceMarkSum() {
+        return sinceMarkSum;
+    }
+
+    synchronized double getSinceMarkPercentileMs(double percentile) {
+        return sinceMark.getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    synchronized MetricsCollector.LatencyPercentiles getSinceMarkPercentiles() {
+        return MetricsCollector.LatencyPercentiles.from(sinceMark);
+    }
+
+    synchronized Histogram copySinceMark() {
+        return sinceMark.copy();
+    }
+
+    /**
+     * Fill counts[i] with the number of values since start at or below upperBoundsNanos[i] (cumulative,
+     * within histogram precision), store the sum in nanoseconds in counts[upperBoundsNanos.length] and
+     * return the total count, all from one roll. counts needs upperBoundsNanos.length + 1 slots.
+     */
+    synchronized long getCumulativeCounts(long[] upperBoundsNanos, long[] counts) {
+        for (int i = 0; i < upperBoundsNanos.length; i++) {
+            counts[i] = sinceStart.getCountBetweenValues(0, upperBoundsNanos[i]);
+        }
+        counts[upperBoundsNanos.length] = sinceStartSum;
+        return sinceStart.getTotalCount();
+    }
+
+    /**
+     * Publish everything since start into a slot of the metrics file, call after a roll
+     */
+    synchronized void mirrorTo(MappedMetrics.Histogram mapped) {
+        mapped.set(sinceStart, sinceStartSum);
+    }
+
+    /**
+     * Percentiles over the rolled intervals that ended within the last windowMillis
+     */
+    synchronized MetricsCollector.LatencyPercentiles getWindowPercentiles(long windowMillis, long nowMillis) {
+        Histogram window = new Histogram(SIGNIFICANT_DIGITS);
+        for (RetainedInterval interval : intervals) {
+            if (interval.histogram.getEndTimeStamp() > nowMillis - windowMillis) {
+                window.add(interval.histogram);
+            }
+        }
+        return MetricsCollector.LatencyPercentiles.from(window);
+    }
+
+    /**
+     * Total time of the same intervals as getWindowPercentiles
+     */
+    synchronized long getWindowSumNanos(long windowMillis, long nowMillis) {
+        long sumNanos = 0;
+        for (RetainedInterval interval : intervals) {
+            if (interval.histogram.getEndTimeStamp() > nowMillis - windowMillis) {
+                sumNanos += interval.sum;
+            }
+        }
+        return sumNanos;
+    }
+
+    /**
+     * Write all retained intervals, tagged as run/method so logs of several runs can be compared
+     */
+    synchronized void writeIntervals(HistogramLogWriter writer, String run) {
+        for (RetainedInterval interval : intervals) {
+            writeInterval(writer, interval.histogram, run);
+        }
+    }
+
+    private static void writeInterval(HistogramLogWriter writer, IntCountsHistogram interval, String run) {
+        String methodName = interval.getTag();
+        interval.setTag(run + "/" + methodName);
+        try {
+            writer.outputIntervalHistogram(interval);
+        } finally {
+            interval.setTag(methodName);
+        }
+    }
+
+    private static final class RetainedInterval {
+        private final IntCountsHistogram histogram;
+        private final long sum;
+
+        private RetainedInterval(IntCountsHistogram histogram, long sum) {
+            this.histogram = histogram;
+            this.sum = sum;
+        }
+    }
+}
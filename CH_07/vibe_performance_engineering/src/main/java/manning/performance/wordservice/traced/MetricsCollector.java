@@ -1,50 +1,210 @@
 package manning.performance.wordservice.traced;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.Map;
 
 /**
  * Thread-safe metrics collector for tracking performance metrics
  * at granular level to identify hot paths and bottlenecks.
+ *
+ * Counters keep 1 second buckets (RollingCounter) and method timings go into per-method HdrHistograms
+ * closed every HISTOGRAM_ROLL_SECONDS (MethodLatencyHistogram). A background roller closes intervals every
+ * second and every report rolls first, so a report shows totals since the last reset and windows over the
+ * last 1, 5 and 15 minutes from one roll. Reset only sets a mark the totals are counted from, it never
+ * clears what writers touch.
+ *
+ * Optional outputs, by system property:
+ * - metrics.histogram.log=file appends every latency interval in HdrHistogram log format, tagged with
+ *   metrics.run (default "traced")
+ * - traced.slowRequestMillis (default 10) keeps slower requests with their overlapping pauses (TailLatency)
+ * - metrics.mapped.file=path mirrors counters and latencies into a memory-mapped file (MappedMetrics)
  */
 public class MetricsCollector {
     
-    private static final MetricsCollector INSTANCE = new MetricsCollector();
+    static final int HISTOGRAM_ROLL_SECONDS = 5;
+    static final Map<String, Long> LATENCY_WINDOWS_MS = windows();
+    private static final long RETENTION_MS = TimeUnit.MINUTES.toMillis(15);
+    private static final int MAX_RETAINED_INTERVALS = (int) (RETENTION_MS / 1000 / HISTOGRAM_ROLL_SECONDS) + 1;
+    private static final int COUNTER_HISTORY_SECONDS = (int) TimeUnit.MILLISECONDS.toSeconds(RETENTION_MS);
+    private static final String RUN = System.getProperty("metrics.run", "traced");
+    private static final long SLOW_REQUEST_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(Long.getLong("traced.slowRequestMillis", 10));
+    private static final int SLOW_REQUEST_LOG_SIZE = 1024;
+
+    private static final MetricsCollector INSTANCE = new MetricsCollector(MappedMetrics.fromSystemProperties(), true);
     
     // Method execution times (in nanoseconds)
-    private final Map<String, LongAdder> methodExecutionTimes = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> methodCallCounts = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final HistogramLogWriter continuousLog = openContinuousLog();
+    private volatile long startTimeMillis = System.currentTimeMillis();
+    private volatile long startNanos = System.nanoTime();
+    private final SlowRequestLog slowRequests = new SlowRequestLog(SLOW_REQUEST_LOG_SIZE);
+    private final long originNanos = System.nanoTime();
+    private long lastHistogramRollSecond;
+    private final MappedMetrics mapped;
+    private final List<RollingCounter> counters = new ArrayList<>();
     
     // File I/O metrics
-    private final LongAdder totalFileReads = new LongAdder();
-    private final LongAdder totalBytesRead = new LongAdder();
-    private final LongAdder totalFileOpenTime = new LongAdder();
+    private final RollingCounter totalFileReads;
+    private final RollingCounter totalBytesRead;
+    private final RollingCounter totalFileOpenTime;
     
     // String operation metrics
-    private final LongAdder totalStringComparisons = new LongAdder();
-    private final LongAdder totalLinesScanned = new LongAdder();
+    private final RollingCounter totalStringComparisons;
+    private final RollingCounter totalLinesScanned;
     
     // Request-level metrics
-    private final LongAdder totalRequests = new LongAdder();
-    private final Map<String, LongAdder> endpointMetrics = new ConcurrentHashMap<>();
+    private final RollingCounter totalRequests;
+    private final RollingCounter sampledRequests;
+    private final RollingCounter unsampledRequests;
+    private volatile SamplingPolicy samplingPolicy = SamplingPolicy.fromSystemProperties();
+    private volatile MetricRegistry registry;
+    private final Map<String, Counter> requestCounters = new ConcurrentHashMap<>();
     
     // Memory metrics
-    private final LongAdder totalMemoryUsed = new LongAdder();
+    private final RollingCounter totalMemoryUsed;
+    
+    private MetricsCollector(MappedMetrics mapped, boolean scheduleRolls) {
+        this.mapped = mapped;
+        this.totalFileReads = newCounter("traced.file.reads");
+        this.totalBytesRead = newCounter("traced.file.bytesRead");
+        this.totalFileOpenTime = newCounter("traced.file.openTimeNanos");
+        this.totalStringComparisons = newCounter("traced.string.comparisons");
+        this.totalLinesScanned = newCounter("traced.lines.scanned");
+        this.totalRequests = newCounter("traced.requests.total");
+        this.sampledRequests = newCounter("traced.requests.sampled");
+        this.unsampledRequests = newCounter("traced.requests.unsampled");
+        this.totalMemoryUsed = newCounter("traced.memory.used");
+        if (scheduleRolls) {
+            ScheduledExecutorService roller = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("metrics-roll").build());
+            roller.scheduleAtFixedRate(this::rollCounters, 1, 1, TimeUnit.SECONDS);
+        }
+    }
     
-    private MetricsCollector() {}
+    /**
+     * A collector of its own, not mirrored to a mapped file and without the roller thread (every report
+     * rolls first), so tests start from zero instead of from what other tests left in the singleton
+     */
+    static MetricsCollector newInstance() {
+        return new MetricsCollector(null, false);
+    }
+    
+    private RollingCounter newCounter(String name) {
+        RollingCounter counter = new RollingCounter(COUNTER_HISTORY_SECONDS,
+                mapped != null ? mapped.counter(name) : null);
+        counters.add(counter);
+        return counter;
+    }
     
     public static MetricsCollector getInstance() {
         return INSTANCE;
     }
     
     /**
-     * Record method execution time
+     * Timer handle for a method. Resolve it once (e.g. in a constructor or static field) and call
+     * record on the hot path: no map lookup or allocation, a call is recorded into the calling thread's
+     * own stripe (PerThreadRecorder) and merged on the next roll. Handles stay valid across reset.
+     */
+    public Timer timer(String methodName) {
+        Timer timer = timers.get(methodName); // avoids the capturing lambda once registered
+        return timer != null ? timer : timers.computeIfAbsent(methodName, k -> registerTimer(k,
+                new Timer(new MethodLatencyHistogram(k, RETENTION_MS, MAX_RETAINED_INTERVALS),
+                        new MethodLatencyHistogram(k, RETENTION_MS, 0),
+                        new MethodLatencyHistogram(k, MethodLatencyHistogram.MAX_TRACKABLE_BYTES, RETENTION_MS, 0),
+                        new MethodLatencyHistogram(k, RETENTION_MS, 0),
+                        mapped != null ? mapped.histogram("traced.method." + k) : null)));
+    }
+    
+    /**
+     * Request counter handle for an endpoint, see timer
+     */
+    public Counter requestCounter(String endpoint) {
+        Counter counter = requestCounters.get(endpoint);
+        return counter != null ? counter : requestCounters.computeIfAbsent(endpoint,
+                k -> registerCounter(k, new Counter(new RollingCounter(COUNTER_HISTORY_SECONDS,
+                        mapped != null ? mapped.counter("traced.requests." + k) : null), totalRequests)));
+    }
+    
+    /**
+     * Expose all metrics as gauges in a Dropwizard MetricRegistry (and through it on the admin
+     * /metrics servlet and JMX). Timers and counters created later are registered as they appear.
+     * Gauge names: traced.method.NAME.{count,meanMs,p50Ms,p90Ms,p99Ms,p999Ms,maxMs},
+     * traced.requests.ENDPOINT and traced.{file,string,lines,requests,memory}.*
+     * Counts are since start (monotonic), mean and percentiles since the last reset.
+     */
+    public void bindTo(MetricRegistry registry) {
+        this.registry = registry;
+        registry.gauge("traced.file.reads", () -> totalFileReads::current);
+        registry.gauge("traced.file.bytesRead", () -> totalBytesRead::current);
+        registry.gauge("traced.file.openTimeMs", () -> () -> totalFileOpenTime.current() / 1_000_000.0);
+        registry.gauge("traced.string.comparisons", () -> totalStringComparisons::current);
+        registry.gauge("traced.lines.scanned", () -> totalLinesScanned::current);
+        registry.gauge("traced.requests.total", () -> totalRequests::current);
+        registry.gauge("traced.requests.sampled", () -> sampledRequests::current);
+        registry.gauge("traced.requests.unsampled", () -> unsampledRequests::current);
+        registry.gauge("traced.memory.used", () -> totalMemoryUsed::current);
+        registry.gauge("traced.mapped.failed", () -> MappedMetrics::failed);
+        timers.forEach(this::registerTimer);
+        requestCounters.forEach(this::registerCounter);
+    }
+    
+    private Timer registerTimer(String methodName, Timer timer) {
+        MetricRegistry registry = this.registry;
+        if (registry != null) {
+            String prefix = MetricRegistry.name("traced.method", methodName);
+            MethodLatencyHistogram latency = timer.latency;
+            registry.gauge(prefix + ".count", () -> latency::getSinceStartCount);
+            registry.gauge(prefix + ".meanMs", () -> latency::getSinceMarkMeanMs);
+            registry.gauge(prefix + ".p50Ms", () -> () -> latency.getSinceMarkPercentileMs(50.0));
+            registry.gauge(prefix + ".p90Ms", () -> () -> latency.getSinceMarkPercentileMs(90.0));
+            registry.gauge(prefix + ".p99Ms", () -> () -> latency.getSinceMarkPercentileMs(99.0));
+            registry.gauge(prefix + ".p999Ms", () -> () -> latency.getSinceMarkPercentileMs(99.9));
+            registry.gauge(prefix + ".maxMs", () -> () -> latency.getSinceMarkPercentileMs(100.0));
+        }
+        return timer;
+    }
+    
+    private Counter registerCounter(String endpoint, Counter counter) {
+        MetricRegistry registry = this.registry;
+        if (registry != null) {
+            registry.gauge(MetricRegistry.name("traced.requests", endpoint), () -> counter.count::current);
+        }
+        return counter;
+    }
+    
+    /**
+     * Record method execution time. Looks the timer up by name on every call,
+     * prefer a handle from timer on hot paths.
      */
     public void recordMethodExecution(String methodName, long executionTimeNanos) {
-        methodExecutionTimes.computeIfAbsent(methodName, k -> new LongAdder()).add(executionTimeNanos);
-        methodCallCounts.computeIfAbsent(methodName, k -> new AtomicLong()).incrementAndGet();
+        timer(methodName).record(executionTimeNanos);
+    }
+    
+    SlowRequestLog slowRequestLog() {
+        return slowRequests;
+    }
+    
+    long slowRequestThresholdNanos() {
+        return SLOW_REQUEST_NANOS;
     }
     
     /**
@@ -63,6 +223,10 @@ public class MetricsCollector {
         totalStringComparisons.increment();
     }
     
+    public void recordStringComparisons(long count) {
+        totalStringComparisons.add(count);
+    }
+    
     public void recordLinesScanned(long linesCount) {
         totalLinesScanned.add(linesCount);
     }
@@ -71,99 +235,614 @@ public class MetricsCollector {
      * Record request-level metrics
      */
     public void recordRequest(String endpoint) {
-        totalRequests.increment();
-        endpointMetrics.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+        requestCounter(endpoint).increment();
     }
     
     /**
-     * Record memory usage
+     * Record the outcome of the sampling decision for a traced request
+     */
+    public void recordSampledRequest() {
+        sampledRequests.increment();
+    }
+    
+    public void recordUnsampledRequest() {
+        unsampledRequests.increment();
+    }
+    
+    public SamplingPolicy getSamplingPolicy() {
+        return samplingPolicy;
+    }
+    
+    /**
+     * Switch the sampling policy; requests already running finish with the previous one
+     */
+    public void setSamplingPolicy(SamplingPolicy samplingPolicy) {
+        this.samplingPolicy = samplingPolicy;
+    }
+    
+    /**
+     * Record bytes allocated by a traced request, see TraceContext
      */
     public void recordMemoryUsage(long bytesUsed) {
         totalMemoryUsed.add(bytesUsed);
     }
     
     /**
-     * Get comprehensive metrics report
+     * Close the current second of every counter, and the latency intervals every HISTOGRAM_ROLL_SECONDS.
+     * Runs every second on the roller thread.
+     */
+    synchronized void rollCounters() {
+        long second = currentSecond();
+        counters.forEach(counter -> counter.roll(second));
+        requestCounters.values().forEach(counter -> counter.count.roll(second));
+        if (second - lastHistogramRollSecond >= HISTOGRAM_ROLL_SECONDS) {
+            rollLatencyIntervals(second);
+        }
+        if (mapped != null) {
+            mapped.heartbeat();
+        }
+    }
+    
+    /**
+     * Close the current interval of every counter and method, so everything recorded so far is visible
      */
-    public MetricsReport getMetricsReport() {
+    synchronized void roll() {
+        long second = currentSecond();
+        counters.forEach(counter -> counter.roll(second));
+        requestCounters.values().forEach(counter -> counter.count.roll(second));
+        rollLatencyIntervals(second);
+    }
+    
+    private void rollLatencyIntervals(long second) {
+        long now = System.currentTimeMillis();
+        timers.values().forEach(timer -> {
+            timer.recorder.roll(now, continuousLog, RUN);
+            if (timer.mappedLatency != null) {
+                timer.latency.mirrorTo(timer.mappedLatency);
+            }
+        });
+        lastHistogramRollSecond = second;
+    }
+    
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - originNanos);
+    }
+
+    /**
+     * Write the retained latency intervals of all methods in HdrHistogram log format.
+     * Every histogram is tagged run/method, e.g. traced/wordExists.
+     */
+    public void writeHistogramLog(OutputStream out, String run) {
+        roll();
+        PrintStream printStream = new PrintStream(out);
+        HistogramLogWriter writer = new HistogramLogWriter(printStream);
+        writeLogHeader(writer, run, startTimeMillis);
+        new TreeMap<>(timers).values().forEach(timer -> timer.latency.writeIntervals(writer, run));
+        printStream.flush();
+    }
+
+    /**
+     * Write all metrics in OpenMetrics text format, see OpenMetricsWriter
+     */
+    public void writeOpenMetrics(OutputStream out) throws IOException {
+        new OpenMetricsWriter(out).write(this);
+    }
+    
+    // Package-private live views for exporters, counted since start and read without building a report
+    
+    Map<String, Timer> timers() {
+        return timers;
+    }
+    
+    Map<String, Counter> requestCounters() {
+        return requestCounters;
+    }
+    
+    long totalFileReads() {
+        return totalFileReads.current();
+    }
+    
+    long totalBytesRead() {
+        return totalBytesRead.current();
+    }
+    
+    long totalFileOpenTimeNanos() {
+        return totalFileOpenTime.current();
+    }
+    
+    long totalStringComparisons() {
+        return totalStringComparisons.current();
+    }
+    
+    long totalLinesScanned() {
+        return totalLinesScanned.current();
+    }
+    
+    long sampledRequests() {
+        return sampledRequests.current();
+    }
+    
+    long unsampledRequests() {
+        return unsampledRequests.current();
+    }
+    
+    long totalMemoryUsed() {
+        return totalMemoryUsed.current();
+    }
+    
+    /**
+     * Get comprehensive metrics report: totals since the last reset and rolling windows, from one roll
+     */
+    public synchronized MetricsReport getMetricsReport() {
+        roll();
+        long now = System.currentTimeMillis();
+        long second = currentSecond();
         Map<String, Double> avgMethodTimes = new ConcurrentHashMap<>();
-        methodExecutionTimes.forEach((method, totalTime) -> {
-            long callCount = methodCallCounts.get(method).get();
-            avgMethodTimes.put(method, (double) totalTime.sum() / callCount / 1_000_000.0); // Convert to milliseconds
+        Map<String, Long> methodCallCounts = new ConcurrentHashMap<>();
+        Map<String, LatencyPercentiles> latencyPercentiles = new TreeMap<>();
+        Map<String, Map<String, LatencyPercentiles>> windowedLatencyPercentiles = new LinkedHashMap<>();
+        LATENCY_WINDOWS_MS.keySet().forEach(window -> windowedLatencyPercentiles.put(window, new TreeMap<>()));
+        timers.forEach((method, timer) -> {
+            // count and time come from the same rolled intervals, so the average is consistent
+            LatencyPercentiles total = timer.latency.getSinceMarkPercentiles();
+            LATENCY_WINDOWS_MS.forEach((window, windowMillis) -> {
+                LatencyPercentiles percentiles = timer.latency.getWindowPercentiles(windowMillis, now);
+                if (percentiles.count > 0) {
+                    windowedLatencyPercentiles.get(window).put(method, percentiles);
+                }
+            });
+            if (total.count == 0) {
+                return; // registered but not called since reset
+            }
+            methodCallCounts.put(method, total.count);
+            avgMethodTimes.put(method, timer.latency.getSinceMarkSum() / (double) total.count / 1_000_000.0); // Convert to milliseconds
+            latencyPercentiles.put(method, total);
+        });
+
+        Map<String, ResourceUsage> resourceUsage = new TreeMap<>();
+        timers.forEach((method, timer) -> {
+            ResourceUsage usage = ResourceUsage.from(timer);
+            if (usage != null) {
+                resourceUsage.put(method, usage);
+            }
+        });
+
+        Map<String, Long> endpointCallCounts = new ConcurrentHashMap<>();
+        requestCounters.forEach((endpoint, counter) -> {
+            long count = counter.count.sinceMark();
+            if (count > 0) {
+                endpointCallCounts.put(endpoint, count);
+            }
         });
         
-        return new MetricsReport(
-            avgMethodTimes,
-            methodCallCounts.entrySet().stream()
-                .collect(ConcurrentHashMap::new, 
-                    (map, entry) -> map.put(entry.getKey(), entry.getValue().get()), 
-                    ConcurrentHashMap::putAll),
-            totalFileReads.sum(),
-            totalBytesRead.sum(),
-            totalFileOpenTime.sum() / 1_000_000.0, // Convert to milliseconds
-            totalStringComparisons.sum(),
-            totalLinesScanned.sum(),
-            totalRequests.sum(),
-            endpointMetrics.entrySet().stream()
-                .collect(ConcurrentHashMap::new, 
-                    (map, entry) -> map.put(entry.getKey(), entry.getValue().sum()), 
-                    ConcurrentHashMap::putAll),
-            totalMemoryUsed.sum()
+        Map<String, WindowMetrics> windows = new LinkedHashMap<>();
+        LATENCY_WINDOWS_MS.forEach((window, windowMillis) ->
+            windows.put(window, windowMetrics(windowMillis, now, second)));
+        
+        TailLatency tailLatency = TailLatency.of(SLOW_REQUEST_NANOS / 1_000_000.0,
+            slowRequests.since(startNanos), PauseMonitor.getInstance(), startNanos);
+        
+        return MetricsReport.builder()
+            .methods(avgMethodTimes, methodCallCounts)
+            .fileReads(totalFileReads.sinceMark(), totalBytesRead.sinceMark(),
+                totalFileOpenTime.sinceMark() / 1_000_000.0) // Convert to milliseconds
+            .stringOperations(totalStringComparisons.sinceMark(), totalLinesScanned.sinceMark())
+            .requests(totalRequests.sinceMark(), endpointCallCounts)
+            .memoryUsed(totalMemoryUsed.sinceMark())
+            .latencyPercentiles(latencyPercentiles, windowedLatencyPercentiles)
+            .sampling(samplingPolicy.toString(), sampledRequests.sinceMark(), unsampledRequests.sinceMark())
+            .windows(windows)
+            .resourceUsage(resourceUsage)
+            .tailLatency(tailLatency)
+            .probeCost(ProbeCost.current())
+            .build();
+    }
+    
+    /**
+     * The report together with the since-reset latency histograms its percentiles come from,
+     * tagged for the BaselineStore
+     */
+    public synchronized RunSnapshot snapshot(String engine, String version, String commit) {
+        MetricsReport report = getMetricsReport();
+        Map<String, Histogram> latencies = new TreeMap<>();
+        timers.forEach((method, timer) -> {
+            if (report.methodCallCounts.containsKey(method)) {
+                latencies.put(method, timer.latency.copySinceMark());
+            }
+        });
+        return RunSnapshot.of(engine, version, commit, report, latencies);
+    }
+    
+    private WindowMetrics windowMetrics(long windowMillis, long nowMillis, long second) {
+        int windowSeconds = (int) TimeUnit.MILLISECONDS.toSeconds(windowMillis);
+        Map<String, Long> methodCallCounts = new TreeMap<>();
+        Map<String, Double> averageMethodTimesMs = new TreeMap<>();
+        timers.forEach((method, timer) -> {
+            long count = timer.latency.getWindowPercentiles(windowMillis, nowMillis).count;
+            if (count > 0) {
+                methodCallCounts.put(method, count);
+                averageMethodTimesMs.put(method,
+                    timer.latency.getWindowSumNanos(windowMillis, nowMillis) / (double) count / 1_000_000.0);
+            }
+        });
+        Map<String, Long> endpointCallCounts = new TreeMap<>();
+        requestCounters.forEach((endpoint, counter) -> {
+            long count = counter.count.window(windowSeconds, second);
+            if (count > 0) {
+                endpointCallCounts.put(endpoint, count);
+            }
+        });
+        return new WindowMetrics(
+            Math.min(windowSeconds, second + 1),
+            totalRequests.window(windowSeconds, second),
+            sampledRequests.window(windowSeconds, second),
+            unsampledRequests.window(windowSeconds, second),
+            endpointCallCounts,
+            methodCallCounts,
+            averageMethodTimesMs,
+            totalFileReads.window(windowSeconds, second),
+            totalBytesRead.window(windowSeconds, second),
+            totalFileOpenTime.window(windowSeconds, second) / 1_000_000.0,
+            totalStringComparisons.window(windowSeconds, second),
+            totalLinesScanned.window(windowSeconds, second),
+            totalMemoryUsed.window(windowSeconds, second)
         );
     }
     
     /**
-     * Reset all metrics
+     * Reset the since-reset totals. Nothing is cleared: everything recorded so far is rolled and a mark
+     * is set, so requests in flight are counted either before or after it, never lost or half counted.
+     * Rolling windows and exported (since start) values are not affected.
      */
-    public void reset() {
-        methodExecutionTimes.clear();
-        methodCallCounts.clear();
-        totalFileReads.reset();
-        totalBytesRead.reset();
-        totalFileOpenTime.reset();
-        totalStringComparisons.reset();
-        totalLinesScanned.reset();
-        totalRequests.reset();
-        endpointMetrics.clear();
-        totalMemoryUsed.reset();
+    public synchronized void reset() {
+        roll();
+        long now = System.currentTimeMillis();
+        startTimeMillis = now;
+        startNanos = System.nanoTime();
+        timers.values().forEach(timer -> {
+            timer.latency.mark(now);
+            timer.cpu.mark(now);
+            timer.allocation.mark(now);
+            timer.probes.mark(now);
+        });
+        counters.forEach(RollingCounter::mark);
+        requestCounters.values().forEach(counter -> counter.count.mark());
     }
     
+    private static Map<String, Long> windows() {
+        Map<String, Long> windows = new LinkedHashMap<>();
+        windows.put("1m", TimeUnit.MINUTES.toMillis(1));
+        windows.put("5m", TimeUnit.MINUTES.toMillis(5));
+        windows.put("15m", TimeUnit.MINUTES.toMillis(15));
+        return windows;
+    }
+
+    private static HistogramLogWriter openContinuousLog() {
+        String file = System.getProperty("metrics.histogram.log");
+        if (file == null) {
+            return null;
+        }
+        try {
+            HistogramLogWriter writer = new HistogramLogWriter(new PrintStream(new FileOutputStream(file), true));
+            writeLogHeader(writer, RUN, System.currentTimeMillis());
+            return writer;
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException("Cannot open histogram log " + file, e);
+        }
+    }
+
+    private static void writeLogHeader(HistogramLogWriter writer, String run, long startTimeMillis) {
+        writer.outputLogFormatVersion();
+        writer.outputComment("[Run: " + run + ", latencies in ns, max column in ms]");
+        writer.outputStartTime(startTimeMillis);
+        writer.setBaseTime(startTimeMillis);
+        writer.outputLegend();
+    }
+
     /**
-     * Metrics report data class
+     * Pre-resolved handle for timing one method: wall time of every call, and for calls measured with
+     * ThreadResources also CPU time, allocated bytes and the estimated time of the probes inside the call
      */
-    public static class MetricsReport {
-        public final Map<String, Double> averageMethodTimesMs;
+    public static final class Timer {
+        private final MethodLatencyHistogram latency;
+        private final MethodLatencyHistogram cpu;
+        private final MethodLatencyHistogram allocation;
+        private final MethodLatencyHistogram probes;
+        private final PerThreadRecorder recorder;
+        private final MappedMetrics.Histogram mappedLatency;
+
+        private Timer(MethodLatencyHistogram latency, MethodLatencyHistogram cpu, MethodLatencyHistogram allocation,
+                      MethodLatencyHistogram probes, MappedMetrics.Histogram mappedLatency) {
+            this.latency = latency;
+            this.cpu = cpu;
+            this.allocation = allocation;
+            this.probes = probes;
+            this.recorder = new PerThreadRecorder(latency, cpu, allocation, probes);
+            this.mappedLatency = mappedLatency;
+        }
+
+        public void record(long executionTimeNanos) {
+            recorder.record(executionTimeNanos, -1, -1, -1);
+        }
+
+        String name() {
+            return latency.methodName();
+        }
+
+        /**
+         * Record a call with its CPU time and allocated bytes; negative values (not measured) are skipped
+         */
+        public void record(long executionTimeNanos, long cpuNanos, long allocatedBytes) {
+            record(executionTimeNanos, cpuNanos, allocatedBytes, -1);
+        }
+
+        /**
+         * Record a call with its CPU time, allocated bytes and estimated probe time, see ProbeCost
+         */
+        public void record(long executionTimeNanos, long cpuNanos, long allocatedBytes, long probeNanos) {
+            recorder.record(executionTimeNanos, cpuNanos, allocatedBytes, probeNanos);
+        }
+        
+        MethodLatencyHistogram latency() {
+            return latency;
+        }
+    }
+
+    /**
+     * Pre-resolved handle for counting requests to one endpoint, also counted in total requests
+     */
+    public static final class Counter {
+        private final RollingCounter count;
+        private final RollingCounter totalRequests;
+
+        private Counter(RollingCounter count, RollingCounter totalRequests) {
+            this.count = count;
+            this.totalRequests = totalRequests;
+        }
+
+        public void increment() {
+            count.increment();
+            totalRequests.increment();
+        }
+
+        long count() {
+            return count.current();
+        }
+    }
+
+    /**
+     * Latency percentiles of one method in milliseconds
+     */
+    public static class LatencyPercentiles {
+        public final long count;
+        public final double p50Ms;
+        public final double p90Ms;
+        public final double p99Ms;
+        public final double p999Ms;
+        public final double maxMs;
+
+        public LatencyPercentiles(long count, double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+            this.count = count;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.p99Ms = p99Ms;
+            this.p999Ms = p999Ms;
+            this.maxMs = maxMs;
+        }
+
+        static LatencyPercentiles from(AbstractHistogram histogram) {
+            return new LatencyPercentiles(
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50.0) / 1_000_000.0,
+                histogram.getValueAtPercentile(90.0) / 1_000_000.0,
+                histogram.getValueAtPercentile(99.0) / 1_000_000.0,
+                histogram.getValueAtPercentile(99.9) / 1_000_000.0,
+                histogram.getMaxValue() / 1_000_000.0
+            );
+        }
+
+        @Override
+        public String toString() {
+            return String.format("p50 %8.3f  p90 %8.3f  p99 %8.3f  p99.9 %8.3f  max %8.3f ms (%d calls)",
+                p50Ms, p90Ms, p99Ms, p999Ms, maxMs, count);
+        }
+    }
+
+    /**
+     * CPU time and allocation per call of one method since reset. Wall time is over all calls,
+     * CPU and allocation over the calls that measured them (sampled requests), cpuCalls of calls.
+     * probeMeanMs is the estimated part of the wall time spent in the tracing probes, see ProbeCost.
+     */
+    public static class ResourceUsage {
+        public final long calls;
+        public final long cpuCalls;
+        public final double wallMeanMs;
+        public final double cpuMeanMs;
+        public final double cpuP50Ms;
+        public final double cpuP99Ms;
+        public final double allocatedMeanBytes;
+        public final long allocatedP50Bytes;
+        public final long allocatedP99Bytes;
+        public final long allocatedMaxBytes;
+        public final double probeMeanMs;
+
+        public ResourceUsage(long calls, long cpuCalls, double wallMeanMs, double cpuMeanMs, double cpuP50Ms,
+                             double cpuP99Ms, double allocatedMeanBytes, long allocatedP50Bytes,
+                             long allocatedP99Bytes, long allocatedMaxBytes, double probeMeanMs) {
+            this.calls = calls;
+            this.cpuCalls = cpuCalls;
+            this.wallMeanMs = wallMeanMs;
+            this.cpuMeanMs = cpuMeanMs;
+            this.cpuP50Ms = cpuP50Ms;
+            this.cpuP99Ms = cpuP99Ms;
+            this.allocatedMeanBytes = allocatedMeanBytes;
+            this.allocatedP50Bytes = allocatedP50Bytes;
+            this.allocatedP99Bytes = allocatedP99Bytes;
+            this.allocatedMaxBytes = allocatedMaxBytes;
+            this.probeMeanMs = probeMeanMs;
+        }
+
+        /**
+         * Usage of a timer since the last mark, or null when no call measured CPU or allocation
+         */
+        static ResourceUsage from(Timer timer) {
+            Histogram cpu = timer.cpu.copySinceMark();
+            Histogram allocation = timer.allocation.copySinceMark();
+            if (cpu.getTotalCount() == 0 && allocation.getTotalCount() == 0) {
+                return null;
+            }
+            long cpuCalls = cpu.getTotalCount();
+            long allocationCalls = allocation.getTotalCount();
+            return new ResourceUsage(
+                timer.latency.getSinceMarkCount(),
+                Math.max(cpuCalls, allocationCalls),
+                timer.latency.getSinceMarkMeanMs(),
+                timer.cpu.getSinceMarkMeanMs(),
+                cpu.getValueAtPercentile(50.0) / 1_000_000.0,
+                cpu.getValueAtPercentile(99.0) / 1_000_000.0,
+                timer.allocation.getSinceMarkMean(),
+                allocation.getValueAtPercentile(50.0),
+                allocation.getValueAtPercentile(99.0),
+                allocation.getMaxValue(),
+                timer.probes.getSinceMarkMeanMs()
+            );
+        }
+
+        /**
+         * Fraction of the wall time spent on CPU; low values mean the method mostly waits (I/O, locks, GC)
+         */
+        public double getCpuShare() {
+            return wallMeanMs == 0 ? 0 : Math.min(1.0, cpuMeanMs / wallMeanMs);
+        }
+
+        /**
+         * Fraction of the wall time that is instrumentation; close to 1 means the timing measures the probes
+         */
+        public double getProbeShare() {
+            return wallMeanMs == 0 ? 0 : Math.min(1.0, probeMeanMs / wallMeanMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("cpu %8.3f ms (p50 %.3f, p99 %.3f, %3.0f%% of wall)  alloc %,12.0f B (p50 %,d, p99 %,d, max %,d)"
+                    + "  probes %.4f ms (%.0f%%)",
+                cpuMeanMs, cpuP50Ms, cpuP99Ms, getCpuShare() * 100, allocatedMeanBytes,
+                allocatedP50Bytes, allocatedP99Bytes, allocatedMaxBytes, probeMeanMs, getProbeShare() * 100);
+        }
+    }
+
+    /**
+     * Counts and average method times over one rolling window, all from the same roll.
+     * coveredSeconds is shorter than the window while the application has been up for less than it.
+     */
+    public static class WindowMetrics {
+        public final long coveredSeconds;
+        public final long totalRequests;
+        public final long sampledRequests;
+        public final long unsampledRequests;
+        public final Map<String, Long> endpointCallCounts;
         public final Map<String, Long> methodCallCounts;
+        public final Map<String, Double> averageMethodTimesMs;
         public final long totalFileReads;
         public final long totalBytesRead;
         public final double totalFileOpenTimeMs;
         public final long totalStringComparisons;
         public final long totalLinesScanned;
-        public final long totalRequests;
-        public final Map<String, Long> endpointCallCounts;
         public final long totalMemoryUsed;
-        
-        public MetricsReport(Map<String, Double> averageMethodTimesMs,
-                           Map<String, Long> methodCallCounts,
-                           long totalFileReads,
-                           long totalBytesRead,
-                           double totalFileOpenTimeMs,
-                           long totalStringComparisons,
-                           long totalLinesScanned,
-                           long totalRequests,
-                           Map<String, Long> endpointCallCounts,
-                           long totalMemoryUsed) {
-            this.averageMethodTimesMs = averageMethodTimesMs;
+
+        public WindowMetrics(long coveredSeconds,
+                             long totalRequests,
+                             long sampledRequests,
+                             long unsampledRequests,
+                             Map<String, Long> endpointCallCounts,
+                             Map<String, Long> methodCallCounts,
+                             Map<String, Double> averageMethodTimesMs,
+                             long totalFileReads,
+                             long totalBytesRead,
+                             double totalFileOpenTimeMs,
+                             long totalStringComparisons,
+                             long totalLinesScanned,
+                             long totalMemoryUsed) {
+            this.coveredSeconds = coveredSeconds;
+            this.totalRequests = totalRequests;
+            this.sampledRequests = sampledRequests;
+            this.unsampledRequests = unsampledRequests;
+            this.endpointCallCounts = endpointCallCounts;
             this.methodCallCounts = methodCallCounts;
+            this.averageMethodTimesMs = averageMethodTimesMs;
             this.totalFileReads = totalFileReads;
             this.totalBytesRead = totalBytesRead;
             this.totalFileOpenTimeMs = totalFileOpenTimeMs;
             this.totalStringComparisons = totalStringComparisons;
             this.totalLinesScanned = totalLinesScanned;
-            this.totalRequests = totalRequests;
-            this.endpointCallCounts = endpointCallCounts;
             this.totalMemoryUsed = totalMemoryUsed;
         }
+
+        public double getRequestsPerSecond() {
+            return coveredSeconds == 0 ? 0 : (double) totalRequests / coveredSeconds;
+        }
+    }
+
+    /**
+     * Metrics report data class
+     */
+    public static class MetricsReport {
+        public final Map<String, Double> averageMethodTimesMs;
+        public final Map<String, Long> methodCallCounts;
+        public final long totalFileReads;
+        public final long totalBytesRead;
+        public final double totalFileOpenTimeMs;
+        public final long totalStringComparisons;
+        public final long totalLinesScanned;
+        public final long totalRequests;
+        public final Map<String, Long> endpointCallCounts;
+        public final long totalMemoryUsed;
+        public final Map<String, LatencyPercentiles> methodLatencyPercentiles;
+        public final Map<String, Map<String, LatencyPercentiles>> windowedMethodLatencyPercentiles;
+        public final String samplingPolicy;
+        public final long sampledRequests;
+        public final long unsampledRequests;
+        public final Map<String, WindowMetrics> windows;
+        public final Map<String, ResourceUsage> methodResourceUsage;
+        public final TailLatency tailLatency;
+        public final ProbeCost probeCost;
+        
+        private MetricsReport(Builder builder) {
+            this.averageMethodTimesMs = builder.averageMethodTimesMs;
+            this.methodCallCounts = builder.methodCallCounts;
+            this.totalFileReads = builder.totalFileReads;
+            this.totalBytesRead = builder.totalBytesRead;
+            this.totalFileOpenTimeMs = builder.totalFileOpenTimeMs;
+            this.totalStringComparisons = builder.totalStringComparisons;
+            this.totalLinesScanned = builder.totalLinesScanned;
+            this.totalRequests = builder.totalRequests;
+            this.endpointCallCounts = builder.endpointCallCounts;
+            this.totalMemoryUsed = builder.totalMemoryUsed;
+            this.methodLatencyPercentiles = builder.methodLatencyPercentiles;
+            this.windowedMethodLatencyPercentiles = builder.windowedMethodLatencyPercentiles;
+            this.samplingPolicy = builder.samplingPolicy;
+            this.sampledRequests = builder.sampledRequests;
+            this.unsampledRequests = builder.unsampledRequests;
+            this.windows = builder.windows;
+            this.methodResourceUsage = builder.methodResourceUsage;
+            this.tailLatency = builder.tailLatency;
+            this.probeCost = builder.probeCost;
+        }
+
+        /**
+         * Builder with empty maps and counts, policy "always", no slow requests and no probe calibration
+         */
+        public static Builder builder() {
+            return new Builder();
+        }
+        
+        /**
+         * Fraction of traced requests that kept full detail; 0 when none did, including when nothing was traced
+         */
+        public double getSamplingRate() {
+            long traced = sampledRequests + unsampledRequests;
+            return sampledRequests == 0 ? 0 : (double) sampledRequests / traced;
+        }
         
         @Override
         public String toString() {
@@ -174,6 +853,48 @@ public class MetricsCollector {
                 sb.append(String.format("%-30s: %8.2f ms (called %d times)\n", 
                     method, avgTime, methodCallCounts.get(method))));
             
+            sb.append("\n--- METHOD LATENCY PERCENTILES (since reset) ---\n");
+            methodLatencyPercentiles.forEach((method, percentiles) ->
+                sb.append(String.format("%-30s: %s\n", method, percentiles)));
+            windowedMethodLatencyPercentiles.forEach((window, percentilesByMethod) -> {
+                sb.append("\n--- METHOD LATENCY PERCENTILES (last ").append(window).append(") ---\n");
+                percentilesByMethod.forEach((method, percentiles) ->
+                    sb.append(String.format("%-30s: %s\n", method, percentiles)));
+            });
+            
+            if (!methodResourceUsage.isEmpty()) {
+                sb.append("\n--- RESOURCES PER CALL (since reset) ---\n");
+                methodResourceUsage.forEach((method, usage) ->
+                    sb.append(String.format("%-30s: %s\n", method, usage)));
+                if (probeCost.isCalibrated()) {
+                    sb.append("Probe cost (calibrated at startup): ").append(probeCost).append("\n");
+                }
+            }
+            
+            windows.forEach((window, metrics) -> {
+                sb.append("\n--- LAST ").append(window).append(" ---\n");
+                sb.append(String.format("Requests: %d (%.1f/s over %d s), string comparisons: %,d, file reads: %d\n",
+                    metrics.totalRequests, metrics.getRequestsPerSecond(), metrics.coveredSeconds,
+                    metrics.totalStringComparisons, metrics.totalFileReads));
+                metrics.averageMethodTimesMs.forEach((method, avgTime) ->
+                    sb.append(String.format("%-30s: %8.2f ms (called %d times)\n",
+                        method, avgTime, metrics.methodCallCounts.get(method))));
+            });
+            
+            sb.append(String.format("\n--- SLOW REQUESTS (>= %.0f ms, since reset) ---\n", tailLatency.thresholdMs));
+            sb.append(String.format("Slow requests: %d, %.2f ms in total: gc %.2f ms (%.1f%%), other pauses %.2f ms, "
+                    + "service %.2f ms\n", tailLatency.slowRequests, tailLatency.totalMs, tailLatency.gcPauseMs,
+                tailLatency.getGcShare() * 100, tailLatency.otherPauseMs, tailLatency.getServiceMs()));
+            sb.append(String.format("With gc pause: %d, with other pause: %d, during reload: %d\n",
+                tailLatency.requestsWithGcPause, tailLatency.requestsWithOtherPause, tailLatency.requestsDuringReload));
+            sb.append(String.format("JVM: %d gc pauses (%.2f ms), %d hiccups\n",
+                tailLatency.gcPauses, tailLatency.gcPauseTotalMs, tailLatency.hiccups));
+            tailLatency.slowest.forEach(request -> sb.append(request).append("\n"));
+            
+            sb.append("\n--- SAMPLING ---\n");
+            sb.append(String.format("Policy: %s, sampled %d of %d requests (%.1f%%)\n", samplingPolicy,
+                sampledRequests, sampledRequests + unsampledRequests, getSamplingRate() * 100));
+            
             sb.append("\n--- FILE I/O METRICS ---\n");
             sb.append(String.format("Total file reads: %d\n", totalFileReads));
             sb.append(String.format("Total bytes read: %,d\n", totalBytesRead));
@@ -189,9 +910,108 @@ public class MetricsCollector {
                 sb.append(String.format("%-20s: %d requests\n", endpoint, count)));
             
             sb.append("\n--- MEMORY USAGE ---\n");
-            sb.append(String.format("Total memory used: %,d bytes\n", totalMemoryUsed));
+            sb.append(String.format("Total memory allocated by traced requests: %,d bytes\n", totalMemoryUsed));
             
             return sb.toString();
         }
+
+        public static final class Builder {
+            private Map<String, Double> averageMethodTimesMs = Map.of();
+            private Map<String, Long> methodCallCounts = Map.of();
+            private long totalFileReads;
+            private long totalBytesRead;
+            private double totalFileOpenTimeMs;
+            private long totalStringComparisons;
+            private long totalLinesScanned;
+            private long totalRequests;
+            private Map<String, Long> endpointCallCounts = Map.of();
+            private long totalMemoryUsed;
+            private Map<String, LatencyPercentiles> methodLatencyPercentiles = Map.of();
+            private Map<String, Map<String, LatencyPercentiles>> windowedMethodLatencyPercentiles = Map.of();
+            private String samplingPolicy = "always";
+            private long sampledRequests;
+            private long unsampledRequests;
+            private Map<String, WindowMetrics> windows = Map.of();
+            private Map<String, ResourceUsage> methodResourceUsage = Map.of();
+            private TailLatency tailLatency = TailLatency.none();
+            private ProbeCost probeCost = ProbeCost.NONE;
+
+            private Builder() {
+            }
+
+            /**
+             * Average time and number of calls per method
+             */
+            public Builder methods(Map<String, Double> averageMethodTimesMs, Map<String, Long> methodCallCounts) {
+                this.averageMethodTimesMs = averageMethodTimesMs;
+                this.methodCallCounts = methodCallCounts;
+                return this;
+            }
+
+            public Builder fileReads(long totalFileReads, long totalBytesRead, double totalFileOpenTimeMs) {
+                this.totalFileReads = totalFileReads;
+                this.totalBytesRead = totalBytesRead;
+                this.totalFileOpenTimeMs = totalFileOpenTimeMs;
+                return this;
+            }
+
+            public Builder stringOperations(long totalStringComparisons, long totalLinesScanned) {
+                this.totalStringComparisons = totalStringComparisons;
+                this.totalLinesScanned = totalLinesScanned;
+                return this;
+            }
+
+            public Builder requests(long totalRequests, Map<String, Long> endpointCallCounts) {
+                this.totalRequests = totalRequests;
+                this.endpointCallCounts = endpointCallCounts;
+                return this;
+            }
+
+            public Builder memoryUsed(long totalMemoryUsed) {
+                this.totalMemoryUsed = totalMemoryUsed;
+                return this;
+            }
+
+            /**
+             * Percentiles since reset per method, and per rolling window and method
+             */
+            public Builder latencyPercentiles(Map<String, LatencyPercentiles> methodLatencyPercentiles,
+                                              Map<String, Map<String, LatencyPercentiles>> windowed) {
+                this.methodLatencyPercentiles = methodLatencyPercentiles;
+                this.windowedMethodLatencyPercentiles = windowed;
+                return this;
+            }
+
+            public Builder sampling(String samplingPolicy, long sampledRequests, long unsampledRequests) {
+                this.samplingPolicy = samplingPolicy;
+                this.sampledRequests = sampledRequests;
+                this.unsampledRequests = unsampledRequests;
+                return this;
+            }
+
+            public Builder windows(Map<String, WindowMetrics> windows) {
+                this.windows = windows;
+                return this;
+            }
+
+            public Builder resourceUsage(Map<String, ResourceUsage> methodResourceUsage) {
+                this.methodResourceUsage = methodResourceUsage;
+                return this;
+            }
+
+            public Builder tailLatency(TailLatency tailLatency) {
+                this.tailLatency = tailLatency;
+                return this;
+            }
+
+            public Builder probeCost(ProbeCost probeCost) {
+                this.probeCost = probeCost;
+                return this;
+            }
+
+            public MetricsReport build() {
+                return new MetricsReport(this);
+            }
+        }
     }
 }
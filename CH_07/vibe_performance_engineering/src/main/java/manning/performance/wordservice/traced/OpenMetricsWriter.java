@@ -0,0 +1,228 @@
+package manning.performance.wordservice.traced;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes MetricsCollector in OpenMetrics text format (application/openmetrics-text; version=1.0.0),
+ * which Prometheus scrapes directly:
+ * - word_service_method_duration_seconds   histogram per traced method
+ * - word_service_requests_total            requests per endpoint, sampled or not
+ * - word_service_traced_requests_total     requests by sampling outcome
+ * - word_service_file_*, word_service_string_comparisons_total, word_service_lines_scanned_total, ...
+ *
+ * Values are read straight from the collector's counters and histograms, without building a
+ * MetricsReport, and formatted as ASCII into one reused byte buffer that is flushed as it fills,
+ * so a scrape allocates the buffer and little else. Histogram buckets come from the rolled
+ * intervals and may lag the _sum by up to one roll interval (5 seconds).
+ */
+class OpenMetricsWriter {
+
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final long[] BUCKET_BOUNDS_NANOS = {
+        10_000L, 50_000L, 100_000L, 500_000L,
+        1_000_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+        100_000_000L, 250_000_000L, 500_000_000L,
+        1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_NUMBER_LENGTH = 32;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final long[] bucketCounts = new long[BUCKET_BOUNDS_NANOS.length + 1];
+    private int position;
+
+    OpenMetricsWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void write(MetricsCollector metrics) throws IOException {
+        try {
+            writeAll(metrics);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeAll(MetricsCollector metrics) {
+        String duration = "word_service_method_duration_seconds";
+        family(duration, "histogram", "seconds", "Execution time of traced methods in sampled requests.");
+        for (Map.Entry<String, MetricsCollector.Timer> timer : metrics.timers().entrySet()) {
+            writeHistogram(duration, timer.getKey(), timer.getValue());
+        }
+
+        family("word_service_requests", "counter", null, "Requests per traced endpoint, sampled or not.");
+        for (Map.Entry<String, MetricsCollector.Counter> counter : metrics.requestCounters().entrySet()) {
+            put("word_service_requests_total{endpoint=\"").putLabelValue(counter.getKey()).put("\"} ")
+                .put(counter.getValue().count()).newLine();
+        }
+
+        family("word_service_traced_requests", "counter", null, "Traced requests by sampling decision.");
+        put("word_service_traced_requests_total{sampled=\"true\"} ").put(metrics.sampledRequests()).newLine();
+        put("word_service_traced_requests_total{sampled=\"false\"} ").put(metrics.unsampledRequests()).newLine();
+
+        counter("word_service_file_reads", null, "Dictionary file reads.", metrics.totalFileReads());
+        counter("word_service_file_read_bytes", "bytes", "Bytes read from the dictionary file.",
+            metrics.totalBytesRead());
+        family("word_service_file_open_seconds", "counter", "seconds", "Time spent opening the dictionary file.");
+        put("word_service_file_open_seconds_total ").putSeconds(metrics.totalFileOpenTimeNanos()).newLine();
+        counter("word_service_string_comparisons", null, "String comparisons during dictionary scans.",
+            metrics.totalStringComparisons());
+        counter("word_service_lines_scanned", null, "Dictionary lines scanned.", metrics.totalLinesScanned());
+        counter("word_service_memory_used_bytes", "bytes", "Memory recorded by traced methods.",
+            metrics.totalMemoryUsed());
+
+        put("# EOF").newLine();
+        flush();
+    }
+
+    private void writeHistogram(String name, String method, MetricsCollector.Timer timer) {
+        long count = timer.latency().getCumulativeCounts(BUCKET_BOUNDS_NANOS, bucketCounts);
+        long sumNanos = bucketCounts[BUCKET_BOUNDS_NANOS.length];
+        for (int i = 0; i < BUCKET_BOUNDS_NANOS.length; i++) {
+            put(name).put("_bucket{method=\"").putLabelValue(method).put("\",le=\"")
+                .putSeconds(BUCKET_BOUNDS_NANOS[i]).put(BUCKET_BOUNDS_NANOS[i] % NANOS_PER_SECOND == 0 ? ".0" : "")
+                .put("\"} ").put(Math.min(bucketCounts[i], count)).newLine();
+        }
+        put(name).put("_bucket{method=\"").putLabelValue(method).put("\",le=\"+Inf\"} ").put(count).newLine();
+        put(name).put("_count{method=\"").putLabelValue(method).put("\"} ").put(count).newLine();
+        put(name).put("_sum{method=\"").putLabelValue(method).put("\"} ").putSeconds(sumNanos).newLine();
+    }
+
+    private void counter(String name, String unit, String help, long value) {
+        family(name, "counter", unit, help);
+        put(name).put("_total ").put(value).newLine();
+    }
+
+    private void family(String name, String type, String unit, String help) {
+        put("# TYPE ").put(name).put(" ").put(type).newLine();
+        if (unit != null) {
+            put("# UNIT ").put(name).put(" ").put(unit).newLine();
+        }
+        put("# HELP ").put(name).put(" ").put(help).newLine();
+    }
+
+    private OpenMetricsWriter put(String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            putByte((byte) ascii.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Label values are escaped (backslash, quote, newline) and UTF-8 encoded code point by code point,
+     * so characters outside the BMP (surrogate pairs) come out as one 4-byte sequence; a lone surrogate
+     * becomes '?', as String.getBytes would write it
+     */
+    private OpenMetricsWriter putLabelValue(String value) {
+        for (int i = 0; i < value.length(); ) {
+            int c = value.codePointAt(i);
+            i += Character.charCount(c);
+            if (c == '\\' || c == '"') {
+                putByte((byte) '\\');
+                putByte((byte) c);
+            } else if (c == '\n') {
+                putByte((byte) '\\');
+                putByte((byte) 'n');
+            } else if (c < 0x80) {
+                putByte((byte) c);
+            } else if (c < 0x800) {
+                putByte((byte) (0xC0 | c >> 6));
+                putByte((byte) (0x80 | c & 0x3F));
+            } else if (Character.isSurrogate((char) c)) {
+                putByte((byte) '?');
+            } else if (c < 0x10000) {
+                putByte((byte) (0xE0 | c >> 12));
+                putByte((byte) (0x80 | c >> 6 & 0x3F));
+                putByte((byte) (0x80 | c & 0x3F));
+            } else {
+                putByte((byte) (0xF0 | c >> 18));
+                putByte((byte) (0x80 | c >> 12 & 0x3F));
+                putByte((byte) (0x80 | c >> 6 & 0x3F));
+                putByte((byte) (0x80 | c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    private OpenMetricsWriter put(long value) {
+        ensureCapacity(MAX_NUMBER_LENGTH);
+        if (value == 0) {
+            buffer[position++] = '0';
+            return this;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = position;
+        while (value > 0) {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        reverse(start, position - 1);
+        return this;
+    }
+
+    /**
+     * Nanoseconds as decimal seconds, exact and without trailing zeros, e.g. 1500000 -> 0.0015
+     */
+    private OpenMetricsWriter putSeconds(long nanos) {
+        put(nanos / NANOS_PER_SECOND);
+        long fraction = nanos % NANOS_PER_SECOND;
+        if (fraction == 0) {
+            return this;
+        }
+        ensureCapacity(MAX_NUMBER_LENGTH);
+        buffer[position++] = '.';
+        int digits = 9;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[position + i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        position += digits;
+        return this;
+    }
+
+    private void newLine() {
+        putByte((byte) '\n');
+    }
+
+    private void putByte(byte b) {
+        ensureCapacity(1);
+        buffer[position++] = b;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            flush();
+        }
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte tmp = buffer[from];
+            buffer[from++] = buffer[to];
+            buffer[to--] = tmp;
+        }
+    }
+
+    private void flush() {
+        try {
+            out.write(buffer, 0, position);
+            position = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
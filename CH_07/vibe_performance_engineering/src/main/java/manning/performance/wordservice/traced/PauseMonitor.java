@@ -0,0 +1,168 @@
+package manning.performance.wordservice.traced;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timeline of the events that stall requests without being service work, so slow requests can be
+ * told apart from slow lookups:
+ * - GC: every collection reported by a GarbageCollectorMXBean notification that stops the application;
+ *   beans of concurrent cycles (e.g. "G1 Concurrent GC", "ZGC Cycles") are skipped
+ * - HICCUP: a thread sleeping 1 ms at a time woke up at least hiccupMillis late, like jHiccup does it.
+ *   That catches every stop of the world (safepoints for deoptimization, biased locks, stack walks,
+ *   GC pauses too) and OS scheduling stalls
+ * - RELOAD: dictionary reloads, recorded by VersionedDictionary; not a pause, but they build a whole
+ *   dictionary and compete for CPU and heap with the requests running at the same time
+ * GC times come from GcInfo in milliseconds on the JVM's management clock, which starts tens of
+ * milliseconds after RuntimeMXBean uptime does. They are placed on the System.nanoTime timeline with
+ * the origin estimated from the notifications themselves: a notification arrives after its GC ended,
+ * so arrival minus end time is an upper bound of the origin and the smallest one seen is kept. The
+ * first notification is slow to arrive (tens of ms here), after a few collections times are exact to
+ * about a millisecond. The newest MAX_EVENTS events are kept.
+ * Start the app with -Dpauses.hiccupMillis=N to change the hiccup threshold (default 5).
+ */
+public class PauseMonitor {
+
+    public enum Kind { GC, HICCUP, RELOAD }
+
+    static final int MAX_EVENTS = 4096;
+    private static final long HICCUP_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final PauseMonitor INSTANCE =
+        new PauseMonitor(TimeUnit.MILLISECONDS.toNanos(Long.getLong("pauses.hiccupMillis", 5)));
+
+    private final long hiccupThresholdNanos;
+    private long gcClockOriginNanos = Long.MAX_VALUE; // guarded by this
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Pause[] events = new Pause[MAX_EVENTS];
+    private long recorded; // guarded by this
+
+    PauseMonitor(long hiccupThresholdNanos) {
+        this.hiccupThresholdNanos = hiccupThresholdNanos;
+    }
+
+    public static PauseMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Subscribe to GC notifications and start the hiccup thread; calling it again does nothing
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter && stopsTheWorld(collector.getName())) {
+                ((NotificationEmitter) collector).addNotificationListener(this::onGarbageCollection,
+                    notification -> GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                        .equals(notification.getType()), null);
+            }
+        }
+        Thread hiccups = new Thread(this::measureHiccups, "pause-hiccups");
+        hiccups.setDaemon(true);
+        hiccups.start();
+    }
+
+    static boolean stopsTheWorld(String collectorName) {
+        return !collectorName.contains("Concurrent") && !collectorName.contains("Cycles");
+    }
+
+    private synchronized void onGarbageCollection(Notification notification, Object handback) {
+        long arrivedNanos = System.nanoTime();
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        GcInfo gc = info.getGcInfo();
+        gcClockOriginNanos = Math.min(gcClockOriginNanos,
+            arrivedNanos - TimeUnit.MILLISECONDS.toNanos(gc.getEndTime()));
+        record(Kind.GC, info.getGcName() + " (" + info.getGcCause() + ")",
+            gcClockOriginNanos + TimeUnit.MILLISECONDS.toNanos(gc.getStartTime()),
+            TimeUnit.MILLISECONDS.toNanos(gc.getDuration()));
+    }
+
+    private void measureHiccups() {
+        long expected = System.nanoTime() + HICCUP_RESOLUTION_NANOS;
+        while (true) {
+            LockSupport.parkNanos(HICCUP_RESOLUTION_NANOS);
+            long now = System.nanoTime();
+            long late = now - expected;
+            if (late >= hiccupThresholdNanos) {
+                record(Kind.HICCUP, "thread woke up late", expected, late);
+            }
+            expected = now + HICCUP_RESOLUTION_NANOS;
+        }
+    }
+
+    /**
+     * Add an event to the timeline, startNanos on the System.nanoTime clock
+     */
+    public synchronized void record(Kind kind, String cause, long startNanos, long durationNanos) {
+        events[(int) (recorded++ % MAX_EVENTS)] = new Pause(kind, cause, startNanos, durationNanos);
+    }
+
+    /**
+     * Retained events that ended after fromNanos, oldest first
+     */
+    public synchronized List<Pause> since(long fromNanos) {
+        return overlapping(fromNanos, Long.MAX_VALUE);
+    }
+
+    /**
+     * Retained events that overlap startNanos..endNanos, oldest first
+     */
+    public synchronized List<Pause> overlapping(long startNanos, long endNanos) {
+        List<Pause> pauses = new ArrayList<>();
+        for (long i = Math.max(0, recorded - MAX_EVENTS); i < recorded; i++) {
+            Pause pause = events[(int) (i % MAX_EVENTS)];
+            if (pause.overlap(startNanos, endNanos) > 0) {
+                pauses.add(pause);
+            }
+        }
+        return pauses;
+    }
+
+    /**
+     * One event on the timeline
+     */
+    public static class Pause {
+        public final Kind kind;
+        public final String cause;
+        public final long startNanos;
+        public final long durationNanos;
+
+        public Pause(Kind kind, String cause, long startNanos, long durationNanos) {
+            this.kind = kind;
+            this.cause = cause;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        public long endNanos() {
+            return startNanos + durationNanos;
+        }
+
+        /**
+         * Nanoseconds of this event within fromNanos..toNanos; zero-length events count 1 ns at their start
+         */
+        long overlap(long fromNanos, long toNanos) {
+            long end = Math.max(endNanos(), startNanos + 1);
+            return Math.max(0, Math.min(end, toNanos) - Math.max(startNanos, fromNanos));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %.1f ms: %s", kind, durationNanos / 1_000_000.0, cause);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.IntCountsHistogram;
+import org.HdrHistogram.WriterReaderPhaser;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Write side of a Timer: every thread records into a stripe of its own, one per thread and Timer, the way
+ * HdrHistogram's SingleWriterRecorder does it. A stripe holds the active and inactive interval of the
+ * four values of a call (wall time, CPU time, allocated bytes, probe time) as plain int-count histograms
+ * and sums, guarded by one WriterReaderPhaser. Recording a call is a thread-local lookup, a phaser enter
+ * and exit (two increments of a counter only this thread writes) and plain histogram writes; threads
+ * never write to a shared cache line.
+ *
+ * A roll flips every stripe, adds the closed intervals to the MethodLatencyHistograms and closes those.
+ * Stripes of threads that ended are drained one last time and dropped, so memory follows the threads
+ * that record: histograms grow with the largest value seen, around 30 KB per thread and Timer for
+ * millisecond latencies.
+ */
+final class PerThreadRecorder {
+
+    private static final int LATENCY = 0;
+    private static final int CPU = 1;
+    private static final int ALLOCATION = 2;
+    private static final int PROBES = 3;
+
+    private final MethodLatencyHistogram[] histograms;
+    private final long[] highestTrackableValues;
+    private final Queue<Stripe> stripes = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Stripe> stripe = ThreadLocal.withInitial(this::newStripe);
+
+    PerThreadRecorder(MethodLatencyHistogram latency, MethodLatencyHistogram cpu,
+                      MethodLatencyHistogram allocation, MethodLatencyHistogram probes) {
+        this.histograms = new MethodLatencyHistogram[] {latency, cpu, allocation, probes};
+        this.highestTrackableValues = new long[histograms.length];
+        for (int i = 0; i < histograms.length; i++) {
+            highestTrackableValues[i] = histograms[i].highestTrackableValue();
+        }
+    }
+
+    /**
+     * Record one call; negative values (not measured) are skipped
+     */
+    void record(long executionTimeNanos, long cpuNanos, long allocatedBytes, long probeNanos) {
+        Stripe stripe = this.stripe.get();
+        long stamp = stripe.phaser.writerCriticalSectionEnter();
+        try {
+            Interval interval = stripe.active;
+            interval.record(LATENCY, executionTimeNanos, highestTrackableValues);
+            if (cpuNanos >= 0) {
+                interval.record(CPU, cpuNanos, highestTrackableValues);
+            }
+            if (allocatedBytes >= 0) {
+                interval.record(ALLOCATION, allocatedBytes, highestTrackableValues);
+            }
+            if (probeNanos >= 0) {
+                interval.record(PROBES, probeNanos, highestTrackableValues);
+            }
+        } finally {
+            stripe.phaser.writerCriticalSectionExit(stamp);
+        }
+    }
+
+    /**
+     * Merge the closed interval of every thread and roll the histograms; only the latency goes to the log
+     */
+    synchronized void roll(long nowMillis, HistogramLogWriter log, String run) {
+        for (Iterator<Stripe> iterator = stripes.iterator(); iterator.hasNext(); ) {
+            Stripe stripe = iterator.next();
+            boolean ended = !stripe.owner.isAlive(); // checked first, so nothing is recorded after the drain
+            stripe.drainInto(histograms);
+            if (ended) {
+                iterator.remove();
+            }
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i].roll(nowMillis, i == LATENCY ? log : null, run);
+        }
+    }
+
+    /**
+     * Threads currently holding a stripe
+     */
+    int threads() {
+        return stripes.size();
+    }
+
+    private Stripe newStripe() {
+        Stripe stripe = new Stripe(Thread.currentThread(), histograms.length);
+        stripes.add(stripe);
+        return stripe;
+    }
+
+    private static final class Stripe {
+        private final Thread owner;
+        private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+        private volatile Interval active;
+        private Interval inactive;
+
+        private Stripe(Thread owner, int values) {
+            this.owner = owner;
+            this.active = new Interval(values);
+            this.inactive = new Interval(values);
+        }
+
+        /**
+         * Swap the active interval for a cleared one, wait until the owner is no longer in the old one
+         * and add it to the histograms
+         */
+        private void drainInto(MethodLatencyHistogram[] histograms) {
+            phaser.readerLock();
+            try {
+                Interval next = inactive;
+                next.reset();
+                inactive = active;
+                active = next;
+                phaser.flipPhase();
+                for (int i = 0; i < histograms.length; i++) {
+                    if (inactive.histograms[i].getTotalCount() > 0) {
+                        histograms[i].addToInterval(inactive.histograms[i], inactive.sums[i]);
+                    }
+                }
+            } finally {
+                phaser.readerUnlock();
+            }
+        }
+    }
+
+    /**
+     * Written by the owning thread only, read by the roller after a flip
+     */
+    private static final class Interval {
+        private final IntCountsHistogram[] histograms;
+        private final long[] sums;
+
+        private Interval(int values) {
+            histograms = new IntCountsHistogram[values];
+            for (int i = 0; i < values; i++) {
+                histograms[i] = new IntCountsHistogram(MethodLatencyHistogram.SIGNIFICANT_DIGITS);
+            }
+            sums = new long[values];
+        }
+
+        private void record(int index, long value, long[] highestTrackableValues) {
+            histograms[index].recordValue(Math.min(value, highestTrackableValues[index]));
+            sums[index] += value;
+        }
+
+        private void reset() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i].reset();
+                sums[i] = 0;
+            }
+        }
+    }
+}
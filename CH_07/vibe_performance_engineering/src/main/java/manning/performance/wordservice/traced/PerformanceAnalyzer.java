@@ -1,18 +1,89 @@
 package manning.performance.wordservice.traced;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Utility class to analyze performance metrics and identify hot paths
  * and optimization opportunities in the word-of-the-day application.
+ * When requests are sampled, totals taken from sampled requests (method time, file reads,
+ * string comparisons) are scaled up by the sampling rate before they are compared with request counts.
+ * When no request was sampled there is nothing to scale: shares and estimates are reported as unavailable.
+ * The same report can be produced offline from a JFR recording, see fromRecording.
+ * Time shares are relative to the measured request time (endpoint timers, or all traced methods when
+ * there are none) and string operations are costed with a String.equals timing taken once per JVM.
+ * Allocation and CPU time per call come from ThreadResources and are only present for traced requests.
+ * Method times are net of the estimated tracing probes inside them (ProbeCost); methods whose time is
+ * mostly probes are flagged, their numbers say more about the tracing than about the code.
+ * Slow requests are split into GC pauses, other JVM pauses and service work, see TailLatency.
+ * To compare runs with each other, see RunSnapshot and RegressionDetector.
  */
 public class PerformanceAnalyzer {
     
+    private static final int TOP_FRAMES = 10;
+    private static final String ENDPOINT_SUFFIX = "_endpoint";
+    private static final long ALLOCATION_WARNING_BYTES = 64 * 1024;
+    private static final long ALLOCATION_CRITICAL_BYTES = 1024 * 1024;
+    private static final double WAITING_CPU_SHARE = 0.5;
+    private static final double PAUSE_DOMINATED_SHARE = 0.3;
+    private static final double INSTRUMENTATION_DOMINATED_SHARE = 0.5;
+    
     private final MetricsCollector.MetricsReport report;
+    private final RecordingProfile profile;
+    private final double scale;
     
     public PerformanceAnalyzer(MetricsCollector.MetricsReport report) {
+        this(report, null);
+    }
+    
+    public PerformanceAnalyzer(MetricsCollector.MetricsReport report, RecordingProfile profile) {
         this.report = report;
+        this.profile = profile;
+        this.scale = hasSampledRequests() ? 1.0 / report.getSamplingRate() : 0;
+    }
+    
+    /**
+     * Analyze a JFR recording of the untraced services (e.g. started with
+     * -XX:StartFlightRecording=settings=profile,filename=word-service.jfr). Method times and counts
+     * come from the word service events, hot frames and allocations from JFR's own samples.
+     */
+    public static PerformanceAnalyzer fromRecording(Path recording) throws IOException {
+        return JfrRecordingReader.read(recording);
+    }
+    
+    /**
+     * Print the report for a recording: PerformanceAnalyzer word-service.jfr
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PerformanceAnalyzer <recording.jfr>");
+            System.exit(1);
+        }
+        System.out.println(fromRecording(Paths.get(args[0])).generateReport());
+    }
+    
+    /**
+     * False when every traced request was dropped by the sampling policy, e.g. tail sampling without slow requests
+     */
+    public boolean hasSampledRequests() {
+        return report.sampledRequests > 0;
+    }
+    
+    public MetricsCollector.MetricsReport getReport() {
+        return report;
+    }
+    
+    /**
+     * Execution and allocation samples, only present when analyzing a JFR recording
+     */
+    public RecordingProfile getProfile() {
+        return profile;
     }
     
     /**
@@ -23,7 +94,7 @@ public class PerformanceAnalyzer {
         Map<String, Double> methodImpact = report.averageMethodTimesMs.entrySet().stream()
             .collect(Collectors.toMap(
                 Map.Entry::getKey,
-                entry -> entry.getValue() * report.methodCallCounts.get(entry.getKey())
+                entry -> netTimeMs(entry.getKey()) * report.methodCallCounts.get(entry.getKey()) * scale
             ));
         
         // Find the method with highest impact
@@ -33,12 +104,10 @@ public class PerformanceAnalyzer {
             .orElse("unknown");
         
         // Calculate efficiency metrics
-        double totalRequestTime = report.averageMethodTimesMs.values().stream()
-            .mapToDouble(Double::doubleValue)
-            .sum();
-        
-        double fileIOTimePercentage = (report.totalFileOpenTimeMs / totalRequestTime) * 100;
-        double stringOpsTimePercentage = estimateStringOpsTimePercentage();
+        double requestTimeMs = measuredRequestTimeMs(methodImpact);
+        double fileIOTimePercentage = share(report.totalFileOpenTimeMs * scale, requestTimeMs);
+        double stringOpsTimePercentage = share(
+            report.totalStringComparisons * scale * report.probeCost.comparisonNanos / 1_000_000.0, requestTimeMs);
         
         return new HotPathAnalysis(
             hottestMethod,
@@ -50,18 +119,39 @@ public class PerformanceAnalyzer {
     }
     
     /**
-     * Estimate the percentage of time spent on string operations
-     * Based on the number of string comparisons relative to total operations
+     * Average time of a method without the estimated probe time inside it
      */
-    private double estimateStringOpsTimePercentage() {
-        if (report.totalRequests == 0) return 0;
-        
-        // Rough estimate: each string comparison takes ~1-10 nanoseconds
-        // This is a heuristic based on typical string comparison performance
-        long estimatedStringOpsTime = report.totalStringComparisons * 5; // 5ns per comparison
-        double totalEstimatedTime = report.totalRequests * 1_000_000; // 1ms per request estimate
-        
-        return (estimatedStringOpsTime / totalEstimatedTime) * 100;
+    public double netTimeMs(String method) {
+        return Math.max(0, report.averageMethodTimesMs.getOrDefault(method, 0.0) - probeTimeMs(method));
+    }
+    
+    private double probeTimeMs(String method) {
+        MetricsCollector.ResourceUsage usage = report.methodResourceUsage.get(method);
+        return usage == null ? 0 : usage.probeMeanMs;
+    }
+    
+    /**
+     * Methods whose measured time is mostly tracing probes, largest share first
+     */
+    public List<String> instrumentationDominatedMethods() {
+        return report.methodResourceUsage.entrySet().stream()
+            .filter(entry -> entry.getValue().getProbeShare() >= INSTRUMENTATION_DOMINATED_SHARE)
+            .sorted(Map.Entry.<String, MetricsCollector.ResourceUsage>comparingByValue(
+                Comparator.comparingDouble(MetricsCollector.ResourceUsage::getProbeShare)).reversed())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Total time of the request-level timers (@Traced resource methods), which contain the service
+     * methods; reports without them (e.g. JFR recordings) only have service methods, which do not nest
+     */
+    private static double measuredRequestTimeMs(Map<String, Double> methodImpact) {
+        boolean hasEndpoints = methodImpact.keySet().stream().anyMatch(method -> method.endsWith(ENDPOINT_SUFFIX));
+        return methodImpact.entrySet().stream()
+            .filter(entry -> !hasEndpoints || entry.getKey().endsWith(ENDPOINT_SUFFIX))
+            .mapToDouble(Map.Entry::getValue)
+            .sum();
     }
     
     /**
@@ -71,7 +161,7 @@ public class PerformanceAnalyzer {
         StringBuilder recommendations = new StringBuilder();
         
         // File I/O analysis
-        if (report.totalFileReads > report.totalRequests) {
+        if (report.totalFileReads * scale > report.totalRequests) {
             recommendations.append("🔴 CRITICAL: File is being read multiple times per request!\n");
             recommendations.append("   Recommendation: Cache the dictionary in memory (HashMap/HashSet)\n");
             recommendations.append("   Expected improvement: 90-99% reduction in response time\n\n");
@@ -84,11 +174,73 @@ public class PerformanceAnalyzer {
             recommendations.append("   Expected improvement: 95-99% reduction in lookup time\n\n");
         }
         
-        // Memory usage analysis
-        if (report.totalMemoryUsed > 0) {
-            recommendations.append("📊 MEMORY: Consider memory usage patterns\n");
-            recommendations.append("   Current memory usage: ").append(report.totalMemoryUsed).append(" bytes\n");
-            recommendations.append("   Recommendation: Monitor memory usage with caching solution\n\n");
+        // Memory usage analysis, bytes allocated per traced request
+        if (report.totalMemoryUsed > 0 && report.sampledRequests > 0) {
+            recommendations.append("📊 MEMORY: ").append(String.format("%,d", report.totalMemoryUsed / report.sampledRequests))
+                         .append(" bytes allocated per traced request\n");
+            recommendations.append("   Recommendation: Monitor GC activity, request allocations are garbage once the response is sent\n\n");
+        }
+        
+        // Allocation and CPU per call, only for traced requests
+        report.methodResourceUsage.entrySet().stream()
+            .max(Map.Entry.comparingByValue(Comparator.comparingDouble(usage -> usage.allocatedMeanBytes)))
+            .filter(top -> top.getValue().allocatedMeanBytes >= ALLOCATION_WARNING_BYTES)
+            .ifPresent(top -> {
+                recommendations.append(top.getValue().allocatedMeanBytes >= ALLOCATION_CRITICAL_BYTES ? "🔴" : "🟡")
+                             .append(" ALLOCATION: ").append(top.getKey())
+                             .append(String.format(" allocates %,.0f bytes per call (p99 %,d)\n",
+                                 top.getValue().allocatedMeanBytes, top.getValue().allocatedP99Bytes));
+                recommendations.append("   Recommendation: Avoid per-line String copies (Scanner.nextLine) and per-call buffers,\n");
+                recommendations.append("   look up in a cached structure instead of reading the file\n\n");
+            });
+        report.methodResourceUsage.entrySet().stream()
+            .filter(entry -> entry.getValue().cpuCalls > 0 && entry.getValue().getCpuShare() < WAITING_CPU_SHARE)
+            .max(Map.Entry.comparingByValue(Comparator.comparingDouble(usage -> usage.wallMeanMs)))
+            .ifPresent(top -> {
+                recommendations.append("⏳ WAITING: ").append(top.getKey())
+                             .append(String.format(" is on CPU for %.0f%% of its %.2f ms\n",
+                                 top.getValue().getCpuShare() * 100, top.getValue().wallMeanMs));
+                recommendations.append("   Recommendation: The time goes to I/O, locks or GC pauses, not computation;\n");
+                recommendations.append("   profile in wall-clock mode rather than optimizing code paths\n\n");
+            });
+        
+        // Instrumentation analysis, timings that mostly measure the probes
+        List<String> dominated = instrumentationDominatedMethods();
+        if (!dominated.isEmpty()) {
+            MetricsCollector.ResourceUsage top = report.methodResourceUsage.get(dominated.get(0));
+            recommendations.append("🔬 INSTRUMENTATION: ").append(dominated.get(0))
+                         .append(String.format(" spends %.0f%% of its %.4f ms in tracing probes",
+                             top.getProbeShare() * 100, top.wallMeanMs))
+                         .append(dominated.size() > 1 ? " (" + (dominated.size() - 1) + " more methods)\n" : "\n");
+            recommendations.append("   Recommendation: Do not optimize by these numbers; stop tracing it or measure it\n");
+            recommendations.append("   with JMH or a JFR recording instead\n\n");
+        }
+        
+        // Tail latency analysis, pauses vs service work in slow requests
+        TailLatency tail = report.tailLatency;
+        if (tail.slowRequests > 0) {
+            if (tail.getGcShare() >= PAUSE_DOMINATED_SHARE) {
+                recommendations.append("🟠 GC: ").append(String.format("%.0f%%", tail.getGcShare() * 100))
+                             .append(" of slow request time was spent in GC pauses (")
+                             .append(tail.requestsWithGcPause).append(" of ").append(tail.slowRequests)
+                             .append(" slow requests overlapped one)\n");
+                recommendations.append("   Recommendation: Reduce allocation per request or size the heap and collector\n");
+                recommendations.append("   before optimizing the lookup itself\n\n");
+            } else if (tail.getPauseShare() >= PAUSE_DOMINATED_SHARE) {
+                recommendations.append("🟠 JVM PAUSES: ").append(String.format("%.0f%%", tail.getPauseShare() * 100))
+                             .append(" of slow request time was spent in pauses, mostly not GC\n");
+                recommendations.append("   Recommendation: Check safepoints (-Xlog:safepoint) and CPU throttling of the host\n\n");
+            } else {
+                recommendations.append("🎯 TAIL LATENCY: ")
+                             .append(String.format("%.0f%%", (1 - tail.getPauseShare()) * 100))
+                             .append(" of slow request time is service work, not pauses\n");
+                recommendations.append("   Recommendation: Profile the slow endpoint (admin task profile)\n\n");
+            }
+            if (tail.requestsDuringReload > 0) {
+                recommendations.append("🔄 RELOAD: ").append(tail.requestsDuringReload)
+                             .append(" slow requests ran during a dictionary reload\n");
+                recommendations.append("   Recommendation: Reload off-peak or build the new dictionary with less garbage\n\n");
+            }
         }
         
         // Endpoint analysis
@@ -100,6 +252,22 @@ public class PerformanceAnalyzer {
             recommendations.append("   Priority: HIGH - This endpoint needs immediate optimization\n\n");
         }
         
+        // Profile analysis, only for JFR recordings
+        if (profile != null) {
+            topShare(profile.applicationFrameSamples, profile.executionSamples).ifPresent(top -> {
+                recommendations.append("🔥 CPU: ").append(top.getKey()).append(" is on ")
+                             .append(String.format("%.0f%%", share(top.getValue(), profile.executionSamples)))
+                             .append(" of execution samples\n");
+                recommendations.append("   Recommendation: Start optimizing there, it dominates CPU time\n\n");
+            });
+            topShare(profile.allocatedBytesByFrame, profile.allocatedBytes).ifPresent(top -> {
+                recommendations.append("🟠 ALLOCATION: ").append(top.getKey()).append(" allocates ")
+                             .append(String.format("%.0f%%", share(top.getValue(), profile.allocatedBytes)))
+                             .append(" of sampled bytes\n");
+                recommendations.append("   Recommendation: Avoid per-request copies (e.g. Scanner lines), reuse or cache\n\n");
+            });
+        }
+        
         if (recommendations.length() == 0) {
             recommendations.append("✅ No critical performance issues detected.\n");
         }
@@ -107,6 +275,28 @@ public class PerformanceAnalyzer {
         return recommendations.toString();
     }
     
+    /**
+     * The largest entry if it accounts for at least 30% of the total
+     */
+    private static Optional<Map.Entry<String, Long>> topShare(Map<String, Long> values, long total) {
+        return values.entrySet().stream()
+            .max(Map.Entry.comparingByValue())
+            .filter(top -> share(top.getValue(), total) >= 30);
+    }
+    
+    private static double share(double value, double total) {
+        return total == 0 ? 0 : value * 100.0 / total;
+    }
+    
+    private static void appendTop(StringBuilder report, Map<String, Long> values, long total, String unit) {
+        values.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(TOP_FRAMES)
+            .forEach(entry -> report.append(String.format("%-60s: %,12d %s (%5.1f%%)\n",
+                entry.getKey(), entry.getValue(), unit, share(entry.getValue(), total))));
+        report.append("\n");
+    }
+    
     /**
      * Generate a comprehensive performance report
      */
@@ -120,19 +310,84 @@ public class PerformanceAnalyzer {
         
         report.append("📈 HOT PATH ANALYSIS\n");
         report.append("-".repeat(40)).append("\n");
+        report.append("Sampling: ").append(this.report.samplingPolicy);
+        if (!hasSampledRequests()) {
+            report.append(String.format(" (none of %d traced requests sampled, no estimates available)\n",
+                this.report.unsampledRequests));
+        } else {
+            report.append(String.format(" (%.1f%% of requests traced", this.report.getSamplingRate() * 100))
+                  .append(scale > 1 ? String.format(", estimates scaled by %.1fx)\n", scale) : ")\n");
+        }
+        if (this.report.samplingPolicy.startsWith("tail")) {
+            report.append("Note: tail sampling keeps only slow requests, averages are biased towards the tail\n");
+        }
         report.append("Hottest method: ").append(analysis.hottestMethod).append("\n");
-        report.append("File I/O time percentage: ").append(String.format("%.1f", analysis.fileIOTimePercentage)).append("%\n");
-        report.append("String operations time percentage: ").append(String.format("%.1f", analysis.stringOpsTimePercentage)).append("%\n\n");
+        if (hasSampledRequests()) {
+            report.append("File I/O time percentage: ").append(String.format("%.1f", analysis.fileIOTimePercentage)).append("%\n");
+            if (this.report.probeCost.isCalibrated()) {
+                report.append("String operations time percentage: ").append(String.format("%.1f", analysis.stringOpsTimePercentage))
+                      .append(String.format("%% (%.1f ns per comparison, measured)\n\n", this.report.probeCost.comparisonNanos));
+            } else {
+                report.append("String operations time percentage: n/a (probe cost not calibrated)\n\n");
+            }
+        } else {
+            report.append("File I/O time percentage: n/a\n");
+            report.append("String operations time percentage: n/a\n\n");
+        }
         
         report.append("📊 METHOD IMPACT ANALYSIS\n");
         report.append("-".repeat(40)).append("\n");
         analysis.methodImpact.entrySet().stream()
             .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
             .forEach(entry -> 
-                report.append(String.format("%-30s: %8.2f ms total impact\n", 
+                report.append(String.format("%-30s: %8.2f ms total impact (net of probes)\n", 
                     entry.getKey(), entry.getValue())));
         report.append("\n");
         
+        ProbeCost probeCost = this.report.probeCost;
+        if (probeCost.isCalibrated() && !this.report.methodResourceUsage.isEmpty()) {
+            report.append("🔬 INSTRUMENTATION OVERHEAD\n");
+            report.append("-".repeat(40)).append("\n");
+            report.append("Probe cost: ").append(probeCost).append("\n");
+            this.report.methodResourceUsage.forEach((method, usage) ->
+                report.append(String.format("%-30s: %10.4f ms measured, %10.4f ms probes, %10.4f ms net (%3.0f%% probes)%s\n",
+                    method, this.report.averageMethodTimesMs.getOrDefault(method, usage.wallMeanMs),
+                    usage.probeMeanMs, netTimeMs(method), usage.getProbeShare() * 100,
+                    usage.getProbeShare() >= INSTRUMENTATION_DOMINATED_SHARE ? "  ⚠ instrumentation dominated" : "")));
+            report.append("\n");
+        }
+        
+        TailLatency tail = this.report.tailLatency;
+        if (tail.slowRequests > 0) {
+            report.append(String.format("⏸ TAIL LATENCY (%d requests >= %.0f ms)\n", tail.slowRequests, tail.thresholdMs));
+            report.append("-".repeat(40)).append("\n");
+            report.append(String.format("GC pauses: %5.1f%%, other pauses: %5.1f%%, service work: %5.1f%%\n",
+                share(tail.gcPauseMs, tail.totalMs), share(tail.otherPauseMs, tail.totalMs),
+                share(tail.getServiceMs(), tail.totalMs)));
+            report.append(String.format("JVM since reset: %d gc pauses (%.2f ms), %d hiccups\n\n",
+                tail.gcPauses, tail.gcPauseTotalMs, tail.hiccups));
+        }
+        
+        if (profile != null) {
+            report.append("🔥 EXECUTION SAMPLES (").append(profile.executionSamples).append(" samples)\n");
+            report.append("-".repeat(40)).append("\n");
+            report.append("Top frames:\n");
+            appendTop(report, profile.topFrameSamples, profile.executionSamples, "samples");
+            report.append("Closest application frames:\n");
+            appendTop(report, profile.applicationFrameSamples, profile.executionSamples, "samples");
+            
+            report.append("💾 ALLOCATIONS (").append(String.format("%,d", profile.allocatedBytes))
+                  .append(" bytes, sampled, whole process)\n");
+            report.append("-".repeat(40)).append("\n");
+            report.append("By application frame:\n");
+            appendTop(report, profile.allocatedBytesByFrame, profile.allocatedBytes, "bytes");
+            report.append("By class:\n");
+            appendTop(report, profile.allocatedBytesByClass, profile.allocatedBytes, "bytes");
+            
+            report.append(String.format("Dictionary loads: %d (%.2f ms)\n\n",
+                profile.dictionaryLoads, profile.dictionaryLoadTimeMs));
+        }
+        
         report.append("🚀 OPTIMIZATION RECOMMENDATIONS\n");
         report.append("-".repeat(40)).append("\n");
         report.append(analysis.recommendations);
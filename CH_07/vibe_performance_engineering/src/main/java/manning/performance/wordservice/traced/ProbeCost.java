@@ -0,0 +1,199 @@
+package manning.performance.wordservice.traced;
+
+/**
+ * Cost of each probe tracing adds to the code it measures, calibrated on the running JVM, so reported
+ * method times can be told apart from the instrumentation inside them:
+ * - clock: one System.nanoTime() read; a traced method measures about one of its own (the rest of its
+ *   scope happens before the start or after the end reading), and the services time file opens with two
+ * - counter: one per-line or per-comparison update of the request (lineScanned, stringCompared)
+ * - scope: a whole nested TraceContext as its caller sees it: thread-local switch, the CPU time and
+ *   allocation reads of ThreadResources, both clock reads and keeping the nested timing for the flush
+ * cpuTime and allocation are reported on their own too, they are most of a scope.
+ * comparison is not a probe but the String.equals the scanning services do for every line, measured
+ * here as well so PerformanceAnalyzer can turn the comparison counter into time.
+ * TraceContext counts the probes inside every scope and records the estimate per call next to the
+ * method's times (ResourceUsage.probeMeanMs). Until calibrate() has run the estimates are zero.
+ * Costs are averages of tight loops after warm-up, so they are best cases; the counter cost in
+ * particular is a lower bound, in a scanning loop the update competes with the loop's own work.
+ * Calibration traces through the same TraceContext calls as the services, into a collector of its own
+ * that always samples, so the reported metrics never see it.
+ */
+public class ProbeCost {
+
+    public static final ProbeCost NONE = new ProbeCost(0, 0, 0, 0, 0, 0);
+
+    private static final int WARM_UP_ROUNDS = 2;
+    private static final int CLOCK_ITERATIONS = 1_000_000;
+    private static final int CPU_TIME_ITERATIONS = 20_000;
+    private static final int ALLOCATION_ITERATIONS = 200_000;
+    private static final int COUNTER_ITERATIONS = 2_000_000;
+    private static final int SCOPE_ITERATIONS = 50_000;
+    private static final int COMPARISON_ITERATIONS = 1_000_000;
+
+    private static volatile ProbeCost current = NONE;
+    private static volatile long sink; // keeps the JIT from dropping the loops
+    private static final String[] WORDS = words();
+
+    public final double clockNanos;
+    public final double cpuTimeNanos;
+    public final double allocationNanos;
+    public final double counterNanos;
+    public final double scopeNanos;
+    public final double comparisonNanos;
+
+    public ProbeCost(double clockNanos, double cpuTimeNanos, double allocationNanos, double counterNanos,
+                     double scopeNanos, double comparisonNanos) {
+        this.clockNanos = clockNanos;
+        this.cpuTimeNanos = cpuTimeNanos;
+        this.allocationNanos = allocationNanos;
+        this.counterNanos = counterNanos;
+        this.scopeNanos = scopeNanos;
+        this.comparisonNanos = comparisonNanos;
+    }
+
+    /**
+     * Costs used for the estimates, NONE until calibrated
+     */
+    public static ProbeCost current() {
+        return current;
+    }
+
+    /**
+     * Measure every probe on this JVM and use the result from now on; takes a few hundred milliseconds,
+     * call it at startup before traffic arrives
+     */
+    public static synchronized ProbeCost calibrate() {
+        ProbeCost measured = measure();
+        for (int round = 1; round < WARM_UP_ROUNDS; round++) {
+            measured = measure(); // the first round runs partly interpreted
+        }
+        current = measured;
+        return measured;
+    }
+
+    public boolean isCalibrated() {
+        return scopeNanos > 0;
+    }
+
+    /**
+     * Estimated nanoseconds of instrumentation inside one traced call: its own clock read, the nested
+     * scopes and counter updates it contains, and clockReads extra clock reads (file open timing)
+     */
+    long estimateNanos(long nestedScopes, long counterUpdates, long clockReads) {
+        return Math.round(clockNanos * (1 + clockReads) + scopeNanos * nestedScopes + counterNanos * counterUpdates);
+    }
+
+    private static ProbeCost measure() {
+        double clock = perCall(ProbeCost::readClock, CLOCK_ITERATIONS);
+        double cpuTime = perCall(ProbeCost::readCpuTime, CPU_TIME_ITERATIONS);
+        double allocation = perCall(ProbeCost::readAllocatedBytes, ALLOCATION_ITERATIONS);
+        double comparison = perCall(ProbeCost::compareWords, COMPARISON_ITERATIONS);
+        MetricsCollector metrics = MetricsCollector.newInstance();
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+        MetricsCollector.Timer timer = metrics.timer("probeCalibration");
+        double counter = measureCounterNanos(metrics, timer, COUNTER_ITERATIONS);
+        // every timed scope includes one clock read of the measurement itself
+        double scope = Math.max(0, measureScopeNanos(metrics, timer, SCOPE_ITERATIONS) - clock);
+        return new ProbeCost(clock, cpuTime, allocation, counter, scope, comparison);
+    }
+
+    /**
+     * Mean cost of one lineScanned or stringCompared update on a sampled request
+     */
+    private static double measureCounterNanos(MetricsCollector metrics, MetricsCollector.Timer timer, int iterations) {
+        String line = "dictionary";
+        long elapsed;
+        try (TraceContext request = TraceContext.start(metrics, timer)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                request.lineScanned(line);
+                request.stringCompared();
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        return (double) elapsed / (2L * iterations);
+    }
+
+    /**
+     * Mean time of one nested sampled scope as its caller measures it, including one clock read.
+     * Every scope gets a request of its own, so it pays for the nested timing arrays like the first
+     * nested scope of a real request; the requests themselves are not timed.
+     */
+    @SuppressWarnings("try") // the scopes are only opened and closed, that is what is measured
+    private static double measureScopeNanos(MetricsCollector metrics, MetricsCollector.Timer timer, int iterations) {
+        long total = 0;
+        for (int i = 0; i < iterations; i++) {
+            try (TraceContext request = TraceContext.start(metrics, timer)) {
+                long start = System.nanoTime();
+                try (TraceContext scope = TraceContext.start(metrics, timer)) {
+                    // empty, only the probe is timed
+                }
+                total += System.nanoTime() - start;
+            }
+        }
+        return (double) total / iterations;
+    }
+
+    private static double perCall(Probe probe, int iterations) {
+        long start = System.nanoTime();
+        sink = probe.run(iterations);
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    private static long readClock(int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += System.nanoTime();
+        }
+        return sum;
+    }
+
+    private static long readCpuTime(int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += ThreadResources.cpuNanos();
+        }
+        return sum;
+    }
+
+    private static long readAllocatedBytes(int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += ThreadResources.allocatedBytes();
+        }
+        return sum;
+    }
+
+    /**
+     * String.equals between distinct dictionary-sized words of the same length that differ only in the
+     * last character; neighbours in WORDS always differ
+     */
+    private static long compareWords(int iterations) {
+        long matches = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (WORDS[i & 63].equals(WORDS[(i + 1) & 63])) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static String[] words() {
+        String[] words = new String[64];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = new String("dictionary" + (char) ('a' + i % 26));
+        }
+        return words;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("clock %.1f ns, counter %.2f ns, scope %.1f ns (cpu time %.1f ns, allocation %.1f ns),"
+                + " comparison %.1f ns",
+            clockNanos, counterNanos, scopeNanos, cpuTimeNanos, allocationNanos, comparisonNanos);
+    }
+
+    private interface Probe {
+        long run(int iterations);
+    }
+}
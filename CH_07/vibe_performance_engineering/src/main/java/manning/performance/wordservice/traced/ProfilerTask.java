@@ -0,0 +1,95 @@
+package manning.performance.wordservice.traced;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Admin task that profiles the Jetty workers with StackSampler and answers with collapsed stacks:
+ *   curl -X POST "http://localhost:8081/tasks/profile?seconds=30&rate=100&mode=wall" > words.collapsed
+ *   flamegraph.pl words.collapsed > words.svg
+ * The request blocks for the duration of the profile; only one profile runs at a time.
+ * Invalid parameters or a profile already running are answered with a single line such as
+ * "400 Bad Request: mode must be wall or cpu: heap" instead of collapsed stacks; Dropwizard tasks
+ * cannot set the status, so the answer is still HTTP 200.
+ */
+public class ProfilerTask extends Task {
+
+    static final int DEFAULT_SECONDS = 10;
+    static final int MAX_SECONDS = 120;
+    static final int DEFAULT_RATE = 100;
+    static final int MAX_RATE = 1000;
+
+    private final StackSampler sampler;
+
+    public ProfilerTask() {
+        this(new StackSampler());
+    }
+
+    ProfilerTask(StackSampler sampler) {
+        super("profile");
+        this.sampler = sampler;
+    }
+
+    @Override
+    public Optional<String> getResponseContentType() {
+        return Optional.of("text/plain; charset=utf-8");
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        int seconds;
+        int rate;
+        StackSampler.Mode mode;
+        try {
+            seconds = intParameter(parameters, "seconds", DEFAULT_SECONDS, MAX_SECONDS);
+            rate = intParameter(parameters, "rate", DEFAULT_RATE, MAX_RATE);
+            mode = modeParameter(parameters);
+        } catch (IllegalArgumentException e) {
+            output.println("400 Bad Request: " + e.getMessage());
+            return;
+        }
+
+        StackSampler.Profile profile;
+        try {
+            profile = sampler.profile(Duration.ofSeconds(seconds), rate, mode);
+        } catch (IllegalStateException e) {
+            output.println("409 Conflict: " + e.getMessage() + ", try again when it is done");
+            return;
+        }
+        profile.writeCollapsed(output);
+    }
+
+    private static int intParameter(Map<String, List<String>> parameters, String name, int defaultValue, int max) {
+        Optional<String> text = parameter(parameters, name);
+        int value;
+        try {
+            value = text.map(Integer::parseInt).orElse(defaultValue);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number between 1 and " + max + ": " + text.get());
+        }
+        if (value < 1 || value > max) {
+            throw new IllegalArgumentException(name + " must be between 1 and " + max + ": " + value);
+        }
+        return value;
+    }
+
+    private static StackSampler.Mode modeParameter(Map<String, List<String>> parameters) {
+        String mode = parameter(parameters, "mode").orElse("wall");
+        try {
+            return StackSampler.Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("mode must be wall or cpu: " + mode);
+        }
+    }
+
+    private static Optional<String> parameter(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+    }
+}
@@ -0,0 +1,36 @@
+package manning.performance.wordservice.traced;
+
+import java.util.Map;
+
+/**
+ * What a JFR recording adds on top of the MetricsReport built from its events:
+ * where the CPU samples land and which code allocates.
+ */
+public class RecordingProfile {
+    public final long executionSamples;
+    public final Map<String, Long> topFrameSamples;
+    public final Map<String, Long> applicationFrameSamples;
+    public final long allocatedBytes;
+    public final Map<String, Long> allocatedBytesByFrame;
+    public final Map<String, Long> allocatedBytesByClass;
+    public final long dictionaryLoads;
+    public final double dictionaryLoadTimeMs;
+
+    public RecordingProfile(long executionSamples,
+                            Map<String, Long> topFrameSamples,
+                            Map<String, Long> applicationFrameSamples,
+                            long allocatedBytes,
+                            Map<String, Long> allocatedBytesByFrame,
+                            Map<String, Long> allocatedBytesByClass,
+                            long dictionaryLoads,
+                            double dictionaryLoadTimeMs) {
+        this.executionSamples = executionSamples;
+        this.topFrameSamples = topFrameSamples;
+        this.applicationFrameSamples = applicationFrameSamples;
+        this.allocatedBytes = allocatedBytes;
+        this.allocatedBytesByFrame = allocatedBytesByFrame;
+        this.allocatedBytesByClass = allocatedBytesByClass;
+        this.dictionaryLoads = dictionaryLoads;
+        this.dictionaryLoadTimeMs = dictionaryLoadTimeMs;
+    }
+}
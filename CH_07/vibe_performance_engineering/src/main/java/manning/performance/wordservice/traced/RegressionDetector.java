@@ -0,0 +1,194 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.Histogram;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummaryValues;
+import org.apache.commons.math3.stat.inference.AlternativeHypothesis;
+import org.apache.commons.math3.stat.inference.BinomialTest;
+import org.apache.commons.math3.stat.inference.TTest;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compares a run against a baseline run of the same engine and lists the regressions:
+ * - mean latency per method: one-sided Welch t-test on the histogram mean and standard deviation
+ * - p50/p90/p99 per method: one-sided binomial test on how many candidate calls exceed the baseline
+ *   percentile, e.g. for p99 more than 1% of the calls being slower than the baseline p99
+ * - file reads, bytes read, lines scanned and memory per request: relative change only, these are
+ *   totals without a per-request distribution to test against. Memory is only compared when the
+ *   baseline measured allocation: runs recorded before allocation was traced have a total of zero.
+ * A change is a regression only when it is both significant (p below alpha, Bonferroni corrected for
+ * the number of latency tests) and at least minRelativeIncrease, so large runs do not fail on noise-sized
+ * but significant shifts. Methods with fewer than minCalls calls in either run are not tested.
+ */
+public class RegressionDetector {
+
+    static final double[] PERCENTILES = {50.0, 90.0, 99.0};
+
+    private final double alpha;
+    private final double minRelativeIncrease;
+    private final long minCalls;
+    private final TTest tTest = new TTest();
+    private final BinomialTest binomialTest = new BinomialTest();
+
+    public RegressionDetector() {
+        this(0.01, 0.10, 100);
+    }
+
+    public RegressionDetector(double alpha, double minRelativeIncrease, long minCalls) {
+        this.alpha = alpha;
+        this.minRelativeIncrease = minRelativeIncrease;
+        this.minCalls = minCalls;
+    }
+
+    public List<Regression> compare(RunSnapshot baseline, RunSnapshot candidate) {
+        List<String> methods = new ArrayList<>();
+        baseline.methodCallCounts.forEach((method, calls) -> {
+            if (calls >= minCalls && candidate.methodCallCounts.getOrDefault(method, 0L) >= minCalls
+                    && baseline.latencyHistograms.containsKey(method)
+                    && candidate.latencyHistograms.containsKey(method)) {
+                methods.add(method);
+            }
+        });
+        double correctedAlpha = alpha / Math.max(1, methods.size() * (1 + PERCENTILES.length));
+
+        List<Regression> regressions = new ArrayList<>();
+        for (String method : methods) {
+            Histogram before = baseline.latency(method);
+            Histogram after = candidate.latency(method);
+            compareMean(method, before, after, correctedAlpha).ifPresent(regressions::add);
+            for (double percentile : PERCENTILES) {
+                comparePercentile(method, percentile, before, after, correctedAlpha).ifPresent(regressions::add);
+            }
+        }
+        comparePerRequest("fileReadsPerRequest", baseline, candidate, run -> run.totalFileReads)
+            .ifPresent(regressions::add);
+        comparePerRequest("bytesReadPerRequest", baseline, candidate, run -> run.totalBytesRead)
+            .ifPresent(regressions::add);
+        comparePerRequest("linesScannedPerRequest", baseline, candidate, run -> run.totalLinesScanned)
+            .ifPresent(regressions::add);
+        if (baseline.totalMemoryUsed > 0) {
+            comparePerRequest("memoryPerRequest", baseline, candidate, run -> run.totalMemoryUsed)
+                .ifPresent(regressions::add);
+        }
+        return regressions;
+    }
+
+    private Optional<Regression> compareMean(String method, Histogram before, Histogram after, double alpha) {
+        double beforeMs = before.getMean() / 1_000_000.0;
+        double afterMs = after.getMean() / 1_000_000.0;
+        if (!isLarger(afterMs, beforeMs)) {
+            return Optional.empty();
+        }
+        // two-sided p-value, halved for the one-sided "slower" hypothesis
+        double pValue = tTest.tTest(summary(before), summary(after)) / 2;
+        return pValue < alpha
+            ? Optional.of(new Regression(method, "mean", beforeMs, afterMs, pValue))
+            : Optional.empty();
+    }
+
+    private Optional<Regression> comparePercentile(String method, double percentile,
+                                                   Histogram before, Histogram after, double alpha) {
+        long threshold = before.getValueAtPercentile(percentile);
+        double beforeMs = threshold / 1_000_000.0;
+        double afterMs = after.getValueAtPercentile(percentile) / 1_000_000.0;
+        if (!isLarger(afterMs, beforeMs)) {
+            return Optional.empty();
+        }
+        long calls = after.getTotalCount();
+        long slower = calls - after.getCountBetweenValues(0, before.highestEquivalentValue(threshold));
+        double pValue = binomialTest.binomialTest((int) Math.min(calls, Integer.MAX_VALUE),
+            (int) Math.min(slower, Integer.MAX_VALUE), 1 - percentile / 100, AlternativeHypothesis.GREATER_THAN);
+        return pValue < alpha
+            ? Optional.of(new Regression(method, String.format("p%.0f", percentile), beforeMs, afterMs, pValue))
+            : Optional.empty();
+    }
+
+    private Optional<Regression> comparePerRequest(String metric, RunSnapshot baseline, RunSnapshot candidate,
+                                                   ToLongFunction<RunSnapshot> total) {
+        if (baseline.sampledRequests < minCalls || candidate.sampledRequests < minCalls) {
+            return Optional.empty();
+        }
+        double before = baseline.perRequest(total.applyAsLong(baseline));
+        double after = candidate.perRequest(total.applyAsLong(candidate));
+        return isLarger(after, before)
+            ? Optional.of(new Regression("request", metric, before, after, Double.NaN))
+            : Optional.empty();
+    }
+
+    private boolean isLarger(double after, double before) {
+        return after > before * (1 + minRelativeIncrease);
+    }
+
+    private static StatisticalSummaryValues summary(Histogram histogram) {
+        double mean = histogram.getMean();
+        double stdDeviation = histogram.getStdDeviation();
+        long count = histogram.getTotalCount();
+        return new StatisticalSummaryValues(mean, stdDeviation * stdDeviation, count,
+            histogram.getMaxValue(), histogram.getMinValue(), mean * count);
+    }
+
+    /**
+     * Deploy gate: RegressionDetector BASELINE_DIR CANDIDATE.json [--promote]
+     * compares the candidate snapshot (from /traced-words/metrics/snapshot) with the latest baseline of
+     * its engine. Exits with 1 on regressions, 0 otherwise; --promote stores a passing candidate as the
+     * new baseline. Without a baseline nothing is compared and the run passes.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !"--promote".equals(args[2]))) {
+            System.err.println("Usage: RegressionDetector <baseline-dir> <candidate.json> [--promote]");
+            System.exit(2);
+        }
+        BaselineStore store = new BaselineStore(Paths.get(args[0]));
+        RunSnapshot candidate = BaselineStore.read(Paths.get(args[1]));
+        Optional<RunSnapshot> baseline = store.latest(candidate.engine);
+
+        List<Regression> regressions = baseline.isPresent()
+            ? new RegressionDetector().compare(baseline.get(), candidate)
+            : List.of();
+        if (baseline.isEmpty()) {
+            System.out.println("No baseline for engine " + candidate.engine + ", nothing to compare");
+        } else {
+            System.out.println("Comparing " + candidate + " with baseline " + baseline.get());
+        }
+        regressions.forEach(regression -> System.out.println("🔴 REGRESSION: " + regression));
+
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+        System.out.println("✅ No regressions detected");
+        if (args.length == 3) {
+            System.out.println("Saved baseline " + store.save(candidate));
+        }
+    }
+
+    /**
+     * A metric that got significantly worse. pValue is NaN for metrics compared by relative change only.
+     */
+    public static class Regression {
+        public final String method;
+        public final String metric;
+        public final double baseline;
+        public final double candidate;
+        public final double pValue;
+
+        public Regression(String method, String metric, double baseline, double candidate, double pValue) {
+            this.method = method;
+            this.metric = metric;
+            this.baseline = baseline;
+            this.candidate = candidate;
+            this.pValue = pValue;
+        }
+
+        @Override
+        public String toString() {
+            String change = String.format("%s %s: %.3f -> %.3f (%+.1f%%)", method, metric, baseline, candidate,
+                baseline == 0 ? 100.0 : (candidate / baseline - 1) * 100);
+            return Double.isNaN(pValue) ? change : change + String.format(", p=%.2g", pValue);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package manning.performance.wordservice.traced;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter with a per-second history for rolling windows. Writers only add to a LongAdder that is
+ * never reset; once per second the roller stores the difference since its previous roll in a ring
+ * of 1 second buckets. Windows and the since-mark total are computed from rolled values only, so
+ * they describe the same instant and a reset (a mark) never races with writers.
+ * Rolling, marking and reading windows must be done under one lock (the MetricsCollector's).
+ * With a mapped counter every roll also publishes the total into the metrics file (MappedMetrics), so
+ * writers never touch the mapped page.
+ */
+final class RollingCounter {
+
+    private final LongAdder cumulative = new LongAdder();
+    private final MappedMetrics.Counter mapped;
+    private final long[] buckets;
+    private final long[] bucketSeconds;
+    private long rolledTotal;
+    private long markedTotal;
+
+    RollingCounter(int historySeconds) {
+        this(historySeconds, null);
+    }
+
+    RollingCounter(int historySeconds, MappedMetrics.Counter mapped) {
+        this.mapped = mapped;
+        this.buckets = new long[historySeconds];
+        this.bucketSeconds = new long[historySeconds];
+        Arrays.fill(bucketSeconds, -1);
+    }
+
+    void increment() {
+        cumulative.increment();
+    }
+
+    void add(long value) {
+        cumulative.add(value);
+    }
+
+    /**
+     * Live count since start, monotonic (used by exporters)
+     */
+    long current() {
+        return cumulative.sum();
+    }
+
+    /**
+     * Close the given second; called again within the same second the bucket keeps growing
+     */
+    void roll(long second) {
+        long total = cumulative.sum();
+        int index = (int) (second % buckets.length);
+        long previous = bucketSeconds[index] == second ? buckets[index] : 0;
+        buckets[index] = previous + total - rolledTotal;
+        bucketSeconds[index] = second;
+        rolledTotal = total;
+        if (mapped != null) {
+            mapped.set(total);
+        }
+    }
+
+    void mark() {
+        markedTotal = rolledTotal;
+    }
+
+    long sinceMark() {
+        return rolledTotal - markedTotal;
+    }
+
+    /**
+     * Sum of the last windowSeconds buckets up to and including currentSecond
+     */
+    long window(int windowSeconds, long currentSecond) {
+        long sum = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (bucketSeconds[i] > currentSecond - windowSeconds) {
+                sum += buckets[i];
+            }
+        }
+        return sum;
+    }
+}
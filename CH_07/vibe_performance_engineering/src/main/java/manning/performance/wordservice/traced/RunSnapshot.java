@@ -0,0 +1,120 @@
+package manning.performance.wordservice.traced;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * One run of the word service as stored by BaselineStore: the totals of a MetricsReport and the
+ * latency histogram of every method (compressed HdrHistogram encoding, base64), tagged with the
+ * engine, version and commit that produced them. Totals counted in traced requests (method calls,
+ * file I/O, lines, memory) are divided by sampledRequests to get per-request values.
+ * totalMemoryUsed is the bytes allocated by traced requests; it is zero in snapshots taken before
+ * allocation was measured and in runs on JVMs without thread allocation counters.
+ */
+public class RunSnapshot {
+    public final String engine;
+    public final String version;
+    public final String commit;
+    public final long timestampMillis;
+    public final String samplingPolicy;
+    public final long totalRequests;
+    public final long sampledRequests;
+    public final Map<String, Long> endpointCallCounts;
+    public final Map<String, Long> methodCallCounts;
+    public final long totalFileReads;
+    public final long totalBytesRead;
+    public final long totalLinesScanned;
+    public final long totalStringComparisons;
+    public final long totalMemoryUsed;
+    public final Map<String, String> latencyHistograms;
+
+    @JsonCreator
+    public RunSnapshot(@JsonProperty("engine") String engine,
+                       @JsonProperty("version") String version,
+                       @JsonProperty("commit") String commit,
+                       @JsonProperty("timestampMillis") long timestampMillis,
+                       @JsonProperty("samplingPolicy") String samplingPolicy,
+                       @JsonProperty("totalRequests") long totalRequests,
+                       @JsonProperty("sampledRequests") long sampledRequests,
+                       @JsonProperty("endpointCallCounts") Map<String, Long> endpointCallCounts,
+                       @JsonProperty("methodCallCounts") Map<String, Long> methodCallCounts,
+                       @JsonProperty("totalFileReads") long totalFileReads,
+                       @JsonProperty("totalBytesRead") long totalBytesRead,
+                       @JsonProperty("totalLinesScanned") long totalLinesScanned,
+                       @JsonProperty("totalStringComparisons") long totalStringComparisons,
+                       @JsonProperty("totalMemoryUsed") long totalMemoryUsed,
+                       @JsonProperty("latencyHistograms") Map<String, String> latencyHistograms) {
+        this.engine = engine;
+        this.version = version;
+        this.commit = commit;
+        this.timestampMillis = timestampMillis;
+        this.samplingPolicy = samplingPolicy;
+        this.totalRequests = totalRequests;
+        this.sampledRequests = sampledRequests;
+        this.endpointCallCounts = endpointCallCounts;
+        this.methodCallCounts = methodCallCounts;
+        this.totalFileReads = totalFileReads;
+        this.totalBytesRead = totalBytesRead;
+        this.totalLinesScanned = totalLinesScanned;
+        this.totalStringComparisons = totalStringComparisons;
+        this.totalMemoryUsed = totalMemoryUsed;
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    /**
+     * Snapshot of a report and the histograms its percentiles were computed from
+     */
+    public static RunSnapshot of(String engine, String version, String commit,
+                                 MetricsCollector.MetricsReport report,
+                                 Map<String, ? extends AbstractHistogram> latencies) {
+        Map<String, String> encoded = new TreeMap<>();
+        latencies.forEach((method, histogram) -> encoded.put(method, encode(histogram)));
+        return new RunSnapshot(engine, version, commit, System.currentTimeMillis(), report.samplingPolicy,
+            report.totalRequests, report.sampledRequests, new TreeMap<>(report.endpointCallCounts),
+            new TreeMap<>(report.methodCallCounts), report.totalFileReads, report.totalBytesRead,
+            report.totalLinesScanned, report.totalStringComparisons, report.totalMemoryUsed, encoded);
+    }
+
+    /**
+     * Decoded latency histogram of a method in nanoseconds, or null if the method was not called
+     */
+    public Histogram latency(String method) {
+        String encoded = latencyHistograms.get(method);
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(Base64.getDecoder().decode(encoded)), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt latency histogram for " + method + " in " + this, e);
+        }
+    }
+
+    /**
+     * A traced total divided by the number of traced requests
+     */
+    public double perRequest(long total) {
+        long requests = sampledRequests > 0 ? sampledRequests : totalRequests;
+        return requests == 0 ? 0 : (double) total / requests;
+    }
+
+    private static String encode(AbstractHistogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    @Override
+    public String toString() {
+        return engine + "@" + version + " (" + commit + ")";
+    }
+}
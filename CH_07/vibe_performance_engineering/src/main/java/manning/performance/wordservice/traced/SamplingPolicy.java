@@ -0,0 +1,176 @@
+package manning.performance.wordservice.traced;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which traced requests keep full detail (timers, histograms, scan counters).
+ * Requests that are not sampled only increment the endpoint request counter.
+ *
+ * Policies are written as specs, used by -Dtraced.sampling and the /traced-words/sampling endpoint:
+ * - always        every request (default)
+ * - fixed:0.01    1% of requests, chosen at random
+ * - rate:10       at most 10 requests per second
+ * - tail:50       every request is traced locally, but only requests slower than 50 ms are kept
+ */
+public interface SamplingPolicy {
+
+    /**
+     * Head decision, taken when the request starts
+     */
+    boolean sampleAtStart();
+
+    /**
+     * Tail decision for requests sampled at start, taken when the request ends
+     */
+    default boolean keep(long latencyNanos) {
+        return true;
+    }
+
+    static SamplingPolicy always() {
+        return new Always();
+    }
+
+    static SamplingPolicy fixedRate(double rate) {
+        return new FixedRate(rate);
+    }
+
+    static SamplingPolicy rateLimited(int tracesPerSecond) {
+        return new RateLimited(tracesPerSecond);
+    }
+
+    static SamplingPolicy tailBased(long thresholdMillis) {
+        return new TailBased(thresholdMillis);
+    }
+
+    static SamplingPolicy fromSystemProperties() {
+        return parse(System.getProperty("traced.sampling", "always"));
+    }
+
+    /**
+     * Parse a policy spec, see the class comment
+     */
+    static SamplingPolicy parse(String spec) {
+        String[] parts = spec.trim().split(":", 2);
+        try {
+            switch (parts[0]) {
+                case "always":
+                    return always();
+                case "fixed":
+                    return fixedRate(Double.parseDouble(parts[1]));
+                case "rate":
+                    return rateLimited(Integer.parseInt(parts[1]));
+                case "tail":
+                    return tailBased(Long.parseLong(parts[1]));
+                default:
+                    throw new IllegalArgumentException("Unknown sampling policy: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid sampling policy: " + spec, e);
+        }
+    }
+
+    final class Always implements SamplingPolicy {
+        @Override
+        public boolean sampleAtStart() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "always";
+        }
+    }
+
+    final class FixedRate implements SamplingPolicy {
+        private final double rate;
+
+        FixedRate(double rate) {
+            if (rate <= 0 || rate > 1) {
+                throw new IllegalArgumentException("Sampling rate must be in (0, 1]: " + rate);
+            }
+            this.rate = rate;
+        }
+
+        @Override
+        public boolean sampleAtStart() {
+            return ThreadLocalRandom.current().nextDouble() < rate;
+        }
+
+        @Override
+        public String toString() {
+            return "fixed:" + rate;
+        }
+    }
+
+    /**
+     * Allows the first N requests of every second. The state is one AtomicLong holding the current
+     * second and the number of traces taken in it; once the budget is spent, a request pays one read.
+     */
+    final class RateLimited implements SamplingPolicy {
+        private static final int COUNT_BITS = 20;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final int tracesPerSecond;
+        private final long origin = System.nanoTime();
+        private final AtomicLong state = new AtomicLong();
+
+        RateLimited(int tracesPerSecond) {
+            if (tracesPerSecond <= 0 || tracesPerSecond > COUNT_MASK) {
+                throw new IllegalArgumentException("Traces per second must be in [1, " + COUNT_MASK + "]: "
+                        + tracesPerSecond);
+            }
+            this.tracesPerSecond = tracesPerSecond;
+        }
+
+        @Override
+        public boolean sampleAtStart() {
+            long second = (System.nanoTime() - origin) / TimeUnit.SECONDS.toNanos(1) + 1;
+            while (true) {
+                long current = state.get();
+                boolean sameSecond = current >>> COUNT_BITS == second;
+                if (sameSecond && (current & COUNT_MASK) >= tracesPerSecond) {
+                    return false;
+                }
+                long next = sameSecond ? current + 1 : second << COUNT_BITS | 1;
+                if (state.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "rate:" + tracesPerSecond;
+        }
+    }
+
+    final class TailBased implements SamplingPolicy {
+        private final long thresholdMillis;
+        private final long thresholdNanos;
+
+        TailBased(long thresholdMillis) {
+            if (thresholdMillis < 0) {
+                throw new IllegalArgumentException("Latency threshold must not be negative: " + thresholdMillis);
+            }
+            this.thresholdMillis = thresholdMillis;
+            this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        }
+
+        @Override
+        public boolean sampleAtStart() {
+            return true;
+        }
+
+        @Override
+        public boolean keep(long latencyNanos) {
+            return latencyNanos >= thresholdNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "tail:" + thresholdMillis;
+        }
+    }
+}
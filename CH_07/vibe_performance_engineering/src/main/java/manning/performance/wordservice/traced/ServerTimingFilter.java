@@ -0,0 +1,176 @@
+package manning.performance.wordservice.traced;
+
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adds a Server-Timing header to every Jersey response, so load tests and browser dev tools can split the
+ * server time without digging in logs:
+ *   Server-Timing: parse;dur=0.041, lookup;dur=0.213, serialize;dur=0.018, total;dur=0.290
+ * - parse: from the start of the request to the resource method, plus reading the request entity
+ * - lookup: the resource method itself, without reading the entity
+ * - serialize: writing the response entity; missing for empty and streamed (StreamingOutput) responses
+ * - total: all of the above and the filters in between, until the header is added
+ * The entity is serialized into a buffer first, the header can only be added before the first byte is sent.
+ * Phases are kept in a preallocated slot per worker thread, every resource here is synchronous so a request
+ * stays on one thread; a request costs the header string and nothing else once buffers are warm.
+ * Enabled with -Dserver.timing=true, register with environment.jersey().register(new ServerTimingFilter()).
+ */
+public class ServerTimingFilter implements ApplicationEventListener, ContainerResponseFilter,
+    ReaderInterceptor, WriterInterceptor {
+
+    public static final String HEADER = "Server-Timing";
+
+    /**
+     * Response buffers that grew bigger (e.g. the metrics report) are not kept for the next request
+     */
+    static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<Phases> PHASES = ThreadLocal.withInitial(Phases::new);
+
+    private final RequestEventListener requestListener = this::onRequestEvent;
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("server.timing");
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        // only request events are timed
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        PHASES.get().start(System.nanoTime());
+        return requestListener;
+    }
+
+    private void onRequestEvent(RequestEvent event) {
+        Phases phases = PHASES.get();
+        switch (event.getType()) {
+            case RESOURCE_METHOD_START:
+                phases.methodStartNanos = System.nanoTime();
+                break;
+            case RESOURCE_METHOD_FINISHED:
+                phases.methodEndNanos = System.nanoTime();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return context.proceed();
+        } finally {
+            PHASES.get().readNanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Phases phases = PHASES.get();
+        if (phases.active && (!response.hasEntity() || response.getEntity() instanceof StreamingOutput)) {
+            response.getHeaders().add(HEADER, phases.header(-1));
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Phases phases = PHASES.get();
+        if (!phases.active) {
+            context.proceed();
+            return;
+        }
+        OutputStream out = context.getOutputStream();
+        ByteArrayOutputStream buffer = phases.buffer;
+        buffer.reset();
+        long start = System.nanoTime();
+        context.setOutputStream(buffer);
+        try {
+            context.proceed();
+        } finally {
+            context.setOutputStream(out);
+        }
+        context.getHeaders().add(HEADER, phases.header(System.nanoTime() - start));
+        buffer.writeTo(out);
+        if (buffer.size() > MAX_RETAINED_BUFFER) {
+            phases.buffer = new ByteArrayOutputStream();
+        }
+    }
+
+    /**
+     * Append "name;dur=MILLIS" with microsecond precision, formatted without allocating
+     */
+    static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        long micros = Math.max(0, nanos) / 1_000;
+        header.append(name).append(";dur=").append(micros / 1_000).append('.');
+        long fraction = micros % 1_000;
+        if (fraction < 100) {
+            header.append('0');
+        }
+        if (fraction < 10) {
+            header.append('0');
+        }
+        header.append(fraction);
+    }
+
+    /**
+     * The timings of the request a worker thread is serving
+     */
+    private static final class Phases {
+        private boolean active;
+        private long startNanos;
+        private long methodStartNanos;
+        private long methodEndNanos;
+        private long readNanos;
+        private final StringBuilder header = new StringBuilder(96);
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private void start(long nanos) {
+            active = true;
+            startNanos = nanos;
+            methodStartNanos = 0;
+            methodEndNanos = 0;
+            readNanos = 0;
+        }
+
+        /**
+         * Header value for the request, serializeNanos -1 when nothing was serialized; the request is done
+         */
+        private String header(long serializeNanos) {
+            long now = System.nanoTime();
+            header.setLength(0);
+            if (methodStartNanos != 0) {
+                long methodEnd = methodEndNanos != 0 ? methodEndNanos : now;
+                appendMetric(header, "parse", methodStartNanos - startNanos + readNanos);
+                appendMetric(header, "lookup", methodEnd - methodStartNanos - readNanos);
+            }
+            if (serializeNanos >= 0) {
+                appendMetric(header, "serialize", serializeNanos);
+            }
+            appendMetric(header, "total", now - startNanos);
+            active = false;
+            return header.toString();
+        }
+    }
+}
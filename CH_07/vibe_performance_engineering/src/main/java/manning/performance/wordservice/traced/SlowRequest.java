@@ -0,0 +1,88 @@
+package manning.performance.wordservice.traced;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A traced request that took at least the slow request threshold, as kept by SlowRequestLog: where it
+ * came from (method, word or request URI, thread) and what it did (phases, lines, bytes, comparisons,
+ * CPU and allocation). startNanos is on the System.nanoTime clock, the same as PauseMonitor events.
+ * Counters and CPU/allocation are zero or -1 when the request did not measure them.
+ */
+public class SlowRequest {
+    @JsonIgnore
+    public final long position;
+    public final String method;
+    public final String word;
+    public final String requestUri;
+    public final String thread;
+    public final long timestampMillis;
+    public final long startNanos;
+    public final long durationNanos;
+    public final long cpuNanos;
+    public final long allocatedBytes;
+    public final long linesScanned;
+    public final long bytesRead;
+    public final long stringComparisons;
+    public final long fileOpenTimeNanos;
+    public final Map<String, Long> phaseNanos;
+
+    SlowRequest(long position, String method, String word, URI requestUri, String thread, long timestampMillis,
+                long startNanos, long durationNanos, long cpuNanos, long allocatedBytes, long linesScanned,
+                long bytesRead, long stringComparisons, long fileOpenTimeNanos,
+                String[] phaseNames, long[] phaseNanos) {
+        this.position = position;
+        this.method = method;
+        this.word = word;
+        this.requestUri = requestUri == null ? null : requestUri.getRawPath()
+            + (requestUri.getRawQuery() == null ? "" : "?" + requestUri.getRawQuery());
+        this.thread = thread;
+        this.timestampMillis = timestampMillis;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.linesScanned = linesScanned;
+        this.bytesRead = bytesRead;
+        this.stringComparisons = stringComparisons;
+        this.fileOpenTimeNanos = fileOpenTimeNanos;
+        Map<String, Long> phases = new LinkedHashMap<>();
+        for (int i = 0; i < phaseNames.length; i++) {
+            phases.merge(phaseNames[i], phaseNanos[i], Long::sum);
+        }
+        this.phaseNanos = Collections.unmodifiableMap(phases);
+    }
+
+    public long endNanos() {
+        return startNanos + durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(String.format("%-30s %9.2f ms", method, durationNanos / 1_000_000.0));
+        if (word != null) {
+            line.append("  word=").append(word);
+        } else if (requestUri != null) {
+            line.append("  ").append(requestUri);
+        }
+        if (cpuNanos >= 0) {
+            line.append(String.format("  cpu %.2f ms", cpuNanos / 1_000_000.0));
+        }
+        if (allocatedBytes >= 0) {
+            line.append(String.format("  alloc %,d B", allocatedBytes));
+        }
+        if (linesScanned > 0 || bytesRead > 0) {
+            line.append(String.format("  lines %,d  bytes %,d  comparisons %,d  open %.2f ms", linesScanned,
+                bytesRead, stringComparisons, fileOpenTimeNanos / 1_000_000.0));
+        }
+        phaseNanos.forEach((phase, nanos) -> line.append(String.format("  %s %.2f ms", phase, nanos / 1_000_000.0)));
+        if (thread != null) {
+            line.append("  [").append(thread).append(']');
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,178 @@
+package manning.performance.wordservice.traced;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flight recorder of slow requests: a fixed ring of preallocated slots, written without locks or
+ * allocation, so it can stay on in production. Every slot is a seqlock, its stamp is odd while a
+ * writer fills it and even once the entry is complete.
+ * - a writer claims the next position with getAndIncrement and takes the slot with a CAS on its stamp;
+ *   when a writer a whole lap behind is still filling that slot, the request is dropped and counted
+ * - fields are plain and published by the release store of the stamp; readers copy a slot and keep the
+ *   copy only if the stamp did not change meanwhile, like StampedLock's optimistic reads
+ * Strings (method, word, thread name) are stored by reference, nothing is formatted until read.
+ */
+class SlowRequestLog {
+
+    static final int MAX_PHASES = TraceContext.MAX_NESTED_TIMINGS;
+
+    private final Slot[] slots;
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    SlowRequestLog(int capacity) {
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Record a slow request without allocating. phaseTimers and phaseNanos hold phaseCount nested
+     * timings, at most MAX_PHASES are kept.
+     */
+    void record(String method, String word, URI requestUri, String thread, long timestampMillis,
+                long startNanos, long durationNanos, long cpuNanos, long allocatedBytes,
+                long linesScanned, long bytesRead, long stringComparisons, long fileOpenTimeNanos,
+                MetricsCollector.Timer[] phaseTimers, long[] phaseNanos, int phaseCount) {
+        long position = next.getAndIncrement();
+        Slot slot = slots[(int) (position % slots.length)];
+        long stamp = (long) Slot.STAMP.getAcquire(slot);
+        if ((stamp & 1) != 0 || !Slot.STAMP.compareAndSet(slot, stamp, stamp + 1)) {
+            dropped.increment(); // a writer a lap behind is still on this slot
+            return;
+        }
+        slot.position = position;
+        slot.method = method;
+        slot.word = word;
+        slot.requestUri = requestUri;
+        slot.thread = thread;
+        slot.timestampMillis = timestampMillis;
+        slot.startNanos = startNanos;
+        slot.durationNanos = durationNanos;
+        slot.cpuNanos = cpuNanos;
+        slot.allocatedBytes = allocatedBytes;
+        slot.linesScanned = linesScanned;
+        slot.bytesRead = bytesRead;
+        slot.stringComparisons = stringComparisons;
+        slot.fileOpenTimeNanos = fileOpenTimeNanos;
+        int phases = Math.min(phaseCount, MAX_PHASES);
+        for (int i = 0; i < phases; i++) {
+            slot.phaseNames[i] = phaseTimers[i].name();
+            slot.phaseNanos[i] = phaseNanos[i];
+        }
+        slot.phaseCount = phases;
+        Slot.STAMP.setRelease(slot, stamp + 2);
+    }
+
+    /**
+     * Complete entries that started at or after fromNanos, oldest first. Entries overwritten while
+     * being copied are left out.
+     */
+    List<SlowRequest> since(long fromNanos) {
+        List<SlowRequest> requests = all();
+        requests.removeIf(request -> request.startNanos - fromNanos < 0);
+        return requests;
+    }
+
+    /**
+     * Every complete entry, oldest first
+     */
+    List<SlowRequest> all() {
+        List<SlowRequest> requests = new ArrayList<>();
+        for (Slot slot : slots) {
+            SlowRequest request = slot.read();
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        requests.sort(Comparator.comparingLong(request -> request.position));
+        return requests;
+    }
+
+    long recorded() {
+        return next.get();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    private static final class Slot {
+        private static final VarHandle STAMP;
+
+        static {
+            try {
+                STAMP = MethodHandles.lookup().findVarHandle(Slot.class, "stamp", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private long stamp; // accessed through STAMP only
+        private long position;
+        private String method;
+        private String word;
+        private URI requestUri;
+        private String thread;
+        private long timestampMillis;
+        private long startNanos;
+        private long durationNanos;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long linesScanned;
+        private long bytesRead;
+        private long stringComparisons;
+        private long fileOpenTimeNanos;
+        private final String[] phaseNames = new String[MAX_PHASES];
+        private final long[] phaseNanos = new long[MAX_PHASES];
+        private int phaseCount;
+
+        /**
+         * Consistent copy of the entry, or null when the slot is empty or being written
+         */
+        private SlowRequest read() {
+            long before = (long) STAMP.getAcquire(this);
+            if (before == 0 || (before & 1) != 0) {
+                return null;
+            }
+            long position = this.position;
+            String method = this.method;
+            String word = this.word;
+            URI requestUri = this.requestUri;
+            String thread = this.thread;
+            long timestampMillis = this.timestampMillis;
+            long startNanos = this.startNanos;
+            long durationNanos = this.durationNanos;
+            long cpuNanos = this.cpuNanos;
+            long allocatedBytes = this.allocatedBytes;
+            long linesScanned = this.linesScanned;
+            long bytesRead = this.bytesRead;
+            long stringComparisons = this.stringComparisons;
+            long fileOpenTimeNanos = this.fileOpenTimeNanos;
+            int phases = Math.min(phaseCount, MAX_PHASES);
+            String[] names = new String[phases];
+            long[] nanos = new long[phases];
+            System.arraycopy(phaseNames, 0, names, 0, phases);
+            System.arraycopy(phaseNanos, 0, nanos, 0, phases);
+            VarHandle.acquireFence(); // the copies above happen before the stamp is checked again
+            if ((long) STAMP.getAcquire(this) != before) {
+                return null;
+            }
+            return new SlowRequest(position, method, word, requestUri, thread, timestampMillis, startNanos,
+                durationNanos, cpuNanos, allocatedBytes, linesScanned, bytesRead, stringComparisons,
+                fileOpenTimeNanos, names, nanos);
+        }
+    }
+}
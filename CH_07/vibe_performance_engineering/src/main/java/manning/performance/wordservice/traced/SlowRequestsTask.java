@@ -0,0 +1,82 @@
+package manning.performance.wordservice.traced;
+
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Admin task that dumps the slow request flight recorder, one request per line with its breakdown and
+ * the pauses (GC, hiccups, reloads) that overlapped it:
+ *   curl -X POST "http://localhost:8081/tasks/slow-requests?sort=slowest&limit=20"
+ * sort is latest (default, newest first) or slowest. Reading does not clear the recorder.
+ */
+public class SlowRequestsTask extends Task {
+
+    static final int DEFAULT_LIMIT = 50;
+
+    private final MetricsCollector metrics;
+    private final PauseMonitor pauses;
+
+    public SlowRequestsTask() {
+        this(MetricsCollector.getInstance(), PauseMonitor.getInstance());
+    }
+
+    SlowRequestsTask(MetricsCollector metrics, PauseMonitor pauses) {
+        super("slow-requests");
+        this.metrics = metrics;
+        this.pauses = pauses;
+    }
+
+    @Override
+    public Optional<String> getResponseContentType() {
+        return Optional.of("text/plain; charset=utf-8");
+    }
+
+    @Override
+    public void execute(Map<String, List<String>> parameters, PrintWriter output) {
+        SlowRequestLog log = metrics.slowRequestLog();
+        int limit = parameter(parameters, "limit").map(Integer::parseInt).orElse(DEFAULT_LIMIT);
+        if (limit < 1 || limit > log.capacity()) {
+            throw new IllegalArgumentException("limit must be between 1 and " + log.capacity() + ": " + limit);
+        }
+        String sort = parameter(parameters, "sort").orElse("latest");
+        Comparator<SlowRequest> order;
+        if ("latest".equals(sort)) {
+            order = Comparator.comparingLong((SlowRequest request) -> request.position).reversed();
+        } else if ("slowest".equals(sort)) {
+            order = Comparator.comparingLong((SlowRequest request) -> request.durationNanos).reversed();
+        } else {
+            throw new IllegalArgumentException("sort must be latest or slowest: " + sort);
+        }
+
+        List<SlowRequest> requests = log.all().stream()
+            .sorted(order)
+            .limit(limit)
+            .collect(Collectors.toList());
+        output.printf("# %d slow requests (>= %.0f ms) recorded, %d dropped, last %d kept%n", log.recorded(),
+            metrics.slowRequestThresholdNanos() / 1_000_000.0, log.dropped(), log.capacity());
+        for (SlowRequest request : requests) {
+            output.print(Instant.ofEpochMilli(request.timestampMillis));
+            output.print("  ");
+            output.print(request);
+            List<PauseMonitor.Pause> overlapping = pauses.overlapping(request.startNanos, request.endNanos());
+            if (!overlapping.isEmpty()) {
+                output.print("  pauses ");
+                output.print(overlapping);
+            }
+            output.println();
+        }
+        output.flush();
+    }
+
+    private static Optional<String> parameter(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+    }
+}
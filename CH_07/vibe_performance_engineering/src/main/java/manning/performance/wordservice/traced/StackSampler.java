@@ -0,0 +1,195 @@
+package manning.performance.wordservice.traced;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process sampling profiler: takes the stacks of the Jetty worker threads through ThreadMXBean at a
+ * fixed rate and counts identical stacks, ready for flamegraph.pl or speedscope in collapsed format
+ * (root;...;leaf count). Only threads serving a request are sampled, with the request (method and path,
+ * without query) as the root frame, so idle pool threads do not show up.
+ * - WALL counts every sampled thread, also when blocked or waiting (e.g. on file I/O or locks)
+ * - CPU counts only RUNNABLE threads, an approximation of on-CPU time
+ * Stacks are taken at safepoints, so like every ThreadMXBean/getStackTrace profiler the samples are biased
+ * towards safepoint polls (loop back edges, method returns); hot loops show up, but at their poll.
+ * One profile runs at a time, on the calling thread.
+ */
+public class StackSampler {
+
+    public enum Mode { WALL, CPU }
+
+    /**
+     * Jetty worker threads are named "dw-ID"; Dropwizard renames them to "dw-ID - METHOD URI" while
+     * they serve a request
+     */
+    private static final String WORKER_PREFIX = "dw-";
+    private static final String REQUEST_SEPARATOR = " - ";
+
+    private static final long THREAD_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final int MAX_DEPTH = 128;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Sample for the given duration at samplesPerSecond and return the stack counts.
+     * Throws IllegalStateException when another profile is running.
+     */
+    public Profile profile(Duration duration, int samplesPerSecond, Mode mode) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A profile is already running");
+        }
+        try {
+            Profile profile = new Profile(mode, samplesPerSecond);
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / samplesPerSecond;
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            long[] workers = new long[0];
+            long workersListed = start - THREAD_REFRESH_NANOS;
+            for (long next = start; next < end; next += intervalNanos) {
+                long delay = next - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                } else {
+                    next = System.nanoTime(); // fell behind, skip the missed samples instead of bursting
+                }
+                if (System.nanoTime() - workersListed >= THREAD_REFRESH_NANOS) {
+                    // pool threads come and go; listing them is cheap without stacks, but not free
+                    workers = workerThreadIds();
+                    workersListed = System.nanoTime();
+                }
+                sample(workers, profile);
+            }
+            return profile;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    long[] workerThreadIds() {
+        return Arrays.stream(threads.getThreadInfo(threads.getAllThreadIds(), 0))
+            .filter(info -> info != null && info.getThreadName().startsWith(WORKER_PREFIX))
+            .mapToLong(ThreadInfo::getThreadId)
+            .toArray();
+    }
+
+    /**
+     * Take one sample of the given threads, skipping those that are gone or not serving a request.
+     * Names and states come first without stacks, which is cheap; the stack walk, most of the cost,
+     * is only done for the threads that are counted.
+     */
+    void sample(long[] ids, Profile profile) {
+        profile.samples++;
+        long[] selected = new long[ids.length];
+        int count = 0;
+        for (ThreadInfo info : threads.getThreadInfo(ids, 0)) {
+            if (isCounted(info, profile.mode)) {
+                selected[count++] = info.getThreadId();
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        for (ThreadInfo info : threads.getThreadInfo(Arrays.copyOf(selected, count), MAX_DEPTH)) {
+            if (isCounted(info, profile.mode)) {
+                profile.record(requestFrame(info.getThreadName()), info.getStackTrace());
+            }
+        }
+    }
+
+    private static boolean isCounted(ThreadInfo info, Mode mode) {
+        return info != null && info.getThreadName().contains(REQUEST_SEPARATOR)
+            && (mode == Mode.WALL || info.getThreadState() == Thread.State.RUNNABLE);
+    }
+
+    /**
+     * "dw-42 - GET /words/word-exists?word=cat" becomes "GET /words/word-exists"; spaces are not
+     * allowed in collapsed frames
+     */
+    static String requestFrame(String threadName) {
+        int request = threadName.indexOf(REQUEST_SEPARATOR);
+        String frame = request < 0 ? threadName : threadName.substring(request + REQUEST_SEPARATOR.length());
+        int query = frame.indexOf('?');
+        return (query < 0 ? frame : frame.substring(0, query)).replace(' ', '_').replace(';', '_');
+    }
+
+    /**
+     * Stack counts of one profile. samples is the number of sampling rounds, each thread counted in a
+     * round adds one to its stack, so with several busy threads the stack counts sum up to more.
+     * While sampling, stacks are counted by their frames and only turned into collapsed text once.
+     */
+    public static class Profile {
+        public final Mode mode;
+        public final int samplesPerSecond;
+        public long samples;
+        private final Map<StackKey, Long> counts = new HashMap<>();
+
+        Profile(Mode mode, int samplesPerSecond) {
+            this.mode = mode;
+            this.samplesPerSecond = samplesPerSecond;
+        }
+
+        void record(String root, StackTraceElement[] frames) {
+            counts.merge(new StackKey(root, frames), 1L, Long::sum);
+        }
+
+        /**
+         * Counts per collapsed stack (root;...;leaf); stacks that differ only in line numbers are merged
+         */
+        public Map<String, Long> stacks() {
+            Map<String, Long> stacks = new HashMap<>();
+            counts.forEach((key, count) -> stacks.merge(key.collapse(), count, Long::sum));
+            return stacks;
+        }
+
+        /**
+         * Collapsed stacks, one "frame;frame;frame count" line per stack, most frequent first
+         */
+        public void writeCollapsed(PrintWriter out) {
+            stacks().entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> out.println(entry.getKey() + " " + entry.getValue()));
+            out.flush();
+        }
+    }
+
+    private static final class StackKey {
+        private final String root;
+        private final StackTraceElement[] frames;
+        private final int hash;
+
+        private StackKey(String root, StackTraceElement[] frames) {
+            this.root = root;
+            this.frames = frames;
+            this.hash = 31 * root.hashCode() + Arrays.hashCode(frames);
+        }
+
+        private String collapse() {
+            StringBuilder stack = new StringBuilder(root.length() + frames.length * 48).append(root);
+            for (int i = frames.length - 1; i >= 0; i--) {
+                stack.append(';').append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+            }
+            return stack.toString();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StackKey && hash == ((StackKey) other).hash
+                && root.equals(((StackKey) other).root) && Arrays.equals(frames, ((StackKey) other).frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package manning.performance.wordservice.traced;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Where the time of the slow requests since reset went, from the overlap of every request with the
+ * PauseMonitor timeline:
+ * - gcPauseMs: time inside GC pauses
+ * - otherPauseMs: time inside hiccups that no GC pause explains (safepoints, OS stalls)
+ * - the rest is service work (getServiceMs)
+ * Overlapping events are merged first, so a GC seen by both the notification and the hiccup thread
+ * counts once, as GC. Reloads do not stop a request; requests that ran during one are only counted.
+ */
+public class TailLatency {
+
+    static final int SLOWEST = 10;
+
+    public final double thresholdMs;
+    public final long slowRequests;
+    public final double totalMs;
+    public final double gcPauseMs;
+    public final double otherPauseMs;
+    public final long requestsWithGcPause;
+    public final long requestsWithOtherPause;
+    public final long requestsDuringReload;
+    public final long gcPauses;
+    public final double gcPauseTotalMs;
+    public final long hiccups;
+    public final List<AnnotatedRequest> slowest;
+
+    public TailLatency(double thresholdMs, long slowRequests, double totalMs, double gcPauseMs, double otherPauseMs,
+                       long requestsWithGcPause, long requestsWithOtherPause, long requestsDuringReload,
+                       long gcPauses, double gcPauseTotalMs, long hiccups, List<AnnotatedRequest> slowest) {
+        this.thresholdMs = thresholdMs;
+        this.slowRequests = slowRequests;
+        this.totalMs = totalMs;
+        this.gcPauseMs = gcPauseMs;
+        this.otherPauseMs = otherPauseMs;
+        this.requestsWithGcPause = requestsWithGcPause;
+        this.requestsWithOtherPause = requestsWithOtherPause;
+        this.requestsDuringReload = requestsDuringReload;
+        this.gcPauses = gcPauses;
+        this.gcPauseTotalMs = gcPauseTotalMs;
+        this.hiccups = hiccups;
+        this.slowest = slowest;
+    }
+
+    static TailLatency none() {
+        return new TailLatency(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, List.of());
+    }
+
+    /**
+     * Annotate the slow requests with the pauses of the timeline; fromNanos is the start of the period,
+     * for the pause totals
+     */
+    static TailLatency of(double thresholdMs, List<SlowRequest> requests, PauseMonitor timeline, long fromNanos) {
+        List<AnnotatedRequest> annotated = new ArrayList<>();
+        long totalNanos = 0;
+        long gcNanos = 0;
+        long otherNanos = 0;
+        long withGcPause = 0;
+        long withOtherPause = 0;
+        long duringReload = 0;
+        for (SlowRequest request : requests) {
+            AnnotatedRequest annotation = AnnotatedRequest.of(request,
+                timeline.overlapping(request.startNanos, request.endNanos()));
+            annotated.add(annotation);
+            totalNanos += request.durationNanos;
+            gcNanos += annotation.gcPauseNanos;
+            otherNanos += annotation.otherPauseNanos;
+            withGcPause += annotation.gcPauseNanos > 0 ? 1 : 0;
+            withOtherPause += annotation.otherPauseNanos > 0 ? 1 : 0;
+            duringReload += annotation.duringReload ? 1 : 0;
+        }
+        List<PauseMonitor.Pause> pauses = timeline.since(fromNanos);
+        List<PauseMonitor.Pause> gcPauses = pauses.stream()
+            .filter(pause -> pause.kind == PauseMonitor.Kind.GC)
+            .collect(Collectors.toList());
+        return new TailLatency(
+            thresholdMs,
+            requests.size(),
+            totalNanos / 1_000_000.0,
+            gcNanos / 1_000_000.0,
+            otherNanos / 1_000_000.0,
+            withGcPause,
+            withOtherPause,
+            duringReload,
+            gcPauses.size(),
+            gcPauses.stream().mapToLong(pause -> pause.durationNanos).sum() / 1_000_000.0,
+            pauses.stream().filter(pause -> pause.kind == PauseMonitor.Kind.HICCUP).count(),
+            annotated.stream()
+                .sorted(Comparator.comparingDouble((AnnotatedRequest request) -> request.durationMs).reversed())
+                .limit(SLOWEST)
+                .collect(Collectors.toList()));
+    }
+
+    public double getServiceMs() {
+        return totalMs - gcPauseMs - otherPauseMs;
+    }
+
+    /**
+     * Fraction of the slow requests' time spent in GC pauses
+     */
+    public double getGcShare() {
+        return totalMs == 0 ? 0 : gcPauseMs / totalMs;
+    }
+
+    /**
+     * Fraction of the slow requests' time spent in any pause, GC or not
+     */
+    public double getPauseShare() {
+        return totalMs == 0 ? 0 : (gcPauseMs + otherPauseMs) / totalMs;
+    }
+
+    /**
+     * Nanoseconds of fromNanos..toNanos covered by the pauses, overlapping pauses merged
+     */
+    static long covered(List<PauseMonitor.Pause> pauses, long fromNanos, long toNanos) {
+        List<PauseMonitor.Pause> sorted = new ArrayList<>(pauses);
+        sorted.sort(Comparator.comparingLong(pause -> pause.startNanos));
+        long covered = 0;
+        long coveredUntil = fromNanos;
+        for (PauseMonitor.Pause pause : sorted) {
+            long start = Math.max(pause.startNanos, coveredUntil);
+            long end = Math.min(Math.max(pause.endNanos(), pause.startNanos + 1), toNanos);
+            if (end > start) {
+                covered += end - start;
+                coveredUntil = end;
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * A slow request with the pauses that overlapped it
+     */
+    public static class AnnotatedRequest {
+        public final String method;
+        public final long timestampMillis;
+        public final double durationMs;
+        public final double gcPauseMs;
+        public final double otherPauseMs;
+        public final boolean duringReload;
+        public final List<String> pauses;
+        private final long gcPauseNanos;
+        private final long otherPauseNanos;
+
+        private AnnotatedRequest(SlowRequest request, long gcPauseNanos, long otherPauseNanos,
+                                 boolean duringReload, List<String> pauses) {
+            this.method = request.method;
+            this.timestampMillis = request.timestampMillis;
+            this.durationMs = request.durationNanos / 1_000_000.0;
+            this.gcPauseMs = gcPauseNanos / 1_000_000.0;
+            this.otherPauseMs = otherPauseNanos / 1_000_000.0;
+            this.duringReload = duringReload;
+            this.pauses = pauses;
+            this.gcPauseNanos = gcPauseNanos;
+            this.otherPauseNanos = otherPauseNanos;
+        }
+
+        static AnnotatedRequest of(SlowRequest request, List<PauseMonitor.Pause> overlapping) {
+            List<PauseMonitor.Pause> gc = new ArrayList<>();
+            List<PauseMonitor.Pause> stopped = new ArrayList<>();
+            boolean duringReload = false;
+            for (PauseMonitor.Pause pause : overlapping) {
+                if (pause.kind == PauseMonitor.Kind.RELOAD) {
+                    duringReload = true;
+                } else {
+                    stopped.add(pause);
+                    if (pause.kind == PauseMonitor.Kind.GC) {
+                        gc.add(pause);
+                    }
+                }
+            }
+            long gcNanos = covered(gc, request.startNanos, request.endNanos());
+            long pauseNanos = covered(stopped, request.startNanos, request.endNanos());
+            return new AnnotatedRequest(request, gcNanos, pauseNanos - gcNanos, duringReload,
+                overlapping.stream().map(PauseMonitor.Pause::toString).collect(Collectors.toList()));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-30s: %8.2f ms (gc %.2f ms, other pauses %.2f ms%s)%s", method, durationMs,
+                gcPauseMs, otherPauseMs, duringReload ? ", during reload" : "",
+                pauses.isEmpty() ? "" : " " + pauses);
+        }
+    }
+}
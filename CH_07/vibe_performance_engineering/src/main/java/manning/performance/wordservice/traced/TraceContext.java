@@ -0,0 +1,198 @@
+package manning.performance.wordservice.traced;
+
+import com.google.common.base.Utf8;
+
+import java.net.URI;
+
+/**
+ * Per-request trace scope. Lines, bytes and string comparisons are counted in plain fields while
+ * scanning and flushed to MetricsCollector once, together with the method execution times. The
+ * per-line cost of tracing is a field increment instead of an update of a shared LongAdder.
+ * Sampled contexts also take the thread's CPU time and allocated bytes at start and close, so every
+ * traced method gets wall time, CPU time and allocation per call (see ThreadResources).
+ * Requests slower than the slow request threshold are copied into the SlowRequestLog with all of it,
+ * the word or request URI and the thread, without allocating.
+ * Sampled contexts count the probes that ran inside them (nested scopes, counter updates, file open
+ * timings) and record the estimated instrumentation time per call with their timer, see ProbeCost.
+ *
+ * The outermost context on a thread is the request: it takes the sampling decision, and contexts
+ * opened inside it (e.g. the service call inside the endpoint) hand their timings and counters to it
+ * on close. When the request ends it is either flushed in full or, if not sampled, only counted.
+ * Not thread-safe: open with try-with-resources on the thread serving the request.
+ */
+final class TraceContext implements AutoCloseable {
+
+    static final int MAX_NESTED_TIMINGS = 4;
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final MetricsCollector metrics;
+    private final MetricsCollector.Timer timer;
+    private final TraceContext parent;
+    private final TraceContext request;
+    private final SamplingPolicy sampling;
+    private final boolean sampled;
+    private final long startTimeNanos;
+    private final long startCpuNanos;
+    private final long startAllocatedBytes;
+    private final long startScopes;
+    private final long startCounterUpdates;
+    private final long startFileOpens;
+
+    // counters and nested timings, only used on the request context
+    private boolean fileOpened;
+    private long fileOpenTimeNanos;
+    private long linesScanned;
+    private long bytesRead;
+    private long stringComparisons;
+    private long fileOpens;
+    private long scopes;
+    private MetricsCollector.Timer[] nestedTimers;
+    private long[] nestedTimesNanos;
+    private long[] nestedCpuNanos;
+    private long[] nestedAllocatedBytes;
+    private long[] nestedProbeNanos;
+    private int nestedCount;
+    private String word;
+    private URI requestUri;
+
+    private TraceContext(MetricsCollector metrics, MetricsCollector.Timer timer, TraceContext parent) {
+        this(metrics, timer, parent, parent == null ? metrics.getSamplingPolicy() : parent.sampling);
+    }
+
+    private TraceContext(MetricsCollector metrics, MetricsCollector.Timer timer, TraceContext parent,
+                         SamplingPolicy sampling) {
+        this.metrics = metrics;
+        this.timer = timer;
+        this.parent = parent;
+        this.request = parent == null ? this : parent.request;
+        this.sampling = sampling;
+        this.sampled = parent == null ? sampling.sampleAtStart() : parent.sampled;
+        if (sampled && parent != null) {
+            request.scopes++;
+        }
+        this.startScopes = sampled ? request.scopes : 0;
+        this.startCounterUpdates = sampled ? request.counterUpdates() : 0;
+        this.startFileOpens = sampled ? request.fileOpens : 0;
+        this.startAllocatedBytes = sampled ? ThreadResources.allocatedBytes() : -1;
+        this.startCpuNanos = sampled ? ThreadResources.cpuNanos() : -1;
+        this.startTimeNanos = sampled ? System.nanoTime() : 0;
+    }
+
+    static TraceContext start(MetricsCollector metrics, MetricsCollector.Timer timer) {
+        TraceContext context = new TraceContext(metrics, timer, CURRENT.get());
+        CURRENT.set(context);
+        return context;
+    }
+
+    void fileOpened(long openTimeNanos) {
+        request.fileOpened = true;
+        request.fileOpens++;
+        request.fileOpenTimeNanos += openTimeNanos;
+    }
+
+    void lineScanned(String line) {
+        request.linesScanned++;
+        request.bytesRead += Utf8.encodedLength(line) + 1; // UTF-8 bytes, +1 for newline
+    }
+
+    void stringCompared() {
+        request.stringComparisons++;
+    }
+
+    /**
+     * The word this request is about, shown for slow requests
+     */
+    void word(String word) {
+        request.word = word;
+    }
+
+    /**
+     * The HTTP request URI, shown for slow requests without a word
+     */
+    void requestUri(URI requestUri) {
+        request.requestUri = requestUri;
+    }
+
+    private long counterUpdates() {
+        return linesScanned + stringComparisons + fileOpens;
+    }
+
+    @Override
+    public void close() {
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+        if (!sampled) {
+            if (parent == null) {
+                metrics.recordUnsampledRequest();
+            }
+            return;
+        }
+        long executionTimeNanos = System.nanoTime() - startTimeNanos;
+        long cpuNanos = since(startCpuNanos, ThreadResources.cpuNanos());
+        long allocatedBytes = since(startAllocatedBytes, ThreadResources.allocatedBytes());
+        long fileOpens = request.fileOpens - startFileOpens;
+        long probeNanos = ProbeCost.current().estimateNanos(request.scopes - startScopes,
+            request.counterUpdates() - startCounterUpdates, 2 * fileOpens);
+        if (parent != null) {
+            request.addNestedTiming(timer, executionTimeNanos, cpuNanos, allocatedBytes, probeNanos);
+        } else if (sampling.keep(executionTimeNanos)) {
+            flush(executionTimeNanos, cpuNanos, allocatedBytes, probeNanos);
+        } else {
+            metrics.recordUnsampledRequest();
+        }
+    }
+
+    private static long since(long start, long end) {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+
+    private void addNestedTiming(MetricsCollector.Timer nestedTimer, long executionTimeNanos,
+                                 long cpuNanos, long allocatedBytes, long probeNanos) {
+        if (nestedTimers == null) {
+            nestedTimers = new MetricsCollector.Timer[MAX_NESTED_TIMINGS];
+            nestedTimesNanos = new long[MAX_NESTED_TIMINGS];
+            nestedCpuNanos = new long[MAX_NESTED_TIMINGS];
+            nestedAllocatedBytes = new long[MAX_NESTED_TIMINGS];
+            nestedProbeNanos = new long[MAX_NESTED_TIMINGS];
+        }
+        if (nestedCount == MAX_NESTED_TIMINGS) {
+            // deeper than expected, do not wait for the tail decision
+            nestedTimer.record(executionTimeNanos, cpuNanos, allocatedBytes, probeNanos);
+            return;
+        }
+        nestedTimers[nestedCount] = nestedTimer;
+        nestedTimesNanos[nestedCount] = executionTimeNanos;
+        nestedCpuNanos[nestedCount] = cpuNanos;
+        nestedAllocatedBytes[nestedCount] = allocatedBytes;
+        nestedProbeNanos[nestedCount] = probeNanos;
+        nestedCount++;
+    }
+
+    private void flush(long executionTimeNanos, long cpuNanos, long allocatedBytes, long probeNanos) {
+        if (fileOpened) {
+            metrics.recordLinesScanned(linesScanned);
+            metrics.recordFileRead(bytesRead, fileOpenTimeNanos);
+        }
+        if (stringComparisons > 0) {
+            metrics.recordStringComparisons(stringComparisons);
+        }
+        if (allocatedBytes > 0) {
+            metrics.recordMemoryUsage(allocatedBytes);
+        }
+        for (int i = 0; i < nestedCount; i++) {
+            nestedTimers[i].record(nestedTimesNanos[i], nestedCpuNanos[i], nestedAllocatedBytes[i],
+                nestedProbeNanos[i]);
+        }
+        timer.record(executionTimeNanos, cpuNanos, allocatedBytes, probeNanos);
+        if (executionTimeNanos >= metrics.slowRequestThresholdNanos()) {
+            metrics.slowRequestLog().record(timer.name(), word, requestUri, Thread.currentThread().getName(),
+                System.currentTimeMillis() - executionTimeNanos / 1_000_000, startTimeNanos, executionTimeNanos,
+                cpuNanos, allocatedBytes, linesScanned, bytesRead, stringComparisons, fileOpenTimeNanos,
+                nestedTimers, nestedTimesNanos, nestedCount);
+        }
+        metrics.recordSampledRequest();
+    }
+}
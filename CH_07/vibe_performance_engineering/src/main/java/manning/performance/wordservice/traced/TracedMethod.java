@@ -0,0 +1,51 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.Traced;
+
+import java.lang.reflect.Method;
+
+/**
+ * Timer and request counter of one @Traced method, resolved once when the method is bound
+ */
+final class TracedMethod {
+
+    private final MetricsCollector metrics;
+    private final MetricsCollector.Timer timer;
+    private final MetricsCollector.Counter requests;
+
+    private TracedMethod(MetricsCollector metrics, MetricsCollector.Timer timer, MetricsCollector.Counter requests) {
+        this.metrics = metrics;
+        this.timer = timer;
+        this.requests = requests;
+    }
+
+    /**
+     * Bind the first candidate that is annotated, on the method itself or on its declaring type.
+     *
+     * @return null if none of the candidates is traced
+     */
+    static TracedMethod of(MetricsCollector metrics, String defaultPrefix, Method... candidates) {
+        for (Method method : candidates) {
+            Traced onMethod = method.getAnnotation(Traced.class);
+            Traced traced = onMethod != null ? onMethod : method.getDeclaringClass().getAnnotation(Traced.class);
+            if (traced == null) {
+                continue;
+            }
+            String name = onMethod != null && !onMethod.value().isEmpty()
+                ? onMethod.value()
+                : defaultPrefix + "." + method.getName();
+            MetricsCollector.Counter requests = traced.endpoint().isEmpty()
+                ? null
+                : metrics.requestCounter(traced.endpoint());
+            return new TracedMethod(metrics, metrics.timer(name), requests);
+        }
+        return null;
+    }
+
+    TraceContext start() {
+        if (requests != null) {
+            requests.increment();
+        }
+        return TraceContext.start(metrics, timer);
+    }
+}
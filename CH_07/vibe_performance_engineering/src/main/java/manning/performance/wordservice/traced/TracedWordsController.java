@@ -1,21 +1,32 @@
 package manning.performance.wordservice.traced;
 
 
+import manning.performance.wordservice.Traced;
+import manning.performance.wordservice.WordsService;
+import manning.performance.wordservice.initial.DefaultWordsService;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
  * Traced version of WordsController with performance metrics collection
  * to identify hot paths and bottlenecks in the word-of-the-day application.
+ * Endpoints are timed with @Traced (see TracingApplicationListener); /engines/{engine}/... serve
+ * any WordsService engine through TracingDecorator.
  */
 @Path("/traced-words")
 @Produces(MediaType.APPLICATION_JSON)
@@ -24,11 +35,23 @@ public class TracedWordsController {
     
     private final TracedWordsService wordsService;
     private final MetricsCollector metrics;
+    private final Map<String, WordsService> engines = new LinkedHashMap<>();
 
     public TracedWordsController() {
+        this(Map.of());
+    }
+
+    /**
+     * @param engines additional engines by name, served under /engines/{name}/ next to "default"
+     */
+    public TracedWordsController(Map<String, WordsService> engines) {
         java.nio.file.Path defaultPath = getPath("words.txt");
         wordsService = new TracedWordsService(defaultPath);
         metrics = MetricsCollector.getInstance();
+        this.engines.put("default", TracingDecorator.decorate(WordsService.class,
+                new DefaultWordsService(defaultPath), "default"));
+        engines.forEach((name, engine) ->
+                this.engines.put(name, TracingDecorator.decorate(WordsService.class, engine, name)));
     }
 
     /**
@@ -37,18 +60,13 @@ public class TracedWordsController {
      */
     @GET
     @Path("/word-of-the-day")
+    @Traced("getWordOfTheDay_endpoint")
     public Response getWordOfTheDay() {
-        long startTime = System.nanoTime();
-        
         try {
             String word = wordsService.getWordOfTheDay();
             
-            // Record request-level metrics
-            metrics.recordMethodExecution("getWordOfTheDay_endpoint", System.nanoTime() - startTime);
-            
             return Response.ok(word).build();
         } catch (Exception e) {
-            metrics.recordMethodExecution("getWordOfTheDay_endpoint", System.nanoTime() - startTime);
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error retrieving word of the day: " + e.getMessage())
                     .build();
@@ -61,18 +79,54 @@ public class TracedWordsController {
      */
     @GET
     @Path("/word-exists")
+    @Traced("wordExists_endpoint")
     public Response validateWord(@QueryParam("word") String word) {
-        long startTime = System.nanoTime();
-        
         try {
             boolean exists = wordsService.wordExists(word);
             
-            // Record request-level metrics
-            metrics.recordMethodExecution("wordExists_endpoint", System.nanoTime() - startTime);
-            
             return Response.status(Status.OK.getStatusCode(), String.valueOf(exists)).build();
         } catch (Exception e) {
-            metrics.recordMethodExecution("wordExists_endpoint", System.nanoTime() - startTime);
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error validating word: " + e.getMessage())
+                    .build();
+        }
+    }
+    
+    /**
+     * Word of the day from any engine, timed as ENGINE.getWordOfTheDay
+     */
+    @GET
+    @Path("/engines/{engine}/word-of-the-day")
+    @Traced("engineWordOfTheDay_endpoint")
+    public Response getEngineWordOfTheDay(@PathParam("engine") String engine) {
+        WordsService engineService = engines.get(engine);
+        if (engineService == null) {
+            return unknownEngine(engine);
+        }
+        try {
+            return Response.ok(engineService.getWordOfTheDay()).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error retrieving word of the day: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    /**
+     * Word validation by any engine, timed as ENGINE.wordExists
+     */
+    @GET
+    @Path("/engines/{engine}/word-exists")
+    @Traced("engineWordExists_endpoint")
+    public Response validateEngineWord(@PathParam("engine") String engine, @QueryParam("word") String word) {
+        WordsService engineService = engines.get(engine);
+        if (engineService == null) {
+            return unknownEngine(engine);
+        }
+        try {
+            boolean exists = engineService.wordExists(word);
+            return Response.status(Status.OK.getStatusCode(), String.valueOf(exists)).build();
+        } catch (Exception e) {
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error validating word: " + e.getMessage())
                     .build();
@@ -84,45 +138,131 @@ public class TracedWordsController {
      */
     @GET
     @Path("/metrics")
+    @Traced("getMetrics_endpoint")
     public Response getMetrics() {
-        long startTime = System.nanoTime();
-        
         try {
             MetricsCollector.MetricsReport report = wordsService.getMetrics();
             
-            metrics.recordMethodExecution("getMetrics_endpoint", System.nanoTime() - startTime);
-            
             return Response.ok(report).build();
         } catch (Exception e) {
-            metrics.recordMethodExecution("getMetrics_endpoint", System.nanoTime() - startTime);
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error retrieving metrics: " + e.getMessage())
                     .build();
         }
     }
     
+    /**
+     * Metrics in OpenMetrics text format for Prometheus scraping
+     */
+    @GET
+    @Path("/metrics/openmetrics")
+    @Produces(OpenMetricsWriter.CONTENT_TYPE)
+    public Response getOpenMetrics() {
+        StreamingOutput output = metrics::writeOpenMetrics;
+        return Response.ok(output).type(OpenMetricsWriter.CONTENT_TYPE).build();
+    }
+    
+    /**
+     * Totals since the last reset and their latency histograms as a RunSnapshot (JSON), to be stored
+     * as a baseline or checked against one: RegressionDetector BASELINE_DIR snapshot.json
+     */
+    @GET
+    @Path("/metrics/snapshot")
+    public Response getSnapshot(@QueryParam("engine") String engine,
+                                @QueryParam("version") String version,
+                                @QueryParam("commit") String commit) {
+        try {
+            return Response.ok(metrics.snapshot(orDefault(engine, "default"), orDefault(version, "dev"),
+                    orDefault(commit, "unknown"))).build();
+        } catch (Exception e) {
+            return Response.status(Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error creating snapshot: " + e.getMessage())
+                    .build();
+        }
+    }
+    
+    /**
+     * Latency histograms of the retained intervals (last 15 minutes) in HdrHistogram log format.
+     * Export once per run with a different run name (e.g. initial, traced, optimized) and compare
+     * the logs offline with HistogramLogAnalyzer or HistogramLogProcessor -tag run/method.
+     */
+    @GET
+    @Path("/metrics/histogram-log")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getHistogramLog(@QueryParam("run") String run) {
+        String runTag = run == null || run.isBlank() ? "traced" : run;
+        if (!runTag.matches("[A-Za-z0-9_.-]+")) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Invalid run name: " + run)
+                    .build();
+        }
+        StreamingOutput log = out -> metrics.writeHistogramLog(out, runTag);
+        return Response.ok(log)
+                .header("Content-Disposition", "attachment; filename=\"" + runTag + ".hlog\"")
+                .build();
+    }
+    
+    private static String orDefault(String value, String defaultValue) {
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+    
+    /**
+     * Current sampling policy, e.g. "fixed:0.01"
+     */
+    @GET
+    @Path("/sampling")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getSamplingPolicy() {
+        return Response.ok(metrics.getSamplingPolicy().toString()).build();
+    }
+    
+    /**
+     * Switch the sampling policy at runtime: always, fixed:RATE, rate:TRACES_PER_SECOND or tail:THRESHOLD_MS
+     */
+    @POST
+    @Path("/sampling")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response setSamplingPolicy(@QueryParam("policy") String policy) {
+        if (policy == null) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity("Missing policy parameter")
+                    .build();
+        }
+        try {
+            SamplingPolicy samplingPolicy = SamplingPolicy.parse(policy);
+            metrics.setSamplingPolicy(samplingPolicy);
+            return Response.ok(samplingPolicy.toString()).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Status.BAD_REQUEST)
+                    .entity(e.getMessage())
+                    .build();
+        }
+    }
+    
     /**
      * Reset metrics endpoint
      */
     @GET
     @Path("/reset-metrics")
+    @Traced("resetMetrics_endpoint")
     public Response resetMetrics() {
-        long startTime = System.nanoTime();
-        
         try {
             wordsService.resetMetrics();
             
-            metrics.recordMethodExecution("resetMetrics_endpoint", System.nanoTime() - startTime);
-            
             return Response.ok("Metrics reset successfully").build();
         } catch (Exception e) {
-            metrics.recordMethodExecution("resetMetrics_endpoint", System.nanoTime() - startTime);
             return Response.status(Status.INTERNAL_SERVER_ERROR)
                     .entity("Error resetting metrics: " + e.getMessage())
                     .build();
         }
     }
 
+    private Response unknownEngine(String engine) {
+        return Response.status(Status.NOT_FOUND)
+                .entity("Unknown engine: " + engine + ", available: " + engines.keySet())
+                .build();
+    }
+
     private java.nio.file.Path getPath(String filename) {
         try {
             return Paths.get(
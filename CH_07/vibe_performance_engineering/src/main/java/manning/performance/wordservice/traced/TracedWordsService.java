@@ -3,6 +3,7 @@ package manning.performance.wordservice.traced;
 import manning.performance.wordservice.WordsService;
 
 import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.Scanner;
@@ -17,6 +18,11 @@ public class TracedWordsService implements WordsService {
     private static final int MULTIPLY_FACTOR = 100;
     private static final IntSupplier DEFAULT_INDEX_PROVIDER = TracedWordsService::getIndexForToday;
     private static final MetricsCollector metrics = MetricsCollector.getInstance();
+    private static final MetricsCollector.Timer wordOfTheDayTimer = metrics.timer("getWordOfTheDay");
+    private static final MetricsCollector.Timer wordExistsTimer = metrics.timer("wordExists");
+    private static final MetricsCollector.Timer indexForTodayTimer = metrics.timer("getIndexForToday");
+    private static final MetricsCollector.Counter wordOfTheDayRequests = metrics.requestCounter("word-of-the-day");
+    private static final MetricsCollector.Counter wordExistsRequests = metrics.requestCounter("word-exists");
 
     private final Path filePath;
     private final IntSupplier indexProvider;
@@ -32,108 +38,72 @@ public class TracedWordsService implements WordsService {
 
     @Override
     public String getWordOfTheDay() {
-        long startTime = System.nanoTime();
-        metrics.recordRequest("word-of-the-day");
+        wordOfTheDayRequests.increment();
         
-        try {
+        try (TraceContext trace = TraceContext.start(metrics, wordOfTheDayTimer)) {
             int index = indexProvider.getAsInt();
             
             // Track file I/O operations
             long fileOpenStart = System.nanoTime();
-            long bytesRead = 0;
-            int linesScanned = 0;
             
-            try (Scanner scanner = new Scanner(filePath.toFile())) {
-                long fileOpenTime = System.nanoTime() - fileOpenStart;
+            try (Scanner scanner = new Scanner(filePath.toFile(), StandardCharsets.UTF_8.name())) {
+                trace.fileOpened(System.nanoTime() - fileOpenStart);
                 
                 int i = 0;
                 while (scanner.hasNextLine()) {
                     String line = scanner.nextLine();
-                    linesScanned++;
-                    bytesRead += line.length() + 1; // +1 for newline
+                    trace.lineScanned(line);
                     
                     if (index == i) {
-                        metrics.recordLinesScanned(linesScanned);
-                        metrics.recordFileRead(bytesRead, fileOpenTime);
-                        metrics.recordMethodExecution("getWordOfTheDay", System.nanoTime() - startTime);
-                        
                         return line;
                     }
                     i++;
                 }
             } catch (FileNotFoundException e) {
-                metrics.recordMethodExecution("getWordOfTheDay", System.nanoTime() - startTime);
                 throw new RuntimeException("Problem in getWordOfTheDay for index: " + filePath, e);
             }
 
-            metrics.recordLinesScanned(linesScanned);
-            metrics.recordFileRead(bytesRead, System.nanoTime() - fileOpenStart);
-            metrics.recordMethodExecution("getWordOfTheDay", System.nanoTime() - startTime);
-            
             return "No word today.";
-            
-        } catch (Exception e) {
-            metrics.recordMethodExecution("getWordOfTheDay", System.nanoTime() - startTime);
-            throw e;
         }
     }
 
     @Override
     public boolean wordExists(String word) {
-        long startTime = System.nanoTime();
-        metrics.recordRequest("word-exists");
+        wordExistsRequests.increment();
         
-        try {
+        try (TraceContext trace = TraceContext.start(metrics, wordExistsTimer)) {
+            trace.word(word);
             // Track file I/O operations
             long fileOpenStart = System.nanoTime();
-            long bytesRead = 0;
-            int linesScanned = 0;
-            // Track string comparison count for metrics
             
-            try (Scanner scanner = new Scanner(filePath.toFile())) {
-                long fileOpenTime = System.nanoTime() - fileOpenStart;
+            try (Scanner scanner = new Scanner(filePath.toFile(), StandardCharsets.UTF_8.name())) {
+                trace.fileOpened(System.nanoTime() - fileOpenStart);
                 
                 while (scanner.hasNextLine()) {
                     String line = scanner.nextLine();
-                    linesScanned++;
-                    bytesRead += line.length() + 1; // +1 for newline
+                    trace.lineScanned(line);
                     
                     // Track string comparison operations
-                    metrics.recordStringComparison();
+                    trace.stringCompared();
                     
                     if (word.equals(line)) {
-                        metrics.recordLinesScanned(linesScanned);
-                        metrics.recordFileRead(bytesRead, fileOpenTime);
-                        metrics.recordMethodExecution("wordExists", System.nanoTime() - startTime);
-                        
                         return true;
                     }
                 }
             } catch (FileNotFoundException e) {
-                metrics.recordMethodExecution("wordExists", System.nanoTime() - startTime);
                 throw new RuntimeException("Problem in wordExists for word: " + word, e);
             }
             
-            metrics.recordLinesScanned(linesScanned);
-            metrics.recordFileRead(bytesRead, System.nanoTime() - fileOpenStart);
-            metrics.recordMethodExecution("wordExists", System.nanoTime() - startTime);
-            
             return false;
-            
-        } catch (Exception e) {
-            metrics.recordMethodExecution("wordExists", System.nanoTime() - startTime);
-            throw e;
         }
     }
 
+    @SuppressWarnings("try") // the scope only times the computation
     private static int getIndexForToday() {
-        long startTime = System.nanoTime();
-        
-        LocalDate now = LocalDate.now();
-        int result = now.getYear() + now.getDayOfYear() * MULTIPLY_FACTOR;
-        
-        metrics.recordMethodExecution("getIndexForToday", System.nanoTime() - startTime);
-        return result;
+        try (TraceContext trace = TraceContext.start(metrics, indexForTodayTimer)) {
+            LocalDate now = LocalDate.now();
+            return now.getYear() + now.getDayOfYear() * MULTIPLY_FACTOR;
+        }
     }
     
     /**
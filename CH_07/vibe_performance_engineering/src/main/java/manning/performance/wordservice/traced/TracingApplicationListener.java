@@ -0,0 +1,89 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.Traced;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Times @Traced JAX-RS resource methods, the way Dropwizard times @Timed ones: the resource model is
+ * scanned once at startup and every request gets the same stateless listener, which opens a
+ * TraceContext on RESOURCE_METHOD_START and closes it on RESOURCE_METHOD_FINISHED (also fired when
+ * the method throws). Register with environment.jersey().register(new TracingApplicationListener()).
+ */
+public class TracingApplicationListener implements ApplicationEventListener {
+
+    private static final String TRACE_PROPERTY = TraceContext.class.getName();
+
+    private final MetricsCollector metrics;
+    private final RequestEventListener requestListener = this::onRequestEvent;
+    private volatile Map<Method, TracedMethod> tracedMethods = Map.of();
+
+    public TracingApplicationListener() {
+        this(MetricsCollector.getInstance());
+    }
+
+    TracingApplicationListener(MetricsCollector metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+        if (event.getType() == ApplicationEvent.Type.INITIALIZATION_APP_FINISHED) {
+            Map<Method, TracedMethod> methods = new HashMap<>();
+            for (Resource resource : event.getResourceModel().getResources()) {
+                bind(resource, methods);
+            }
+            tracedMethods = methods;
+        }
+    }
+
+    private void bind(Resource resource, Map<Method, TracedMethod> methods) {
+        for (ResourceMethod resourceMethod : resource.getAllMethods()) {
+            Method method = resourceMethod.getInvocable().getDefinitionMethod();
+            Class<?> resourceClass = resourceMethod.getInvocable().getHandler().getHandlerClass();
+            TracedMethod traced = TracedMethod.of(metrics, resourceClass.getSimpleName(), method);
+            if (traced != null) {
+                methods.put(method, traced);
+            }
+        }
+        for (Resource child : resource.getChildResources()) {
+            bind(child, methods);
+        }
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return tracedMethods.isEmpty() ? null : requestListener;
+    }
+
+    private void onRequestEvent(RequestEvent event) {
+        switch (event.getType()) {
+            case RESOURCE_METHOD_START:
+                TracedMethod traced = tracedMethods.get(
+                    event.getUriInfo().getMatchedResourceMethod().getInvocable().getDefinitionMethod());
+                if (traced != null) {
+                    TraceContext trace = traced.start();
+                    trace.requestUri(event.getContainerRequest().getRequestUri());
+                    event.getContainerRequest().setProperty(TRACE_PROPERTY, trace);
+                }
+                break;
+            case RESOURCE_METHOD_FINISHED:
+                TraceContext trace = (TraceContext) event.getContainerRequest().getProperty(TRACE_PROPERTY);
+                if (trace != null) {
+                    event.getContainerRequest().removeProperty(TRACE_PROPERTY);
+                    trace.close();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
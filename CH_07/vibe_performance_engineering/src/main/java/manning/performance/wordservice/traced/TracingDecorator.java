@@ -0,0 +1,89 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.Traced;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wraps any implementation of an interface (e.g. a WordsService engine) in a proxy that times its
+ * @Traced methods, so engines do not need a hand-written traced twin. The annotation is looked up
+ * on the implementation first, then on the interface; WordsService itself is annotated, so every
+ * engine is traced as ENGINE.getWordOfTheDay and ENGINE.wordExists.
+ *
+ * Timers are resolved when the proxy is created, a call pays a map lookup, a reflective invoke and
+ * the TraceContext (see TracingDecoratorBenchmark for the numbers).
+ */
+public final class TracingDecorator {
+
+    private TracingDecorator() {
+    }
+
+    /**
+     * Decorate with timers named after the implementation class, e.g. CachedWordsService.wordExists
+     */
+    public static <T> T decorate(Class<T> type, T target) {
+        return decorate(type, target, target.getClass().getSimpleName());
+    }
+
+    public static <T> T decorate(Class<T> type, T target, String engineName) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("Only interfaces can be decorated: " + type.getName());
+        }
+        MetricsCollector metrics = MetricsCollector.getInstance();
+        Map<Method, TracedMethod> tracedMethods = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            TracedMethod traced = TracedMethod.of(metrics, engineName, implementationOf(target, method), method);
+            if (traced != null) {
+                tracedMethods.put(method, traced);
+            }
+        }
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            new TracingHandler(target, tracedMethods));
+        return type.cast(proxy);
+    }
+
+    private static Method implementationOf(Object target, Method method) {
+        try {
+            return target.getClass().getMethod(method.getName(), method.getParameterTypes());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Target does not implement " + method, e);
+        }
+    }
+
+    private static final class TracingHandler implements InvocationHandler {
+        private final Object target;
+        private final Map<Method, TracedMethod> tracedMethods;
+
+        TracingHandler(Object target, Map<Method, TracedMethod> tracedMethods) {
+            this.target = target;
+            this.tracedMethods = tracedMethods;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            TracedMethod traced = tracedMethods.get(method);
+            if (traced == null) {
+                return invokeTarget(method, args); // untraced and Object methods
+            }
+            try (TraceContext trace = traced.start()) {
+                if (args != null && args.length > 0 && args[0] instanceof String) {
+                    trace.word((String) args[0]); // e.g. wordExists(word), shown for slow requests
+                }
+                return invokeTarget(method, args);
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
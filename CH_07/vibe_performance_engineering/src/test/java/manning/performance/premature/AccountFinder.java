@@ -14,6 +14,7 @@ public class AccountFinder {
     private List<Account> accounts;
     private ExecutorService executor;
     private Map<Integer, Account> accountMap;
+    private IntAccountMap intAccountMap;
 
     public AccountFinder(List<Account> accounts) {
         this.accounts = accounts;
@@ -23,6 +24,8 @@ public class AccountFinder {
         for (Account account : accounts) {
             accountMap.put(account.getId(), account);
         }
+        // Same index keyed by primitive ints, no Integer boxing on lookups
+        this.intAccountMap = IntAccountMap.of(accounts);
     }
 
     // Original single-threaded version
@@ -95,6 +98,15 @@ public class AccountFinder {
         return accountMap.containsKey(id);
     }
 
+    // Primitive int lookup - no boxed key, no HashMap Node per entry
+    public Optional<Account> accountIntMap(int id) {
+        return Optional.ofNullable(intAccountMap.get(id));
+    }
+
+    public boolean accountExistsIntMap(int id) {
+        return intAccountMap.containsKey(id);
+    }
+
     // Get account count
     public int getAccountCount() {
         return accountMap.size();
@@ -21,7 +21,9 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +47,7 @@ public class AccountFinderJMHBenchmark {
     private AccountFinder accountFinder;
     private List<Account> accounts;
     private List<Integer> searchIds;
+    private int[] searchIdValues;
     private Random random;
 
     @Setup(Level.Trial)
@@ -53,12 +56,14 @@ public class AccountFinderJMHBenchmark {
         accounts = generateAccounts(accountCount);
         accountFinder = new AccountFinder(accounts);
         searchIds = generateRandomIds(random, 100);
+        searchIdValues = toIntArray(searchIds);
     }
 
     @Setup(Level.Iteration)
     public void setupIteration() {
         // Shuffle search IDs for each iteration to avoid cache effects
         searchIds = generateRandomIds(random, 100);
+        searchIdValues = toIntArray(searchIds);
     }
 
     @TearDown(Level.Trial)
@@ -142,6 +147,50 @@ public class AccountFinderJMHBenchmark {
         return accountFinder.accountExists(id);
     }
 
+    @Benchmark
+    public Optional<Account> intMap() {
+        int id = searchIdValues[random.nextInt(searchIdValues.length)];
+        return accountFinder.accountIntMap(id);
+    }
+
+    // HashMap lookup from a primitive id, as most callers have it: the key is boxed on every call
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Account> hashMapFromIntSampleTime() {
+        int id = searchIdValues[random.nextInt(searchIdValues.length)];
+        return accountFinder.accountHashMap(id);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Optional<Account> intMapSampleTime() {
+        int id = searchIdValues[random.nextInt(searchIdValues.length)];
+        return accountFinder.accountIntMap(id);
+    }
+
+    @Benchmark
+    public boolean intMapExists() {
+        int id = searchIdValues[random.nextInt(searchIdValues.length)];
+        return accountFinder.accountExistsIntMap(id);
+    }
+
+    // Footprint of the two indexes: run with -prof gc, gc.alloc.rate.norm is the size of one index in bytes
+    @Benchmark
+    public Map<Integer, Account> buildHashMap() {
+        Map<Integer, Account> map = new HashMap<>(accounts.size() * 4 / 3 + 1);
+        for (Account account : accounts) {
+            map.put(account.getId(), account);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public IntAccountMap buildIntMap() {
+        return IntAccountMap.of(accounts);
+    }
+
     private List<Account> generateAccounts(int count) {
         List<Account> accounts = new ArrayList<>();
         for (int i = 0; i < count; i++) {
@@ -150,6 +199,14 @@ public class AccountFinderJMHBenchmark {
         return accounts;
     }
 
+    private static int[] toIntArray(List<Integer> ids) {
+        int[] values = new int[ids.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ids.get(i);
+        }
+        return values;
+    }
+
     private List<Integer> generateRandomIds(Random random, int count) {
         List<Integer> ids = new ArrayList<>();
         for (int i = 0; i < count; i++) {
@@ -0,0 +1,134 @@
+package manning.performance.premature;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Footprint and lookup latency of the off-heap AccountStore against AccountFinder's on-heap indexes.
+ * Setup prints the heap taken by the Account list with AccountFinder's indexes and the bytes of the store,
+ * which replaces both; here the list stays alive because AccountFinder keeps using it.
+ * Run with -prof gc to see that the store lookups allocate nothing.
+ * 10 million accounts need about 3 GB of heap for the on-heap side.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class AccountStoreBenchmark {
+
+    private static final int SEARCH_IDS = 1024;
+
+    @Param({"1000000", "10000000"})
+    private int accountCount;
+
+    private AccountFinder accountFinder;
+    private AccountStore accountStore;
+    private AccountStore.AccountView view;
+    private int[] searchIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long heapBefore = usedHeapAfterGc();
+        List<Account> accounts = new ArrayList<>(accountCount);
+        for (int i = 0; i < accountCount; i++) {
+            accounts.add(new Account("Account" + i, i));
+        }
+        accountFinder = new AccountFinder(accounts);
+        long heapWithFinder = usedHeapAfterGc();
+        accountStore = AccountStore.of(accounts);
+        view = new AccountStore.AccountView();
+        System.out.printf("%n%,d accounts: AccountFinder %,d bytes of heap, AccountStore %,d bytes off-heap%n",
+            accountCount, heapWithFinder - heapBefore, accountStore.bytes());
+
+        Random random = new Random(42);
+        searchIds = new int[SEARCH_IDS];
+        for (int i = 0; i < SEARCH_IDS; i++) {
+            searchIds[i] = random.nextInt(accountCount + accountCount / 10); // ~10% misses
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        accountFinder.shutdown();
+    }
+
+    @Benchmark
+    public Optional<Account> finderHashMap() {
+        return accountFinder.accountHashMap(nextId());
+    }
+
+    @Benchmark
+    public Optional<Account> finderIntMap() {
+        return accountFinder.accountIntMap(nextId());
+    }
+
+    @Benchmark
+    public int storeFlyweight() {
+        return accountStore.account(nextId(), view) ? view.nameLength() : -1;
+    }
+
+    @Benchmark
+    public boolean finderExists() {
+        return accountFinder.accountExistsIntMap(nextId());
+    }
+
+    @Benchmark
+    public boolean storeExists() {
+        return accountStore.contains(nextId());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public Optional<Account> finderHashMapSampleTime() {
+        return accountFinder.accountHashMap(nextId());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public int storeFlyweightSampleTime() {
+        return accountStore.account(nextId(), view) ? view.nameLength() : -1;
+    }
+
+    private int nextId() {
+        return searchIds[next++ & (SEARCH_IDS - 1)];
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(AccountStoreBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opt).run();
+    }
+}
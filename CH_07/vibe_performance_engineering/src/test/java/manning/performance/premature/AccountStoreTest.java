@@ -0,0 +1,95 @@
+package manning.performance.premature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldFindAccountsThroughFlyweight() {
+        // given
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            accounts.add(new Account("Account" + i, i * 3 - 5_000));
+        }
+        Collections.shuffle(accounts, new Random(42));
+        AccountStore store = AccountStore.of(accounts);
+        AccountStore.AccountView view = new AccountStore.AccountView();
+
+        // when / then
+        assertThat(store.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            int id = i * 3 - 5_000;
+            assertThat(store.account(id, view)).isTrue();
+            assertThat(view.id()).isEqualTo(id);
+            assertThat(view.name()).isEqualTo("Account" + i);
+            assertThat(store.contains(id + 1)).isFalse();
+        }
+        assertThat(store.account(Integer.MAX_VALUE, view)).isFalse();
+        assertThat(view.id()).isEqualTo(9_999 * 3 - 5_000);
+    }
+
+    @Test
+    void shouldKeepUtf8AndEmptyNames() {
+        // given
+        AccountStore store = AccountStore.of(List.of(
+            new Account("Zoë", Integer.MIN_VALUE), new Account(null, 0), new Account("Łukasz", Integer.MAX_VALUE)));
+        AccountStore.AccountView view = new AccountStore.AccountView();
+        byte[] name = new byte[16];
+
+        // when
+        store.account(Integer.MAX_VALUE, view);
+        int length = view.copyName(name);
+
+        // then
+        assertThat(new String(name, 0, length, StandardCharsets.UTF_8)).isEqualTo("Łukasz");
+        assertThat(store.account(Integer.MIN_VALUE).get().getName()).isEqualTo("Zoë");
+        assertThat(store.account(0).get().getName()).isEqualTo("");
+        assertThat(store.account(1).isPresent()).isFalse();
+    }
+
+    @Test
+    void shouldReopenSavedStoreFromMappedFile() throws IOException {
+        // given
+        AccountStore store = AccountStore.of(List.of(new Account("Tom", 1), new Account("Mike", 2)));
+        Path file = directory.resolve("accounts.store");
+
+        // when
+        store.save(file);
+        AccountStore reopened = AccountStore.open(file);
+
+        // then
+        assertThat(reopened.size()).isEqualTo(2);
+        assertThat(reopened.bytes()).isEqualTo(store.bytes()).isEqualTo(Files.size(file));
+        assertThat(reopened.account(2).get().getName()).isEqualTo("Mike");
+        assertThat(Files.exists(directory.resolve("accounts.store.tmp"))).isFalse();
+    }
+
+    @Test
+    void shouldRejectDuplicateIdsAndForeignFiles() throws IOException {
+        // given
+        List<Account> duplicated = List.of(new Account("Tom", 1), new Account("Mike", 1));
+        Path file = Files.writeString(directory.resolve("accounts.yaml"), "accounts:\n  - name: Tom\n    id: 1\n");
+
+        // when / then
+        assertThatThrownBy(() -> AccountStore.of(duplicated))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Duplicate account id 1");
+        assertThatThrownBy(() -> AccountStore.open(file))
+            .isInstanceOf(IOException.class).hasMessageContaining("is not an account store file");
+    }
+}
@@ -0,0 +1,86 @@
+package manning.performance.premature;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntAccountMapTest {
+
+    @Test
+    void shouldFindSameAccountsAsHashMap() {
+        // given
+        Random random = new Random(42);
+        List<Account> accounts = new ArrayList<>();
+        Map<Integer, Account> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            Account account = new Account("Account" + i, random.nextInt(50_000) - 25_000);
+            accounts.add(account);
+            expected.put(account.getId(), account);
+        }
+
+        // when
+        IntAccountMap map = IntAccountMap.of(accounts);
+
+        // then
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (int id = -26_000; id < 26_000; id++) {
+            assertThat(map.get(id)).isSameAs(expected.get(id));
+        }
+    }
+
+    @Test
+    void shouldGrowAndHandleZeroAndExtremeIds() {
+        // given
+        IntAccountMap map = new IntAccountMap(1);
+        int[] ids = {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 16, 2 << 16, 3 << 16};
+
+        // when
+        for (int id : ids) {
+            map.put(id, new Account("Account" + id, id));
+        }
+
+        // then
+        assertThat(map.size()).isEqualTo(ids.length);
+        assertThat(map.capacity()).isGreaterThanOrEqualTo(ids.length * 2);
+        for (int id : ids) {
+            assertThat(map.get(id).getId()).isEqualTo(id);
+        }
+        assertThat(map.containsKey(1)).isFalse();
+    }
+
+    @Test
+    void shouldReplaceAccountWithSameId() {
+        // given
+        IntAccountMap map = new IntAccountMap(2);
+        Account tom = new Account("Tom", 1);
+
+        // when
+        Account first = map.put(1, tom);
+        Account previous = map.put(1, new Account("Mike", 1));
+
+        // then
+        assertThat(first).isNull();
+        assertThat(previous).isSameAs(tom);
+        assertThat(map.get(1).getName()).isEqualTo("Mike");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExposeIntLookupsInAccountFinder() {
+        // given
+        List<Account> accounts = List.of(new Account("Tom", 1), new Account("Mike", 2));
+        AccountFinder accountFinder = new AccountFinder(accounts);
+
+        // when / then
+        assertThat(accountFinder.accountIntMap(2).get().getName()).isEqualTo("Mike");
+        assertThat(accountFinder.accountIntMap(3).isPresent()).isFalse();
+        assertThat(accountFinder.accountExistsIntMap(1)).isTrue();
+        accountFinder.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package manning.performance.wordservice;
+
+import manning.performance.premature.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingSupportedAccountsLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldParseOnceAndFindAccountsById() throws IOException {
+        // given
+        Path file = write("accounts:\n  - name: Tom\n    id: 1\n  - name: Mike\n    id: 2\n  - name: Other\n    id: 2\n");
+        CachingSupportedAccountsLoader loader = new CachingSupportedAccountsLoader(file, Duration.ZERO);
+
+        // when
+        List<Account> first = loader.accounts();
+        List<Account> second = loader.accounts();
+
+        // then
+        assertThat(first).extracting(Account::getName).containsExactly("Tom", "Mike", "Other");
+        assertThat(second).isSameAs(first);
+        assertThat(loader.account(2).map(Account::getName).orElse(null)).isEqualTo("Mike");
+        assertThat(loader.account(3).isPresent()).isFalse();
+        assertThat(loader.loads()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReloadOnlyWhenContentChanges() throws IOException {
+        // given
+        Path file = write("accounts:\n  - name: Tom\n    id: 1\n");
+        CachingSupportedAccountsLoader loader = new CachingSupportedAccountsLoader(file, Duration.ZERO);
+        List<Account> before = loader.accounts();
+
+        // when touched without a change
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+
+        // then
+        assertThat(loader.accounts()).isSameAs(before);
+        assertThat(loader.loads()).isEqualTo(1);
+
+        // when changed
+        write("accounts:\n  - name: Tom\n    id: 1\n  - name: Mike\n    id: 2\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(20)));
+
+        // then
+        assertThat(loader.accounts()).extracting(Account::getName).containsExactly("Tom", "Mike");
+        assertThat(loader.account(2).isPresent()).isTrue();
+        assertThat(loader.loads()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldKeepPreviousSnapshotWhenFileCannotBeParsed() throws IOException {
+        // given
+        Path file = write("accounts:\n  - name: Tom\n    id: 1\n");
+        CachingSupportedAccountsLoader loader = new CachingSupportedAccountsLoader(file, Duration.ZERO);
+
+        // when
+        write("accounts:\n  - name: [Tom\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+
+        // then
+        assertThat(loader.accounts()).extracting(Account::getName).containsExactly("Tom");
+        assertThat(loader.loads()).isEqualTo(1);
+
+        // when fixed
+        write("accounts:\n  - name: Mike\n    id: 2\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(20)));
+
+        // then
+        assertThat(loader.accounts()).extracting(Account::getName).containsExactly("Mike");
+        assertThat(loader.loads()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldFindTheSameAccountsByIdAsDefaultLoader() throws IOException {
+        // given
+        Path file = write("accounts:\n  - name: Tom\n    id: 1\n  - name: Mike\n    id: 2\n  - name: Other\n    id: 2\n");
+        SupportedAccountsLoader defaultLoader = new DefaultSupportedAccountsLoader(file);
+        SupportedAccountsLoader cachingLoader = new CachingSupportedAccountsLoader(file);
+
+        // when
+        List<String> byDefaultLoader = new ArrayList<>();
+        List<String> byCachingLoader = new ArrayList<>();
+        for (int id = 0; id <= 3; id++) {
+            byDefaultLoader.add(defaultLoader.account(id).map(Account::getName).orElse(null));
+            byCachingLoader.add(cachingLoader.account(id).map(Account::getName).orElse(null));
+        }
+
+        // then
+        assertThat(byCachingLoader).containsExactly(null, "Tom", "Mike", null).isEqualTo(byDefaultLoader);
+    }
+
+    @Test
+    public void shouldFailWhenInitialFileIsMissing() {
+        assertThatThrownBy(() -> new CachingSupportedAccountsLoader(directory.resolve("missing.yaml")))
+            .isInstanceOf(UncheckedIOException.class);
+    }
+
+    private Path write(String yaml) throws IOException {
+        return Files.writeString(directory.resolve("accounts.yaml"), yaml);
+    }
+}
@@ -0,0 +1,98 @@
+package manning.performance.wordservice;
+
+import manning.performance.premature.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of account(id) at growing account files:
+ * DefaultSupportedAccountsLoader parses the YAML and scans the list on every call,
+ * CachingSupportedAccountsLoader looks the id up in its snapshot index, once with the default check interval
+ * and once checking the file's modification time on every call.
+ * The default loader needs seconds per call at 1M accounts, expect long iterations there.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class SupportedAccountsLoaderBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int accountCount;
+
+    private Path file;
+    private DefaultSupportedAccountsLoader defaultLoader;
+    private CachingSupportedAccountsLoader cachingLoader;
+    private CachingSupportedAccountsLoader checkingLoader;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("accounts", ".yaml");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("accounts:\n");
+            for (int id = 1; id <= accountCount; id++) {
+                writer.write("  - name: Account" + id + "\n    id: " + id + "\n");
+            }
+        }
+        defaultLoader = new DefaultSupportedAccountsLoader(file);
+        cachingLoader = new CachingSupportedAccountsLoader(file);
+        checkingLoader = new CachingSupportedAccountsLoader(file, Duration.ZERO);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Optional<Account> defaultLoader() {
+        return defaultLoader.account(nextId());
+    }
+
+    @Benchmark
+    public Optional<Account> cachingLoader() {
+        return cachingLoader.account(nextId());
+    }
+
+    @Benchmark
+    public Optional<Account> cachingLoaderCheckingEveryCall() {
+        return checkingLoader.account(nextId());
+    }
+
+    private int nextId() {
+        return ThreadLocalRandom.current().nextInt(1, accountCount + 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+            .include(SupportedAccountsLoaderBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,88 @@
+package manning.performance.wordservice.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class LookupBatcherTest {
+
+    @Test
+    public void shouldBatchConcurrentLookupsIntoOneCall() throws Exception {
+        // given
+        List<List<String>> sentBatches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCall = new CountDownLatch(1);
+        LookupBatcher batcher = new LookupBatcher(words -> {
+            sentBatches.add(new ArrayList<>(words));
+            firstCallStarted.countDown();
+            releaseFirstCall.await(5, TimeUnit.SECONDS);
+            boolean[] results = new boolean[words.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = words.get(i).startsWith("ok");
+            }
+            return results;
+        }, 100, TimeUnit.MILLISECONDS.toNanos(1));
+
+        // when
+        CompletableFuture<Boolean> first = batcher.lookup("ok-first");
+        firstCallStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> second = batcher.lookup("ok-second");
+        CompletableFuture<Boolean> third = batcher.lookup("bad");
+        CompletableFuture<Boolean> duplicate = batcher.lookup("ok-second");
+        releaseFirstCall.countDown();
+
+        // then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(third.get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(duplicate).isSameAs(second);
+        assertThat(sentBatches).hasSize(2);
+        assertThat(sentBatches.get(1)).containsExactly("ok-second", "bad");
+        batcher.close();
+    }
+
+    @Test
+    public void shouldFailLookupsWhenSenderFails() {
+        // given
+        LookupBatcher batcher = new LookupBatcher(words -> {
+            throw new IllegalStateException("server down");
+        }, 10, TimeUnit.MILLISECONDS.toNanos(1));
+
+        // when
+        CompletableFuture<Boolean> result = batcher.lookup("word");
+
+        // then
+        assertThat(result.handle((value, error) -> error).join()).hasMessage("server down");
+        batcher.close();
+    }
+
+    @Test
+    public void shouldFailInFlightAndQueuedLookupsOnClose() throws Exception {
+        // given
+        CountDownLatch callStarted = new CountDownLatch(1);
+        LookupBatcher batcher = new LookupBatcher(words -> {
+            callStarted.countDown();
+            new CountDownLatch(1).await(); // a server that never answers
+            return new boolean[words.size()];
+        }, 1, TimeUnit.MILLISECONDS.toNanos(1));
+        CompletableFuture<Boolean> inFlight = batcher.lookup("first");
+        callStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> queued = batcher.lookup("second");
+
+        // when
+        batcher.close();
+
+        // then
+        assertThat(inFlight.handle((value, error) -> error).get(5, TimeUnit.SECONDS)).isNotNull();
+        assertThat(queued.handle((value, error) -> error).get(5, TimeUnit.SECONDS)).hasMessage("Client is closed");
+        assertThat(catchThrowable(() -> batcher.lookup("third"))).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,151 @@
+package manning.performance.wordservice.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmark of word validation from another service.
+ * Starts the real HttpApplication (ports 8080/8081) as a separate process once per trial, so its threads,
+ * JIT and GC do not share the benchmark JVM, and compares one keep-alive HTTP call per word with
+ * WordServiceClient (near-cache + Bloom filter + batching).
+ * The lookup mix follows a Zipf-like distribution over 2,000 dictionary words with 20% misspellings,
+ * so the numbers depend on that skew - real traffic with less repetition gains less from the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+public class WordServiceClientBenchmark {
+
+    private static final URI BASE_URI = URI.create("http://localhost:8080");
+    private static final int DISTINCT_WORDS = 2_000;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+
+    private Process server;
+    private HttpClient httpClient;
+    private WordServiceClient wordServiceClient;
+    private String[] words;
+    private double[] cumulativeWeights;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        server = startServer();
+        wordServiceClient = new WordServiceClient(BASE_URI);
+
+        List<String> dictionary = Files.readAllLines(Paths.get(
+                Objects.requireNonNull(getClass().getClassLoader().getResource("words.txt")).toURI()));
+        Random random = new Random(42);
+        words = new String[DISTINCT_WORDS];
+        for (int i = 0; i < DISTINCT_WORDS; i++) {
+            String word = dictionary.get(random.nextInt(dictionary.size()));
+            words[i] = random.nextInt(5) == 0 ? word + "qz" : word;
+        }
+        cumulativeWeights = new double[DISTINCT_WORDS];
+        double total = 0;
+        for (int i = 0; i < DISTINCT_WORDS; i++) {
+            total += 1.0 / (i + 1);
+            cumulativeWeights[i] = total;
+        }
+        for (int i = 0; i < DISTINCT_WORDS; i++) {
+            cumulativeWeights[i] /= total;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        wordServiceClient.close();
+        server.destroy();
+        server.waitFor(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start the app with this JVM's class path and wait until it answers
+     */
+    private Process startServer() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "manning.performance.wordservice.HttpApplication", "server")
+                .redirectErrorStream(true)
+                .redirectOutput(new File("word-service-benchmark-server.log"))
+                .start();
+        HttpRequest probe = HttpRequest.newBuilder(BASE_URI.resolve("/optimized-words/word-of-the-day")).GET().build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Server exited with " + process.exitValue()
+                        + ", see word-service-benchmark-server.log");
+            }
+            try {
+                if (httpClient.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return process;
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(200);
+        }
+        process.destroy();
+        throw new IllegalStateException("Server did not start within " + STARTUP_TIMEOUT);
+    }
+
+    @Benchmark
+    public int httpCallPerWord() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                BASE_URI.resolve("/optimized-words/word-exists?word=" + nextWord())).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public boolean wordServiceClient() {
+        return wordServiceClient.wordExists(nextWord());
+    }
+
+    private String nextWord() {
+        double sample = ThreadLocalRandom.current().nextDouble();
+        int index = Arrays.binarySearch(cumulativeWeights, sample);
+        return words[index >= 0 ? index : Math.min(-index - 1, DISTINCT_WORDS - 1)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(WordServiceClientBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,111 @@
+package manning.performance.wordservice.client;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class WordServiceClientTest {
+
+    private static final String FILTER_PATH = "/optimized-words/dictionary/filter";
+
+    private final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+    WordServiceClientTest() throws IOException {
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldFailWithoutLeavingThreadsWhenFilterIsUnavailable() {
+        // given
+        server.createContext(FILTER_PATH, exchange -> respond(exchange, 503, null));
+        server.start();
+        long batchersBefore = batcherThreads();
+
+        // when
+        Throwable failure = catchThrowable(() -> new WordServiceClient(baseUri()));
+
+        // then
+        assertThat(failure).isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("Unexpected status 503");
+        assertThat(batcherThreads()).isEqualTo(batchersBefore);
+    }
+
+    @Test
+    public void shouldAnswerMissesFromFilterAndKeepItWhenNotModified() throws IOException {
+        // given
+        BloomFilter<CharSequence> words = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), 100);
+        words.put("cat");
+        ByteArrayOutputStream filter = new ByteArrayOutputStream();
+        words.writeTo(filter);
+        AtomicInteger filterDownloads = new AtomicInteger();
+        AtomicInteger lookups = new AtomicInteger();
+        server.createContext(FILTER_PATH, exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                respond(exchange, 304, null);
+                return;
+            }
+            filterDownloads.incrementAndGet();
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("X-Dictionary-Version", "1");
+            respond(exchange, 200, filter.toByteArray());
+        });
+        server.createContext("/optimized-words/words-exist", exchange -> {
+            lookups.incrementAndGet();
+            exchange.getResponseHeaders().add("X-Dictionary-Version", "1");
+            respond(exchange, 200, "[true]".getBytes(StandardCharsets.UTF_8));
+        });
+        server.start();
+
+        // when
+        try (WordServiceClient client = new WordServiceClient(baseUri(), 10, Duration.ofMinutes(1), 16,
+                Duration.ofMillis(1), Duration.ofMinutes(10))) {
+            boolean absent = client.wordExists("dog");
+            client.refreshMembershipFilter();
+            boolean present = client.wordExists("cat");
+
+            // then
+            assertThat(absent).isFalse();
+            assertThat(present).isTrue();
+            assertThat(filterDownloads.get()).isEqualTo(1);
+            assertThat(lookups.get()).isEqualTo(1);
+        }
+    }
+
+    private URI baseUri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    private static long batcherThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> thread.getName().equals("word-client-batcher"))
+            .count();
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (body != null) {
+                out.write(body);
+            }
+        }
+    }
+}
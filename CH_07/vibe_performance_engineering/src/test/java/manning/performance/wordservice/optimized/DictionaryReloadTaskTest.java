@@ -0,0 +1,48 @@
+package manning.performance.wordservice.optimized;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DictionaryReloadTaskTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldPublishNewVersionOnlyWhenFileChanged() throws IOException {
+        // given
+        Path file = tempDir.resolve("words.txt");
+        Files.write(file, List.of("cat", "dog"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        VersionedDictionary dictionary = new VersionedDictionary(file);
+        DictionaryReloadTask task = new DictionaryReloadTask(dictionary);
+
+        // when
+        String unchanged = execute(task);
+        Files.write(file, List.of("cat", "dog", "owl"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        String published = execute(task);
+
+        // then
+        assertThat(unchanged).isEqualTo("version 1000000 unchanged\n");
+        assertThat(published).isEqualTo("version 2000000 published\n");
+        assertThat(dictionary.current().contains("owl")).isTrue();
+    }
+
+    private static String execute(DictionaryReloadTask task) {
+        StringWriter out = new StringWriter();
+        task.execute(Map.of(), new PrintWriter(out, true));
+        return out.toString().replace(System.lineSeparator(), "\n");
+    }
+}
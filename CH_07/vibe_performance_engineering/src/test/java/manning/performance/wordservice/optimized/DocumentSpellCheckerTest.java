@@ -0,0 +1,127 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentSpellCheckerTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldReportUnknownWordsWithOffsets() throws IOException {
+        // given
+        DocumentSpellChecker checker = new DocumentSpellChecker(dictionary("the", "cat", "sat"), executor);
+
+        // when
+        List<String> unknown = check(checker, "The cat sat on teh mat.");
+
+        // then
+        assertThat(unknown).containsExactly("12:on", "15:teh", "19:mat");
+    }
+
+    @Test
+    public void shouldNotSplitWordsBetweenChunks() throws IOException {
+        // given
+        DocumentSpellChecker checker = new DocumentSpellChecker(dictionary("alpha", "beta"), executor, 4, 2);
+
+        // when
+        List<String> unknown = check(checker, "alpha beta gamma alpha");
+
+        // then
+        assertThat(unknown).containsExactly("11:gamma");
+    }
+
+    @Test
+    public void shouldAcceptEmptyDocument() throws IOException {
+        // given
+        DocumentSpellChecker checker = new DocumentSpellChecker(dictionary("known"), executor, 4, 2);
+
+        // when
+        List<String> unknown = check(checker, "");
+
+        // then
+        assertThat(unknown).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepDocumentOrderForLargeInput() throws IOException {
+        // given
+        DocumentSpellChecker checker = new DocumentSpellChecker(dictionary("known"), executor, 64, 3);
+        StringBuilder document = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            if (i % 7 == 0) {
+                expected.add(document.length() + ":unknown" + (char) ('a' + i % 26));
+                document.append("unknown").append((char) ('a' + i % 26)).append(' ');
+            } else {
+                document.append("known ");
+            }
+        }
+
+        // when
+        List<String> unknown = check(checker, document.toString());
+
+        // then
+        assertThat(unknown).isEqualTo(expected);
+    }
+
+    @Test
+    public void shouldSignalEveryChunkAfterItsUnknownWords() throws IOException {
+        // given
+        DocumentSpellChecker checker = new DocumentSpellChecker(dictionary("known"), executor, 8, 2);
+        List<String> events = new ArrayList<>();
+
+        // when
+        checker.check(new StringReader("known teh known teh "), new DocumentSpellChecker.UnknownWordListener() {
+            @Override
+            public void onUnknownWord(long offset, String word) {
+                events.add(word);
+            }
+
+            @Override
+            public void onChunkChecked() {
+                events.add("|");
+            }
+        });
+
+        // then
+        assertThat(events).containsExactly("|", "teh", "|", "teh", "|");
+    }
+
+    private static List<String> check(DocumentSpellChecker checker, String document) throws IOException {
+        List<String> unknown = new ArrayList<>();
+        checker.check(new StringReader(document), (offset, word) -> unknown.add(offset + ":" + word));
+        return unknown;
+    }
+
+    private static WordsService dictionary(String... words) {
+        Set<String> dictionary = Set.of(words);
+        return new WordsService() {
+            @Override
+            public String getWordOfTheDay() {
+                return words[0];
+            }
+
+            @Override
+            public boolean wordExists(String word) {
+                return dictionary.contains(word);
+            }
+        };
+    }
+}
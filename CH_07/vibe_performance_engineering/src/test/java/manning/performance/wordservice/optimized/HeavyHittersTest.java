@@ -0,0 +1,115 @@
+package manning.performance.wordservice.optimized;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeavyHittersTest {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void shouldRankMostQueriedWordsAmongRareOnes() {
+        // given
+        HeavyHitters heavyHitters = new HeavyHitters(WINDOW_NANOS, 6, 2048, 16, clock::get);
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            heavyHitters.record("rare" + i, true);
+            if (i % 10 == 0) {
+                heavyHitters.record("the", true);
+            }
+            if (i % 20 == 0) {
+                heavyHitters.record("teh", false);
+            }
+        }
+        HeavyHitters.TopWords top = heavyHitters.top(2);
+
+        // then
+        assertThat(top.words).extracting(word -> word.word).containsExactly("the", "teh");
+        assertThat(top.words.get(0).count).isBetween(1_000L, 1_000L + 30);
+        assertThat(top.words.get(0).exists).isTrue();
+        assertThat(top.words.get(1).exists).isFalse();
+        assertThat(top.queries).isEqualTo(11_500);
+        assertThat(top.misses).isEqualTo(500);
+        assertThat(top.windowSeconds).isEqualTo(60);
+        assertThat(top.share).isBetween(0.13, 0.14);
+    }
+
+    @Test
+    public void shouldForgetQueriesOlderThanTheWindow() {
+        // given
+        HeavyHitters heavyHitters = new HeavyHitters(WINDOW_NANOS, 6, 2048, 16, clock::get);
+        for (int i = 0; i < 100; i++) {
+            heavyHitters.record("old", true);
+        }
+
+        // when
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        heavyHitters.record("new", true);
+        long halfWindowLater = heavyHitters.estimate("old");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        heavyHitters.record("new", true);
+
+        // then
+        assertThat(halfWindowLater).isEqualTo(100);
+        assertThat(heavyHitters.estimate("old")).isZero();
+        assertThat(heavyHitters.top(10).words).extracting(word -> word.word).containsExactly("new");
+        assertThat(heavyHitters.top(10).queries).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNeverUndercountConcurrentQueries() throws InterruptedException {
+        // given
+        HeavyHitters heavyHitters = new HeavyHitters(WINDOW_NANOS, 6, 2048, 64, clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+
+        // when
+        for (int thread = 0; thread < 4; thread++) {
+            int offset = thread;
+            executor.execute(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    heavyHitters.record("word" + ((i + offset) % 100), true);
+                }
+                done.countDown();
+            });
+        }
+        done.await(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // then
+        for (int word = 0; word < 100; word++) {
+            assertThat(heavyHitters.estimate("word" + word)).isGreaterThanOrEqualTo(2_000);
+        }
+        assertThat(heavyHitters.top(64).queries).isEqualTo(200_000);
+    }
+
+    @Test
+    public void shouldScaleSampledCountsToAllQueries() {
+        // given
+        HeavyHitters heavyHitters = new HeavyHitters(WINDOW_NANOS, 6, 2048, 16, 8, clock::get);
+
+        // when
+        for (int i = 0; i < 80_000; i++) {
+            heavyHitters.record("the", true);
+            heavyHitters.record("rare" + (i % 5_000), i % 2 == 0);
+        }
+        HeavyHitters.TopWords top = heavyHitters.top(1);
+
+        // then
+        assertThat(top.words).extracting(word -> word.word).containsExactly("the");
+        assertThat(top.words.get(0).count % 8).isZero();
+        assertThat(top.words.get(0).count).isBetween(76_000L, 84_000L);
+        assertThat(top.queries).isBetween(156_000L, 164_000L);
+        assertThat(top.misses).isBetween(36_000L, 44_000L);
+    }
+}
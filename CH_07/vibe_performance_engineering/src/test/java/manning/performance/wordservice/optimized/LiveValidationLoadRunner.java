@@ -0,0 +1,145 @@
+package manning.performance.wordservice.optimized;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures message latency of the live validation WebSocket under load.
+ * Requires the HttpApplication to be running on localhost:8080.
+ *
+ * Opens N connections, each one behaving like an editor: it sends one word at a time and waits for
+ * the result before typing the next one (think time in ms between words). Latency is measured from
+ * send to the matching result message and reported as percentiles across all connections.
+ *
+ * Usage: LiveValidationLoadRunner [connections=100] [wordsPerConnection=200] [thinkTimeMs=5] [suggest=false]
+ */
+public class LiveValidationLoadRunner {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int wordsPerConnection = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long thinkTimeMs = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        boolean suggest = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        List<String> dictionary = Files.readAllLines(Paths.get(Objects.requireNonNull(
+                LiveValidationLoadRunner.class.getClassLoader().getResource("words.txt")).toURI()));
+        URI uri = URI.create("ws://localhost:8080/optimized-words/live" + (suggest ? "?suggest=true" : ""));
+        HttpClient httpClient = HttpClient.newHttpClient();
+
+        System.out.printf("Connecting %d editors to %s%n", connections, uri);
+        CountDownLatch finished = new CountDownLatch(connections);
+        List<EditorSession> sessions = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < connections; i++) {
+            String[] words = new String[wordsPerConnection];
+            for (int w = 0; w < wordsPerConnection; w++) {
+                String word = dictionary.get(random.nextInt(dictionary.size()));
+                // every tenth word is a typo
+                words[w] = random.nextInt(10) == 0 ? word + "x" : word;
+            }
+            EditorSession session = new EditorSession(words, thinkTimeMs, finished);
+            httpClient.newWebSocketBuilder().buildAsync(uri, session).join();
+            sessions.add(session);
+        }
+
+        long start = System.nanoTime();
+        sessions.forEach(EditorSession::start);
+        if (!finished.await(10, TimeUnit.MINUTES)) {
+            System.out.println("Timed out waiting for all editors to finish");
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        long[] latencies = sessions.stream()
+                .flatMapToLong(session -> Arrays.stream(session.latencies, 0, session.received))
+                .sorted()
+                .toArray();
+        sessions.forEach(EditorSession::close);
+
+        System.out.printf("Messages: %d in %.1f s (%.0f msg/s)%n", latencies.length,
+                elapsedNanos / 1e9, latencies.length / (elapsedNanos / 1e9));
+        System.out.printf("Latency p50: %.3f ms%n", percentile(latencies, 0.50));
+        System.out.printf("Latency p90: %.3f ms%n", percentile(latencies, 0.90));
+        System.out.printf("Latency p99: %.3f ms%n", percentile(latencies, 0.99));
+        System.out.printf("Latency max: %.3f ms%n", latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static class EditorSession implements WebSocket.Listener {
+        private final String[] words;
+        private final long thinkTimeMs;
+        private final CountDownLatch finished;
+        private final long[] latencies;
+        private final StringBuilder partial = new StringBuilder();
+        private WebSocket webSocket;
+        private volatile long sentAt;
+        private volatile int received;
+
+        EditorSession(String[] words, long thinkTimeMs, CountDownLatch finished) {
+            this.words = words;
+            this.thinkTimeMs = thinkTimeMs;
+            this.finished = finished;
+            this.latencies = new long[words.length];
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            this.webSocket = webSocket;
+            webSocket.request(1);
+        }
+
+        void start() {
+            sendNext();
+        }
+
+        private void sendNext() {
+            sentAt = System.nanoTime();
+            webSocket.sendText(words[received], true);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                partial.setLength(0);
+                latencies[received] = System.nanoTime() - sentAt;
+                received++;
+                if (received == words.length) {
+                    finished.countDown();
+                } else {
+                    CompletableFuture.delayedExecutor(thinkTimeMs, TimeUnit.MILLISECONDS).execute(this::sendNext);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            System.out.println("Connection failed: " + error.getMessage());
+            finished.countDown();
+        }
+
+        void close() {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.net.http.WebSocketHandshakeException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class LiveValidationServletTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private Server server;
+    private LiveValidationServlet servlet;
+    private URI uri;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        servlet = new LiveValidationServlet(dictionary(), 1);
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(servlet), "/live");
+        server.setHandler(context);
+        server.start();
+        uri = URI.create("ws://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/live");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void shouldRejectConnectionsOverLimitAndAcceptAgainAfterClose() throws Exception {
+        // given
+        WebSocket first = connect().join();
+
+        // when
+        Throwable rejected = catchThrowable(() -> connect().join());
+
+        // then
+        assertThat(rejected).isInstanceOf(CompletionException.class);
+        assertThat(rejected.getCause()).isInstanceOf(WebSocketHandshakeException.class);
+        assertThat(((WebSocketHandshakeException) rejected.getCause()).getResponse().statusCode()).isEqualTo(503);
+        assertThat(servlet.getOpenConnections()).isEqualTo(1);
+
+        // when
+        first.sendClose(WebSocket.NORMAL_CLOSURE, "done").get(5, TimeUnit.SECONDS);
+        awaitOpenConnections(0);
+        WebSocket second = connect().join();
+
+        // then
+        assertThat(servlet.getOpenConnections()).isEqualTo(1);
+        second.abort();
+    }
+
+    private CompletableFuture<WebSocket> connect() {
+        return client.newWebSocketBuilder().buildAsync(uri, new WebSocket.Listener() { });
+    }
+
+    private void awaitOpenConnections(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (servlet.getOpenConnections() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(servlet.getOpenConnections()).isEqualTo(expected);
+    }
+
+    private static WordsService dictionary() {
+        return new WordsService() {
+            @Override
+            public String getWordOfTheDay() {
+                return "cat";
+            }
+
+            @Override
+            public boolean wordExists(String word) {
+                return word.equals("cat");
+            }
+        };
+    }
+}
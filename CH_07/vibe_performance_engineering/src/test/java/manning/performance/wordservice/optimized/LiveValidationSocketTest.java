@@ -0,0 +1,126 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveValidationSocketTest {
+
+    private final List<WriteCallback> pendingWrites = new ArrayList<>();
+    private final AtomicInteger suspends = new AtomicInteger();
+    private final AtomicInteger resumes = new AtomicInteger();
+
+    @Test
+    public void shouldReleaseConnectionOnceWhenErrorIsFollowedByClose() {
+        // given
+        AtomicInteger releases = new AtomicInteger();
+        LiveValidationSocket socket = new LiveValidationSocket(dictionary(), null, releases::incrementAndGet);
+        socket.onWebSocketConnect(session());
+
+        // when
+        socket.onWebSocketError(new IOException("connection reset"));
+        socket.onWebSocketClose(1006, "abnormal close");
+
+        // then
+        assertThat(releases.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSuspendReadingUntilSlowClientDrainsBacklog() {
+        // given
+        LiveValidationSocket socket = new LiveValidationSocket(dictionary(), null, () -> { });
+        socket.onWebSocketConnect(session());
+
+        // when
+        socket.onWebSocketText(words(LiveValidationSocket.MAX_PENDING_WRITES - 1));
+
+        // then
+        assertThat(suspends.get()).isEqualTo(0);
+
+        // when
+        socket.onWebSocketText("cat");
+
+        // then
+        assertThat(pendingWrites).hasSize(LiveValidationSocket.MAX_PENDING_WRITES);
+        assertThat(suspends.get()).isEqualTo(1);
+
+        // when
+        int drained = LiveValidationSocket.MAX_PENDING_WRITES - LiveValidationSocket.RESUME_PENDING_WRITES - 1;
+        pendingWrites.subList(0, drained).forEach(WriteCallback::writeSuccess);
+
+        // then
+        assertThat(resumes.get()).isEqualTo(0);
+
+        // when
+        pendingWrites.get(drained).writeFailed(new IOException("write timeout"));
+        pendingWrites.get(drained + 1).writeSuccess();
+
+        // then
+        assertThat(resumes.get()).isEqualTo(1);
+    }
+
+    private static String words(int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            words.append(i % 2 == 0 ? "cat " : "teh ");
+        }
+        return words.toString();
+    }
+
+    private Session session() {
+        SuspendToken token = resumes::incrementAndGet;
+        RemoteEndpoint remote = proxy(RemoteEndpoint.class, (method, args) -> {
+            if (method.equals("sendString") && args.length == 2) {
+                pendingWrites.add((WriteCallback) args[1]);
+            }
+            return null;
+        });
+        return proxy(Session.class, (method, args) -> {
+            switch (method) {
+                case "isOpen":
+                    return true;
+                case "getRemote":
+                    return remote;
+                case "suspend":
+                    suspends.incrementAndGet();
+                    return token;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+            (proxy, method, args) -> answer.answer(method.getName(), args == null ? new Object[0] : args)));
+    }
+
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    private static WordsService dictionary() {
+        return new WordsService() {
+            @Override
+            public String getWordOfTheDay() {
+                return "cat";
+            }
+
+            @Override
+            public boolean wordExists(String word) {
+                return word.equals("cat");
+            }
+        };
+    }
+}
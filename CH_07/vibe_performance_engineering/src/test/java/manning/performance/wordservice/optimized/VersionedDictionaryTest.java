@@ -0,0 +1,148 @@
+package manning.performance.wordservice.optimized;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VersionedDictionaryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldNotBumpVersionWhenFileIsUnchanged() throws IOException {
+        // given
+        Path file = writeWords("cat", "dog");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        VersionedDictionary dictionary = new VersionedDictionary(file);
+
+        // when
+        boolean changed = dictionary.reload();
+
+        // then
+        assertThat(changed).isFalse();
+        assertThat(dictionary.current().getVersion()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    public void shouldKeepVersionAcrossRestartAndSendFullDeltaForUnknownVersion() throws IOException {
+        // given
+        Path file = writeWords("cat", "dog");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        VersionedDictionary beforeRestart = new VersionedDictionary(file);
+        writeWords("cat", "dog", "fish");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        beforeRestart.reload();
+
+        // when
+        VersionedDictionary afterRestart = new VersionedDictionary(file);
+
+        // then
+        assertThat(afterRestart.current().getVersion()).isEqualTo(beforeRestart.current().getVersion())
+            .isEqualTo(2_000_000);
+        assertThat(afterRestart.deltaSince(2_000_000).orElseThrow().added).isEmpty();
+        assertThat(afterRestart.deltaSince(1_000_000).isPresent()).isFalse();
+        assertThat(afterRestart.deltaSince(3_000_000).isPresent()).isFalse();
+        DictionaryDelta full = DictionaryDelta.full(afterRestart.current());
+        assertThat(full.full).isTrue();
+        assertThat(full.added).containsOnly("cat", "dog", "fish");
+    }
+
+    @Test
+    public void shouldMergeDeltasSinceVersion() throws IOException {
+        // given
+        Path file = writeWords("cat", "dog");
+        VersionedDictionary dictionary = new VersionedDictionary(file);
+        long firstVersion = dictionary.current().getVersion();
+        writeWords("cat", "dog", "fish");
+        dictionary.reload();
+        writeWords("cat", "fish", "bird");
+        dictionary.reload();
+
+        // when
+        DictionaryDelta delta = dictionary.deltaSince(firstVersion).orElseThrow();
+
+        // then
+        assertThat(delta.fromVersion).isEqualTo(firstVersion);
+        assertThat(delta.toVersion).isEqualTo(dictionary.current().getVersion()).isGreaterThan(firstVersion + 1);
+        assertThat(delta.added).containsOnly("fish", "bird");
+        assertThat(delta.removed).containsOnly("dog");
+        assertThat(dictionary.current().contains("bird")).isTrue();
+        assertThat(dictionary.current().contains("dog")).isFalse();
+    }
+
+    @Test
+    public void shouldRequireFullExportWhenVersionIsTooOld() throws IOException {
+        // given
+        VersionedDictionary dictionary = new VersionedDictionary(writeWords("a"), 1);
+        long firstVersion = dictionary.current().getVersion();
+        writeWords("a", "b");
+        dictionary.reload();
+        long secondVersion = dictionary.current().getVersion();
+        writeWords("a", "b", "c");
+        dictionary.reload();
+
+        // when
+        Optional<DictionaryDelta> tooOld = dictionary.deltaSince(firstVersion);
+        Optional<DictionaryDelta> recent = dictionary.deltaSince(secondVersion);
+
+        // then
+        assertThat(tooOld.isPresent()).isFalse();
+        assertThat(recent.orElseThrow().added).containsOnly("c");
+    }
+
+    @Test
+    public void shouldTellListenersAboutEveryReload() throws IOException {
+        // given
+        Path file = writeWords("cat");
+        VersionedDictionary dictionary = new VersionedDictionary(file);
+        List<Boolean> reloads = new ArrayList<>();
+        dictionary.addReloadListener((filePath, startNanos, durationNanos, changed) -> {
+            assertThat(filePath).isEqualTo(file);
+            assertThat(durationNanos).isGreaterThanOrEqualTo(0);
+            reloads.add(changed);
+        });
+
+        // when
+        dictionary.reload();
+        writeWords("cat", "dog");
+        dictionary.reload();
+
+        // then
+        assertThat(reloads).containsExactly(false, true);
+    }
+
+    @Test
+    public void shouldExportCurrentSnapshot() throws IOException {
+        // given
+        VersionedDictionary dictionary = new VersionedDictionary(writeWords("cat", "dog"));
+
+        // when
+        String exported;
+        try (FileChannel channel = dictionary.openExport(dictionary.current())) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            channel.read(buffer);
+            exported = new String(buffer.array(), StandardCharsets.UTF_8);
+        }
+
+        // then
+        assertThat(exported).isEqualTo("cat\ndog\n");
+    }
+
+    private Path writeWords(String... words) throws IOException {
+        return Files.write(tempDir.resolve("words.txt"), Arrays.asList(words), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package manning.performance.wordservice.optimized;
+
+import manning.performance.wordservice.WordsService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WordSuggesterTest {
+
+    private final Set<String> dictionary = Set.of("the", "then", "ten", "tea", "he", "at");
+
+    private final WordsService wordsService = new WordsService() {
+        @Override
+        public String getWordOfTheDay() {
+            return "the";
+        }
+
+        @Override
+        public boolean wordExists(String word) {
+            return dictionary.contains(word);
+        }
+    };
+
+    @Test
+    public void shouldSuggestWordsOneEditAway() {
+        // given
+        WordSuggester suggester = new WordSuggester(wordsService, 10);
+
+        // when / then
+        assertThat(suggester.suggest("teh")).containsExactlyInAnyOrder("the", "ten", "tea");
+        assertThat(suggester.suggest("thn")).containsExactlyInAnyOrder("the", "then", "ten");
+    }
+
+    @Test
+    public void shouldLimitNumberOfSuggestions() {
+        // given
+        WordSuggester suggester = new WordSuggester(wordsService, 1);
+
+        // when / then
+        assertThat(suggester.suggest("teh")).hasSize(1);
+        assertThat(suggester.suggest("qqqqq")).isEmpty();
+    }
+}
@@ -0,0 +1,208 @@
+package manning.performance.wordservice.traced;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccessLogTest {
+
+    @TempDir
+    java.nio.file.Path tempDir;
+
+    @Test
+    public void shouldWriteRecordsOfEveryThread() throws Exception {
+        // given
+        AccessLog accessLog = new AccessLog(tempDir, 64, 1024 * 1024, 2);
+        accessLog.start();
+        CountDownLatch done = new CountDownLatch(4);
+
+        // when
+        for (int thread = 0; thread < 4; thread++) {
+            int id = thread;
+            new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    while (!accessLog.log("GET", 200, 1_000 + i, 5_000, "/words/" + id, "i=" + i)) {
+                        Thread.yield(); // the test wants every record, a request thread would drop it
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        accessLog.stop();
+        List<AccessLogReader.Entry> entries = AccessLogReader.readAll(tempDir);
+
+        // then
+        assertThat(accessLog.written()).isEqualTo(4_000);
+        assertThat(entries).hasSize(4_000);
+        assertThat(entries).extracting(entry -> entry.method + " " + entry.path + " " + entry.status + " "
+                + entry.startEpochMillis + " " + entry.durationNanos)
+            .containsOnlyOnce("GET /words/2?i=999 200 1999 5000");
+    }
+
+    @Test
+    public void shouldDropRecordsWhenTheRingIsFull() throws Exception {
+        // given
+        AccessLog accessLog = new AccessLog(tempDir, 4, 1024 * 1024, 2);
+
+        // when
+        int logged = 0;
+        for (int i = 0; i < 10; i++) {
+            logged += accessLog.log("POST", 201, i, 1, "/optimized-words/words-exist", null) ? 1 : 0;
+        }
+        accessLog.start();
+        accessLog.stop();
+
+        // then
+        assertThat(logged).isEqualTo(4);
+        assertThat(accessLog.dropped()).isEqualTo(6);
+        assertThat(AccessLogReader.readAll(tempDir)).extracting(entry -> entry.startEpochMillis)
+            .containsExactly(0L, 1L, 2L, 3L);
+    }
+
+    @Test
+    public void shouldRollFilesAndKeepTheNewest() throws Exception {
+        // given
+        AccessLog accessLog = new AccessLog(tempDir, 256, 4 * 1024, 3);
+        String longQuery = "word=" + "a".repeat(400);
+
+        // when
+        accessLog.start();
+        for (int i = 0; i < 200; i++) {
+            accessLog.log("GET", 200, i, 1, "/traced-words/word-exists", i == 199 ? longQuery : "word=cat");
+        }
+        accessLog.stop();
+        List<AccessLogReader.Entry> entries = AccessLogReader.readAll(tempDir);
+
+        // then
+        try (Stream<java.nio.file.Path> files = Files.list(tempDir)) {
+            assertThat(files.count()).isEqualTo(3);
+        }
+        assertThat(entries.size()).isLessThan(200);
+        AccessLogReader.Entry last = entries.get(entries.size() - 1);
+        assertThat(last.startEpochMillis).isEqualTo(199);
+        assertThat(last.truncated).isTrue();
+        assertThat(last.path).hasSize(AccessLogFormat.MAX_PATH_BYTES).startsWith("/traced-words/word-exists?word=aaa");
+    }
+
+    @Test
+    public void shouldReclaimRingsOfDeadThreads() throws Exception {
+        // given
+        AccessLog accessLog = new AccessLog(tempDir, 4, 1024 * 1024, 2);
+        accessLog.start();
+        Thread worker = new Thread(() -> {
+            for (int i = 0; i < 6; i++) {
+                accessLog.log("GET", 200, i, 1, "/words", null);
+            }
+        });
+
+        // when
+        worker.start();
+        worker.join();
+        for (int i = 0; i < 500 && accessLog.rings() > 0; i++) {
+            Thread.sleep(10);
+        }
+        accessLog.stop();
+
+        // then
+        assertThat(accessLog.rings()).isZero();
+        assertThat(accessLog.written() + accessLog.dropped()).isEqualTo(6);
+    }
+
+    @Test
+    public void shouldPruneFilesOfEarlierRunsAtStart() throws Exception {
+        // given
+        for (int i = 0; i < 5; i++) {
+            Files.write(tempDir.resolve("access-100000000" + i + "-0000.log"), new byte[16]);
+        }
+        Files.write(tempDir.resolve("notes.txt"), new byte[16]);
+        AccessLog accessLog = new AccessLog(tempDir, 4, 1024 * 1024, 3);
+
+        // when
+        accessLog.start();
+        accessLog.stop();
+
+        // then
+        try (Stream<java.nio.file.Path> files = Files.list(tempDir)) {
+            assertThat(files.map(file -> file.getFileName().toString()).collect(Collectors.toList()))
+                .hasSize(4)
+                .contains("notes.txt", "access-1000000003-0000.log", "access-1000000004-0000.log")
+                .doesNotContain("access-1000000002-0000.log");
+        }
+    }
+
+    @Test
+    public void shouldCountRecordsLostWhenNoFileCanBeCreated() throws Exception {
+        // given
+        java.nio.file.Path directory = tempDir.resolve("logs");
+        AccessLog accessLog = new AccessLog(directory, 64, AccessLogFormat.FILE_HEADER_LENGTH
+            + AccessLogFormat.RECORD_SLOT, 2);
+        accessLog.start();
+        try (Stream<java.nio.file.Path> files = Files.list(directory)) {
+            for (java.nio.file.Path file : (Iterable<java.nio.file.Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            accessLog.log("GET", 200, i, 1, "/words", null);
+        }
+        accessLog.stop();
+
+        // then
+        assertThat(accessLog.failed()).isGreaterThan(0);
+        assertThat(accessLog.written() + accessLog.failed()).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldLogJerseyRequestsWhenFinished() throws Exception {
+        // given
+        AccessLog accessLog = new AccessLog(tempDir, 64, 1024 * 1024, 2);
+        ApplicationHandler handler = new ApplicationHandler(new ResourceConfig()
+            .register(LoggedResource.class).register(new AccessLogListener(accessLog)));
+
+        // when
+        accessLog.start();
+        handler.apply(new ContainerRequest(URI.create("http://localhost/"),
+            URI.create("http://localhost/logged?word=caf%C3%A9"), "GET", null, new MapPropertiesDelegate(),
+            handler.getConfiguration()),
+            new ByteArrayOutputStream()).get();
+        handler.apply(new ContainerRequest(URI.create("http://localhost/"),
+            URI.create("http://localhost/missing"), "GET", null, new MapPropertiesDelegate(),
+            handler.getConfiguration()),
+            new ByteArrayOutputStream()).get();
+        accessLog.stop();
+
+        // then
+        assertThat(AccessLogReader.readAll(tempDir))
+            .extracting(entry -> entry.method + " " + entry.path + " " + entry.status)
+            .containsExactly("GET /logged?word=caf%C3%A9 200", "GET /missing 404");
+    }
+
+    @Path("/logged")
+    public static class LoggedResource {
+
+        @GET
+        public String word(@QueryParam("word") String word) {
+            return word;
+        }
+    }
+}
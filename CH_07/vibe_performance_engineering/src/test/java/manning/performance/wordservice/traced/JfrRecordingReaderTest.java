@@ -0,0 +1,95 @@
+package manning.performance.wordservice.traced;
+
+import jdk.jfr.Recording;
+import manning.performance.wordservice.initial.DefaultWordsService;
+import manning.performance.wordservice.jfr.DictionaryLoadEvent;
+import manning.performance.wordservice.jfr.FileOpenEvent;
+import manning.performance.wordservice.jfr.WordExistsEvent;
+import manning.performance.wordservice.jfr.WordOfTheDayEvent;
+import manning.performance.wordservice.optimized.CachedWordsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrRecordingReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldBuildReportFromWordServiceEvents() throws IOException {
+        // given
+        Path words = Files.write(tempDir.resolve("words.txt"), List.of("aa", "bbb", "cccc"));
+        DefaultWordsService defaultService = new DefaultWordsService(words, () -> 1);
+        Path recordingFile = tempDir.resolve("word-service.jfr");
+
+        // when
+        try (Recording recording = new Recording()) {
+            recording.enable(WordExistsEvent.class);
+            recording.enable(WordOfTheDayEvent.class);
+            recording.enable(FileOpenEvent.class);
+            recording.enable(DictionaryLoadEvent.class);
+            recording.start();
+            defaultService.wordExists("bbb");
+            defaultService.wordExists("zzz");
+            defaultService.getWordOfTheDay();
+            new CachedWordsService(words, () -> 0).wordExists("aa");
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        PerformanceAnalyzer analyzer = PerformanceAnalyzer.fromRecording(recordingFile);
+        MetricsCollector.MetricsReport report = analyzer.getReport();
+
+        // then
+        assertThat(report.methodCallCounts)
+            .containsEntry("wordExists[default]", 2L)
+            .containsEntry("wordExists[cached]", 1L)
+            .containsEntry("getWordOfTheDay[default]", 1L);
+        assertThat(report.endpointCallCounts)
+            .containsEntry("word-exists", 3L)
+            .containsEntry("word-of-the-day", 1L);
+        assertThat(report.totalRequests).isEqualTo(4);
+        assertThat(report.totalFileReads).isEqualTo(3);
+        assertThat(report.totalLinesScanned).isEqualTo(2 + 3 + 2);
+        assertThat(report.totalStringComparisons).isEqualTo(2 + 3);
+        assertThat(report.totalBytesRead).isEqualTo((3 + 4) + (3 + 4 + 5) + (3 + 4));
+        assertThat(report.methodLatencyPercentiles.get("wordExists[default]").count).isEqualTo(2);
+        assertThat(analyzer.getProfile().dictionaryLoads).isEqualTo(1);
+        assertThat(analyzer.generateReport()).contains("Hottest method: ", "EXECUTION SAMPLES", "jfr");
+    }
+
+    @Test
+    public void shouldCountEncodedBytesAndOnlyRequestAllocationsAsRequestMemory() throws IOException {
+        // given
+        Path words = Files.write(tempDir.resolve("words.txt"), List.of("żółw", "kot"), StandardCharsets.UTF_8);
+        DefaultWordsService defaultService = new DefaultWordsService(words, () -> 1);
+        Path recordingFile = tempDir.resolve("allocations.jfr");
+        long background = 0;
+
+        // when
+        try (Recording recording = new Recording()) {
+            recording.enable(WordExistsEvent.class);
+            recording.enable("jdk.ObjectAllocationSample").with("throttle", "off").withStackTrace();
+            recording.start();
+            defaultService.wordExists("kot");
+            for (int i = 0; i < 64; i++) {
+                background += new byte[1024 * 1024].length; // outside any request, sampled every time
+            }
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        PerformanceAnalyzer analyzer = PerformanceAnalyzer.fromRecording(recordingFile);
+
+        // then
+        assertThat(analyzer.getReport().totalBytesRead).isEqualTo((7 + 1) + (3 + 1));
+        assertThat(analyzer.getProfile().allocatedBytes).isGreaterThanOrEqualTo(background);
+        assertThat(analyzer.getReport().totalMemoryUsed).isLessThan(background);
+    }
+}
@@ -0,0 +1,128 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MappedMetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldReadCountersAndHistogramsFromTheMappedFile() throws IOException {
+        // given
+        MappedMetrics metrics = MappedMetrics.create(tempDir.resolve("metrics"), 4, 2);
+        MappedMetrics.Counter requests = metrics.counter("traced.requests.total");
+        MappedMetrics.Histogram latency = metrics.histogram("traced.method.wordExists");
+
+        Histogram values = new Histogram(MethodLatencyHistogram.SIGNIFICANT_DIGITS);
+        long sum = 0;
+        for (int i = 1; i <= 1000; i++) {
+            values.recordValue(TimeUnit.MICROSECONDS.toNanos(i));
+            sum += TimeUnit.MICROSECONDS.toNanos(i);
+        }
+
+        // when
+        requests.set(42);
+        latency.set(values, sum);
+        MappedMetricsReader.Snapshot snapshot = MappedMetricsReader.read(metrics.file());
+
+        // then
+        assertThat(snapshot.pid).isEqualTo(ProcessHandle.current().pid());
+        assertThat(snapshot.isStale()).isFalse();
+        assertThat(snapshot.counters).containsEntry("traced.requests.total", 42L);
+        MappedMetricsReader.HistogramSnapshot histogram = snapshot.histograms.get("traced.method.wordExists");
+        assertThat(histogram.count).isEqualTo(1000);
+        assertThat(histogram.meanNanos()).isCloseTo(500_500, within(0.1));
+        // values come in at 1% precision, the file buckets are 1/8 of a power of two wide, reported by their upper bound
+        assertThat((double) histogram.maxNanos).isCloseTo(1_000_000, within(10_000.0));
+        assertThat((double) histogram.percentileNanos(50)).isBetween(500_000.0, 500_000 * 1.125);
+        assertThat((double) histogram.percentileNanos(99)).isBetween(990_000.0, 1_000_000 * 1.125);
+    }
+
+    @Test
+    public void shouldComputeIntervalsFromTwoReads() throws IOException {
+        // given
+        MappedMetrics metrics = MappedMetrics.create(tempDir.resolve("metrics"), 4, 2);
+        MappedMetrics.Counter lines = metrics.counter("traced.lines.scanned");
+        MappedMetrics.Histogram latency = metrics.histogram("traced.method.getWordOfTheDay");
+        Histogram values = new Histogram(MethodLatencyHistogram.SIGNIFICANT_DIGITS);
+        values.recordValue(1_000);
+        lines.set(100);
+        latency.set(values, 1_000);
+        MappedMetricsReader.Snapshot first = MappedMetricsReader.read(metrics.file());
+
+        // when
+        values.recordValueWithCount(5_000_000, 2);
+        lines.set(150);
+        latency.set(values, 10_001_000);
+        MappedMetricsReader.Snapshot second = MappedMetricsReader.read(metrics.file());
+        String name = "traced.method.getWordOfTheDay";
+        MappedMetricsReader.HistogramSnapshot interval =
+            second.histograms.get(name).minus(first.histograms.get(name));
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        second.print(new PrintStream(printed, true), first);
+
+        // then
+        assertThat(interval.count).isEqualTo(2);
+        assertThat((double) interval.percentileNanos(50)).isBetween(5_000_000.0, 5_000_000 * 1.125);
+        assertThat(printed.toString()).contains("traced.lines.scanned", "150", "traced.method.getWordOfTheDay");
+    }
+
+    @Test
+    public void shouldSkipMetricsBeyondTheCapacity() throws IOException {
+        // given
+        MappedMetrics metrics = MappedMetrics.create(tempDir.resolve("metrics"), 1, 1);
+        metrics.counter("first");
+
+        // when
+        MappedMetrics.Counter overflow = metrics.counter("second");
+        MappedMetricsReader.Snapshot snapshot = MappedMetricsReader.read(metrics.file());
+
+        // then
+        assertThat(overflow).isNull();
+        assertThat(snapshot.counters).containsOnlyKeys("first");
+        assertThat(snapshot.droppedLabels).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldStartWithoutMirrorWhenTheFileCannotBeMapped() {
+        // given
+        long failedBefore = MappedMetrics.failed();
+        System.setProperty("metrics.mapped.file", tempDir.toString()); // a directory
+
+        // when
+        MappedMetrics metrics;
+        try {
+            metrics = MappedMetrics.fromSystemProperties();
+        } finally {
+            System.clearProperty("metrics.mapped.file");
+        }
+
+        // then
+        assertThat(metrics).isNull();
+        assertThat(MappedMetrics.failed()).isEqualTo(failedBefore + 1);
+    }
+
+    @Test
+    public void shouldPlaceEveryValueInTheBucketCoveringIt() {
+        for (long value : new long[] {0, 1, 7, 8, 15, 16, 17, 1_000, 999_999, 60_000_000_000L, Long.MAX_VALUE}) {
+            int bucket = MappedMetrics.bucket(value);
+            assertThat(bucket).isBetween(0, MappedMetrics.BUCKETS - 1);
+            assertThat(MappedMetrics.bucketHighestValue(bucket)).isGreaterThanOrEqualTo(value);
+            if (bucket > 0) {
+                assertThat(MappedMetrics.bucketHighestValue(bucket - 1)).isLessThan(value);
+            }
+        }
+    }
+}
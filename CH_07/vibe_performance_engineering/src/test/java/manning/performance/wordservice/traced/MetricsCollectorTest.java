@@ -0,0 +1,187 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MetricsCollectorTest {
+
+    private final MetricsCollector metrics = MetricsCollector.newInstance();
+
+    @Test
+    public void shouldReportLatencyPercentilesSinceResetAndPerWindow() {
+        // given
+        for (int i = 1; i <= 1000; i++) {
+            metrics.recordMethodExecution("lookup", i * 1_000L);
+        }
+
+        // when
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        MetricsCollector.LatencyPercentiles total = report.methodLatencyPercentiles.get("lookup");
+        assertThat(total.count).isEqualTo(1000);
+        assertThat(total.p50Ms).isCloseTo(0.5, within(0.01));
+        assertThat(total.p99Ms).isCloseTo(0.99, within(0.01));
+        assertThat(total.maxMs).isCloseTo(1.0, within(0.01));
+        assertThat(report.windowedMethodLatencyPercentiles.get("1m").get("lookup").count).isEqualTo(1000);
+        assertThat(report.windowedMethodLatencyPercentiles.get("5m").get("lookup").count).isEqualTo(1000);
+        assertThat(report.windowedMethodLatencyPercentiles.get("15m").get("lookup").count).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldKeepTotalsAcrossRolledIntervals() {
+        // given
+        metrics.recordMethodExecution("lookup", 1_000_000L);
+        metrics.roll();
+        metrics.recordMethodExecution("lookup", 3_000_000L);
+
+        // when
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.methodLatencyPercentiles.get("lookup").count).isEqualTo(2);
+        assertThat(report.methodLatencyPercentiles.get("lookup").maxMs).isCloseTo(3.0, within(0.03));
+    }
+
+    @Test
+    public void shouldMergeStripesOfConcurrentThreadsWithoutLosingValues() throws InterruptedException {
+        // given
+        MetricsCollector.Timer timer = metrics.timer("lookup");
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    timer.record(1_000L);
+                }
+            });
+        }
+
+        // when
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                metrics.roll();
+                thread.join(1);
+            }
+        }
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.methodCallCounts.get("lookup")).isEqualTo(160_000);
+        assertThat(report.averageMethodTimesMs.get("lookup")).isCloseTo(0.001, within(1e-12));
+    }
+
+    @Test
+    public void shouldNotClampAllocatedBytesAtTheLatencyLimit() {
+        // given
+        long allocatedBytes = 100_000_000_000L; // more than one minute in nanoseconds
+        metrics.timer("export").record(1_000_000L, 500_000L, allocatedBytes);
+
+        // when
+        MetricsCollector.ResourceUsage usage = metrics.getMetricsReport().methodResourceUsage.get("export");
+
+        // then
+        assertThat(usage.allocatedMeanBytes).isEqualTo(allocatedBytes);
+        assertThat((double) usage.allocatedMaxBytes).isCloseTo(allocatedBytes, within(allocatedBytes * 0.01));
+        assertThat(usage.cpuMeanMs).isEqualTo(0.5);
+    }
+
+    @Test
+    public void shouldKeepHandlesUsableAcrossReset() {
+        // given
+        MetricsCollector.Timer timer = metrics.timer("lookup");
+        MetricsCollector.Counter counter = metrics.requestCounter("lookup-endpoint");
+        timer.record(1_000_000L);
+        counter.increment();
+
+        // when
+        metrics.reset();
+        timer.record(2_000_000L);
+        counter.increment();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(metrics.timer("lookup")).isSameAs(timer);
+        assertThat(report.methodCallCounts.get("lookup")).isEqualTo(1);
+        assertThat(report.averageMethodTimesMs.get("lookup")).isEqualTo(2.0);
+        assertThat(report.endpointCallCounts.get("lookup-endpoint")).isEqualTo(1);
+        assertThat(report.totalRequests).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepRollingWindowsAcrossReset() {
+        // given
+        metrics.requestCounter("lookup-endpoint").increment();
+        metrics.recordMethodExecution("lookup", 4_000_000L);
+        metrics.recordStringComparisons(5);
+
+        // when
+        metrics.reset();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.methodCallCounts).doesNotContainKey("lookup");
+        assertThat(report.endpointCallCounts).doesNotContainKey("lookup-endpoint");
+        assertThat(report.totalStringComparisons).isZero();
+        MetricsCollector.WindowMetrics lastMinute = report.windows.get("1m");
+        assertThat(lastMinute.methodCallCounts.get("lookup")).isEqualTo(1);
+        assertThat(lastMinute.averageMethodTimesMs.get("lookup")).isEqualTo(4.0);
+        assertThat(lastMinute.endpointCallCounts.get("lookup-endpoint")).isEqualTo(1);
+        assertThat(lastMinute.totalStringComparisons).isEqualTo(5);
+        assertThat(report.windowedMethodLatencyPercentiles.get("1m").get("lookup").count).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("try") // the requests are only timed
+    public void shouldReportSlowRequestsSinceReset() throws InterruptedException {
+        // given
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+        try (TraceContext slow = TraceContext.start(metrics, metrics.timer("slow-lookup"))) {
+            Thread.sleep(2 * TimeUnit.NANOSECONDS.toMillis(metrics.slowRequestThresholdNanos()));
+        }
+        try (TraceContext fast = TraceContext.start(metrics, metrics.timer("fast-lookup"))) {
+            // returns right away
+        }
+
+        // when
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+        metrics.reset();
+        MetricsCollector.MetricsReport afterReset = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.tailLatency.slowRequests).isEqualTo(1);
+        assertThat(report.tailLatency.slowest.get(0).method).isEqualTo("slow-lookup");
+        assertThat(report.tailLatency.totalMs).isGreaterThanOrEqualTo(2 * metrics.slowRequestThresholdNanos() / 1e6);
+        assertThat(afterReset.tailLatency.slowRequests).isZero();
+    }
+
+    @Test
+    public void shouldExportHistogramLogTaggedWithRun() {
+        // given
+        metrics.recordMethodExecution("lookup", 2_000_000L);
+        metrics.recordMethodExecution("scan", 50_000_000L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        metrics.writeHistogramLog(out, "optimized");
+
+        // then
+        HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(out.toByteArray()));
+        Histogram first = (Histogram) reader.nextIntervalHistogram();
+        Histogram second = (Histogram) reader.nextIntervalHistogram();
+        assertThat(first.getTag()).isEqualTo("optimized/lookup");
+        assertThat(first.getTotalCount()).isEqualTo(1);
+        assertThat(second.getTag()).isEqualTo("optimized/scan");
+        assertThat(reader.nextIntervalHistogram()).isNull();
+    }
+}
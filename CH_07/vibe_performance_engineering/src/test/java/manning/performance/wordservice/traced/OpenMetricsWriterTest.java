@@ -0,0 +1,108 @@
+package manning.performance.wordservice.traced;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OpenMetricsWriterTest {
+
+    private final MetricsCollector metrics = MetricsCollector.newInstance();
+
+    @Test
+    public void shouldWriteTimersAsCumulativeHistograms() throws IOException {
+        // given
+        MetricsCollector.Timer timer = metrics.timer("lookup");
+        timer.record(20_000L);    // 20 us
+        timer.record(700_000L);   // 0.7 ms
+        timer.record(3_000_000L); // 3 ms
+        metrics.roll();
+
+        // when
+        String text = writeOpenMetrics();
+
+        // then
+        assertThat(text).contains(
+            "# TYPE word_service_method_duration_seconds histogram\n"
+                + "# UNIT word_service_method_duration_seconds seconds\n",
+            "word_service_method_duration_seconds_bucket{method=\"lookup\",le=\"0.00001\"} 0\n",
+            "word_service_method_duration_seconds_bucket{method=\"lookup\",le=\"0.00005\"} 1\n",
+            "word_service_method_duration_seconds_bucket{method=\"lookup\",le=\"0.001\"} 2\n",
+            "word_service_method_duration_seconds_bucket{method=\"lookup\",le=\"0.005\"} 3\n",
+            "word_service_method_duration_seconds_bucket{method=\"lookup\",le=\"1.0\"} 3\n",
+            "word_service_method_duration_seconds_bucket{method=\"lookup\",le=\"+Inf\"} 3\n",
+            "word_service_method_duration_seconds_count{method=\"lookup\"} 3\n",
+            "word_service_method_duration_seconds_sum{method=\"lookup\"} 0.00372\n");
+        assertThat(text).endsWith("# EOF\n");
+    }
+
+    @Test
+    public void shouldWriteCountersAndEscapeLabelValues() throws IOException {
+        // given
+        metrics.requestCounter("word-exists").increment();
+        metrics.requestCounter("word-exists").increment();
+        metrics.requestCounter("say \"hi\"\\ñ").increment();
+        metrics.recordFileRead(1024, 1_500_000L);
+        metrics.recordStringComparisons(42);
+
+        // when
+        String text = writeOpenMetrics();
+
+        // then
+        assertThat(text).contains(
+            "word_service_requests_total{endpoint=\"word-exists\"} 2\n",
+            "word_service_requests_total{endpoint=\"say \\\"hi\\\"\\\\ñ\"} 1\n",
+            "word_service_file_reads_total 1\n",
+            "word_service_file_read_bytes_total 1024\n",
+            "word_service_file_open_seconds_total 0.0015\n",
+            "word_service_string_comparisons_total 42\n");
+    }
+
+    @Test
+    public void shouldEncodeLabelValuesByCodePoint() throws IOException {
+        // given
+        metrics.requestCounter("caf\u00e9 \u20ac \uD83D\uDE00").increment();
+        metrics.requestCounter("lone \uD83D").increment();
+
+        // when
+        String text = writeOpenMetrics();
+
+        // then
+        assertThat(text).contains(
+            "word_service_requests_total{endpoint=\"caf\u00e9 \u20ac \uD83D\uDE00\"} 1\n",
+            "word_service_requests_total{endpoint=\"lone ?\"} 1\n");
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void shouldExposeMetricsInBoundRegistry() {
+        // given
+        MetricRegistry registry = new MetricRegistry();
+        metrics.requestCounter("word-exists").increment();
+        metrics.bindTo(registry);
+
+        // when
+        metrics.timer("registry-lookup").record(2_000_000L);
+        metrics.recordStringComparisons(7);
+        metrics.roll();
+
+        // then
+        Gauge requests = registry.getGauges().get("traced.requests.word-exists");
+        Gauge calls = registry.getGauges().get("traced.method.registry-lookup.count");
+        Gauge comparisons = registry.getGauges().get("traced.string.comparisons");
+        assertThat(requests.getValue()).isEqualTo(1L);
+        assertThat(calls.getValue()).isEqualTo(1L);
+        assertThat(comparisons.getValue()).isEqualTo(7L);
+    }
+
+    private String writeOpenMetrics() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.writeOpenMetrics(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,85 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PauseMonitorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void shouldSplitSlowRequestTimeIntoGcOtherPausesAndService() {
+        // given
+        PauseMonitor timeline = new PauseMonitor(5 * MS);
+        long start = 1_000 * MS;
+        timeline.record(PauseMonitor.Kind.GC, "G1 Young Generation (G1 Evacuation Pause)", start + 10 * MS, 10 * MS);
+        timeline.record(PauseMonitor.Kind.HICCUP, "thread woke up late", start + 15 * MS, 15 * MS);
+        timeline.record(PauseMonitor.Kind.RELOAD, "dictionary reload", start - 5 * MS, 8 * MS);
+        timeline.record(PauseMonitor.Kind.GC, "G1 Young Generation (G1 Evacuation Pause)", start + 80 * MS, 10 * MS);
+        SlowRequestLog slow = new SlowRequestLog(1);
+        slow.record("optimized.wordExists_endpoint", "cat", null, "dw-1", 0, start, 50 * MS, -1, -1,
+            0, 0, 0, 0, new MetricsCollector.Timer[0], new long[0], 0);
+
+        // when
+        TailLatency tail = TailLatency.of(10, slow.all(), timeline, 0);
+
+        // then
+        assertThat(tail.slowRequests).isEqualTo(1);
+        assertThat(tail.totalMs).isCloseTo(50, within(0.001));
+        assertThat(tail.gcPauseMs).isCloseTo(10, within(0.001));
+        assertThat(tail.otherPauseMs).isCloseTo(10, within(0.001)); // 20..30 ms, the hiccup beyond the GC
+        assertThat(tail.getServiceMs()).isCloseTo(30, within(0.001));
+        assertThat(tail.getGcShare()).isCloseTo(0.2, within(0.001));
+        assertThat(tail.requestsDuringReload).isEqualTo(1);
+        assertThat(tail.gcPauses).isEqualTo(2);
+        assertThat(tail.hiccups).isEqualTo(1);
+        assertThat(tail.slowest.get(0).pauses).hasSize(3);
+    }
+
+    @Test
+    public void shouldKeepOnlyTheNewestEvents() {
+        // given
+        PauseMonitor timeline = new PauseMonitor(5 * MS);
+
+        // when
+        for (int i = 0; i <= PauseMonitor.MAX_EVENTS; i++) {
+            timeline.record(PauseMonitor.Kind.HICCUP, "pause " + i, i * MS, MS);
+        }
+        List<PauseMonitor.Pause> retained = timeline.since(0);
+
+        // then
+        assertThat(retained).hasSize(PauseMonitor.MAX_EVENTS);
+        assertThat(retained.get(0).cause).isEqualTo("pause 1");
+        assertThat(timeline.overlapping(10 * MS + 1, 11 * MS).get(0).cause).isEqualTo("pause 10");
+    }
+
+    @Test
+    public void shouldRecordGarbageCollectionPauses() throws InterruptedException {
+        // given
+        PauseMonitor monitor = PauseMonitor.getInstance();
+        monitor.start();
+        long before = System.nanoTime() - MS; // GC start times are rounded to milliseconds
+
+        // when
+        System.gc();
+        List<PauseMonitor.Pause> pauses = List.of();
+        for (int i = 0; i < 50 && pauses.isEmpty(); i++) {
+            Thread.sleep(100); // notifications are delivered on their own thread
+            pauses = gcPauses(monitor.since(before));
+        }
+
+        // then
+        assertThat(pauses).isNotEmpty();
+        assertThat(pauses.get(0).cause).contains("System.gc()");
+    }
+
+    private static List<PauseMonitor.Pause> gcPauses(List<PauseMonitor.Pause> pauses) {
+        pauses.removeIf(pause -> pause.kind != PauseMonitor.Kind.GC);
+        return pauses;
+    }
+}
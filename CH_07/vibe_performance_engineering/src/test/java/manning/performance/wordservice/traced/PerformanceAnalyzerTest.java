@@ -0,0 +1,65 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PerformanceAnalyzerTest {
+
+    @Test
+    public void shouldSubtractProbesAndFlagInstrumentationDominatedMethods() {
+        // given
+        MetricsCollector.MetricsReport report = MetricsCollector.MetricsReport.builder()
+            .methods(Map.of("wordExists", 2.0, "getIndexForToday", 0.001),
+                Map.of("wordExists", 10L, "getIndexForToday", 10L))
+            .fileReads(10, 1_000, 1.0)
+            .stringOperations(100, 100)
+            .requests(10, Map.of("word-exists", 10L))
+            .sampling("always", 10, 0)
+            .resourceUsage(Map.of("wordExists", usage(2.0, 0.5), "getIndexForToday", usage(0.001, 0.0008)))
+            .probeCost(new ProbeCost(20, 400, 30, 0.5, 1_000, 2))
+            .build();
+
+        // when
+        PerformanceAnalyzer analyzer = new PerformanceAnalyzer(report);
+        PerformanceAnalyzer.HotPathAnalysis analysis = analyzer.analyzeHotPaths();
+
+        // then
+        assertThat(analyzer.netTimeMs("wordExists")).isCloseTo(1.5, within(1e-9));
+        assertThat(analysis.methodImpact.get("wordExists")).isCloseTo(15.0, within(1e-9));
+        assertThat(analyzer.instrumentationDominatedMethods()).containsExactly("getIndexForToday");
+        assertThat(analysis.recommendations).contains("INSTRUMENTATION: getIndexForToday");
+        assertThat(analyzer.generateReport()).contains("INSTRUMENTATION OVERHEAD");
+    }
+
+    @Test
+    public void shouldNotScaleEstimatesWhenNoRequestWasSampled() {
+        // given
+        MetricsCollector.MetricsReport report = MetricsCollector.MetricsReport.builder()
+            .requests(100, Map.of("word-exists", 100L))
+            .sampling("tail:50", 0, 100)
+            .build();
+
+        // when
+        PerformanceAnalyzer analyzer = new PerformanceAnalyzer(report);
+        PerformanceAnalyzer.HotPathAnalysis analysis = analyzer.analyzeHotPaths();
+
+        // then
+        assertThat(report.getSamplingRate()).isEqualTo(0.0);
+        assertThat(report.toString()).contains("sampled 0 of 100 requests (0.0%)");
+        assertThat(analyzer.hasSampledRequests()).isFalse();
+        assertThat(analysis.fileIOTimePercentage).isEqualTo(0.0);
+        assertThat(analyzer.generateReport())
+            .contains("none of 100 traced requests sampled, no estimates available")
+            .contains("File I/O time percentage: n/a")
+            .doesNotContain("100.0% of requests traced");
+    }
+
+    private static MetricsCollector.ResourceUsage usage(double wallMeanMs, double probeMeanMs) {
+        return new MetricsCollector.ResourceUsage(10, 10, wallMeanMs, wallMeanMs, wallMeanMs, wallMeanMs,
+            0, 0, 0, 0, probeMeanMs);
+    }
+}
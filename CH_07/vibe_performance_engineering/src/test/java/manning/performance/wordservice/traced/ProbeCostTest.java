@@ -0,0 +1,41 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProbeCostTest {
+
+    @Test
+    public void shouldMeasureEveryProbeOnThisJvm() {
+        // when
+        ProbeCost probeCost = ProbeCost.calibrate();
+
+        // then
+        assertThat(ProbeCost.current()).isSameAs(probeCost);
+        assertThat(probeCost.isCalibrated()).isTrue();
+        assertThat(probeCost.clockNanos).isGreaterThan(0);
+        assertThat(probeCost.counterNanos).isGreaterThan(0);
+        assertThat(probeCost.comparisonNanos).isGreaterThan(0);
+        // a sampled scope reads the clock, CPU time and allocated bytes twice each
+        assertThat(probeCost.scopeNanos).isGreaterThan(probeCost.clockNanos);
+        if (ThreadResources.cpuNanos() >= 0) {
+            assertThat(probeCost.scopeNanos).isGreaterThan(probeCost.cpuTimeNanos);
+        }
+    }
+
+    @Test
+    public void shouldEstimateProbesInsideOneCall() {
+        // given
+        ProbeCost probeCost = new ProbeCost(20, 400, 30, 0.5, 1_000, 2);
+
+        // when
+        long ownClockOnly = probeCost.estimateNanos(0, 0, 0);
+        long scanning = probeCost.estimateNanos(1, 1_000, 2);
+
+        // then
+        assertThat(ownClockOnly).isEqualTo(20);
+        assertThat(scanning).isEqualTo(20 * 3 + 1_000 + 500);
+        assertThat(ProbeCost.NONE.isCalibrated()).isFalse();
+    }
+}
@@ -0,0 +1,55 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProfilerTaskTest {
+
+    private final StackSampler sampler = new StackSampler();
+    private final ProfilerTask task = new ProfilerTask(sampler);
+
+    @Test
+    public void shouldRejectInvalidParametersWithMessage() {
+        // when
+        String badMode = execute(Map.of("mode", List.of("heap")));
+        String badSeconds = execute(Map.of("seconds", List.of("ten")));
+        String tooFast = execute(Map.of("rate", List.of("5000")));
+
+        // then
+        assertThat(badMode).isEqualTo("400 Bad Request: mode must be wall or cpu: heap\n");
+        assertThat(badSeconds).isEqualTo("400 Bad Request: seconds must be a number between 1 and 120: ten\n");
+        assertThat(tooFast).isEqualTo("400 Bad Request: rate must be between 1 and 1000: 5000\n");
+    }
+
+    @Test
+    public void shouldRejectSecondProfileWhileOneIsRunning() throws InterruptedException {
+        // given
+        Thread running = new Thread(() -> sampler.profile(Duration.ofSeconds(2), 10, StackSampler.Mode.WALL));
+        running.start();
+        Thread.sleep(200);
+
+        // when
+        String answer;
+        try {
+            answer = execute(Map.of("seconds", List.of("1"), "mode", List.of("cpu")));
+        } finally {
+            running.join();
+        }
+
+        // then
+        assertThat(answer).isEqualTo("409 Conflict: A profile is already running, try again when it is done\n");
+    }
+
+    private String execute(Map<String, List<String>> parameters) {
+        StringWriter out = new StringWriter();
+        task.execute(parameters, new PrintWriter(out, true));
+        return out.toString().replace(System.lineSeparator(), "\n");
+    }
+}
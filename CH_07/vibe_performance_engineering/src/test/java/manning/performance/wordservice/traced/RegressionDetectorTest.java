@@ -0,0 +1,140 @@
+package manning.performance.wordservice.traced;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RegressionDetectorTest {
+
+    private static final int CALLS = 5_000;
+
+    private final RegressionDetector detector = new RegressionDetector();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldFlagSlowerLatencyPercentiles() {
+        // given
+        RunSnapshot baseline = snapshot("1.0", latencies(1, 1.0), 1);
+        RunSnapshot candidate = snapshot("1.1", latencies(2, 1.3), 1);
+
+        // when
+        List<RegressionDetector.Regression> regressions = detector.compare(baseline, candidate);
+
+        // then
+        assertThat(regressions.stream().map(regression -> regression.method + " " + regression.metric)
+            .collect(Collectors.toList()))
+            .containsExactly("wordExists mean", "wordExists p50", "wordExists p90", "wordExists p99");
+        assertThat(regressions.get(0).pValue).isLessThan(0.001);
+    }
+
+    @Test
+    public void shouldNotFlagAnotherRunOfTheSameDistribution() {
+        // given
+        RunSnapshot baseline = snapshot("1.0", latencies(1, 1.0), 1);
+        RunSnapshot candidate = snapshot("1.1", latencies(2, 1.0), 1);
+
+        // when
+        List<RegressionDetector.Regression> regressions = detector.compare(baseline, candidate);
+
+        // then
+        assertThat(regressions).isEmpty();
+    }
+
+    @Test
+    public void shouldFlagMoreFileReadsPerRequest() {
+        // given
+        RunSnapshot baseline = snapshot("1.0", latencies(1, 1.0), 1);
+        RunSnapshot candidate = snapshot("1.1", latencies(2, 1.0), 2);
+
+        // when
+        List<RegressionDetector.Regression> regressions = detector.compare(baseline, candidate);
+
+        // then
+        assertThat(regressions).hasSize(2);
+        assertThat(regressions.get(0).metric).isEqualTo("fileReadsPerRequest");
+        assertThat(regressions.get(0).candidate).isEqualTo(2.0);
+        assertThat(regressions.get(0).pValue).isNaN();
+        assertThat(regressions.get(1).metric).isEqualTo("bytesReadPerRequest");
+    }
+
+    @Test
+    public void shouldCompareMemoryOnlyWhenTheBaselineMeasuredIt() {
+        // given
+        Histogram latencies = latencies(1, 1.0);
+        RunSnapshot unmeasured = snapshot("1.0", latencies, 1, 0);
+        RunSnapshot measured = snapshot("1.1", latencies, 1, 1_000);
+        RunSnapshot allocating = snapshot("1.2", latencies, 1, 2_000);
+
+        // when
+        List<RegressionDetector.Regression> sinceUnmeasured = detector.compare(unmeasured, measured);
+        List<RegressionDetector.Regression> sinceMeasured = detector.compare(measured, allocating);
+
+        // then
+        assertThat(sinceUnmeasured).isEmpty();
+        assertThat(sinceMeasured).hasSize(1);
+        assertThat(sinceMeasured.get(0).metric).isEqualTo("memoryPerRequest");
+        assertThat(sinceMeasured.get(0).candidate).isEqualTo(2_000.0);
+    }
+
+    @Test
+    public void shouldStoreSnapshotsAndReturnLatestPerEngine() throws IOException {
+        // given
+        BaselineStore store = new BaselineStore(tempDir);
+        RunSnapshot older = snapshot("1.0", latencies(1, 1.0), 1);
+        RunSnapshot newer = new RunSnapshot("cached", "1.1-SNAPSHOT", "abc123", older.timestampMillis + 1,
+            "always", CALLS, CALLS, Map.of(), older.methodCallCounts, 1, 2, 3, 4, 5, older.latencyHistograms);
+
+        // when
+        store.save(newer);
+        store.save(older);
+        RunSnapshot latest = store.latest("cached").orElseThrow();
+
+        // then
+        assertThat(latest.version).isEqualTo("1.1-SNAPSHOT");
+        assertThat(latest.commit).isEqualTo("abc123");
+        assertThat(latest.totalMemoryUsed).isEqualTo(5);
+        assertThat(latest.latency("wordExists")).isEqualTo(older.latency("wordExists"));
+        assertThat(store.latest("default").isPresent()).isFalse();
+    }
+
+    /**
+     * Log-normal latencies around scale milliseconds, like a scanning lookup with a long tail
+     */
+    private static Histogram latencies(long seed, double scale) {
+        Random random = new Random(seed);
+        Histogram histogram = new Histogram(MethodLatencyHistogram.SIGNIFICANT_DIGITS);
+        for (int i = 0; i < CALLS; i++) {
+            histogram.recordValue((long) (scale * 1_000_000 * Math.exp(0.3 * random.nextGaussian())));
+        }
+        return histogram;
+    }
+
+    private static RunSnapshot snapshot(String version, Histogram latencies, long fileReadsPerRequest) {
+        return snapshot(version, latencies, fileReadsPerRequest, 0);
+    }
+
+    private static RunSnapshot snapshot(String version, Histogram latencies, long fileReadsPerRequest,
+                                        long bytesPerRequest) {
+        MetricsCollector.MetricsReport report = MetricsCollector.MetricsReport.builder()
+            .methods(Map.of("wordExists", latencies.getMean() / 1_000_000.0),
+                Map.of("wordExists", latencies.getTotalCount()))
+            .fileReads(CALLS * fileReadsPerRequest, CALLS * fileReadsPerRequest * 4096, 0)
+            .stringOperations(0, CALLS * 100L)
+            .requests(CALLS, Map.of("word-exists", (long) CALLS))
+            .sampling("always", CALLS, 0)
+            .memoryUsed(CALLS * bytesPerRequest)
+            .build();
+        return RunSnapshot.of("cached", version, "abc123", report, Map.of("wordExists", latencies));
+    }
+}
@@ -0,0 +1,89 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RollingCounterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void shouldPublishTheTotalToTheMappedFileOnlyWhenRolled() throws IOException {
+        // given
+        MappedMetrics metrics = MappedMetrics.create(tempDir.resolve("metrics"), 1, 1);
+        RollingCounter counter = new RollingCounter(60, metrics.counter("traced.lines.scanned"));
+        counter.add(5);
+        counter.increment();
+        long beforeRoll = MappedMetricsReader.read(metrics.file()).counters.get("traced.lines.scanned");
+
+        // when
+        counter.roll(0);
+        long afterRoll = MappedMetricsReader.read(metrics.file()).counters.get("traced.lines.scanned");
+
+        // then
+        assertThat(beforeRoll).isZero();
+        assertThat(afterRoll).isEqualTo(6);
+    }
+
+    @Test
+    public void shouldSumOnlyTheSecondsInsideTheWindow() {
+        // given
+        RollingCounter counter = new RollingCounter(60);
+        counter.add(5);
+        counter.roll(0);
+        counter.add(3);
+        counter.roll(10);
+        counter.add(2);
+        counter.roll(30);
+
+        // when
+        long lastTwentySeconds = counter.window(20, 30);
+        long lastMinute = counter.window(60, 30);
+
+        // then
+        assertThat(lastTwentySeconds).isEqualTo(2); // seconds 11..30
+        assertThat(lastMinute).isEqualTo(10);
+        assertThat(counter.current()).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldDropSecondsOverwrittenByTheRing() {
+        // given
+        RollingCounter counter = new RollingCounter(60);
+        counter.add(5);
+        counter.roll(1);
+        counter.add(7);
+        counter.roll(61); // same slot as second 1
+
+        // when
+        long lastMinute = counter.window(60, 61);
+
+        // then
+        assertThat(lastMinute).isEqualTo(7);
+    }
+
+    @Test
+    public void shouldCountSinceMarkFromRolledValuesOnly() {
+        // given
+        RollingCounter counter = new RollingCounter(60);
+        counter.add(4);
+        counter.roll(0);
+        counter.mark();
+        counter.add(6);
+        counter.roll(0); // same second, the bucket keeps growing
+
+        // when
+        counter.add(100); // not rolled yet
+
+        // then
+        assertThat(counter.sinceMark()).isEqualTo(6);
+        assertThat(counter.window(1, 0)).isEqualTo(10);
+        assertThat(counter.current()).isEqualTo(110);
+    }
+}
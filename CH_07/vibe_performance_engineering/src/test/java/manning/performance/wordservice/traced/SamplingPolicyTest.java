@@ -0,0 +1,60 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.within;
+
+class SamplingPolicyTest {
+
+    @Test
+    public void shouldParsePolicySpecs() {
+        // when / then
+        assertThat(SamplingPolicy.parse("always").toString()).isEqualTo("always");
+        assertThat(SamplingPolicy.parse("fixed:0.25").toString()).isEqualTo("fixed:0.25");
+        assertThat(SamplingPolicy.parse("rate:10").toString()).isEqualTo("rate:10");
+        assertThat(SamplingPolicy.parse("tail:50").toString()).isEqualTo("tail:50");
+        assertThat(catchThrowable(() -> SamplingPolicy.parse("fixed"))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> SamplingPolicy.parse("fixed:2"))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> SamplingPolicy.parse("random:1"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldSampleFixedFractionOfRequests() {
+        // given
+        SamplingPolicy policy = SamplingPolicy.fixedRate(0.1);
+
+        // when
+        long sampled = IntStream.range(0, 100_000).filter(i -> policy.sampleAtStart()).count();
+
+        // then
+        assertThat(sampled / 100_000.0).isCloseTo(0.1, within(0.01));
+    }
+
+    @Test
+    public void shouldLimitTracesPerSecond() {
+        // given
+        SamplingPolicy policy = SamplingPolicy.rateLimited(5);
+
+        // when
+        long sampled = IntStream.range(0, 1_000).filter(i -> policy.sampleAtStart()).count();
+
+        // then (at most two one-second windows can be touched by a fast loop)
+        assertThat(sampled).isBetween(5L, 10L);
+    }
+
+    @Test
+    public void shouldKeepOnlySlowRequestsInTailMode() {
+        // given
+        SamplingPolicy policy = SamplingPolicy.tailBased(50);
+
+        // when / then
+        assertThat(policy.sampleAtStart()).isTrue();
+        assertThat(policy.keep(TimeUnit.MILLISECONDS.toNanos(49))).isFalse();
+        assertThat(policy.keep(TimeUnit.MILLISECONDS.toNanos(50))).isTrue();
+    }
+}
@@ -0,0 +1,163 @@
+package manning.performance.wordservice.traced;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServerTimingFilterTest {
+
+    @Test
+    public void shouldFormatDurationsInMilliseconds() {
+        // given
+        StringBuilder header = new StringBuilder();
+
+        // when
+        ServerTimingFilter.appendMetric(header, "parse", 41_999);
+        ServerTimingFilter.appendMetric(header, "lookup", 1_205_000);
+        ServerTimingFilter.appendMetric(header, "total", 12_000_000);
+
+        // then
+        assertThat(header.toString()).isEqualTo("parse;dur=0.041, lookup;dur=1.205, total;dur=12.000");
+    }
+
+    @Test
+    public void shouldAddPhasesToSerializedResponses() {
+        // when
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ContainerResponse response = get("/timed/word", body);
+
+        // then
+        assertThat(body.toString(StandardCharsets.UTF_8)).isEqualTo("cat");
+        assertThat(response.getHeaderString(ServerTimingFilter.HEADER))
+            .matches("parse;dur=\\d+\\.\\d{3}, lookup;dur=\\d+\\.\\d{3}, serialize;dur=\\d+\\.\\d{3}, "
+                + "total;dur=\\d+\\.\\d{3}");
+    }
+
+    @Test
+    public void shouldSkipSerializationOfStreamedResponses() {
+        // when
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ContainerResponse response = get("/timed/stream", body);
+
+        // then
+        assertThat(body.toString(StandardCharsets.UTF_8)).isEqualTo("streamed");
+        assertThat(response.getHeaderString(ServerTimingFilter.HEADER))
+            .matches("parse;dur=\\d+\\.\\d{3}, lookup;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}");
+    }
+
+    private static ContainerResponse get(String path, ByteArrayOutputStream body) {
+        ApplicationHandler handler = new ApplicationHandler(
+            new ResourceConfig().register(TimedResource.class).register(new ServerTimingFilter()));
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+            URI.create("http://localhost" + path), "GET", new AnonymousUser(), new MapPropertiesDelegate(),
+            handler.getConfiguration());
+        request.setEntityStream(new ByteArrayInputStream(new byte[0]));
+        BodyWriter writer = new BodyWriter(body);
+        request.setWriter(writer);
+        handler.handle(request);
+        return writer.response;
+    }
+
+    private static class AnonymousUser implements SecurityContext {
+
+        @Override
+        public Principal getUserPrincipal() {
+            return null;
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            return false;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+
+        @Override
+        public String getAuthenticationScheme() {
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the response and hands its body to a byte array, like a container would to its connection;
+     * apply(request) would replace the writer and drop the body
+     */
+    private static class BodyWriter implements ContainerResponseWriter {
+        private final OutputStream body;
+        private ContainerResponse response;
+
+        BodyWriter(OutputStream body) {
+            this.body = body;
+        }
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse response) {
+            this.response = response;
+            return body;
+        }
+
+        @Override
+        public boolean suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+            return false;
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public void failure(Throwable error) {
+            throw new IllegalStateException("Request failed", error);
+        }
+
+        @Override
+        public boolean enableResponseBuffering() {
+            return false;
+        }
+    }
+
+    @Path("/timed")
+    public static class TimedResource {
+
+        @GET
+        @Path("/word")
+        @Produces(MediaType.TEXT_PLAIN)
+        public String word() {
+            return "cat";
+        }
+
+        @GET
+        @Path("/stream")
+        @Produces(MediaType.TEXT_PLAIN)
+        public StreamingOutput stream() {
+            return out -> out.write("streamed".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
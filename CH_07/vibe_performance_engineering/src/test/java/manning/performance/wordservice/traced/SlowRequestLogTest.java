@@ -0,0 +1,114 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowRequestLogTest {
+
+    private static final MetricsCollector.Timer[] PHASES = {
+        MetricsCollector.getInstance().timer("slow-log.lookup"),
+        MetricsCollector.getInstance().timer("slow-log.scan")
+    };
+
+    @Test
+    public void shouldKeepTheNewestRequestsWithTheirBreakdown() {
+        // given
+        SlowRequestLog log = new SlowRequestLog(4);
+
+        // when
+        for (int i = 1; i <= 6; i++) {
+            record(log, i);
+        }
+        List<SlowRequest> requests = log.since(0);
+
+        // then
+        assertThat(log.recorded()).isEqualTo(6);
+        assertThat(requests).hasSize(4);
+        SlowRequest newest = requests.get(3);
+        assertThat(requests.get(0).word).isEqualTo("word-3");
+        assertThat(newest.word).isEqualTo("word-6");
+        assertThat(newest.requestUri).isEqualTo("/optimized-words/word-exists?word=word-6");
+        assertThat(newest.durationNanos).isEqualTo(6_000_000);
+        assertThat(newest.linesScanned).isEqualTo(6);
+        assertThat(newest.phaseNanos).containsEntry("slow-log.lookup", 6L).containsEntry("slow-log.scan", 60L);
+        assertThat(log.since(5).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRecordWithoutAllocating() {
+        // given
+        SlowRequestLog log = new SlowRequestLog(64);
+        URI uri = URI.create("/optimized-words/word-exists?word=cat");
+        long[] phaseNanos = {1, 2};
+        for (int i = 0; i < 20_000; i++) {
+            recordSame(log, uri, phaseNanos, i); // warm up
+        }
+
+        // when
+        long before = ThreadResources.allocatedBytes();
+        for (int i = 0; i < 20_000; i++) {
+            recordSame(log, uri, phaseNanos, i);
+        }
+        long allocated = ThreadResources.allocatedBytes() - before;
+
+        // then
+        assertThat(allocated).isLessThan(1024);
+    }
+
+    @Test
+    public void shouldNeverReturnTornEntries() throws InterruptedException {
+        // given
+        SlowRequestLog log = new SlowRequestLog(8);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            Thread writer = new Thread(() -> {
+                for (long i = 1; running.get(); i++) {
+                    record(log, i);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        while (log.recorded() < 1000) {
+            Thread.onSpinWait();
+        }
+
+        // when
+        long checked = 0;
+        boolean consistent = true;
+        for (int round = 0; round < 20_000; round++) {
+            for (SlowRequest request : log.all()) {
+                long i = request.linesScanned;
+                consistent &= request.durationNanos == i * 1_000_000 && request.bytesRead == i * 10
+                    && ("word-" + i).equals(request.word) && request.phaseNanos.get("slow-log.scan") == i * 10;
+                checked++;
+            }
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // then
+        assertThat(checked).isGreaterThan(0);
+        assertThat(consistent).isTrue();
+    }
+
+    private static void record(SlowRequestLog log, long i) {
+        log.record("optimized.wordExists_endpoint", "word-" + i,
+            URI.create("/optimized-words/word-exists?word=word-" + i), "dw-1", 0, i, i * 1_000_000, -1, -1,
+            i, i * 10, i, 0, PHASES, new long[] {i, i * 10}, 2);
+    }
+
+    private static void recordSame(SlowRequestLog log, URI uri, long[] phaseNanos, long i) {
+        log.record("optimized.wordExists_endpoint", "cat", uri, "dw-1", 0, i, 1_000_000, 10, 100,
+            0, 0, 0, 0, PHASES, phaseNanos, 2);
+    }
+}
@@ -0,0 +1,85 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StackSamplerTest {
+
+    private final StackSampler sampler = new StackSampler();
+
+    @Test
+    public void shouldSampleOnlyWorkersServingRequests() throws InterruptedException {
+        // given
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(2);
+        Thread busy = new Thread(() -> spin(started, stop), "dw-901 - GET /words/word-exists?word=cat");
+        Thread idle = new Thread(() -> spin(started, stop), "dw-902");
+        busy.start();
+        idle.start();
+        started.await();
+
+        // when
+        StackSampler.Profile profile;
+        try {
+            profile = sampler.profile(Duration.ofMillis(500), 100, StackSampler.Mode.CPU);
+        } finally {
+            stop.set(true);
+            busy.join();
+            idle.join();
+        }
+
+        // then
+        assertThat(profile.samples).isGreaterThan(10);
+        Map<String, Long> stacks = profile.stacks();
+        assertThat(stacks).isNotEmpty();
+        assertThat(stacks.keySet().stream()
+            .allMatch(stack -> stack.startsWith("GET_/words/word-exists;java.lang.Thread.run;"))).isTrue();
+        assertThat(stacks.keySet().stream()
+            .anyMatch(stack -> stack.contains(StackSamplerTest.class.getName() + ".spin"))).isTrue();
+    }
+
+    @Test
+    public void shouldWriteCollapsedStacksMostFrequentFirst() {
+        // given
+        StackSampler.Profile profile = new StackSampler.Profile(StackSampler.Mode.WALL, 100);
+        StackTraceElement a = new StackTraceElement("A", "a", "A.java", 1);
+        StackTraceElement b = new StackTraceElement("B", "b", "B.java", 2);
+        StackTraceElement c = new StackTraceElement("C", "c", "C.java", 3);
+        StackTraceElement cOtherLine = new StackTraceElement("C", "c", "C.java", 4);
+        profile.record("GET_/words", new StackTraceElement[] {b, a});
+        profile.record("GET_/words", new StackTraceElement[] {c, a});
+        profile.record("GET_/words", new StackTraceElement[] {cOtherLine, a});
+        StringWriter out = new StringWriter();
+
+        // when
+        profile.writeCollapsed(new PrintWriter(out));
+
+        // then
+        assertThat(out.toString()).isEqualTo(String.format("GET_/words;A.a;C.c 2%nGET_/words;A.a;B.b 1%n"));
+    }
+
+    @Test
+    public void shouldUseRequestWithoutQueryAsRootFrame() {
+        assertThat(StackSampler.requestFrame("dw-42 - GET /words/word-exists?word=a;b c"))
+            .isEqualTo("GET_/words/word-exists");
+        assertThat(StackSampler.requestFrame("dw-42 - POST /optimized-words/word-exists"))
+            .isEqualTo("POST_/optimized-words/word-exists");
+    }
+
+    private static void spin(CountDownLatch started, AtomicBoolean stop) {
+        started.countDown();
+        long sum = 0;
+        while (!stop.get()) {
+            sum += System.nanoTime() % 7;
+        }
+        assertThat(sum).isNotNegative();
+    }
+}
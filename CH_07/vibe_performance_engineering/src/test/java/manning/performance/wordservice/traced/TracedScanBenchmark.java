@@ -0,0 +1,68 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.initial.DefaultWordsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of tracing the full-file scan: the same missing-word lookup (all 370k lines scanned)
+ * with the untraced DefaultWordsService and with TracedWordsService.
+ * The two scores should be close; a large gap means the instrumentation distorts the hot path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class TracedScanBenchmark {
+
+    private static final String MISSING_WORD = "nonexistentword";
+
+    private DefaultWordsService untracedService;
+    private TracedWordsService tracedService;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path wordsPath = Paths.get(
+                Objects.requireNonNull(getClass().getClassLoader().getResource("words.txt")).toURI());
+        untracedService = new DefaultWordsService(wordsPath);
+        tracedService = new TracedWordsService(wordsPath);
+    }
+
+    @Benchmark
+    public boolean untracedScan() {
+        return untracedService.wordExists(MISSING_WORD);
+    }
+
+    @Benchmark
+    public boolean tracedScan() {
+        return tracedService.wordExists(MISSING_WORD);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TracedScanBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,156 @@
+package manning.performance.wordservice.traced;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.within;
+
+class TracedWordsServiceTest {
+
+    private final MetricsCollector metrics = MetricsCollector.getInstance();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void setUp() {
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+        metrics.reset();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+    }
+
+    @Test
+    public void shouldFlushScanCountersOncePerRequest() throws IOException {
+        // given
+        Path words = Files.write(tempDir.resolve("words.txt"), List.of("aa", "bbb", "cccc"));
+        TracedWordsService wordsService = new TracedWordsService(words, () -> 0);
+
+        // when
+        boolean existing = wordsService.wordExists("bbb");
+        boolean missing = wordsService.wordExists("zzz");
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(existing).isTrue();
+        assertThat(missing).isFalse();
+        assertThat(report.totalLinesScanned).isEqualTo(2 + 3);
+        assertThat(report.totalStringComparisons).isEqualTo(2 + 3);
+        assertThat(report.totalBytesRead).isEqualTo((3 + 4) + (3 + 4 + 5));
+        assertThat(report.totalFileReads).isEqualTo(2);
+        assertThat(report.methodCallCounts.get("wordExists")).isEqualTo(2);
+        assertThat(report.endpointCallCounts.get("word-exists")).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRecordAllocatedBytesAndCpuTimePerCall() throws IOException {
+        // given
+        List<String> lines = IntStream.range(0, 10_000)
+            .mapToObj(i -> String.format("word-%015d", i))
+            .collect(Collectors.toList());
+        Path words = Files.write(tempDir.resolve("words.txt"), lines);
+        TracedWordsService wordsService = new TracedWordsService(words, () -> 0);
+
+        // when
+        boolean missing = wordsService.wordExists("missing");
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        MetricsCollector.ResourceUsage usage = report.methodResourceUsage.get("wordExists");
+        assertThat(missing).isFalse();
+        assertThat(usage.calls).isEqualTo(1);
+        assertThat(usage.cpuCalls).isEqualTo(1);
+        assertThat(usage.cpuMeanMs).isGreaterThan(0);
+        // every scanned line is a new String of at least 20 chars, 24 + 16 + 20 bytes with compact strings
+        assertThat(usage.allocatedMeanBytes).isGreaterThan(lines.size() * 60.0);
+        assertThat(report.totalMemoryUsed).isGreaterThan(lines.size() * 60L);
+    }
+
+    @Test
+    public void shouldRecordTimingWhenFileIsMissing() {
+        // given
+        TracedWordsService wordsService = new TracedWordsService(tempDir.resolve("missing.txt"), () -> 0);
+
+        // when
+        Throwable error = catchThrowable(wordsService::getWordOfTheDay);
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(error).isInstanceOf(RuntimeException.class);
+        assertThat(report.methodCallCounts.get("getWordOfTheDay")).isEqualTo(1);
+        assertThat(report.totalFileReads).isZero();
+    }
+
+    @Test
+    public void shouldOnlyCountRequestsFasterThanTailThreshold() throws IOException {
+        // given
+        Path words = Files.write(tempDir.resolve("words.txt"), List.of("aa", "bbb", "cccc"));
+        TracedWordsService wordsService = new TracedWordsService(words, () -> 0);
+        metrics.setSamplingPolicy(SamplingPolicy.tailBased(60_000));
+
+        // when
+        wordsService.wordExists("bbb");
+        wordsService.getWordOfTheDay();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.totalRequests).isEqualTo(2);
+        assertThat(report.unsampledRequests).isEqualTo(2);
+        assertThat(report.sampledRequests).isZero();
+        assertThat(report.totalLinesScanned).isZero();
+        assertThat(report.methodCallCounts).doesNotContainKeys("wordExists", "getWordOfTheDay", "getIndexForToday");
+    }
+
+    @Test
+    public void shouldRecordEstimatedProbeTimePerCall() throws IOException {
+        // given
+        ProbeCost probeCost = ProbeCost.calibrate();
+        Path words = Files.write(tempDir.resolve("words.txt"), List.of("aa", "bbb", "cccc"));
+        TracedWordsService wordsService = new TracedWordsService(words);
+
+        // when
+        wordsService.wordExists("zzz");
+        wordsService.getWordOfTheDay();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        // 3 lines scanned and compared, one file open timed with two clock reads
+        assertThat(report.methodResourceUsage.get("wordExists").probeMeanMs)
+            .isCloseTo(probeCost.estimateNanos(0, 3 + 3 + 1, 2) / 1_000_000.0, within(0.000_001));
+        // the word of the day contains the getIndexForToday scope
+        assertThat(report.methodResourceUsage.get("getWordOfTheDay").probeMeanMs)
+            .isCloseTo(probeCost.estimateNanos(1, 3 + 1, 2) / 1_000_000.0, within(0.000_001));
+        assertThat(report.probeCost).isSameAs(probeCost);
+    }
+
+    @Test
+    public void shouldRecordNestedTimingsWithTheRequest() throws IOException {
+        // given
+        Path words = Files.write(tempDir.resolve("words.txt"), List.of("aa", "bbb", "cccc"));
+        TracedWordsService wordsService = new TracedWordsService(words);
+
+        // when
+        String word = wordsService.getWordOfTheDay();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(word).isEqualTo("No word today.");
+        assertThat(report.sampledRequests).isEqualTo(1);
+        assertThat(report.methodCallCounts.get("getWordOfTheDay")).isEqualTo(1);
+        assertThat(report.methodCallCounts.get("getIndexForToday")).isEqualTo(1);
+    }
+}
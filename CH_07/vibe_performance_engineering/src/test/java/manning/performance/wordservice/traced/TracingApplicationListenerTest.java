@@ -0,0 +1,95 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.Traced;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TracingApplicationListenerTest {
+
+    private final MetricsCollector metrics = MetricsCollector.newInstance();
+    private final ApplicationHandler handler = new ApplicationHandler(new ResourceConfig()
+        .register(ListenedResource.class)
+        .register(new TracingApplicationListener(metrics)));
+
+    @Test
+    public void shouldTimeTracedResourceMethodsOnly() throws Exception {
+        // given
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+
+        // when
+        get("/listened/word?word=cat");
+        get("/listened/word?word=dog");
+        get("/listened/untraced");
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.methodCallCounts.get("word_endpoint")).isEqualTo(2);
+        assertThat(report.endpointCallCounts.get("word")).isEqualTo(2);
+        assertThat(report.methodCallCounts).containsOnlyKeys("word_endpoint");
+        assertThat(report.sampledRequests).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCloseTheTraceWhenTheResourceMethodThrows() throws Exception {
+        // given
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+
+        // when
+        int status = get("/listened/missing").getStatus();
+        get("/listened/word?word=cat");
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(status).isEqualTo(404);
+        assertThat(report.methodCallCounts.get("ListenedResource.missing")).isEqualTo(1);
+        // a trace left open would have turned the next request into a nested scope of it
+        assertThat(report.sampledRequests).isEqualTo(2);
+        assertThat(report.methodCallCounts.get("word_endpoint")).isEqualTo(1);
+    }
+
+    private ContainerResponse get(String path) throws Exception {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+            URI.create("http://localhost" + path), "GET", null, new MapPropertiesDelegate(),
+            handler.getConfiguration());
+        return handler.apply(request).get();
+    }
+
+    @Path("/listened")
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class ListenedResource {
+
+        @GET
+        @Path("/word")
+        @Traced(value = "word_endpoint", endpoint = "word")
+        public String word(@QueryParam("word") String word) {
+            return word;
+        }
+
+        @GET
+        @Path("/missing")
+        @Traced
+        public String missing() {
+            throw new NotFoundException();
+        }
+
+        @GET
+        @Path("/untraced")
+        public String untraced() {
+            return "untraced";
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.WordsService;
+import manning.performance.wordservice.optimized.CachedWordsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of @Traced through TracingDecorator around the optimized HashSet lookup, compared with
+ * the bare engine and with a hand-written TraceContext scope (what TracedWordsService does).
+ * The difference between decorated and handWritten is the cost of the proxy itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class TracingDecoratorBenchmark {
+
+    private final MetricsCollector metrics = MetricsCollector.getInstance();
+    private WordsService engine;
+    private WordsService decorated;
+    private MetricsCollector.Timer wordExistsTimer;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        engine = new CachedWordsService(Paths.get(
+                Objects.requireNonNull(getClass().getClassLoader().getResource("words.txt")).toURI()));
+        decorated = TracingDecorator.decorate(WordsService.class, engine, "cached");
+        wordExistsTimer = metrics.timer("handWritten.wordExists");
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+        metrics.reset();
+    }
+
+    @Benchmark
+    public boolean bare() {
+        return engine.wordExists("performance");
+    }
+
+    @Benchmark
+    @SuppressWarnings("try") // the scope only times the call
+    public boolean handWritten() {
+        try (TraceContext trace = TraceContext.start(metrics, wordExistsTimer)) {
+            return engine.wordExists("performance");
+        }
+    }
+
+    @Benchmark
+    public boolean decorated() {
+        return decorated.wordExists("performance");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TracingDecoratorBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,125 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.Traced;
+import manning.performance.wordservice.WordsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class TracingDecoratorTest {
+
+    private final MetricsCollector metrics = MetricsCollector.getInstance();
+
+    @BeforeEach
+    public void setUp() {
+        metrics.setSamplingPolicy(SamplingPolicy.always());
+        metrics.reset();
+    }
+
+    @Test
+    public void shouldTimeAnnotatedInterfaceMethodsPerEngine() {
+        // given
+        WordsService engine = TracingDecorator.decorate(WordsService.class, new SetWordsService(), "set");
+
+        // when
+        boolean existing = engine.wordExists("aa");
+        boolean missing = engine.wordExists("zz");
+        String word = engine.getWordOfTheDay();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(existing).isTrue();
+        assertThat(missing).isFalse();
+        assertThat(word).isEqualTo("aa");
+        assertThat(report.methodCallCounts)
+            .containsEntry("set.wordExists", 2L)
+            .containsEntry("set.getWordOfTheDay", 1L);
+        assertThat(report.sampledRequests).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldUseAnnotationNameAndEndpointAndSkipUntracedMethods() {
+        // given
+        Lookup lookup = TracingDecorator.decorate(Lookup.class, new SetLookup());
+
+        // when
+        lookup.find("aa");
+        lookup.size();
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(report.methodCallCounts).containsEntry("lookup_find", 1L).doesNotContainKey("SetLookup.size");
+        assertThat(report.endpointCallCounts).containsEntry("find", 1L);
+        assertThat(lookup.toString()).isEqualTo("set-lookup");
+    }
+
+    @Test
+    public void shouldRethrowTargetExceptionAndStillRecordTiming() {
+        // given
+        WordsService failing = TracingDecorator.decorate(WordsService.class, new FailingWordsService(), "failing");
+
+        // when
+        Throwable error = catchThrowable(() -> failing.wordExists("aa"));
+        MetricsCollector.MetricsReport report = metrics.getMetricsReport();
+
+        // then
+        assertThat(error).isInstanceOf(IllegalStateException.class).hasMessage("dictionary unavailable");
+        assertThat(report.methodCallCounts).containsEntry("failing.wordExists", 1L);
+    }
+
+    interface Lookup {
+        @Traced(value = "lookup_find", endpoint = "find")
+        boolean find(String word);
+
+        int size();
+    }
+
+    static class SetLookup implements Lookup {
+        private final Set<String> words = Set.of("aa", "bbb");
+
+        @Override
+        public boolean find(String word) {
+            return words.contains(word);
+        }
+
+        @Override
+        public int size() {
+            return words.size();
+        }
+
+        @Override
+        public String toString() {
+            return "set-lookup";
+        }
+    }
+
+    static class SetWordsService implements WordsService {
+        private final Set<String> words = Set.of("aa", "bbb");
+
+        @Override
+        public String getWordOfTheDay() {
+            return "aa";
+        }
+
+        @Override
+        public boolean wordExists(String word) {
+            return words.contains(word);
+        }
+    }
+
+    static class FailingWordsService implements WordsService {
+        @Override
+        public String getWordOfTheDay() {
+            throw new IllegalStateException("dictionary unavailable");
+        }
+
+        @Override
+        public boolean wordExists(String word) {
+            throw new IllegalStateException("dictionary unavailable");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package manning.performance.wordservice.traced;
+
+import manning.performance.wordservice.optimized.CachedWordsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of recording one traced request (one method timing + one endpoint count) compared with
+ * the optimized HashSet lookup it would be wrapped around:
+ * - baselineRecording: the collector as it was before timer handles (BaselineMetrics, kept frozen here),
+ *   a computeIfAbsent and an add per metric, sums and counts only, no distribution
+ * - stringKeyedRecording: today's collector looked up by name on every call
+ * - handleRecording: handles resolved once in setup, one latency value
+ * - handleRecordingWithResources: also CPU time, allocated bytes and probe time, four histograms
+ * Four threads record into the same collector, like request threads do, so contention on the shared
+ * counters is part of the score (timer histograms are per thread); run on at least four cores, or
+ * with -t 1 for the uncontended cost. Run with -prof gc to see the allocation rate of each recording path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+public class TracingOverheadBenchmark {
+
+    private final MetricsCollector metrics = MetricsCollector.getInstance();
+    private final BaselineMetrics baseline = new BaselineMetrics();
+    private CachedWordsService wordsService;
+    private MetricsCollector.Timer wordExistsTimer;
+    private MetricsCollector.Counter wordExistsRequests;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        wordsService = new CachedWordsService(Paths.get(
+                Objects.requireNonNull(getClass().getClassLoader().getResource("words.txt")).toURI()));
+        wordExistsTimer = metrics.timer("wordExists");
+        wordExistsRequests = metrics.requestCounter("word-exists");
+        metrics.reset();
+    }
+
+    @Benchmark
+    public boolean optimizedLookup() {
+        return wordsService.wordExists("performance");
+    }
+
+    @Benchmark
+    public void baselineRecording() {
+        baseline.recordRequest("word-exists");
+        baseline.recordMethodExecution("wordExists", 1_500);
+    }
+
+    @Benchmark
+    public void stringKeyedRecording() {
+        metrics.recordRequest("word-exists");
+        metrics.recordMethodExecution("wordExists", 1_500);
+    }
+
+    @Benchmark
+    public void handleRecording() {
+        wordExistsRequests.increment();
+        wordExistsTimer.record(1_500);
+    }
+
+    @Benchmark
+    public void handleRecordingWithResources() {
+        wordExistsRequests.increment();
+        wordExistsTimer.record(1_500, 1_200, 96, 40);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TracingOverheadBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    /**
+     * The recording path of MetricsCollector before timer handles and histograms, copied unchanged
+     */
+    static final class BaselineMetrics {
+        private final Map<String, LongAdder> methodExecutionTimes = new ConcurrentHashMap<>();
+        private final Map<String, AtomicLong> methodCallCounts = new ConcurrentHashMap<>();
+        private final LongAdder totalRequests = new LongAdder();
+        private final Map<String, LongAdder> endpointMetrics = new ConcurrentHashMap<>();
+
+        void recordMethodExecution(String methodName, long executionTimeNanos) {
+            methodExecutionTimes.computeIfAbsent(methodName, k -> new LongAdder()).add(executionTimeNanos);
+            methodCallCounts.computeIfAbsent(methodName, k -> new AtomicLong()).incrementAndGet();
+        }
+
+        void recordRequest(String endpoint) {
+            totalRequests.increment();
+            endpointMetrics.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+        }
+    }
+}